@@ -0,0 +1,26 @@
+package com.shiyan.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of {@code benchmarks.jar}. It accepts the usual JMH command line and always attaches the
+ * GC profiler, so every run reports the allocation rate next to throughput and latency percentiles.
+ * 基准测试入口，默认附加GC分析器以输出内存分配速率
+ * <p>
+ * Example: {@code java -jar target/benchmarks.jar BindCloudletsBenchmark.minMin -p cloudlets=1000,10000 -p vms=20,100 -rf json}
+ */
+public class BenchmarkMain {
+
+	public static void main(String[] args) throws Exception {
+		Options options = new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+
+}
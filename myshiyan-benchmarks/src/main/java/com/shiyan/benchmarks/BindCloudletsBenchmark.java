@@ -0,0 +1,126 @@
+package com.shiyan.benchmarks;
+
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.shiyan.core.CloudSim;
+import com.shiyan.init.InitShiyan;
+import com.shiyan.main.DatacenterBroker;
+import com.shiyan.main.Log;
+import com.shiyan.models.Cloudlet;
+
+/**
+ * JMH harness for the cloudlet-to-VM binding heuristics of {@link DatacenterBroker}.
+ * 对DatacenterBroker中各个任务调度算法的基准测试
+ * <p>
+ * Every invocation binds a freshly generated workload (the same one {@link InitShiyan} builds for
+ * {@code MyshiyanMain}), because the heuristics reorder and bind the broker's cloudlet list in place.
+ * Throughput and the latency percentiles of a single binding pass are reported through
+ * {@link Mode#Throughput} and {@link Mode#SampleTime}; the allocation rate is reported by the GC
+ * profiler, which {@link BenchmarkMain} always attaches.
+ * <p>
+ * {@link #baseline()} only builds the fixture, so its {@code gc.alloc.rate.norm} is the share of every
+ * other result that belongs to the workload generation rather than to the heuristic.
+ * <p>
+ * The default grid spans 1k to 200k cloudlets and 20 to 5k VMs. The Min-Min family and Sufferage are
+ * O(n<sup>2</sup>m), so the large corners of the grid take hours per invocation; narrow the grid with
+ * {@code -p cloudlets=... -p vms=...} for pre-release runs.
+ * 
+ * @see BenchmarkMain
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 10, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class BindCloudletsBenchmark {
+
+	/** Number of cloudlets submitted to the broker. 任务数量 */
+	@Param({ "1000", "10000", "50000", "200000" })
+	public int cloudlets;
+
+	/** Number of VMs submitted to the broker. 虚拟机数量 */
+	@Param({ "20", "100", "1000", "5000" })
+	public int vms;
+
+	/** The broker whose cloudlet list is bound by the benchmark methods. */
+	private DatacenterBroker broker;
+
+	/**
+	 * Builds a new simulation, broker and workload before each invocation.
+	 * 每次调用前重新创建仿真环境、代理和任务
+	 * 
+	 * @throws Exception if the broker cannot be created
+	 */
+	@Setup(Level.Invocation)
+	public void setUp() throws Exception {
+		Log.disable();
+		CloudSim.init(1, Calendar.getInstance(), false);
+		broker = new DatacenterBroker("Broker");
+		broker.submitVmList(InitShiyan.createVmList(vms, broker.getId(), "Xen"));
+		broker.submitCloudletList(InitShiyan.createCloudletList(broker.getId(), cloudlets));
+	}
+
+	@Benchmark
+	public List<Cloudlet> baseline() {
+		return broker.getCloudletList();
+	}
+
+	@Benchmark
+	public List<Cloudlet> ifcfsrr() {
+		broker.bindCloudletsToVmsByIFCFSRR();
+		return broker.getCloudletList();
+	}
+
+	@Benchmark
+	public List<Cloudlet> minMin() {
+		broker.bindCloudletsToVmsMinMin();
+		return broker.getCloudletList();
+	}
+
+	@Benchmark
+	public List<Cloudlet> iMinMin() throws Exception {
+		broker.bindCloudletsToVmsIMinMin();
+		return broker.getCloudletList();
+	}
+
+	@Benchmark
+	public List<Cloudlet> maxMin() {
+		broker.bindCloudletsToVmsMaxMin();
+		return broker.getCloudletList();
+	}
+
+	@Benchmark
+	public List<Cloudlet> iMaxMin() throws Exception {
+		broker.bindCloudletsToVmsIMaxMin();
+		return broker.getCloudletList();
+	}
+
+	@Benchmark
+	public List<Cloudlet> sufferage() {
+		broker.bindCloudletsToVmsSufferage();
+		return broker.getCloudletList();
+	}
+
+	@Benchmark
+	public List<Cloudlet> qosMinMin() throws Exception {
+		broker.bindCloudletsToVmsQoSMinMin();
+		return broker.getCloudletList();
+	}
+
+}
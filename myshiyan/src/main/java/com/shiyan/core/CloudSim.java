@@ -934,6 +934,9 @@ public class CloudSim {
 			ent.shutdownEntity();
 		}
 
+		// write out the messages still queued by an asynchronous log
+		Log.flush();
+
 		// reset all static variables
 		// Private data members
 		entities = null;
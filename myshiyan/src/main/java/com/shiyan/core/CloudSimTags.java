@@ -271,6 +271,36 @@ public class CloudSimTags {
 
 	public static final int NextCycle = BASE + 48;
 
+	/**
+	 * Denotes the submission of a batch of Cloudlets, carried as a <tt>Cloudlet[]</tt> whose elements
+	 * are all bound to the same VM. The Datacenter updates its processing once for the whole batch and
+	 * returns the finished Cloudlets of the sender with {@link #CLOUDLET_RETURN_BATCH}.
+	 * 批量提交绑定到同一虚拟机的云任务
+	 */
+	public static final int CLOUDLET_SUBMIT_BATCH = BASE + 49;
+
+	/**
+	 * Denotes the return of a batch of finished Cloudlets to their owner, carried as a
+	 * <tt>Cloudlet[]</tt> grouped by VM.
+	 * 批量返回已经完成的云任务
+	 */
+	public static final int CLOUDLET_RETURN_BATCH = BASE + 50;
+
+	/**
+	 * Denotes the end of the cooldown of a VM that became idle, carried as the id of the VM. The broker
+	 * destroys the VM if it stayed idle since then.
+	 * 空闲虚拟机的冷却期结束
+	 */
+	public static final int VM_IDLE_CHECK = BASE + 51;
+
+	/**
+	 * Denotes the end of the changes a Datacenter received at the current simulation time. The
+	 * Datacenter sends it to itself on the first change of a time, and then updates its processing and
+	 * returns the finished Cloudlets once for all of them.
+	 * 合并同一时刻的数据中心更新
+	 */
+	public static final int VM_DATACENTER_FLUSH = BASE + 52;
+
 	/** Private Constructor. */
 	private CloudSimTags() {
 		throw new UnsupportedOperationException("CloudSimTags cannot be instantiated");
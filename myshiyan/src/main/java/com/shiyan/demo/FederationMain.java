@@ -0,0 +1,73 @@
+package com.shiyan.demo;
+
+import java.util.Calendar;
+import java.util.List;
+
+import com.shiyan.core.CloudSim;
+import com.shiyan.init.InitShiyan;
+import com.shiyan.main.Datacenter;
+import com.shiyan.main.Log;
+import com.shiyan.main.MultiDatacenterBroker;
+import com.shiyan.main.NetworkTopology;
+import com.shiyan.main.PrintResult;
+import com.shiyan.models.Cloudlet;
+import com.shiyan.models.Vm;
+
+/**
+  * 多数据中心（联邦云）的示例：三个容量、价格和网络延迟不同的数据中心，
+  * 代理同时在所有数据中心中创建虚拟机，并按照包含网络延迟的预计完成时间分派云任务
+ */
+public class FederationMain {
+
+	/** The cloudletList. */
+	private static List<Cloudlet> cloudletList;
+	/** The vmList. */
+	private static List<Vm> vmList;
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		Log.printLine("Starting FederationMain...");
+
+		try {
+			CloudSim.init(1, Calendar.getInstance(), false);
+
+			MultiDatacenterBroker broker = InitShiyan.createMultiDatacenterBroker("Broker_0");
+			int brokerId = broker.getId();
+
+			//本地数据中心价格高、延迟低，远程数据中心容量大、价格低、延迟高
+			Datacenter local = InitShiyan.createDatacenter("Datacenter_Local", InitShiyan.createHostList(3), 3.0);
+			Datacenter near = InitShiyan.createDatacenter("Datacenter_Near", InitShiyan.createHostList(4), 2.0);
+			Datacenter far = InitShiyan.createDatacenter("Datacenter_Far", InitShiyan.createHostList(6), 1.0);
+
+			//网络拓扑：带宽（MB/s）和延迟（秒）
+			NetworkTopology.addLink(local.getId(), brokerId, 1000.0, 0.01);
+			NetworkTopology.addLink(near.getId(), brokerId, 500.0, 0.5);
+			NetworkTopology.addLink(far.getId(), brokerId, 100.0, 5.0);
+
+			vmList = InitShiyan.createVmList(20, brokerId, "Xen"); //creating 20 vms
+			cloudletList = InitShiyan.createCloudletList(brokerId, 300); // creating 300 cloudlets
+			broker.submitVmList(vmList);
+			broker.submitCloudletList(cloudletList);
+			//broker.setCostWeight(0);//只按照数据中心的容量分配虚拟机
+
+			CloudSim.startSimulation();
+
+			List<Cloudlet> newList = broker.getCloudletReceivedList();
+
+			CloudSim.stopSimulation();
+
+			PrintResult.printCloudletList(cloudletList.size(),newList,vmList);
+			PrintResult.printSchedulingLatency(broker);
+			Log.printLine("各数据中心的虚拟机数量：" + broker.getVmCountByDatacenter());
+
+			Log.printLine("FederationMain finished!");
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			Log.printLine("The simulation has been terminated due to an unexpected error");
+		}
+	}
+}
@@ -65,6 +65,9 @@ public class MyshiyanMain {
 			cloudletList = InitShiyan.createCloudletList(brokerId,300); // creating 300 cloudlets
 			//datacenter0.setDisableMigrations(false);//设置数据中心是支持虚拟机迁移的
 			broker.submitVmList(vmList);
+			//broker.setBatchSubmission(true);//按虚拟机批量提交和返回云任务，任务数很多时可大幅减少事件数量
+			//broker.setRescheduleThreshold(100);//虚拟机的实际进度偏离计划超过100秒时，重新安排其上尚未开始的云任务
+			//broker.setElasticVmPool(InitShiyan.createVmTypeCatalog(), 40, 600);//弹性资源池：I-MinMin/I-MaxMin找不到满足QoS需求的虚拟机时按需创建，最多40台，空闲600秒后销毁
              
 			//下面三个算法请勿测试，与论文无关
 			//broker.bindCloudletsToVmsByFitness();//基于适应度的任务分配算法
@@ -86,11 +89,25 @@ public class MyshiyanMain {
 			
 			//broker.bindCloudletsToVmsSufferage();//Sufferage算法
 			
-	        //broker.bindCloudletsToVmsISufferage();//嵌入Qos需求的Sufferage算法，太复杂，舍弃
+	        //broker.bindCloudletsToVmsISufferage();//嵌入Qos需求的Sufferage算法
 			
 			//基于QoS需求降级的QoS-MinMin算法
 		    //broker.bindCloudletsToVmsQoSMinMin();
 			//PrintResult.wayName="QoSMinMin";
+			
+			//先用自动调优得到盈利最大的补偿类型和SLD成本比例，再运行QoS-MinMin算法
+			//new QoSParameterTuner(cloudletList, vmList, CloudSim.getMinTimeBetweenEvents()).tune().apply(broker);
+		    //broker.bindCloudletsToVmsQoSMinMin();
+			//PrintResult.wayName="QoSMinMin";
+			//PrintResult.compensationTypes=broker.getCompensationTypes();
+			
+			//按截止时间分为4类并行调度的QoS-MinMin算法
+		    //broker.bindCloudletsToVmsQoSMinMin(4);
+			//PrintResult.wayName="QoSMinMin";
+			//PrintResult.compensationTypes=broker.getCompensationTypes();
+			
+			//以Min-Min为种子的遗传算法，用于离线批量规划（最多迭代500次或搜索60秒）
+			//broker.bindCloudletsToVmsGA(500, 60000);
 		
 			// Fifth step: Starts the simulation
 			CloudSim.startSimulation();
@@ -100,7 +117,8 @@ public class MyshiyanMain {
 
 			CloudSim.stopSimulation();
 
-			PrintResult.printCloudletList(cloudletList.size(),newList,vmList);
+			PrintResult.printCloudletList(cloudletList.size(),newList,broker.getVmList());//包括弹性资源池创建的虚拟机
+			PrintResult.printSchedulingLatency(broker);
 
 			Log.printLine("MyshiyanMain finished!");
 		}
@@ -0,0 +1,70 @@
+package com.shiyan.demo;
+
+import java.util.Calendar;
+import java.util.List;
+
+import com.shiyan.core.CloudSim;
+import com.shiyan.init.InitShiyan;
+import com.shiyan.main.Datacenter;
+import com.shiyan.main.Log;
+import com.shiyan.main.PrintResult;
+import com.shiyan.main.WorkflowBroker;
+import com.shiyan.models.Cloudlet;
+import com.shiyan.models.Host;
+import com.shiyan.models.Vm;
+import com.shiyan.models.WorkflowCloudlet;
+
+/**
+  * 工作流调度的示例：任务之间存在依赖关系和数据传输，代理在所有父任务返回后才提交子任务，
+  * 任务到虚拟机的映射由HEFT或CPOP列表调度算法给出
+ */
+public class WorkflowMain {
+
+	/** The workflow tasks. */
+	private static List<WorkflowCloudlet> cloudletList;
+	/** The vmList. */
+	private static List<Vm> vmList;
+	private static List<Host> hostList;
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		Log.printLine("Starting WorkflowMain...");
+
+		try {
+			CloudSim.init(1, Calendar.getInstance(), false);
+
+			WorkflowBroker broker = InitShiyan.createWorkflowBroker("Broker_0");
+			int brokerId = broker.getId();
+
+			hostList = InitShiyan.createHostList(5);//创建5个主机
+			@SuppressWarnings("unused")
+			Datacenter datacenter0 = InitShiyan.createDatacenter("Datacenter_1",hostList);
+
+			vmList = InitShiyan.createVmList(20, brokerId, "Xen"); //creating 20 vms
+			cloudletList = InitShiyan.createWorkflow(brokerId, 300, 1L); //creating a workflow of 300 tasks
+			broker.submitVmList(vmList);
+			broker.submitCloudletList(cloudletList);
+
+			broker.bindCloudletsToVmsHEFT();//HEFT算法
+			//broker.bindCloudletsToVmsCPOP();//CPOP算法
+
+			CloudSim.startSimulation();
+
+			List<Cloudlet> newList = broker.getCloudletReceivedList();
+
+			CloudSim.stopSimulation();
+
+			PrintResult.printCloudletList(cloudletList.size(),newList,vmList);
+			PrintResult.printSchedulingLatency(broker);
+
+			Log.printLine("WorkflowMain finished!");
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			Log.printLine("The simulation has been terminated due to an unexpected error");
+		}
+	}
+}
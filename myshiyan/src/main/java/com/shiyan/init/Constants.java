@@ -21,6 +21,9 @@ public class Constants {
 	public final static int CLOUDLET_PES       = 1;
 	public final static int[] CLOUDLET_DEADLINETIME = {1*60*60,2*60*60,3*60*60,4*60*60,5*60*60};//s
 	//public final static int[] CLOUDLET_DEADLINETIME = {10,9,1,2,8,7,3,4,6,5};//s
+	//工作流中任务之间传输的数据量，单位与虚拟机带宽一致
+	public final static double[] WORKFLOW_DATA_SIZE = {64, 128, 256, 512, 1024};//Mbit
+	public final static int WORKFLOW_MAX_PARENTS   = 3;
 	//public final static double[] VMFITWEIGHT   = {0.6,0.4};
 //	public final static double K = 1.0;
 //	public final static double WF_THRESHOLD    = 5.0;
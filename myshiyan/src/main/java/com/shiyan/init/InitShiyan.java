@@ -1,22 +1,30 @@
 package com.shiyan.init;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
 
+import com.shiyan.main.CloudletSchedulerPriority;
 import com.shiyan.main.CloudletSchedulerSpaceShared;
 import com.shiyan.main.Datacenter;
 import com.shiyan.main.DatacenterCharacteristics;
+import com.shiyan.main.MultiDatacenterBroker;
 import com.shiyan.main.Pe;
 import com.shiyan.main.PowerDatacenterBroker;
 import com.shiyan.main.Storage;
 import com.shiyan.main.VmAllocationPolicySimple;
 import com.shiyan.main.VmSchedulerTimeShared;
+import com.shiyan.main.VmTypeCatalog;
+import com.shiyan.main.WorkflowBroker;
 import com.shiyan.models.Cloudlet;
 import com.shiyan.models.Host;
 import com.shiyan.models.UtilizationModel;
 import com.shiyan.models.UtilizationModelFull;
 import com.shiyan.models.Vm;
+import com.shiyan.models.WorkflowCloudlet;
 import com.shiyan.provisioners.BwProvisionerSimple;
 import com.shiyan.provisioners.PeProvisionerSimple;
 import com.shiyan.provisioners.RamProvisionerSimple;
@@ -47,7 +55,55 @@ public class InitShiyan {
 		return cloudletlist;
 	}
 	
+	/**
+	 * 创建一个分层的随机工作流，每一层约有sqrt(n)个任务，每个任务有1到WORKFLOW_MAX_PARENTS个上一层的父任务
+	 */
+	public static List<WorkflowCloudlet> createWorkflow(int brokeid,int cloudletsnumber,long seed) {
+		List<WorkflowCloudlet> cloudletlist = new ArrayList<WorkflowCloudlet>();
+		
+		UtilizationModel utilizationModelfull = new UtilizationModelFull();
+		Random random = new Random(seed);
+		int width = Math.max(1, (int) Math.sqrt(cloudletsnumber));
+		
+		for (int i = 0; i < cloudletsnumber; i++) {
+			WorkflowCloudlet cloudlet = new WorkflowCloudlet(
+					i,
+					Constants.CLOUDLET_LENGTH[random.nextInt(Constants.CLOUDLET_TYPE)],
+					Constants.CLOUDLET_DEADLINETIME[i%(Constants.CLOUDLET_TYPE/2)],
+					Constants.CLOUDLET_PES,
+					utilizationModelfull,
+					utilizationModelfull,
+					utilizationModelfull,
+					Constants.USER_MONEY[i%Constants.CLOUDLET_TYPE]);
+			cloudlet.setUserId(brokeid);
+			cloudlet.setVmId(-1);
+			
+			int layerStart = i / width * width;
+			if (layerStart > 0) {
+				int parents = 1 + random.nextInt(Constants.WORKFLOW_MAX_PARENTS);
+				Set<Integer> chosen = new HashSet<Integer>();
+				for (int p = 0; p < parents; p++) {
+					int parent = layerStart - width + random.nextInt(width);
+					if (chosen.add(parent)) {
+						cloudletlist.get(parent).addChild(cloudlet,
+								Constants.WORKFLOW_DATA_SIZE[random.nextInt(Constants.WORKFLOW_DATA_SIZE.length)]);
+					}
+				}
+			}
+			cloudletlist.add(cloudlet);
+		}
+
+		return cloudletlist;
+	}
+	
 	public static List<Vm> createVmList(int vmsnumber,int brokerid,String vmmname) {
+		return createVmList(vmsnumber, brokerid, vmmname, false);
+	}
+
+	/**
+	 * 创建虚拟机列表，priority为true时虚拟机按照云任务的classType抢占式地调度云任务
+	 */
+	public static List<Vm> createVmList(int vmsnumber,int brokerid,String vmmname,boolean priority) {
 		List<Vm> vmlist = new ArrayList<Vm>();
 		for (int i = 0; i < vmsnumber; i++) {
 			Vm vm = null;
@@ -61,13 +117,21 @@ public class InitShiyan {
 					Constants.VM_SIZE[i%Constants.VM_TYPES], 
 					Constants.VM_COST[i%Constants.VM_TYPES],
 					vmmname, 
-					new CloudletSchedulerSpaceShared());
+					priority ? new CloudletSchedulerPriority() : new CloudletSchedulerSpaceShared());
 			
 			vmlist.add(vm);
 		}
 		return vmlist;
 	}
 	
+	/**
+	 * 创建虚拟机类型目录，弹性资源池从中选择最便宜的能满足QoS需求的类型
+	 */
+	public static VmTypeCatalog createVmTypeCatalog() {
+		return new VmTypeCatalog(Constants.VM_MIPS, Constants.VM_PES, Constants.VM_RAM, Constants.VM_BW,
+				Constants.VM_SIZE, Constants.VM_COST);
+	}
+
 	public static List<Host> createHostList(int hostnumber) {
 		List<Host> hostList = new ArrayList<Host>();
 		for (int i = 0; i < hostnumber; i++) {
@@ -92,6 +156,30 @@ public class InitShiyan {
 		
 		return hostList;
 	}
+	public static WorkflowBroker createWorkflowBroker(String name){
+
+		WorkflowBroker broker = null;
+		try {
+			broker = new WorkflowBroker(name);
+		} catch (Exception e) {
+			e.printStackTrace();
+			return null;
+		}
+		return broker;
+	}
+	
+	public static MultiDatacenterBroker createMultiDatacenterBroker(String name){
+
+		MultiDatacenterBroker broker = null;
+		try {
+			broker = new MultiDatacenterBroker(name);
+		} catch (Exception e) {
+			e.printStackTrace();
+			return null;
+		}
+		return broker;
+	}
+	
 	public static PowerDatacenterBroker createBroker(String name){
 
 		PowerDatacenterBroker broker = null;
@@ -105,12 +193,18 @@ public class InitShiyan {
 	}
 	
     public static Datacenter createDatacenter(String name, List<Host> hostList){
+		return createDatacenter(name, hostList, 3.0);
+	}
+
+	/**
+	 * 创建数据中心，cost为使用处理器每秒的价格
+	 */
+    public static Datacenter createDatacenter(String name, List<Host> hostList, double cost){
 		
 		String arch = "x86";      // system architecture
 		String os = "Linux";          // operating system
 		String vmm = "Xen";
 		double time_zone = 10.0;         // time zone this resource located
-		double cost = 3.0;              // the cost of using processing in this resource
 		double costPerMem = 0.05;		// the cost of using memory in this resource
 		double costPerStorage = 0.1;	// the cost of using storage in this resource
 		double costPerBw = 0.1;			// the cost of using bw in this resource
@@ -49,6 +49,9 @@ public abstract class CloudletScheduler {
 	/** The list of failed cloudlets. 失败的cloudlets列表*/
 	protected List<? extends ResCloudlet> cloudletFailedList;
 
+	/** The queue of the datacenter to notify of the finished cloudlets, or <tt>null</tt>. 接收完成通知的数据中心队列*/
+	private FinishedCloudletQueue finishedCloudletQueue;
+
 	/**
 	 * Creates a new CloudletScheduler object. 创建�?个新的CloudletScheduler对象
          * A CloudletScheduler must be created before starting the actual simulation.
@@ -131,6 +134,8 @@ public abstract class CloudletScheduler {
 
 	/**
 	 * Processes a finished cloudlet. 处理�?个完成的cloudlet�?
+	 * Implementations add the cloudlet to the finished list and then call {@link #notifyCloudletFinished()},
+	 * so the datacenter returns it.
 	 * 
 	 * @param rcl finished cloudlet
 	 * @pre rgl != $null
@@ -406,4 +411,27 @@ public abstract class CloudletScheduler {
 		this.currentWrongProbability = currentWrongProbability;
 	}
 
+	/**
+	 * Notifies the datacenter of the VM that a cloudlet was added to the finished list.
+	 * 通知数据中心有云任务完成
+	 */
+	protected void notifyCloudletFinished() {
+		if (finishedCloudletQueue != null) {
+			finishedCloudletQueue.push(this);
+		}
+	}
+
+	public FinishedCloudletQueue getFinishedCloudletQueue() {
+		return finishedCloudletQueue;
+	}
+
+	/**
+	 * Sets the queue to notify of the finished cloudlets; the datacenter of the VM sets it.
+	 * 
+	 * @param finishedCloudletQueue the queue, or <tt>null</tt>
+	 */
+	public void setFinishedCloudletQueue(FinishedCloudletQueue finishedCloudletQueue) {
+		this.finishedCloudletQueue = finishedCloudletQueue;
+	}
+
 }
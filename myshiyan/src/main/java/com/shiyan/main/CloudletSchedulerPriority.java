@@ -0,0 +1,320 @@
+package com.shiyan.main;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.shiyan.core.CloudSim;
+import com.shiyan.models.Cloudlet;
+
+/**
+ * CloudletSchedulerPriority is a space-shared policy that runs the waiting cloudlets by priority, the
+ * priority being {@link Cloudlet#getClassType()} (a higher class first).
+ * 按照云任务的classType（优先级）调度的空间共享策略，高优先级的任务可以抢占低优先级的任务
+ * <p>
+ * The waiting cloudlets are kept in one heap per class, ordered by arrival, and the classes are kept in
+ * descending order, so the next cloudlet to run is found in {@code O(log n)}. When a cloudlet arrives and
+ * there are not enough free PEs, the running cloudlets of the lowest classes below its own are preempted
+ * through {@link #cloudletPause(int)}: their {@link ResCloudlet} keeps its progress, and they wait in the
+ * heap of their class, ahead of the later arrivals, to be resumed when PEs are free again. The first
+ * execution start time of a preempted cloudlet is kept, so its response time includes the preemption.
+ * <p>
+ * Unlike {@link CloudletSchedulerSpaceShared}, a paused running cloudlet frees its PEs, and a resumed
+ * cloudlet continues from what it had done instead of restarting with a shortened length.
+ *
+ * @see com.shiyan.init.InitShiyan#createVmList(int, int, String, boolean)
+ */
+public class CloudletSchedulerPriority extends CloudletSchedulerSpaceShared {
+
+	/** The waiting cloudlets of each class, highest class first. 每个优先级的等待堆 */
+	private final TreeMap<Integer, PriorityQueue<ResCloudlet>> waitingByClass =
+			new TreeMap<Integer, PriorityQueue<ResCloudlet>>(Collections.<Integer>reverseOrder());
+
+	/** The waiting cloudlets, by cloudlet id. */
+	private final Map<Integer, ResCloudlet> waitingById = new HashMap<Integer, ResCloudlet>();
+
+	/** The arrival order of the cloudlets, by cloudlet id. */
+	private final Map<Integer, Long> arrivalOrder = new HashMap<Integer, Long>();
+
+	/** The first execution start time of the cloudlets that started, by cloudlet id. */
+	private final Map<Integer, Double> firstStartTimes = new HashMap<Integer, Double>();
+
+	/** The ids of the preempted cloudlets, which are both in the paused list and waiting. 被抢占的云任务 */
+	private final Set<Integer> preemptedIds = new HashSet<Integer>();
+
+	/** The number of cloudlets submitted so far, giving the arrival order. */
+	private long arrivals;
+
+	/** The number of preemptions so far. */
+	private int preemptions;
+
+	private final Comparator<ResCloudlet> byArrival = new Comparator<ResCloudlet>() {
+		@Override
+		public int compare(ResCloudlet a, ResCloudlet b) {
+			return Long.compare(arrivalOrder.get(a.getCloudletId()), arrivalOrder.get(b.getCloudletId()));
+		}
+	};
+
+	/**
+	 * Creates a new CloudletSchedulerPriority object.
+	 */
+	public CloudletSchedulerPriority() {
+		super();
+	}
+
+	@Override
+	public double updateVmProcessing(double currentTime, List<Double> mipsShare) {
+		double nextEvent = super.updateVmProcessing(currentTime, mipsShare);
+		if (!startWaitingCloudlets()) {
+			return nextEvent;
+		}
+
+		// 有新的任务开始执行，重新估计最早完成时间
+		double capacity = getTotalCurrentAvailableMipsForCloudlet(null, getCurrentMipsShare());
+		nextEvent = Double.MAX_VALUE;
+		for (ResCloudlet rcl : getCloudletExecList()) {
+			double estimatedFinishTime = currentTime
+					+ (rcl.getRemainingCloudletLength() / (capacity * rcl.getNumberOfPes()));
+			if (estimatedFinishTime - currentTime < CloudSim.getMinTimeBetweenEvents()) {
+				estimatedFinishTime = currentTime + CloudSim.getMinTimeBetweenEvents();
+			}
+			if (estimatedFinishTime < nextEvent) {
+				nextEvent = estimatedFinishTime;
+			}
+		}
+		return nextEvent;
+	}
+
+	@Override
+	public double cloudletSubmit(Cloudlet cloudlet, double fileTransferTime) {
+		arrivalOrder.put(cloudlet.getCloudletId(), arrivals++);
+		if (makeRoom(cloudlet.getNumberOfPes(), cloudlet.getClassType())) {
+			firstStartTimes.put(cloudlet.getCloudletId(), CloudSim.clock());
+			return super.cloudletSubmit(cloudlet, fileTransferTime);
+		}
+		ResCloudlet rcl = new ResCloudlet(cloudlet);
+		rcl.setCloudletStatus(Cloudlet.QUEUED);
+		enqueue(rcl);
+		return 0.0;
+	}
+
+	@Override
+	public Cloudlet cloudletCancel(int cloudletId) {
+		ResCloudlet rcl = dequeue(cloudletId);
+		arrivalOrder.remove(cloudletId);
+		firstStartTimes.remove(cloudletId);
+		if (rcl != null && !preemptedIds.remove(cloudletId)) {
+			rcl.setCloudletStatus(Cloudlet.CANCELED);
+			return rcl.getCloudlet();
+		}
+		return super.cloudletCancel(cloudletId);
+	}
+
+	@Override
+	public void cloudletFinish(ResCloudlet rcl) {
+		super.cloudletFinish(rcl);
+		arrivalOrder.remove(rcl.getCloudletId());
+		firstStartTimes.remove(rcl.getCloudletId());
+	}
+
+	@Override
+	public boolean cloudletPause(int cloudletId) {
+		ResCloudlet rcl = null;
+		for (ResCloudlet running : getCloudletExecList()) {
+			if (running.getCloudletId() == cloudletId) {
+				rcl = running;
+				break;
+			}
+		}
+		if (rcl != null) {
+			getCloudletExecList().remove(rcl);
+			if (rcl.getRemainingCloudletLength() == 0) {
+				cloudletFinish(rcl);
+			} else {
+				rcl.setCloudletStatus(Cloudlet.PAUSED);
+				getCloudletPausedList().add(rcl);
+				usedPes -= rcl.getNumberOfPes();
+			}
+			return true;
+		}
+
+		rcl = waitingById.get(cloudletId);
+		if (rcl == null) {
+			return false;
+		}
+		dequeue(cloudletId);
+		if (!preemptedIds.remove(cloudletId)) { // 被抢占的任务已经在暂停列表中
+			rcl.setCloudletStatus(Cloudlet.PAUSED);
+			getCloudletPausedList().add(rcl);
+		}
+		return true;
+	}
+
+	@Override
+	public double cloudletResume(int cloudletId) {
+		if (preemptedIds.contains(cloudletId)) { // 被抢占的任务会在有空闲PE时自动恢复
+			return 0.0;
+		}
+		ResCloudlet rcl = null;
+		for (ResCloudlet paused : getCloudletPausedList()) {
+			if (paused.getCloudletId() == cloudletId) {
+				rcl = paused;
+				break;
+			}
+		}
+		if (rcl == null) {
+			return 0.0;
+		}
+		if (!makeRoom(rcl.getNumberOfPes(), rcl.getCloudlet().getClassType())) {
+			getCloudletPausedList().remove(rcl);
+			rcl.setCloudletStatus(Cloudlet.QUEUED);
+			enqueue(rcl);
+			return 0.0;
+		}
+		getCloudletPausedList().remove(rcl);
+		start(rcl);
+		double capacity = getTotalCurrentAvailableMipsForCloudlet(rcl, getCurrentMipsShare());
+		return CloudSim.clock() + (rcl.getRemainingCloudletLength() / (capacity * rcl.getNumberOfPes()));
+	}
+
+	@Override
+	public int getCloudletStatus(int cloudletId) {
+		ResCloudlet rcl = waitingById.get(cloudletId);
+		if (rcl != null) {
+			return rcl.getCloudletStatus();
+		}
+		return super.getCloudletStatus(cloudletId);
+	}
+
+	/**
+	 * Gets the number of cloudlets waiting to run, including the preempted ones.
+	 *
+	 * @return the number of waiting cloudlets
+	 */
+	public int getWaitingCount() {
+		return waitingById.size();
+	}
+
+	/**
+	 * Gets the number of preemptions so far.
+	 *
+	 * @return the number of running cloudlets paused for a higher class
+	 */
+	public int getPreemptionCount() {
+		return preemptions;
+	}
+
+	/**
+	 * Frees enough PEs for a cloudlet of the given class, preempting running cloudlets of the lowest
+	 * classes below it if needed.
+	 *
+	 * @return false if the PEs cannot be freed, in which case nothing is preempted
+	 */
+	private boolean makeRoom(int pes, int classType) {
+		int free = currentCpus - usedPes;
+		if (free >= pes) {
+			return true;
+		}
+		int preemptible = 0;
+		for (ResCloudlet rcl : getCloudletExecList()) {
+			if (rcl.getCloudlet().getClassType() < classType) {
+				preemptible += rcl.getNumberOfPes();
+			}
+		}
+		if (free + preemptible < pes) {
+			return false;
+		}
+		while (currentCpus - usedPes < pes) {
+			// 抢占优先级最低的任务，同一优先级中抢占最晚开始的任务
+			ResCloudlet victim = null;
+			for (ResCloudlet rcl : getCloudletExecList()) {
+				if (victim == null || rcl.getCloudlet().getClassType() <= victim.getCloudlet().getClassType()) {
+					victim = rcl;
+				}
+			}
+			cloudletPause(victim.getCloudletId());
+			if (victim.getCloudletStatus() == Cloudlet.PAUSED) {
+				preemptedIds.add(victim.getCloudletId());
+				enqueue(victim);
+				preemptions++;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Starts the waiting cloudlets, highest class first, while there are enough free PEs.
+	 *
+	 * @return true if some cloudlet was started
+	 */
+	private boolean startWaitingCloudlets() {
+		boolean started = false;
+		while (!waitingByClass.isEmpty()) {
+			ResCloudlet rcl = waitingByClass.firstEntry().getValue().peek();
+			if (currentCpus - usedPes < rcl.getNumberOfPes()) {
+				break;
+			}
+			dequeue(rcl.getCloudletId());
+			if (preemptedIds.remove(rcl.getCloudletId())) {
+				getCloudletPausedList().remove(rcl);
+			}
+			start(rcl);
+			started = true;
+		}
+		return started;
+	}
+
+	/**
+	 * Moves a cloudlet to the exec list, keeping its first execution start time if it already ran.
+	 */
+	private void start(ResCloudlet rcl) {
+		rcl.setCloudletStatus(Cloudlet.INEXEC);
+		Double firstStart = firstStartTimes.get(rcl.getCloudletId());
+		if (firstStart != null) {
+			rcl.getCloudlet().setExecStartTime(firstStart);
+		} else {
+			firstStartTimes.put(rcl.getCloudletId(), rcl.getCloudlet().getExecStartTime());
+		}
+		for (int i = 0; i < rcl.getNumberOfPes(); i++) {
+			rcl.setMachineAndPeId(0, i);
+		}
+		getCloudletExecList().add(rcl);
+		usedPes += rcl.getNumberOfPes();
+	}
+
+	private void enqueue(ResCloudlet rcl) {
+		int classType = rcl.getCloudlet().getClassType();
+		PriorityQueue<ResCloudlet> queue = waitingByClass.get(classType);
+		if (queue == null) {
+			queue = new PriorityQueue<ResCloudlet>(16, byArrival);
+			waitingByClass.put(classType, queue);
+		}
+		queue.add(rcl);
+		waitingById.put(rcl.getCloudletId(), rcl);
+	}
+
+	private ResCloudlet dequeue(int cloudletId) {
+		ResCloudlet rcl = waitingById.remove(cloudletId);
+		if (rcl == null) {
+			return null;
+		}
+		int classType = rcl.getCloudlet().getClassType();
+		PriorityQueue<ResCloudlet> queue = waitingByClass.get(classType);
+		if (queue.peek() == rcl) {
+			queue.poll();
+		} else {
+			queue.remove(rcl);
+		}
+		if (queue.isEmpty()) {
+			waitingByClass.remove(classType);
+		}
+		return rcl;
+	}
+
+}
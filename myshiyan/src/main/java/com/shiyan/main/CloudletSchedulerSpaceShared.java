@@ -232,6 +232,7 @@ public class CloudletSchedulerSpaceShared extends CloudletScheduler {
 		rcl.finalizeCloudlet();
 		getCloudletFinishedList().add(rcl);
 		usedPes -= rcl.getNumberOfPes();
+		notifyCloudletFinished();
 	}
 	
 	@Override
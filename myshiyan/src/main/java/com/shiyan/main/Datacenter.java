@@ -9,9 +9,12 @@ package com.shiyan.main;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import com.shiyan.core.CloudSim;
 import com.shiyan.core.CloudSimTags;
@@ -56,12 +59,33 @@ public class Datacenter extends SimEntity {
 	/** The storage list.存储列表 */
 	private List<Storage> storageList;
 
+	/** The catalog of the files on the storages, by file name. 文件目录 */
+	private FileCatalog fileCatalog;
+
 	/** The vm list. */
 	private List<? extends Vm> vmList;
 
 	/** The scheduling delay to process each datacenter received event. */
 	private double schedulingInterval;
 
+	/** The users that submit cloudlets in batches, and so receive finished cloudlets in batches. */
+	private Set<Integer> batchUserIds;
+
+	/** The reservations of the cloudlets submitted to this datacenter, or <tt>null</tt> if none is used. */
+	private ReservationService reservationService;
+
+	/** The VMs by the time of their next completion, or <tt>null</tt> to update every VM on every event.
+	 * @see #updateCloudletProcessing() */
+	private VmCompletionQueue completionQueue;
+
+	/** The schedulers of the VMs of this datacenter with finished cloudlets to return.
+	 * @see #checkCloudletCompletion() */
+	private FinishedCloudletQueue finishedCloudletQueue;
+
+	/** Whether changes were applied at the current time and the {@link CloudSimTags#VM_DATACENTER_FLUSH}
+	 * event is pending. 本时刻是否已有待合并的更新 */
+	private boolean updatePending;
+
 	/**
 	 * Allocates a new Datacenter object.
 	 * 
@@ -97,10 +121,15 @@ public class Datacenter extends SimEntity {
 		setStorageList(storageList);
 		setVmList(new ArrayList<Vm>());
 		setSchedulingInterval(schedulingInterval);
+		setBatchUserIds(new HashSet<Integer>());
 
 		for (Host host : getCharacteristics().getHostList()) {
 			host.setDatacenter(this);//一开始就将所有的虚拟机的数据中心设置为本数据中心
 		}
+		if (isLazyVmProcessingSupported()) {
+			completionQueue = new VmCompletionQueue();
+		}
+		finishedCloudletQueue = new FinishedCloudletQueue();
 
 		// If this resource doesn't have any PEs then no useful at all 如果这个资源没有任何PEs，那么它就没有任何用处
 		if (getCharacteristics().getNumberOfPes() == 0) {
@@ -164,6 +193,11 @@ public class Datacenter extends SimEntity {
 				processCloudletSubmit(ev, true);
 				break;
 
+			// A batch of new Cloudlets bound to the same VM arrives 一批绑定到同一虚拟机的云任务到达
+			case CloudSimTags.CLOUDLET_SUBMIT_BATCH:
+				processCloudletSubmitBatch(ev);
+				break;
+
 			// Cancels a previously submitted Cloudlet 取消之前提交的Cloudlet
 			case CloudSimTags.CLOUDLET_CANCEL://取消在CloudResource实体中提交的Cloudlet�?
 				processCloudlet(ev, CloudSimTags.CLOUDLET_CANCEL);
@@ -257,6 +291,11 @@ public class Datacenter extends SimEntity {
 				checkCloudletCompletion();//验证此数据中心中的一些cloudlet是否已经完成，如果是，将其发送给datacenterbroker
 				break;
 
+			// The changes of the current time are all applied 本时刻的更改已经全部完成
+			case CloudSimTags.VM_DATACENTER_FLUSH:
+				processUpdateFlush();
+				break;
+
 			// other unknown tags are processed by this method
 			default:
 				processOtherEvent(ev);
@@ -466,9 +505,11 @@ public class Datacenter extends SimEntity {
 			if (vm.isBeingInstantiated()) {
 				vm.setBeingInstantiated(false);
 			}
+			vm.getCloudletScheduler().setFinishedCloudletQueue(finishedCloudletQueue);
 
 			vm.updateVmProcessing(CloudSim.clock(), getVmAllocationPolicy().getHost(vm).getVmScheduler()
 					.getAllocatedMipsForVm(vm));//更新在此虚拟机上运行的所有的云任务
+			updateVmsProcessing(getVmAllocationPolicy().getHost(vm));//同一主机上其他虚拟机的MIPS份额可能改变
 		}
 	}
 
@@ -486,7 +527,13 @@ public class Datacenter extends SimEntity {
 	 */
 	protected void processVmDestroy(SimEvent ev, boolean ack) {
 		Vm vm = (Vm) ev.getData();
+		Host host = vm.getHost();
 		getVmAllocationPolicy().deallocateHostForVm(vm);
+		vm.getCloudletScheduler().setFinishedCloudletQueue(null);
+		if (completionQueue != null) {
+			completionQueue.remove(vm);
+			updateVmsProcessing(host);
+		}
 
 		if (ack) {
 			int[] data = new int[3];
@@ -523,6 +570,7 @@ public class Datacenter extends SimEntity {
 		Vm vm = (Vm) migrate.get("vm");
 		Host host = (Host) migrate.get("host");
 
+		Host source = vm.getHost();
 		getVmAllocationPolicy().deallocateHostForVm(vm);
 		host.removeMigratingInVm(vm);
 		
@@ -532,6 +580,8 @@ public class Datacenter extends SimEntity {
 			Log.printLine("[Datacenter.processVmMigrate] VM allocation to the destination host failed");
 			System.exit(0);
 		}
+		updateVmsProcessing(source);
+		updateVmsProcessing(host);
 
 		if (ack) {
 			int[] data = new int[3];
@@ -631,7 +681,7 @@ public class Datacenter extends SimEntity {
 	 * @post $none
 	 */
 	protected void processCloudletMove(int[] receivedData, int type) {
-		updateCloudletProcessing();
+		beginUpdate();
 
 		int[] array = receivedData;
 		int cloudletId = array[0];
@@ -641,8 +691,10 @@ public class Datacenter extends SimEntity {
 		int destId = array[4];
 
 		// get the cloudlet
-		Cloudlet cl = getVmAllocationPolicy().getHost(vmId, userId).getVm(vmId,userId)
-				.getCloudletScheduler().cloudletCancel(cloudletId);
+		Vm source = getVmAllocationPolicy().getHost(vmId, userId).getVm(vmId,userId);
+		updateVmProcessing(source);
+		Cloudlet cl = source.getCloudletScheduler().cloudletCancel(cloudletId);
+		updateVmProcessing(source);
 
 		boolean failed = false;
 		if (cl == null) {// cloudlet doesn't exist
@@ -669,7 +721,14 @@ public class Datacenter extends SimEntity {
 				} else {
 					// time to transfer the files
 					double fileTransferTime = predictFileTransferTime(cl.getRequiredFiles());
-					vm.getCloudletScheduler().cloudletSubmit(cl, fileTransferTime);
+					updateVmProcessing(vm);
+					vm.getCloudletScheduler().setFinishedCloudletQueue(finishedCloudletQueue);
+					double estimatedFinishTime = vm.getCloudletScheduler().cloudletSubmit(cl, fileTransferTime);
+					updateVmProcessing(vm);
+					// 移到空闲虚拟机上的任务需要一个完成事件
+					if (estimatedFinishTime > 0.0 && !Double.isInfinite(estimatedFinishTime)) {
+						scheduleProcessingEvent(estimatedFinishTime + fileTransferTime);
+					}
 				}
 			} else {// the cloudlet will migrate from one resource to another
 				int tag = ((type == CloudSimTags.CLOUDLET_MOVE_ACK) ? CloudSimTags.CLOUDLET_SUBMIT_ACK
@@ -702,83 +761,199 @@ public class Datacenter extends SimEntity {
 	 * @post $none
 	 */
 	protected void processCloudletSubmit(SimEvent ev, boolean ack) {
-		updateCloudletProcessing();
+		beginUpdate();
 
 		try {
 			// gets the Cloudlet object 获取Cloudlet对象
 			Cloudlet cl = (Cloudlet) ev.getData();
-			
-			// checks whether this Cloudlet has finished or not �?查这个云任务是否已经完成
-			//若没有执行完成则跳过，执行完则打印消息并发�?�云任务事件返回标记
-			if (cl.isFinished()) {
-				String name = CloudSim.getEntityName(cl.getUserId());
-				Log.printConcatLine(getName(), ": Warning - Cloudlet #", cl.getCloudletId(), " owned by ", name,
-						" is already completed/finished.");
-				Log.printLine("Therefore, it is not being executed again");
-				Log.printLine();
-
-				// NOTE: If a Cloudlet has finished, then it won't be processed.
-				// So, if ack is required, this method sends back a result.
-				// If ack is not required, this method don't send back a result.
-				// Hence, this might cause CloudSim to be hanged since waiting
-				// for this Cloudlet back.
-				if (ack) {
-					int[] data = new int[3];
-					data[0] = getId();
-					data[1] = cl.getCloudletId();
-					data[2] = CloudSimTags.FALSE;
+			submitCloudlet(cl, ack);
+		} catch (ClassCastException c) {
+			Log.printLine(getName() + ".processCloudletSubmit(): " + "ClassCastException error.");
+			c.printStackTrace();
+		} catch (Exception e) {
+			Log.printLine(getName() + ".processCloudletSubmit(): " + "Exception error.");
+			e.printStackTrace();
+		}
 
-					// unique tag = operation tag 操作标记
-					int tag = CloudSimTags.CLOUDLET_SUBMIT_ACK;
-					sendNow(cl.getUserId(), tag, data);
-				}
+		endUpdate();//同一时刻的提交全部完成后，再检查每个虚拟机上已经完成的云任务并发送给代理
+	}
 
-				sendNow(cl.getUserId(), CloudSimTags.CLOUDLET_RETURN, cl);
+	/**
+	 * Processes a batch of Cloudlets bound to the same VM. The processing of the Datacenter is updated
+	 * once for the whole batch, and the finished Cloudlets of the sender are returned in batches from
+	 * now on.
+	 * 处理一批绑定到同一虚拟机的云任务，整批只更新一次数据中心的处理
+	 * 
+	 * @param ev information about the event just happened, carrying a <tt>Cloudlet[]</tt>
+	 * @see CloudSimTags#CLOUDLET_SUBMIT_BATCH
+	 * @pre ev != null
+	 * @post $none
+	 */
+	protected void processCloudletSubmitBatch(SimEvent ev) {
+		beginUpdate();
 
-				return;
+		try {
+			Cloudlet[] batch = (Cloudlet[]) ev.getData();
+			for (Cloudlet cl : batch) {
+				getBatchUserIds().add(cl.getUserId());
+				submitCloudlet(cl, false);
 			}
+		} catch (ClassCastException c) {
+			Log.printLine(getName() + ".processCloudletSubmitBatch(): " + "ClassCastException error.");
+			c.printStackTrace();
+		} catch (Exception e) {
+			Log.printLine(getName() + ".processCloudletSubmitBatch(): " + "Exception error.");
+			e.printStackTrace();
+		}
 
-			// process this Cloudlet to this CloudResource处理这个云任务到这个云资源，将云任务打包成云资源（将此云任务的花费打包）
-			cl.setResourceParameter(
-                                getId(), getCharacteristics().getCostPerSecond(), 
-                                getCharacteristics().getCostPerBw());
+		endUpdate();
+	}
 
-			int userId = cl.getUserId();//得到此云任务上用户id
-			int vmId = cl.getVmId();//得到此云任务上的虚拟机id
+	/**
+	 * Brings the processing of the Datacenter up to date before a change, once per simulation time: the
+	 * changes after the first one of a time find the Datacenter already updated, and skip the update
+	 * until the {@link CloudSimTags#VM_DATACENTER_FLUSH} event.
+	 * 在更改之前更新数据中心的处理，同一时刻只更新一次
+	 * 
+	 * @see #endUpdate()
+	 */
+	protected void beginUpdate() {
+		if (!isUpdatePending()) {
+			updateCloudletProcessing();
+		}
+	}
 
-			// time to transfer the files 转移文件时间
-			double fileTransferTime = predictFileTransferTime(cl.getRequiredFiles());//预测执行该任务时，传输文件列表的总时�?
+	/**
+	 * Ends a change and, on the first change of the current time, sends the
+	 * {@link CloudSimTags#VM_DATACENTER_FLUSH} event to this Datacenter. The event comes after every
+	 * event already sent for the current time, so the update and the completion check that follow the
+	 * changes run once for all of them instead of once per Cloudlet.
+	 * 结束一次更改，同一时刻的第一次更改时安排合并事件
+	 */
+	protected void endUpdate() {
+		if (!isUpdatePending()) {
+			setUpdatePending(true);
+			sendNow(getId(), CloudSimTags.VM_DATACENTER_FLUSH);
+		}
+	}
 
-			Host host = getVmAllocationPolicy().getHost(vmId, userId);//根据vmId和userId获得虚拟机分配策略（前面已经为VM分配好主机）中的主机
-			Vm vm = host.getVm(vmId, userId);//得到此主机上的vm
-			CloudletScheduler scheduler = vm.getCloudletScheduler();//得到此虚拟机的云任务调度策略
-			double estimatedFinishTime = scheduler.cloudletSubmit(cl, fileTransferTime);//估计此云任务的完成时�?
+	/**
+	 * Schedules a {@link CloudSimTags#VM_DATACENTER_EVENT} to update the processing of the Datacenter
+	 * when a Cloudlet is expected to finish.
+	 * 安排云任务预计完成时的内部事件
+	 * 
+	 * @param delay the delay of the event
+	 */
+	protected void scheduleProcessingEvent(double delay) {
+		send(getId(), delay, CloudSimTags.VM_DATACENTER_EVENT);
+	}
 
-			// if this cloudlet is in the exec queue如果这个cloudlet在exec队列�?
-			if (estimatedFinishTime > 0.0 && !Double.isInfinite(estimatedFinishTime)) {
-				estimatedFinishTime += fileTransferTime;//重置估计完成时间为：估计完成时间加上文件传输时间
-				send(getId(), estimatedFinishTime, CloudSimTags.VM_DATACENTER_EVENT);//创建内部事件
-			}
+	/**
+	 * Processes the {@link CloudSimTags#VM_DATACENTER_FLUSH} event: updates the processing of the
+	 * Datacenter and returns the Cloudlets finished by the changes of the current time.
+	 * 处理合并事件：更新数据中心的处理，并返回已经完成的云任务
+	 */
+	protected void processUpdateFlush() {
+		setUpdatePending(false);
+		updateCloudletProcessing();
+		checkCloudletCompletion();
+	}
 
+	/**
+	 * Submits a Cloudlet to the scheduler of its VM and schedules the event of its estimated finish.
+	 * It does not update the processing of the Datacenter nor check for finished Cloudlets.
+	 * A Cloudlet with a reservation that has not started yet is submitted again at the start time of
+	 * the reservation (see {@link #setReservationService(ReservationService)}).
+	 * 将云任务提交给其虚拟机的云任务调度器
+	 * 
+	 * @param cl the Cloudlet
+	 * @param ack indicates if the Cloudlet's owner expects to receive an acknowledge message
+	 * @throws Exception if the Cloudlet cannot be submitted
+	 * @pre cl != null
+	 * @post $none
+	 */
+	protected void submitCloudlet(Cloudlet cl, boolean ack) throws Exception {
+		// checks whether this Cloudlet has finished or not �?查这个云任务是否已经完成
+		//若没有执行完成则跳过，执行完则打印消息并发�?�云任务事件返回标记
+		if (cl.isFinished()) {
+			String name = CloudSim.getEntityName(cl.getUserId());
+			Log.printConcatLine(getName(), ": Warning - Cloudlet #", cl.getCloudletId(), " owned by ", name,
+					" is already completed/finished.");
+			Log.printLine("Therefore, it is not being executed again");
+			Log.printLine();
+
+			// NOTE: If a Cloudlet has finished, then it won't be processed.
+			// So, if ack is required, this method sends back a result.
+			// If ack is not required, this method don't send back a result.
+			// Hence, this might cause CloudSim to be hanged since waiting
+			// for this Cloudlet back.
 			if (ack) {
 				int[] data = new int[3];
 				data[0] = getId();
 				data[1] = cl.getCloudletId();
-				data[2] = CloudSimTags.TRUE;
+				data[2] = CloudSimTags.FALSE;
 
-				// unique tag = operation tag
+				// unique tag = operation tag 操作标记
 				int tag = CloudSimTags.CLOUDLET_SUBMIT_ACK;
 				sendNow(cl.getUserId(), tag, data);
 			}
-		} catch (ClassCastException c) {
-			Log.printLine(getName() + ".processCloudletSubmit(): " + "ClassCastException error.");
-			c.printStackTrace();
-		} catch (Exception e) {
-			Log.printLine(getName() + ".processCloudletSubmit(): " + "Exception error.");
-			e.printStackTrace();
+
+			sendNow(cl.getUserId(), CloudSimTags.CLOUDLET_RETURN, cl);
+
+			return;
 		}
 
-		checkCloudletCompletion();//�?查每个主机上的虚拟机上的云任务，将已经完成的云任务发送给代理
+		// 预留的云任务在预留开始时才被接纳
+		if (cl.hasReserved() && getReservationService() != null) {
+			double delay = getReservationService().getStartTime(cl.getReservationId()) - CloudSim.clock();
+			if (delay > CloudSim.getMinTimeBetweenEvents()) {
+				send(getId(), delay, CloudSimTags.CLOUDLET_SUBMIT, cl);
+				if (ack) {
+					int[] data = new int[3];
+					data[0] = getId();
+					data[1] = cl.getCloudletId();
+					data[2] = CloudSimTags.TRUE;
+					sendNow(cl.getUserId(), CloudSimTags.CLOUDLET_SUBMIT_ACK, data);
+				}
+				return;
+			}
+		}
+
+		// process this Cloudlet to this CloudResource处理这个云任务到这个云资源，将云任务打包成云资源（将此云任务的花费打包）
+		cl.setResourceParameter(
+                                getId(), getCharacteristics().getCostPerSecond(), 
+                                getCharacteristics().getCostPerBw());
+
+		int userId = cl.getUserId();//得到此云任务上用户id
+		int vmId = cl.getVmId();//得到此云任务上的虚拟机id
+
+		// time to transfer the files 转移文件时间
+		double fileTransferTime = predictFileTransferTime(cl.getRequiredFiles());//预测执行该任务时，传输文件列表的总时�?
+
+		Host host = getVmAllocationPolicy().getHost(vmId, userId);//根据vmId和userId获得虚拟机分配策略（前面已经为VM分配好主机）中的主机
+		Vm vm = host.getVm(vmId, userId);//得到此主机上的vm
+		CloudletScheduler scheduler = vm.getCloudletScheduler();//得到此虚拟机的云任务调度策略
+		updateVmProcessing(vm);
+		scheduler.setFinishedCloudletQueue(finishedCloudletQueue);
+		double estimatedFinishTime = scheduler.cloudletSubmit(cl, fileTransferTime);//估计此云任务的完成时�?
+		updateVmProcessing(vm);
+
+		// if this cloudlet is in the exec queue如果这个cloudlet在exec队列�?
+		if (estimatedFinishTime > 0.0 && !Double.isInfinite(estimatedFinishTime)) {
+			estimatedFinishTime += fileTransferTime;//重置估计完成时间为：估计完成时间加上文件传输时间
+			scheduleProcessingEvent(estimatedFinishTime);//创建内部事件
+		}
+
+		if (ack) {
+			int[] data = new int[3];
+			data[0] = getId();
+			data[1] = cl.getCloudletId();
+			data[2] = CloudSimTags.TRUE;
+
+			// unique tag = operation tag
+			int tag = CloudSimTags.CLOUDLET_SUBMIT_ACK;
+			sendNow(cl.getUserId(), tag, data);
+		}
 	}
 
 	/**
@@ -793,13 +968,9 @@ public class Datacenter extends SimEntity {
 		Iterator<String> iter = requiredFiles.iterator();
 		while (iter.hasNext()) {
 			String fileName = iter.next();
-			for (int i = 0; i < getStorageList().size(); i++) {
-				Storage tempStorage = getStorageList().get(i);
-				File tempFile = tempStorage.getFile(fileName);
-				if (tempFile != null) {
-					time += tempFile.getSize() / tempStorage.getMaxTransferRate();
-					break;
-				}
+			FileCatalog.Entry entry = getFileCatalog().get(fileName);
+			if (entry != null) {
+				time += entry.getSize() / entry.getStorage().getMaxTransferRate();
 			}
 		}
 		return time;
@@ -818,14 +989,16 @@ public class Datacenter extends SimEntity {
 	 * @post $none
 	 */
 	protected void processCloudletResume(int cloudletId, int userId, int vmId, boolean ack) {
-		double eventTime = getVmAllocationPolicy().getHost(vmId, userId).getVm(vmId,userId)
-				.getCloudletScheduler().cloudletResume(cloudletId);
+		Vm vm = getVmAllocationPolicy().getHost(vmId, userId).getVm(vmId,userId);
+		updateVmProcessing(vm);
+		double eventTime = vm.getCloudletScheduler().cloudletResume(cloudletId);
+		updateVmProcessing(vm);
 
 		boolean status = false;
 		if (eventTime > 0.0) { // if this cloudlet is in the exec queue
 			status = true;
 			if (eventTime > CloudSim.clock()) {
-				schedule(getId(), eventTime, CloudSimTags.VM_DATACENTER_EVENT);
+				scheduleProcessingEvent(eventTime);
 			}
 		}
 
@@ -855,8 +1028,10 @@ public class Datacenter extends SimEntity {
 	 * @post $none
 	 */
 	protected void processCloudletPause(int cloudletId, int userId, int vmId, boolean ack) {
-		boolean status = getVmAllocationPolicy().getHost(vmId, userId).getVm(vmId,userId)
-				.getCloudletScheduler().cloudletPause(cloudletId);
+		Vm vm = getVmAllocationPolicy().getHost(vmId, userId).getVm(vmId,userId);
+		updateVmProcessing(vm);
+		boolean status = vm.getCloudletScheduler().cloudletPause(cloudletId);
+		updateVmProcessing(vm);
 
 		if (ack) {
 			int[] data = new int[3];
@@ -882,8 +1057,10 @@ public class Datacenter extends SimEntity {
 	 * @post $none
 	 */
 	protected void processCloudletCancel(int cloudletId, int userId, int vmId) {
-		Cloudlet cl = getVmAllocationPolicy().getHost(vmId, userId).getVm(vmId,userId)
-				.getCloudletScheduler().cloudletCancel(cloudletId);
+		Vm vm = getVmAllocationPolicy().getHost(vmId, userId).getVm(vmId,userId);
+		updateVmProcessing(vm);
+		Cloudlet cl = vm.getCloudletScheduler().cloudletCancel(cloudletId);
+		updateVmProcessing(vm);
 		sendNow(userId, CloudSimTags.CLOUDLET_CANCEL, cl);
 	}
 
@@ -891,6 +1068,14 @@ public class Datacenter extends SimEntity {
 	 * Updates processing of each cloudlet running in this Datacenter. It is necessary because
 	 * Hosts and VirtualMachines are simple objects, not entities. So, they don't receive events and
 	 * updating cloudlets inside them must be called from the outside.
+	 * <p>
+	 * When the hosts allow it (see {@link #isLazyVmProcessingSupported()}), only the VMs whose next
+	 * completion is due are updated, taken from a {@link VmCompletionQueue}: the other VMs keep running at
+	 * the same MIPS and catch up when they are updated, since a VM accounts for all the time elapsed since
+	 * its previous update. The VMs a cloudlet is submitted to or removed from, and those whose MIPS share
+	 * may change, are updated on the spot with {@link #updateVmProcessing(Vm)}. An event then costs
+	 * {@code O(k log m)} for {@code k} due VMs out of {@code m}, instead of updating every VM of every host.
+	 * 只更新下一个云任务完成时间已到的虚拟机
 	 * 
 	 * @pre $none
 	 * @post $none
@@ -902,18 +1087,29 @@ public class Datacenter extends SimEntity {
 		double scurrentTime = CloudSim.clock();
 		if (scurrentTime < 0.111 || scurrentTime > getLastProcessTime() + CloudSim.getMinTimeBetweenEvents()) {
 			
-			List<? extends Host> list = getVmAllocationPolicy().getHostList();//得到vm分配策略当中的主机列表
 			double smallerTime = Double.MAX_VALUE;
-			// for each host...层次遍历主机列表，返回所有主机的虚拟机中执行任务用时最少虚拟机的执行时间
-			for (int i = 0; i < list.size(); i++) {
-				Host host = list.get(i);
-				// inform VMs to update processing 通知VMs更新处理
-				double time = host.updateVmsProcessing(scurrentTime);//更新在这个主机上的所有虚拟机，返回任务执行用时最少的执行时间
-				// what time do we expect that the next cloudlet will finish?我们预计下一次的云任务什么时候会结束?
-				if (time < smallerTime) {
-					smallerTime = time;
+			if (completionQueue != null) {
+				// 先取出所有到期的虚拟机，更新后再按新的完成时间放回队列
+				List<Vm> due = new ArrayList<Vm>();
+				while (completionQueue.peekTime() <= scurrentTime) {
+					due.add(completionQueue.poll());
+				}
+				for (Vm vm : due) {
+					updateVmProcessing(vm);
+				}
+				smallerTime = completionQueue.peekTime();
+			} else {
+				List<? extends Host> list = getVmAllocationPolicy().getHostList();//得到vm分配策略当中的主机列表
+				// for each host...层次遍历主机列表，返回所有主机的虚拟机中执行任务用时最少虚拟机的执行时间
+				for (int i = 0; i < list.size(); i++) {
+					Host host = list.get(i);
+					// inform VMs to update processing 通知VMs更新处理
+					double time = host.updateVmsProcessing(scurrentTime);//更新在这个主机上的所有虚拟机，返回任务执行用时最少的执行时间
+					// what time do we expect that the next cloudlet will finish?我们预计下一次的云任务什么时候会结束?
+					if (time < smallerTime) {
+						smallerTime = time;
+					}
 				}
-				
 			}
 			// gurantees a minimal interval before scheduling the event在调度事件之前的�?小间�?
 			if (smallerTime < CloudSim.clock() + CloudSim.getMinTimeBetweenEvents() + 0.01) {
@@ -926,26 +1122,99 @@ public class Datacenter extends SimEntity {
 		}
 	}
 
+	/**
+	 * Brings the processing of a VM up to date and queues its next completion, when only the due VMs are
+	 * updated on each event. Must be called before and after a change to the cloudlets of the VM.
+	 * 
+	 * @param vm the VM
+	 * @see #updateCloudletProcessing()
+	 */
+	protected void updateVmProcessing(Vm vm) {
+		if (completionQueue == null || vm == null || vm.getHost() == null) {
+			return;
+		}
+		double time = vm.updateVmProcessing(CloudSim.clock(), vm.getHost().getVmScheduler().getAllocatedMipsForVm(vm));
+		completionQueue.update(vm, time);
+	}
+
+	/**
+	 * Updates every VM of a host whose MIPS shares may have changed, when only the due VMs are updated on
+	 * each event.
+	 * 
+	 * @param host the host
+	 */
+	protected void updateVmsProcessing(Host host) {
+		if (completionQueue == null || host == null) {
+			return;
+		}
+		for (Vm vm : host.getVmList()) {
+			updateVmProcessing(vm);
+		}
+	}
+
+	/**
+	 * Checks whether only the VMs whose next completion is due can be updated on each event. Plain
+	 * {@link Host}s allow it; subclasses that record their state on every update, such as
+	 * {@link com.shiyan.models.HostDynamicWrongProbability}, need every VM updated every time. Called by the
+	 * constructor.
+	 * 
+	 * @return true if the hosts are all plain {@link Host}s
+	 */
+	protected boolean isLazyVmProcessingSupported() {
+		for (Host host : getCharacteristics().getHostList()) {
+			if (host.getClass() != Host.class) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	/**
 	 * Verifies if some cloudlet inside this Datacenter already finished. 
          * If yes, send it to the User/Broker
 	 * 验证此数据中心中的一些cloudlet是否已经完成，如果是，发送给用户/代理
+	 * <p>
+	 * Only the schedulers that notified a finished cloudlet since the last check are visited, in the order
+	 * of their first finished cloudlet (see {@link FinishedCloudletQueue}): the check costs {@code O(f)} for
+	 * {@code f} finished cloudlets instead of a scan over every VM of every host.
+	 * 只检查通知了完成的云任务调度器，而不是遍历所有主机上的所有虚拟机
 	 * @pre $none
 	 * @post $none
 	 */
 	protected void checkCloudletCompletion() {
-		List<? extends Host> list = getVmAllocationPolicy().getHostList();
-		for (int i = 0; i < list.size(); i++) {
-			Host host = list.get(i);
-			for (Vm vm : host.getVmList()) {
-				while (vm.getCloudletScheduler().isFinishedCloudlets()) {
-					Cloudlet cl = vm.getCloudletScheduler().getNextFinishedCloudlet();
-					if (cl != null) {
-						sendNow(cl.getUserId(), CloudSimTags.CLOUDLET_RETURN, cl);//将已经完成的云任务发送给代理（�?�过包装在事件里�?
+		Map<Integer, List<Cloudlet>> batches = null;
+		CloudletScheduler scheduler;
+		while ((scheduler = finishedCloudletQueue.poll()) != null) {
+			if (scheduler.getFinishedCloudletQueue() != finishedCloudletQueue) {
+				continue;// 虚拟机已经销毁
+			}
+			while (scheduler.isFinishedCloudlets()) {
+				Cloudlet cl = scheduler.getNextFinishedCloudlet();
+				if (cl == null) {
+					continue;
+				}
+				if (getBatchUserIds().contains(cl.getUserId())) {
+					// 批量提交的用户，按完成顺序收集已完成的云任务，最后一起返回
+					if (batches == null) {
+						batches = new LinkedHashMap<Integer, List<Cloudlet>>();
 					}
+					List<Cloudlet> batch = batches.get(cl.getUserId());
+					if (batch == null) {
+						batch = new ArrayList<Cloudlet>();
+						batches.put(cl.getUserId(), batch);
+					}
+					batch.add(cl);
+				} else {
+					sendNow(cl.getUserId(), CloudSimTags.CLOUDLET_RETURN, cl);//将已经完成的云任务发送给代理（�?�过包装在事件里�?
 				}
 			}
 		}
+		if (batches != null) {
+			for (Map.Entry<Integer, List<Cloudlet>> batch : batches.entrySet()) {
+				List<Cloudlet> cloudlets = batch.getValue();
+				sendNow(batch.getKey(), CloudSimTags.CLOUDLET_RETURN_BATCH, cloudlets.toArray(new Cloudlet[cloudlets.size()]));
+			}
+		}
 	}
 
 	/**
@@ -977,6 +1246,7 @@ public class Datacenter extends SimEntity {
 			tempStorage = getStorageList().get(i);
 			if (tempStorage.getAvailableSpace() >= file.getSize()) {
 				tempStorage.addFile(file);
+				getFileCatalog().add(file.getName(), tempStorage, file.getSize());
 				msg = DataCloudTags.FILE_ADD_SUCCESSFUL;
 				break;
 			}
@@ -1009,19 +1279,7 @@ public class Datacenter extends SimEntity {
 			return false;
 		}
 
-		Iterator<Storage> it = getStorageList().iterator();
-		Storage storage = null;
-		boolean result = false;
-
-		while (it.hasNext()) {
-			storage = it.next();
-			if (storage.contains(fileName)) {
-				result = true;
-				break;
-			}
-		}
-
-		return result;
+		return getFileCatalog().contains(fileName);
 	}
 
 	/**
@@ -1034,18 +1292,15 @@ public class Datacenter extends SimEntity {
          *  {@link DataCloudTags#FILE_DELETE_SUCCESSFUL}
 	 */
 	private int deleteFileFromStorage(String fileName) {
-		Storage tempStorage = null;
-		File tempFile = null;
-		int msg = DataCloudTags.FILE_DELETE_ERROR;
-
-		for (int i = 0; i < getStorageList().size(); i++) {
-			tempStorage = getStorageList().get(i);
-			tempFile = tempStorage.getFile(fileName);
-			tempStorage.deleteFile(fileName, tempFile);
-			msg = DataCloudTags.FILE_DELETE_SUCCESSFUL;
-		} // end for
+		FileCatalog.Entry entry = getFileCatalog().remove(fileName);
+		if (entry == null) {
+			return DataCloudTags.FILE_DELETE_ERROR;
+		}
 
-		return msg;
+		Storage tempStorage = entry.getStorage();
+		File tempFile = tempStorage.getFile(fileName);
+		tempStorage.deleteFile(fileName, tempFile);
+		return DataCloudTags.FILE_DELETE_SUCCESSFUL;
 	}
 
 	@Override
@@ -1168,6 +1423,21 @@ public class Datacenter extends SimEntity {
 	 */
 	protected void setStorageList(List<Storage> storageList) {
 		this.storageList = storageList;
+		fileCatalog = new FileCatalog();
+		if (storageList != null) {
+			for (Storage storage : storageList) {
+				fileCatalog.addStorage(storage);
+			}
+		}
+	}
+
+	/**
+	 * Gets the catalog of the files on the storages.
+	 * 
+	 * @return the file catalog
+	 */
+	protected FileCatalog getFileCatalog() {
+		return fileCatalog;
 	}
 
 	/**
@@ -1207,4 +1477,67 @@ public class Datacenter extends SimEntity {
 		this.schedulingInterval = schedulingInterval;
 	}
 
+	/**
+	 * Gets the ids of the users that submit cloudlets in batches.
+	 * 
+	 * @return the ids of the batch users
+	 */
+	protected Set<Integer> getBatchUserIds() {
+		return batchUserIds;
+	}
+
+	/**
+	 * Sets the ids of the users that submit cloudlets in batches.
+	 * 
+	 * @param batchUserIds the new ids of the batch users
+	 */
+	protected void setBatchUserIds(Set<Integer> batchUserIds) {
+		this.batchUserIds = batchUserIds;
+	}
+
+	/**
+	 * Gets the service holding the reservations of the submitted cloudlets.
+	 * 
+	 * @return the reservation service, or <tt>null</tt> if none is used
+	 */
+	public ReservationService getReservationService() {
+		return reservationService;
+	}
+
+	/**
+	 * Sets the service holding the reservations of the submitted cloudlets. A cloudlet with a reservation
+	 * id is then admitted at the start time of its reservation; a cloudlet whose reservation is unknown or
+	 * canceled is admitted at once.
+	 * 设置预留服务，预留的云任务在预留开始时才被接纳
+	 * 
+	 * @param reservationService the reservation service, usually shared with the brokers
+	 */
+	public void setReservationService(ReservationService reservationService) {
+		this.reservationService = reservationService;
+	}
+
+	/**
+	 * Gets the queue the schedulers of the VMs of this Datacenter push themselves to when a cloudlet
+	 * finishes.
+	 * 
+	 * @return the finished cloudlet queue
+	 */
+	protected FinishedCloudletQueue getFinishedCloudletQueue() {
+		return finishedCloudletQueue;
+	}
+
+	/**
+	 * Checks whether changes were applied at the current time and are waiting for the
+	 * {@link CloudSimTags#VM_DATACENTER_FLUSH} event.
+	 * 
+	 * @return <tt>true</tt> if the flush event is pending
+	 */
+	protected boolean isUpdatePending() {
+		return updatePending;
+	}
+
+	protected void setUpdatePending(boolean updatePending) {
+		this.updatePending = updatePending;
+	}
+
 }
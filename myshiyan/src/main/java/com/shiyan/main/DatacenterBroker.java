@@ -9,19 +9,36 @@
 package com.shiyan.main;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import com.shiyan.core.CloudSim;
 import com.shiyan.core.CloudSimTags;
 import com.shiyan.core.SimEntity;
 import com.shiyan.core.SimEvent;
+import com.shiyan.core.predicates.PredicateType;
 import com.shiyan.lists.CloudletList;
 import com.shiyan.lists.VmList;
 import com.shiyan.models.Cloudlet;
+import com.shiyan.models.Host;
 import com.shiyan.models.Vm;
+import com.shiyan.scheduler.MinMinPolicy;
+import com.shiyan.scheduler.QoSMinMinPolicy;
+import com.shiyan.scheduler.Schedule;
+import com.shiyan.scheduler.SchedulingPolicy;
+import com.shiyan.scheduler.SldPolicy;
+import com.shiyan.scheduler.SufferagePolicy;
+import com.shiyan.scheduler.TaskDescriptor;
+import com.shiyan.scheduler.VmDescriptor;
+import com.shiyan.util.LatencyHistogram;
 
 /**
  * DatacentreBroker represents a broker acting on behalf of a user. It hides VM management, as vm
@@ -33,6 +50,9 @@ import com.shiyan.models.Vm;
  */
 public class DatacenterBroker extends SimEntity {
 
+	/** The log category of the brokers. */
+	public static final String LOG_CATEGORY = "DatacenterBroker";
+
 	/** The list of VMs submitted to be managed by the broker. */
 	protected List<? extends Vm> vmList;
 	
@@ -81,6 +101,104 @@ public class DatacenterBroker extends SimEntity {
          * is a datacenter id and each value is its characteristics.. */
 	protected Map<Integer, DatacenterCharacteristics> datacenterCharacteristicsList;
 
+	/** Whether cloudlets are sent to datacenters in batches, one per VM. 是否按虚拟机批量提交云任务
+	 * @see CloudSimTags#CLOUDLET_SUBMIT_BATCH */
+	protected boolean batchSubmission;
+
+	/** The submitted VMs, indexed by id. 按id索引的虚拟机 */
+	protected Map<Integer, Vm> vmsById;
+
+	/** The created VMs, indexed by id. 按id索引的已创建虚拟机 */
+	protected Map<Integer, Vm> vmsCreatedById;
+
+	/** The submitted cloudlets, indexed by id. 按id索引的云任务 */
+	protected Map<Integer, Cloudlet> cloudletsById;
+
+	/** The ids of the cloudlets returned by datacenters. 已经返回的云任务id */
+	protected BitSet receivedCloudletIds;
+
+	/** The ids of the cloudlets canceled by the scheduling algorithms. 被调度算法取消的云任务id */
+	protected BitSet canceledCloudletIds;
+
+	/** The compensation type of each cloudlet bound by the QoS-MinMin algorithms, by cloudlet id. 云任务的补偿类型 */
+	protected Map<Integer, Integer> compensationTypes;
+
+	/** The service the cloudlets of this broker book VM slots with, or <tt>null</tt> if none is used. */
+	protected ReservationService reservationService;
+
+	/** The interval between two rebalancings of the waiting cloudlets, or 0 to never rebalance.
+	 * @see #rebalanceCloudlets() */
+	protected double rebalanceInterval;
+
+	/** Whether a rebalancing event is pending. */
+	protected boolean rebalanceScheduled;
+
+	/** The number of cloudlets moved by the rebalancings so far. 重新平衡迁移的云任务数 */
+	protected int cloudletsMoved;
+
+	/** The plan of the rolling-horizon rescheduling, or <tt>null</tt> not to reschedule.
+	 * @see #rescheduleCloudlets(Cloudlet) */
+	protected RollingHorizonPlanner rollingHorizonPlanner;
+
+	/** The number of cloudlets moved by the rolling-horizon rescheduling so far. 滚动重调度迁移的云任务数 */
+	protected int cloudletsRescheduled;
+
+	/** The VM types provisioned when no VM can serve a cloudlet, or <tt>null</tt> for a fixed set of VMs.
+	 * @see #setElasticVmPool(VmTypeCatalog, int, double) */
+	protected VmTypeCatalog vmTypeCatalog;
+
+	/** The maximum number of VMs alive at once in the elastic pool, the submitted ones included. */
+	protected int maxVms;
+
+	/** The time an idle VM is kept before it is destroyed, or 0 to keep the VMs. 空闲虚拟机的冷却时间 */
+	protected double idleCooldown;
+
+	/** The number of VMs provisioned by the elastic pool so far. 按需创建的虚拟机数 */
+	protected int vmsProvisioned;
+
+	/** The id of the next VM provisioned by the elastic pool, above the ids of the submitted VMs. */
+	protected int nextVmId;
+
+	/** The ids of the VMs provisioned by the elastic pool. 按需创建的虚拟机 */
+	protected Set<Integer> provisionedVmIds;
+
+	/** The free resources of the hosts once the VMs not created yet are, or <tt>null</tt> to recompute them.
+	 * @see #getHostCapacity() */
+	protected HostCapacityLedger hostCapacity;
+
+	/** The number of cloudlets sent to each VM and not returned yet, by VM id. 虚拟机上尚未返回的云任务数 */
+	protected Map<Integer, Integer> runningCloudlets;
+
+	/** The time each idle VM became idle, by VM id. 虚拟机开始空闲的时间 */
+	protected Map<Integer, Double> idleSince;
+
+	/** The compensation type of the cloudlets with a deadline below the average in QoS-MinMin. */
+	protected int tightCompensationType = 1;
+
+	/** The compensation type of the other cloudlets in QoS-MinMin. */
+	protected int looseCompensationType = 2;
+
+	/** The cost fraction {@link #SLD} assumes, or NaN to use {@link PrintResult#costFraction}. */
+	protected double sldCostFraction = Double.NaN;
+
+	/** The latency of the calls of each scheduling algorithm, in nanoseconds, by algorithm name. 调度算法的调用延迟 */
+	protected final Map<String, LatencyHistogram> bindLatencies = new LinkedHashMap<String, LatencyHistogram>();
+
+	/** The latency of the placement decisions of each scheduling algorithm, in nanoseconds, by algorithm name. */
+	protected final Map<String, LatencyHistogram> decisionLatencies = new LinkedHashMap<String, LatencyHistogram>();
+
+	/** The algorithm being run, or <tt>null</tt>. */
+	private String schedulingAlgorithm;
+
+	/** The number of nested {@link #beginScheduling(String)} calls. */
+	private int schedulingDepth;
+
+	/** The time the running algorithm started, from {@link System#nanoTime()}. */
+	private long schedulingStart;
+
+	/** The time of the last placement decision of the running algorithm, from {@link System#nanoTime()}. */
+	private long lastDecisionTime;
+
 	/**
 	 * Created a new DatacenterBroker object.
 	 * 
@@ -109,6 +227,15 @@ public class DatacenterBroker extends SimEntity {
 		setDatacenterRequestedIdsList(new ArrayList<Integer>());
 		setVmsToDatacentersMap(new HashMap<Integer, Integer>());
 		setDatacenterCharacteristicsList(new HashMap<Integer, DatacenterCharacteristics>());
+
+		vmsById = new HashMap<Integer, Vm>();
+		vmsCreatedById = new HashMap<Integer, Vm>();
+		cloudletsById = new HashMap<Integer, Cloudlet>();
+		receivedCloudletIds = new BitSet();
+		canceledCloudletIds = new BitSet();
+		runningCloudlets = new HashMap<Integer, Integer>();
+		idleSince = new HashMap<Integer, Double>();
+		provisionedVmIds = new HashSet<Integer>();
 	}
 
 	/**
@@ -120,6 +247,10 @@ public class DatacenterBroker extends SimEntity {
 	 */
 	public void submitVmList(List<? extends Vm> list) {
 		getVmList().addAll(list);
+		for (Vm vm : list) {
+			vmsById.put(vm.getId(), vm);
+			nextVmId = Math.max(nextVmId, vm.getId() + 1);
+		}
 	}
 
 	/**
@@ -141,6 +272,7 @@ public class DatacenterBroker extends SimEntity {
 		for(Cloudlet cloudlet: list) {
 			cloudlet.setStartSubmit(submitTime);
 			getCloudletList().add(cloudlet);
+			cloudletsById.put(cloudlet.getCloudletId(), cloudlet);
 		}
 	}
 
@@ -154,7 +286,138 @@ public class DatacenterBroker extends SimEntity {
 	 * @post $none
 	 */
 	public void bindCloudletToVm(int cloudletId, int vmId) {
-		CloudletList.getById(getCloudletList(), cloudletId).setVmId(vmId);
+		getCloudletById(cloudletId).setVmId(vmId);
+		if (vmId != -1) {
+			recordDecision();
+		}
+	}
+
+	/**
+	 * Books a slot of a VM for a cloudlet and binds the cloudlet to the VM. The datacenter admits the
+	 * cloudlet at the start of the slot if it shares the reservation service of this broker.
+	 * 为云任务预留虚拟机的时间段并将其绑定到该虚拟机
+	 * @param cloudletId the id of the cloudlet
+	 * @param vmId the id of the VM
+	 * @param start the start time of the slot
+	 * @param duration the duration of the slot
+	 * @return the id of the reservation, or -1 if the slot is already booked
+	 * @see #setReservationService(ReservationService)
+	 */
+	public int reserveCloudlet(int cloudletId, int vmId, double start, double duration) {
+		int reservationId = getReservationService().book(getVmById(vmId), start, duration);
+		if (reservationId > 0) {
+			Cloudlet cloudlet = getCloudletById(cloudletId);
+			cloudlet.setVmId(vmId);
+			cloudlet.setReservationId(reservationId);
+		}
+		return reservationId;
+	}
+
+	/**
+	 * Books for a cloudlet the earliest free slot of a VM that is long enough to run it, and binds the
+	 * cloudlet to the VM.
+	 * 为云任务预留虚拟机最早的空闲时间段
+	 * @param cloudletId the id of the cloudlet
+	 * @param vmId the id of the VM
+	 * @param from the earliest start time of the slot
+	 * @return the start time of the slot
+	 */
+	public double reserveCloudletEarliest(int cloudletId, int vmId, double from) {
+		Cloudlet cloudlet = getCloudletById(cloudletId);
+		Vm vm = getVmById(vmId);
+		int reservationId = getReservationService().bookEarliest(vm, from, cloudlet.getCloudletLength() / vm.getMips());
+		cloudlet.setVmId(vmId);
+		cloudlet.setReservationId(reservationId);
+		return getReservationService().getStartTime(reservationId);
+	}
+
+	public ReservationService getReservationService() {
+		return reservationService;
+	}
+
+	/**
+	 * Sets the service the cloudlets of this broker book VM slots with. The datacenters must be given the
+	 * same service with {@link Datacenter#setReservationService(ReservationService)}.
+	 * @param reservationService the reservation service
+	 */
+	public void setReservationService(ReservationService reservationService) {
+		this.reservationService = reservationService;
+	}
+
+	/**
+	 * Gets a cloudlet submitted to this broker by its id.
+	 * 根据id获取提交给代理的云任务
+	 * @param cloudletId the id of the cloudlet
+	 * @return the cloudlet, or <tt>null</tt> if it was not submitted
+	 */
+	public Cloudlet getCloudletById(int cloudletId) {
+		Cloudlet cloudlet = cloudletsById.get(cloudletId);
+		if (cloudlet == null) { // added to the cloudlet list directly
+			cloudlet = CloudletList.getById(getCloudletList(), cloudletId);
+		}
+		return cloudlet;
+	}
+
+	/**
+	 * Gets a VM submitted to this broker by its id.
+	 * 根据id获取提交给代理的虚拟机
+	 * @param vmId the id of the VM
+	 * @return the VM, or <tt>null</tt> if it was not submitted
+	 */
+	public Vm getVmById(int vmId) {
+		Vm vm = vmsById.get(vmId);
+		if (vm == null) { // added to the VM list directly
+			vm = VmList.getById(getVmList(), vmId);
+		}
+		return vm;
+	}
+
+	/**
+	 * Marks a cloudlet as canceled by a scheduling algorithm.
+	 * 记录被调度算法取消的云任务
+	 * @param cloudlet the canceled cloudlet
+	 */
+	protected void markCloudletCanceled(Cloudlet cloudlet) {
+		canceledCloudletIds.set(cloudlet.getCloudletId());
+	}
+
+	/**
+	 * Checks whether a cloudlet was canceled by a scheduling algorithm.
+	 * 
+	 * @param cloudletId the id of the cloudlet
+	 * @return true if the cloudlet was canceled
+	 */
+	public boolean isCloudletCanceled(int cloudletId) {
+		return canceledCloudletIds.get(cloudletId);
+	}
+
+	/**
+	 * Gets the number of cloudlets canceled by the scheduling algorithms.
+	 * 
+	 * @return the number of canceled cloudlets
+	 */
+	public int getCanceledCloudletCount() {
+		return canceledCloudletIds.cardinality();
+	}
+
+	/**
+	 * Checks whether a cloudlet was returned by a datacenter.
+	 * 
+	 * @param cloudletId the id of the cloudlet
+	 * @return true if the cloudlet was received
+	 */
+	public boolean isCloudletReceived(int cloudletId) {
+		return receivedCloudletIds.get(cloudletId);
+	}
+
+	/**
+	 * Gets the compensation type of each cloudlet bound by {@link #bindCloudletsToVmsQoSMinMin()} or
+	 * {@link #bindCloudletsToVmsQoSMinMin(int)}, to be given to {@link PrintResult#compensationTypes}.
+	 * 
+	 * @return the compensation types by cloudlet id, or <tt>null</tt> if the algorithm was not run
+	 */
+	public Map<Integer, Integer> getCompensationTypes() {
+		return compensationTypes;
 	}
 	//...................................................................所有算法从此开始。
 	
@@ -228,6 +491,7 @@ public class DatacenterBroker extends SimEntity {
 	 * @throws Exception 
 	 */
 	public void bindCloudletsToVmsByIFCFSRR() {
+		beginScheduling("IFCFSRR");
 		
 		double currentTime = CloudSim.clock();
 		Map<Integer,Double> lastVmProcessTime =new HashMap<Integer,Double>();
@@ -239,16 +503,22 @@ public class DatacenterBroker extends SimEntity {
 			if (!lastVmProcessTime.containsKey(vm.getId()))
 				lastVmProcessTime.put(vm.getId(), currentTime);
 		}
+		VmFeasibilityIndex feasibilityIndex = new VmFeasibilityIndex(getVmList(), currentTime);
 		
       for(Cloudlet cloudlet: getCloudletList()) {
       	int iterator = vmsize;
       	if(cloudlet.getVmId()==-1) {
+      		//没有任何虚拟机满足QoS需求时不再轮询
+      		if(!feasibilityIndex.hasFeasibleVm(cloudlet))
+      			continue;
       		int expectedvmid = vmid%vmsize;
       		Vm vm = getVmList().get(expectedvmid);
       		
       		if(checkQoS(cloudlet, vm, lastVmProcessTime)) {
       			cloudlet.setVmId(vm.getId());
+      			recordDecision();
       			lastVmProcessTime.put(vm.getId(), calculateFinishLine(cloudlet,vm,lastVmProcessTime,"+"));
+      			feasibilityIndex.assign(cloudlet, expectedvmid);
       			newcloudletslist.add(cloudlet);
       			vmid++;
       		}
@@ -259,7 +529,9 @@ public class DatacenterBroker extends SimEntity {
       				Vm newvm = getVmList().get(i);
       				if(checkQoS(cloudlet, newvm, lastVmProcessTime)) {
               			cloudlet.setVmId(newvm.getId());
+              			recordDecision();
               			lastVmProcessTime.put(newvm.getId(), calculateFinishLine(cloudlet,newvm,lastVmProcessTime,"+"));
+              			feasibilityIndex.assign(cloudlet, i);
               			newcloudletslist.add(cloudlet);
               			vmid++;
               			break;
@@ -272,74 +544,28 @@ public class DatacenterBroker extends SimEntity {
       }
       getCloudletList().clear();
       getCloudletList().addAll(newcloudletslist);
+      endScheduling();
 	}
 	/**
 	 * 这里是一个比较的算法——Min-Min算法
 	 * 
-	 * 算法的时间复杂度为O(m*n) 算法的空间复杂度为O(m)
-	 * @throws Exception 
+	 * 每一步选择的都是剩余任务中最短的一个，因此任务只需排序一次，每一步用虚拟机就绪时间索引找到最早完成它的虚拟机，
+	 * 具体见{@link MinMinPolicy}
+	 * 算法的时间复杂度为O(n*log(n)+n*g*log(m))，g为虚拟机计算能力的种类数 算法的空间复杂度为O(m)
 	 */
 	public void bindCloudletsToVmsMinMin(){
-		double currentTime =  CloudSim.clock();
-		int cloudletNum = getCloudletList().size();
-		List<Cloudlet> newCloudlets = new LinkedList<Cloudlet>();
-		Map<Integer,Double> lastVmProcessTime =new HashMap<Integer,Double>();
-		
-		for(Vm vm: getVmList()) {
-			if (!lastVmProcessTime.containsKey(vm.getId()))
-				lastVmProcessTime.put(vm.getId(), currentTime);
-		}
-		while(cloudletNum >0) {
-			//寻找具有最小最早任务完成时间的任务和对应的虚拟机
-			double mincloudletfiniedline = Double.MAX_VALUE;
-			double minallcloudletfiniedline = Double.MAX_VALUE;
-			
-			Cloudlet allbestCloudlet = null;
-			Vm allbestVm = null;
-			
-			for(Cloudlet cloudlet: getCloudletList()) {
-				if (cloudlet.getVmId() == -1) {
-					Cloudlet bestCloudlet = null;
-					Vm bestVm = null;
-					
-					for(Vm vm: getVmList()) {
-						double newfinishline = calculateFinishLine(cloudlet, vm, lastVmProcessTime,"+");
-		                if(newfinishline < mincloudletfiniedline) {
-		                	mincloudletfiniedline = newfinishline;
-		                	bestCloudlet =cloudlet;
-							bestVm = vm;
-		                }
-					}
-					if(minallcloudletfiniedline > mincloudletfiniedline) {
-						minallcloudletfiniedline = mincloudletfiniedline;
-						allbestCloudlet = bestCloudlet;
-						allbestVm = bestVm;
-					}
-				}
-			}
-			if(allbestCloudlet!=null&&allbestVm!=null) {
-				//已经为某个云任务找到了一个适应度最好的虚拟机,将该任务绑定到此虚拟机上
-				//Log.printConcatLine("云任务#", bestCloudlet.getCloudletId() ,"匹配到了一个最好的虚拟机#" + bestVm.getId());
-				bindCloudletToVm(allbestCloudlet.getCloudletId(), allbestVm.getId());
-				lastVmProcessTime.put(allbestVm.getId(), calculateFinishLine(allbestCloudlet,allbestVm,lastVmProcessTime,"+"));
-				newCloudlets.add(allbestCloudlet);
-			}
-			//为下一个任务找到适应度最高的虚拟机
-			cloudletNum--;
-		}
-		if(newCloudlets!=null) {
-			
-			getCloudletList().clear();
-			getCloudletList().addAll(newCloudlets);
-		}
+		beginScheduling("MinMin");
+		scheduleWithPolicy(new MinMinPolicy());
+		endScheduling();
 	}
 	/**
 	 * 这里是一个比较的算法——基于用户QoS的Min-Min算法I-MinMin
-	 * 算法的时间复杂度为O(m*(n-x)=mn-mx) 算法的空间复杂度为O(m)
+	 * 每一步用{@link VmFeasibilityIndex}为n-x个未调度的任务找到满足QoS需求且最早完成的虚拟机，x为已调度的任务数
+	 * 算法每一步的时间复杂度为O((n-x)*k*log(m))，k为满足任务预算的虚拟机类型数 算法的空间复杂度为O(m)
 	 * @throws Exception 
 	 */
-	@SuppressWarnings("unused")
 	public void bindCloudletsToVmsIMinMin() throws Exception {
+		beginScheduling("IMinMin");
 		
 		double currentTime =  CloudSim.clock();
 		int cloudletNum = getCloudletList().size();
@@ -353,46 +579,39 @@ public class DatacenterBroker extends SimEntity {
 				lastVmProcessTime.put(vm.getId(), currentTime);
 		}
 		
+		VmFeasibilityIndex feasibilityIndex = new VmFeasibilityIndex(getVmList(), currentTime);
+		
 		while(cloudletNum >0) {
-			boolean flag = false;
 			double mincloudletfiniedline;
 			double minallcloudletfiniedline = Double.MAX_VALUE;
 			
 			Cloudlet allbestCloudlet = null;
 			Vm allbestVm = null;
-			Cloudlet lastcloudlet = null;
+			int allbestPosition = -1;
 			
 			for(Cloudlet cloudlet: getCloudletList()) {
 				if (cloudlet.getVmId() == -1&&cloudlet.getStatus()!=6) {
 					
-					mincloudletfiniedline = Double.MAX_VALUE;
-					Cloudlet bestCloudlet = null;
-					Vm bestVm = null;
-					flag = false;
-					
-					for(Vm vm: getVmList()) 
-					{
-						if (checkQoS(cloudlet, vm, lastVmProcessTime)) {
-							double newfinishline = calculateFinishLine(cloudlet, vm, lastVmProcessTime,"+");
-							if(newfinishline < mincloudletfiniedline) {
-			                	mincloudletfiniedline = newfinishline;
-			                	bestCloudlet =cloudlet;
-								bestVm = vm;
-							}
-							flag=true;
-						}
+					//在满足QoS需求的虚拟机中找到完成时间最早的一个
+					int bestPosition = feasibilityIndex.findEarliestFinishVm(cloudlet);
+					if(bestPosition < 0){
+						//弹性资源池：按需创建能满足其QoS需求的最便宜的虚拟机
+						bestPosition = provisionVm(cloudlet, feasibilityIndex, lastVmProcessTime, currentTime);
 					}
-					if(!flag){
+					if(bestPosition < 0){
 						Log.printConcatLine("云任务：", cloudlet.getCloudletId() ,"由于任何虚拟机满足不了其完成期限的需求，故被取消 ");
 					    cloudlet.setCloudletStatus(Cloudlet.CANCELED);
-					    flag = false;
+					    markCloudletCanceled(cloudlet);
 					    
 					    continue;
 					}
+					Vm bestVm = feasibilityIndex.getVm(bestPosition);
+					mincloudletfiniedline = calculateFinishLine(cloudlet, bestVm, lastVmProcessTime,"+");
 					if(minallcloudletfiniedline > mincloudletfiniedline) {
 						minallcloudletfiniedline = mincloudletfiniedline;
-						allbestCloudlet = bestCloudlet;
+						allbestCloudlet = cloudlet;
 						allbestVm = bestVm;
+						allbestPosition = bestPosition;
 					}
 				}
 			}
@@ -401,6 +620,7 @@ public class DatacenterBroker extends SimEntity {
 				//Log.printConcatLine("云任务#", bestCloudlet.getCloudletId() ,"匹配到了一个最好的虚拟机#" + bestVm.getId());
 				bindCloudletToVm(allbestCloudlet.getCloudletId(), allbestVm.getId());
 				lastVmProcessTime.put(allbestVm.getId(), calculateFinishLine(allbestCloudlet,allbestVm,lastVmProcessTime,"+"));
+				feasibilityIndex.assign(allbestCloudlet, allbestPosition);
 				newCloudlets.add(allbestCloudlet);
 			}
 			else 
@@ -412,6 +632,7 @@ public class DatacenterBroker extends SimEntity {
 			getCloudletList().clear();
 			getCloudletList().addAll(newCloudlets);
 		}
+		endScheduling();
 	}
 	/**
 	 * 这里是一个比较的算法——Max-Min算法
@@ -419,6 +640,7 @@ public class DatacenterBroker extends SimEntity {
 	 * @throws Exception 
 	 */
 	public void bindCloudletsToVmsMaxMin(){
+		beginScheduling("MaxMin");
 		
 		double currentTime =  CloudSim.clock();
 		int cloudletNum = getCloudletList().size();
@@ -471,14 +693,16 @@ public class DatacenterBroker extends SimEntity {
 			getCloudletList().clear();
 			getCloudletList().addAll(newCloudlets);
 		}
+		endScheduling();
 	}
 	/**
 	 * 这里是一个比较的算法——基于用户QoS的Max-Min算法I-MaxMin
-	 * 算法的时间复杂度为O(m*(n-x)=mn-mx) 算法的空间复杂度为O(m)
+	 * 每一步用{@link VmFeasibilityIndex}为n-x个未调度的任务找到满足QoS需求且最早完成的虚拟机，x为已调度的任务数
+	 * 算法每一步的时间复杂度为O((n-x)*k*log(m))，k为满足任务预算的虚拟机类型数 算法的空间复杂度为O(m)
 	 * @throws Exception 
 	 */
-	@SuppressWarnings("deprecation")
 	public void bindCloudletsToVmsIMaxMin() throws Exception {
+		beginScheduling("IMaxMin");
 		
 		double currentTime =  CloudSim.clock();
 		int cloudletNum = getCloudletList().size();
@@ -492,44 +716,39 @@ public class DatacenterBroker extends SimEntity {
 				lastVmProcessTime.put(vm.getId(), currentTime);
 		}
 		
+		VmFeasibilityIndex feasibilityIndex = new VmFeasibilityIndex(getVmList(), currentTime);
+		
 		while(cloudletNum >0) {
-			boolean flag = false;
 			double mincloudletfiniedline;
 			double maxallcloudletfiniedline = Double.MIN_VALUE;
 			
 			Cloudlet allbestCloudlet = null;
 			Vm allbestVm = null;
+			int allbestPosition = -1;
 			
 			for(Cloudlet cloudlet: getCloudletList()) {
-				if (cloudlet.getVmId() == -1 && cloudlet.getCloudletStatus()!=6) {	
-					
-					mincloudletfiniedline = Double.MAX_VALUE;
-					Cloudlet bestCloudlet = null;
-					Vm bestVm = null;
-					flag = false;
+				if (cloudlet.getVmId() == -1 && cloudlet.getStatus()!=6) {	
 					
-					for(Vm vm: getVmList()) {
-						if (checkQoS(cloudlet, vm, lastVmProcessTime)) {
-							double newfinishline = calculateFinishLine(cloudlet, vm, lastVmProcessTime,"+");
-							if(newfinishline < mincloudletfiniedline) {
-			                	mincloudletfiniedline = newfinishline;
-			                	bestCloudlet =cloudlet;
-								bestVm = vm;
-							}
-							flag=true;
-						}
+					//在满足QoS需求的虚拟机中找到完成时间最早的一个
+					int bestPosition = feasibilityIndex.findEarliestFinishVm(cloudlet);
+					if(bestPosition < 0){
+						//弹性资源池：按需创建能满足其QoS需求的最便宜的虚拟机
+						bestPosition = provisionVm(cloudlet, feasibilityIndex, lastVmProcessTime, currentTime);
 					}
-					if(!flag){
+					if(bestPosition < 0){
 						Log.printConcatLine("云任务：", cloudlet.getCloudletId() ,"由于任何虚拟机满足不了其完成期限的需求，故被取消 ");
 					    cloudlet.setCloudletStatus(Cloudlet.CANCELED);
-					    flag=false;
+					    markCloudletCanceled(cloudlet);
 					    
 					    continue;
 					}
+					Vm bestVm = feasibilityIndex.getVm(bestPosition);
+					mincloudletfiniedline = calculateFinishLine(cloudlet, bestVm, lastVmProcessTime,"+");
 					if(maxallcloudletfiniedline < mincloudletfiniedline) {
 						maxallcloudletfiniedline = mincloudletfiniedline;
-						allbestCloudlet = bestCloudlet;
+						allbestCloudlet = cloudlet;
 						allbestVm = bestVm;
+						allbestPosition = bestPosition;
 					}
 				}
 			}
@@ -538,6 +757,7 @@ public class DatacenterBroker extends SimEntity {
 				//Log.printConcatLine("云任务#", bestCloudlet.getCloudletId() ,"匹配到了一个最好的虚拟机#" + bestVm.getId());
 				bindCloudletToVm(allbestCloudlet.getCloudletId(), allbestVm.getId());
 				lastVmProcessTime.put(allbestVm.getId(), calculateFinishLine(allbestCloudlet,allbestVm,lastVmProcessTime,"+"));
+				feasibilityIndex.assign(allbestCloudlet, allbestPosition);
 				newCloudlets.add(allbestCloudlet);
 			}
 			
@@ -547,75 +767,47 @@ public class DatacenterBroker extends SimEntity {
 			getCloudletList().clear();
 			getCloudletList().addAll(newCloudlets);
 		}
+		endScheduling();
 	}
 	
 	/**
 	 * 这里是一个比较的算法——基于用户QoS需求降级的Min-Min算法QoS-MinMin
+	 * 截止时间低于平均值的任务的补偿类型默认为1，其余为2，见{@link #setQoSMinMinTypes(int, int)}
 	 * 算法的时间复杂度为O(m*(n-x)=mn-mx) 算法的空间复杂度为O(m)
 	 * @throws Exception 
 	 */
 	public void bindCloudletsToVmsQoSMinMin() throws Exception {
-		
-		double currentTime =  CloudSim.clock();
-		int cloudletsize = 0;
-		List<Cloudlet> calculateCloudlets = new ArrayList<Cloudlet>();
-		List<Cloudlet> storageCloudlets = new ArrayList<Cloudlet>();
-		double totalDeadTime=0,calculateCloudletsize=0,averageDeadTime=0,storageloudletsize = 0;
-		
-		List<Cloudlet> newCloudlets = new LinkedList<Cloudlet>();
-		Map<Integer,Double> lastVmProcessTime =new HashMap<Integer,Double>();
-		
-		for(Vm vm: getVmList()) {
-			if (!lastVmProcessTime.containsKey(vm.getId()))
-				lastVmProcessTime.put(vm.getId(), currentTime);
-		}
-		for(Cloudlet cloudlet: getCloudletList()) {
-			totalDeadTime += cloudlet.getDeadlineTime();		
-			cloudletsize++;
-		}
-		averageDeadTime = totalDeadTime/cloudletsize;
-		
-		for(Cloudlet cloudlet: getCloudletList()) {
-			if(cloudlet.getDeadlineTime()<averageDeadTime) {
-				calculateCloudlets.add(cloudlet);
-				calculateCloudletsize++;
-			}
-			else {
-				storageCloudlets.add(cloudlet);	
-				storageloudletsize++;
-			}
-		}
-		
-		Map<Integer,Integer> newcloudlettovm = new HashMap<Integer, Integer>();
-		while(calculateCloudletsize>0) {
-			//为云任务找到最好的虚拟机
-			newcloudlettovm = findABestVmforcloudlet(calculateCloudlets, lastVmProcessTime, 1);//为云任务寻找一个合适的虚拟机，这里补偿参数选择3
-			if(newcloudlettovm!=null) {
-				for(Integer cloudletid: newcloudlettovm.keySet()) {
-					bindCloudletToVm(cloudletid, newcloudlettovm.get(cloudletid));
-					lastVmProcessTime.put(newcloudlettovm.get(cloudletid), calculateFinishLine(getCloudletList().get(cloudletid),getVmList().get(newcloudlettovm.get(cloudletid)),lastVmProcessTime,"+"));
-					newCloudlets.add(getCloudletList().get(cloudletid));	
-				}
-			}
-			calculateCloudletsize--;
-		}
-		
-		while(storageloudletsize>0) {
-			
-			newcloudlettovm = findABestVmforcloudlet(storageCloudlets, lastVmProcessTime,2);
-			if(newcloudlettovm!=null) {
-				for(Integer cloudletid: newcloudlettovm.keySet()) {
-					bindCloudletToVm(cloudletid, newcloudlettovm.get(cloudletid));
-					lastVmProcessTime.put(newcloudlettovm.get(cloudletid), calculateFinishLine(getCloudletList().get(cloudletid),getVmList().get(newcloudlettovm.get(cloudletid)),lastVmProcessTime,"+"));
-					newCloudlets.add(getCloudletList().get(cloudletid));	
-				}
+		beginScheduling("QoSMinMin");
+		QoSMinMinPolicy policy = new QoSMinMinPolicy(new SldPolicy(getSldCostFraction()));
+		policy.setCompensationTypes(tightCompensationType, looseCompensationType);
+		compensationTypes = new HashMap<Integer, Integer>();
+		scheduleWithPolicy(policy);
+		endScheduling();
+	}
+	
+	/**
+	 * 这里是QoS-MinMin算法的推广——按截止时间分为k类的QoS-MinMin算法
+	 * 云任务按照截止时间的分位数分为k类，每一类有自己的补偿类型，并在按计算能力预留的一组虚拟机上并行调度，
+	 * 最后在全部虚拟机上为各类中无法调度的任务再找一次虚拟机
+	 * 
+	 * @param classes the number of deadline classes
+	 * @throws Exception 
+	 * @see PartitionedQoSScheduler
+	 */
+	public void bindCloudletsToVmsQoSMinMin(int classes) throws Exception {
+		beginScheduling("QoSMinMin-" + classes);
+		PartitionedQoSScheduler scheduler = new PartitionedQoSScheduler(this, getVmList(), CloudSim.clock(), classes);
+		scheduler.setDecisionLatency(getDecisionLatency());
+		List<Cloudlet> finalCloudlets = scheduler.schedule(getCloudletList());
+		for (Cloudlet cloudlet : getCloudletList()) {
+			if (cloudlet.getStatus() == Cloudlet.CANCELED) {
+				markCloudletCanceled(cloudlet);
 			}
-			storageloudletsize--;
-		}
-		if(newCloudlets!=null) {
-			getCloudletList().clear();
-			getCloudletList().addAll(newCloudlets);
 		}
+		compensationTypes = scheduler.getCompensationTypes();
+		getCloudletList().clear();
+		getCloudletList().addAll(finalCloudlets);
+		endScheduling();
 	}
 	
 	public Map<Integer,Integer> findABestVmforcloudlet(List<Cloudlet> cloudletlist, Map<Integer,Double> lastVmProcessTime,int type) {
@@ -669,6 +861,7 @@ public class DatacenterBroker extends SimEntity {
 					Log.printConcatLine("云任务：", allbestCloudlet.getCloudletId() ,"由于任何虚拟机满足不了其完成期限的需求，故被取消 ");
 //				    lastdelaycloudlet.add(allbestCloudlet);
 					allbestCloudlet.setUserId(-2);
+					markCloudletCanceled(allbestCloudlet);
 					return null;
 				}
 					
@@ -730,89 +923,36 @@ public class DatacenterBroker extends SimEntity {
 	 * 通过延迟补偿和收益敏感的方法来为任务找到一个合适的虚拟机
 	 */
 	public Vm findBestVmBySLD(Cloudlet cloudlet, Map<Integer,Double> lastVmProcessTime,int type) {
-		
-		List<Integer> lastvmid = new ArrayList<Integer>();
-		boolean flag = false;
-		int vmsize = getVmList().size();
-		
-		while(vmsize>0) {
-			double mincloudletfiniedline = Double.MAX_VALUE;
-			//double maxCloudletProfit = Double.MIN_VALUE;
-			Vm bestVm = null;
-			
-			//找到一个最小完成时间的虚拟机
-			
-			for(Vm vm: getVmList()) {
-				
-				if(lastvmid!=null&&lastvmid.contains(vm.getId()))
-					continue;
-				double newfinishline = calculateFinishLine(cloudlet, vm, lastVmProcessTime,"+");
-				if(newfinishline < mincloudletfiniedline) {
-					mincloudletfiniedline = newfinishline;
-					bestVm = vm;
-				}
-			}
-			if(bestVm!=null) {
-				int result = checkWhichQoS(cloudlet, bestVm, lastVmProcessTime);//检查这个云任务和对应的虚拟机属于违背QoS的哪一种情况
-				//属于违背收入的情况
-				if (result==0) {
-					vmsize--;
-					lastvmid.add(bestVm.getId());
-					continue;
-				} 
-				//属于违背截止时间的情况
-				if (result==1) { 
-					if(SLD(cloudlet, bestVm, lastVmProcessTime, type)) {
-						return bestVm;
-					}
-					else {
-						vmsize--;
-						lastvmid.add(bestVm.getId());
-						continue;
-					}
-				}
-				return bestVm;
-			}
-			else 
-				return null;
-		}	
-		return null;
+		return findBestVmBySLD(cloudlet, getVmList(), lastVmProcessTime, type);
 	}
-	public boolean SLD(Cloudlet cloudlet, Vm bestVm, Map<Integer,Double> lastVmProcessTime, int type) {
-		//云任务在虚拟机中执行会支付一定的费用，这些费用被当成云服务商的收入，如果任务能够在满足QoS的情况下执行成功，
-		//云服务商会获取一定的收入（收入=20%的成本+80%的盈利），成本包括一些机器的维护和电力的消耗等，
-		//云服务商想要获得收入，就必须满足用户任务的QoS需求，否则用户将不会为云任务支付花费；
-		//不管有没有满足云任务的QoS需求，云任务只要在虚拟机中执行都要产生成本（我们这里按照收入的20%计算），
-		//故，在计算盈利时，需要从所有的收入中减去这些成本
-		
-		//本算法通过延迟补偿和收入敏感的方法来提高云任务的完成度同时不减少盈利
-		//任务的最终完成时间
-		double cloudletFinalTime = calculateFinishLine(cloudlet, bestVm, lastVmProcessTime,"+");
-		//任务延迟时间=任务完成时间-任务截止时间
-		double cloudletDealyTime =  cloudletFinalTime - cloudlet.getDeadlineTime();
-		//
-		//double cloudletPrimaryProfit = cloudlet.getUserMoney()-cloudlet.getCloudletLength()/vm.getMips()*vm.getCostPerVm();
-		//
-		//double compensationProbability = cloudlet.getUserMoney()/(cloudletDealyTime-cloudlet.getStartSubmit())*cloudletDealyTime;
-		//服务商正常收入
-		double VmNormalIncome = bestVm.getCostPerVm()*calculateloudletExpectedExecTime(cloudlet,bestVm,0.0);
-		//补偿成本=虚拟机单位运行成本*虚拟机预计运行时间/（任务类型*（任务截止时间-任务提交时间））*任务延迟时间
-		double compensationCost = VmNormalIncome/(type*(cloudlet.getDeadlineTime()-cloudlet.getStartSubmit()))*cloudletDealyTime;
-		//任务最终支付价格=任务所支付的价格-补偿成本
-		//double cloudletFinalMoney = cloudlet.getUserMoney() - compensationCost;
-		//服务商最终收入
-		//double VmFinalIncome = cloudlet.getUserMoney() - compensationCost;
-		//服务商最终收入=服务商正常收入-补偿成本
-		double cloudletFinalCost = VmNormalIncome - compensationCost;
-		//服务商最终盈利=服务商正常收入-服务商成本-补偿成本
-		double cloudletFinalProfit = VmNormalIncome - 0.2*VmNormalIncome - compensationCost;
-		
-		if(cloudletFinalProfit >= 0 && cloudletFinalCost <= cloudlet.getUserMoney()) {
-			return true;
+	
+	/**
+	 * 
+	 * 通过延迟补偿和收益敏感的方法在给定的虚拟机中为任务找到一个合适的虚拟机
+	 */
+	public Vm findBestVmBySLD(Cloudlet cloudlet, List<? extends Vm> vmList, Map<Integer,Double> lastVmProcessTime,int type) {
+		//违背收入需求的虚拟机不可能被选中，其余虚拟机中选择完成时间最早的、满足截止时间或者可以延迟补偿的虚拟机，完成时间相同时按照虚拟机列表的顺序
+		int vmCount = vmList.size();
+		double[] mips = new double[vmCount];
+		double[] costs = new double[vmCount];
+		double[] ready = new double[vmCount];
+		for (int j = 0; j < vmCount; j++) {
+			Vm vm = vmList.get(j);
+			mips[j] = vm.getMips();
+			costs[j] = vm.getCostPerVm();
+			ready[j] = lastVmProcessTime.get(vm.getId());
 		}
-			
-		else 
-			return false;
+		int best = new SldPolicy(getSldCostFraction()).findVm(toTaskDescriptor(cloudlet), mips, costs, ready, type);
+		return best < 0 ? null : vmList.get(best);
+	}
+	
+	/**
+	 * 延迟补偿和收益敏感的策略：云任务在该虚拟机上违背截止时间时，服务商支付补偿后是否仍然盈利且用户的花费不超过其预算，
+	 * 具体见{@link SldPolicy}
+	 */
+	public boolean SLD(Cloudlet cloudlet, Vm bestVm, Map<Integer,Double> lastVmProcessTime, int type) {
+		return new SldPolicy(getSldCostFraction()).accepts(toTaskDescriptor(cloudlet), bestVm.getMips(),
+				bestVm.getCostPerVm(), lastVmProcessTime.get(bestVm.getId()), type);
 	}
 	
 	
@@ -824,238 +964,95 @@ public class DatacenterBroker extends SimEntity {
 	 *  最终选择调度损失度最大的任务进行指派,若调度损失度相等,
 	 *  则默认最先分配给资源的任务最终享有该资源的使用权
 	 * 
-	  *此算法的时间复杂度为O(m*n) 算法的空间复杂度为O(m)
-	 * @throws Exception 
+	 *  具体见{@link SufferagePolicy}
+	  *此算法每一轮的时间复杂度为O(m*n) 算法的空间复杂度为O(m)
 	 */
 	public void bindCloudletsToVmsSufferage(){
-		double currentTime =  CloudSim.clock();
-		//算法最终形成的云任务列表，存储在这里
-		List<Cloudlet> finalCloudlets = new LinkedList<Cloudlet>();
-		List<Cloudlet> newCloudlets = new LinkedList<Cloudlet>();
-		//虚拟机的就绪时间
-		Map<Integer,Double> lastVmProcessTime =new HashMap<Integer,Double>();
-		//云任务的调度损失，每次只存储最新的云任务调度损失
-		Map<Integer,Double> cloudletSufferage =new HashMap<Integer,Double>();
-		//上次放置在虚拟机中的云任务，每次只存储最新的云任务
-		Map<Integer,Integer> vmlastcloudlet =new HashMap<Integer,Integer>();
-		//初始化所有虚拟机的就绪时间为当前系统时间
-		for(Vm vm: getVmList()) {
-			if (!lastVmProcessTime.containsKey(vm.getId()))
-				lastVmProcessTime.put(vm.getId(), currentTime);
-		}
-		//初始化所有云任务的调度损失为0
-		for(Cloudlet cloudlet: getCloudletList()) {
-			if (!cloudletSufferage.containsKey(cloudlet.getCloudletId()))
-				lastVmProcessTime.put(cloudlet.getCloudletId(), 0.0);
-		}
-		//设置所有虚拟机为未分配状态
-		for(Vm vm: getVmList()) {
-			if (!vmlastcloudlet.containsKey(vm.getId()))
-				vmlastcloudlet.put(vm.getId(), -1);
-		}
-		//循环，直到新的任务序列达到提交的任务大小
-		while(finalCloudlets.size() < getCloudletList().size()) {
-			//遍历每一个云任务
-			for(Cloudlet cloudlet: getCloudletList()) {
-				if (cloudlet.getVmId() == -1) {
-					//寻找具有最早和次早任务完成时间的虚拟机
-					double mincloudletfiniedline = Double.MAX_VALUE;
-					double secmincloudletfiniedline = Double.MAX_VALUE;
-					Cloudlet bestCloudlet = null;
-					Vm bestVm = null;
-					//找到使得此任务完成时间最短的虚拟机
-					for(Vm vm: getVmList()) {
-						double newfinishline = calculateFinishLine(cloudlet, vm, lastVmProcessTime,"+");
-		                if(newfinishline < mincloudletfiniedline) {
-		                	secmincloudletfiniedline = mincloudletfiniedline;
-		                	mincloudletfiniedline = newfinishline;
-		                	bestCloudlet = cloudlet;
-							bestVm = vm;
-		                }
-					}
-					//计算新的调度损失
-					double newsufferage = secmincloudletfiniedline - mincloudletfiniedline;
-					//若此虚拟机中还没有分配任务，则将此任务分配给它，更新虚拟机的分配状态
-					if(vmlastcloudlet.get(bestVm.getId()) == -1) {
-						bindCloudletToVm(bestCloudlet.getCloudletId(), bestVm.getId());
-						
-						//每次虚拟机中只存储上一个云任务
-						vmlastcloudlet.put(bestVm.getId(), bestCloudlet.getCloudletId());
-						//存储这个任务的调度损失，以便于后来的比较
-						cloudletSufferage.put(bestCloudlet.getCloudletId(), newsufferage);
-						//暂时将此任务加入到新的任务列表中
-						newCloudlets.add(bestCloudlet);
-					}
-					//若此虚拟机中已经有分配的任务，比较此任务与上一个在此虚拟机中执行的任务的调度损失大小
-					else {
-						//获取此虚拟机中上一个云任务的调度损失
-						double lastcloudletSufferage = cloudletSufferage.get(vmlastcloudlet.get(bestVm.getId()));
-						//若这个新的任务的调度损失较大，则将此虚拟机中上一个任务暂时移除掉，重新放到任务调度队列，并将新的任务放置到该虚拟机
-						if(newsufferage > lastcloudletSufferage) {
-							//更新此任务新的调度损失
-							cloudletSufferage.put(bestCloudlet.getCloudletId(), newsufferage);
-							//设置此任务的虚拟机
-							bindCloudletToVm(bestCloudlet.getCloudletId(), bestVm.getId());
-							//设置上一个任务为未分配状态
-							bindCloudletToVm(vmlastcloudlet.get(bestVm.getId()), -1);
-							//更新虚拟机的就绪时间
-							//从任务列表中移除上一个任务
-							newCloudlets.remove(getCloudletList().get(vmlastcloudlet.get(bestVm.getId())));
-							//更新虚拟机中上一个任务
-							vmlastcloudlet.put(bestVm.getId(), bestCloudlet.getCloudletId());
-							//暂时将此任务加入到新的任务列表中
-							newCloudlets.add(bestCloudlet);
-						}
-					}
-				}
-			}
-			//经过上述循环，至少有一个任务被分配到了虚拟机，且每个虚拟机最多分配一个云任务（调度损失最大的那个云任务）
-			//更新虚拟机的就绪时间，每次更新最新产生的云任务
-			if(newCloudlets!=null)
-			{
-				for(Cloudlet cloudlet: newCloudlets) {
-					if (cloudlet.getVmId() != -1)
-						lastVmProcessTime.put(cloudlet.getVmId(), calculateFinishLine(cloudlet,getVmList().get(cloudlet.getVmId()),lastVmProcessTime,"+"));
-				}	
-			}
-			//初始化虚拟机的任务分配状态，将所有已经分配任务的虚拟机设置为未分配状态
-			for(Integer vmid: vmlastcloudlet.keySet()) {
-				vmlastcloudlet.put(vmid, -1);	
-			}
-			finalCloudlets.addAll(newCloudlets);
-			//清除新产生的任务列表
-			newCloudlets.clear();
-		}
-		//将新的云任务序列更新到云任务列表中
-		if(finalCloudlets!=null) {
-			getCloudletList().clear();
-			getCloudletList().addAll(finalCloudlets);
-		}
+		beginScheduling("Sufferage");
+		scheduleWithPolicy(new SufferagePolicy());
+		endScheduling();
 	}
 	/**
 	 *  这里是一个比较的算法——I-Sufferage算法，
-	 *  太过复杂，且性能也不好，舍弃
-	  *此算法的时间复杂度为O(m*n) 算法的空间复杂度为O(m)
+	 *  在Sufferage算法的基础上嵌入用户的QoS需求（截止时间和预算，与checkQoS相同），
+	 *  任务只竞争满足其QoS需求的虚拟机，没有任何虚拟机满足其需求的任务会被取消
+	 *  
+	 *  调度损失度为满足QoS需求的次小完成时间与最小完成时间之差值
+	 *  
+	 *  每个任务的最佳和次佳虚拟机被缓存，每轮只重新计算最佳或次佳虚拟机被占用的任务，
+	 *  虚拟机的竞争在一次遍历中解决，具体见{@link SufferageScheduler}
+	 *  算法每一轮的时间复杂度为O(p*k*log(m))，p为竞价的任务组数，k为满足任务预算的虚拟机类型数，
+	 *  轮数约为n/m，任务各不相同时总的时间复杂度约为O(n*n/m*k*log(m)) 算法的空间复杂度为O(m+n)
 	 * @throws Exception 
 	 */
-	@SuppressWarnings("deprecation")
 	public void bindCloudletsToVmsISufferage() throws Exception{
-		double currentTime =  CloudSim.clock();
-		int cloudletsize = getCloudletList().size();
-		//算法每次形成的云任务列表，存储在这里
-		List<Cloudlet> newCloudlets = new LinkedList<Cloudlet>();
-		//算法最终形成的云任务列表，存储在这里
-		List<Cloudlet> finalCloudlets = new LinkedList<Cloudlet>();
-		//虚拟机的就绪时间
-		Map<Integer,Double> lastVmProcessTime =new HashMap<Integer,Double>();
-		//云任务的调度损失，每次只存储最新的云任务调度损失
-		Map<Integer,Double> cloudletSufferage =new HashMap<Integer,Double>();
-		//上次放置在虚拟机中的云任务，每次只存储最新的云任务
-		Map<Integer,Integer> vmlastcloudlet =new HashMap<Integer,Integer>();
-		
-		boolean flag=false;
-		//初始化所有虚拟机的就绪时间为当前系统时间
-		for(Vm vm: getVmList()) {
-			if (!lastVmProcessTime.containsKey(vm.getId()))
-				lastVmProcessTime.put(vm.getId(), currentTime);
-		}
-		//初始化所有云任务的调度损失为0
-		for(Cloudlet cloudlet: getCloudletList()) {
-			if (!cloudletSufferage.containsKey(cloudlet.getCloudletId()))
-				lastVmProcessTime.put(cloudlet.getCloudletId(), 0.0);
-		}
-		//设置所有虚拟机为未分配状态
-		for(Vm vm: getVmList()) {
-			if (!vmlastcloudlet.containsKey(vm.getId()))
-				vmlastcloudlet.put(vm.getId(), -1);
+		beginScheduling("ISufferage");
+		SufferageScheduler scheduler = new SufferageScheduler(getVmList(), CloudSim.clock());
+		scheduler.setDecisionLatency(getDecisionLatency());
+		List<Cloudlet> finalCloudlets = scheduler.schedule(getCloudletList());
+		for (Cloudlet cloudlet : getCloudletList()) {
+			if (cloudlet.getStatus() == Cloudlet.CANCELED) {
+				markCloudletCanceled(cloudlet);
+			}
 		}
+		//将新的云任务序列更新到云任务列表中
+		getCloudletList().clear();
+		getCloudletList().addAll(finalCloudlets);
+		endScheduling();
+	}
+	/**
+	 *  基于遗传算法的任务调度，用于离线的批量规划，以更多的计算时间换取更好的完成时间和收益
+	 *  先用Min-Min算法得到初始方案和任务的提交顺序，再以此为种子进行遗传搜索，
+	 *  适应度综合考虑完成时间、QoS违约数（同PrintResult.checkFinalQoS）和服务商收益（同PrintResult），
+	 *  具体见{@link GeneticScheduler}和{@link MappingFitness}
+	 * 
+	 * @param maxGenerations 最大迭代次数
+	 * @param timeLimit 最长搜索时间（毫秒）
+	 */
+	public void bindCloudletsToVmsGA(int maxGenerations, long timeLimit) {
+		beginScheduling("GA");
+		bindCloudletsToVmsMinMin();
 		
-		while(finalCloudlets.size() < cloudletsize) {
-			flag = false;
-			
-			for(Cloudlet cloudlet: getCloudletList()) {
-				
-				if (cloudlet.getVmId() == -1&&cloudlet.getCloudletStatus()!=6) {
-					//寻找具有最早和次早任务完成时间的虚拟机
-					double mincloudletfiniedline = Double.MAX_VALUE;
-					double secmincloudletfiniedline = Double.MAX_VALUE;
-					Cloudlet bestCloudlet = null;
-					Vm bestVm = null;
-					flag=false;
-					
-					//找到使得此任务完成时间最短的虚拟机
-					for(Vm vm: getVmList()) {
-						if(checkQoS(cloudlet, vm, lastVmProcessTime)) {
-							double newfinishline = calculateFinishLine(cloudlet, vm, lastVmProcessTime,"+");
-							if(newfinishline < mincloudletfiniedline) {
-								secmincloudletfiniedline = mincloudletfiniedline;
-								mincloudletfiniedline = newfinishline;
-								bestCloudlet = cloudlet;
-								bestVm = vm;
-							}
-							flag=true;
-						}
-					}
-					if(!flag){
-						Log.printConcatLine("云任务：", cloudlet.getCloudletId() ,"由于任何虚拟机满足不了其完成期限的需求，故被取消 ");
-					    cloudlet.setCloudletStatus(Cloudlet.CANCELED);
-					    cloudletsize--;
-						flag = false;
-						
-					    continue;
-					}
-					//计算新的调度损失
-					double newsufferage = secmincloudletfiniedline - mincloudletfiniedline;
-					//若此虚拟机中还没有分配任务，则将此任务分配给它，更新虚拟机的分配状态
-					if(vmlastcloudlet.get(bestVm.getId()) == -1) {
-						//暂时绑定云任务到此虚拟机中	
-						bindCloudletToVm(bestCloudlet.getCloudletId(), bestVm.getId());
-						//暂时更新虚拟机的的就绪时间
-						
-						vmlastcloudlet.put(bestVm.getId(), bestCloudlet.getCloudletId());
-						cloudletSufferage.put(bestCloudlet.getCloudletId(), newsufferage);
-						newCloudlets.add(bestCloudlet);
-					}
-					//若此虚拟机中已经有分配的任务，比较此任务与上一个在此虚拟机中执行的任务的调度损失大小
-					else {
-						//获取此虚拟机中上一个云任务的调度损失
-						double lastcloudletSufferage = cloudletSufferage.get(vmlastcloudlet.get(bestVm.getId()));
-						//若这个新的任务的调度损失较大，则将此虚拟机中上一个任务暂时移除掉，重新放到任务调度队列，并将新的任务放置到该虚拟机
-						if(newsufferage > lastcloudletSufferage) {
-							cloudletSufferage.put(bestCloudlet.getCloudletId(), newsufferage);
-							//设置此任务的虚拟机
-							bindCloudletToVm(bestCloudlet.getCloudletId(), bestVm.getId());
-							//设置上一个任务为未分配状态
-							bindCloudletToVm(vmlastcloudlet.get(bestVm.getId()), -1);
-							
-							newCloudlets.remove(getCloudletList().get(vmlastcloudlet.get(bestVm.getId())));
-							vmlastcloudlet.put(bestVm.getId(), bestCloudlet.getCloudletId());
-							newCloudlets.add(bestCloudlet);
-						}
-					}
-				}
-			}
-			//经过上述循环，至少有一个任务被分配到了虚拟机，且每个虚拟机每次最多分配一个云任务
-			//更新虚拟机的就绪时间
-			if(newCloudlets!=null) {
-				for(Cloudlet cloudlet: newCloudlets) {
-					if (cloudlet.getVmId() != -1)
-						lastVmProcessTime.put(cloudlet.getVmId(), calculateFinishLine(cloudlet,getVmList().get(cloudlet.getVmId()),lastVmProcessTime,"+"));
-				}
-			}
-			//初始化虚拟机的任务分配状态，将所有已经分配任务的虚拟机设置为未分配状态
-			for(Integer vmid: vmlastcloudlet.keySet()) {
-				vmlastcloudlet.put(vmid, -1);	
+		Map<Integer,Integer> vmIndex = new HashMap<Integer,Integer>();
+		for (int j = 0; j < getVmList().size(); j++) {
+			vmIndex.put(getVmList().get(j).getId(), j);
+		}
+		//只搜索绑定到列表中虚拟机的云任务，已取消的或绑定到其他虚拟机的云任务保持不变
+		List<Cloudlet> cloudlets = new ArrayList<Cloudlet>();
+		List<Integer> seedIndexes = new ArrayList<Integer>();
+		for (Cloudlet cloudlet : getCloudletList()) {
+			Integer index = vmIndex.get(cloudlet.getVmId());
+			if (index != null && cloudlet.getStatus() != Cloudlet.CANCELED) {
+				cloudlets.add(cloudlet);
+				seedIndexes.add(index);
 			}
-			finalCloudlets.addAll(newCloudlets);
-			newCloudlets.clear();
 		}
-		//将新的云任务序列更新到云任务列表中
-		if(finalCloudlets!=null) {
-			getCloudletList().clear();
-			getCloudletList().addAll(finalCloudlets);
+		if (cloudlets.isEmpty()) {
+			endScheduling();
+			return;
+		}
+		int[] seedMapping = new int[cloudlets.size()];
+		for (int i = 0; i < cloudlets.size(); i++) {
+			seedMapping[i] = seedIndexes.get(i);
+		}
+		
+		MappingFitness fitness = new MappingFitness(cloudlets, getVmList(), CloudSim.clock());
+		fitness.setReference(seedMapping);
+		GeneticScheduler scheduler = new GeneticScheduler(fitness, getId());
+		scheduler.setMaxGenerations(maxGenerations);
+		scheduler.setTimeLimit(timeLimit);
+		int[] mapping = scheduler.search(seedMapping);
+		
+		for (int i = 0; i < cloudlets.size(); i++) {
+			cloudlets.get(i).setVmId(getVmList().get(mapping[i]).getId());
 		}
+		double[] seedMetrics = fitness.getMetrics(seedMapping);
+		double[] metrics = fitness.getMetrics(mapping);
+		Log.formatLine("GA: %d generations, makespan %.2f -> %.2f, violations %.0f -> %.0f, profit %.2f -> %.2f",
+				scheduler.getGenerations(), seedMetrics[0], metrics[0], seedMetrics[1], metrics[1], seedMetrics[2], metrics[2]);
+		endScheduling();
 	}
+	
 	/**
 	 * Submit cloudlets to the created VMs.
 	  *  提交云任务到虚拟机中的请求
@@ -1066,39 +1063,538 @@ public class DatacenterBroker extends SimEntity {
 	 */
 	protected void submitCloudlets() {
 		int vmIndex = 0;
-		List<Cloudlet> successfullySubmitted = new ArrayList<Cloudlet>();
-		for (Cloudlet cloudlet : getCloudletList()) {
+		List<Cloudlet> cloudlets = getCloudletList();
+		// postponed cloudlets are moved to the front of the list, before this cursor 推迟的云任务前移到此游标之前
+		int postponed = 0;
+		Map<Integer, List<Cloudlet>> batches = new LinkedHashMap<Integer, List<Cloudlet>>();
+		for (int i = 0; i < cloudlets.size(); i++) {
+			Cloudlet cloudlet = cloudlets.get(i);
 			Vm vm;
 			// if user didn't bind this cloudlet and it has not been executed yet
 			if (cloudlet.getVmId() == -1) {//没有绑定虚拟机
 				vm = getVmsCreatedList().get(vmIndex);
 			} else { // submit to the specific vm 已经绑定了虚拟机
-				vm = VmList.getById(getVmsCreatedList(), cloudlet.getVmId());
+				vm = vmsCreatedById.get(cloudlet.getVmId());
 				if (vm == null) { // vm was not created
-					if(!Log.isDisabled()) {				    
-					    Log.printConcatLine(CloudSim.clock(), ": ", getName(), ": Postponing execution of cloudlet ",
-							cloudlet.getCloudletId(), ": bount VM not available");
+					if (Log.isLoggable(LOG_CATEGORY, Log.Level.DEBUG)) {
+					    Log.logConcat(LOG_CATEGORY, Log.Level.DEBUG, CloudSim.clock(), ": ", getName(),
+							": Postponing execution of cloudlet ", cloudlet.getCloudletId(), ": bount VM not available");
 					}
+					cloudlets.set(postponed++, cloudlet);
 					continue;
 				}
 			}
 
-			if (!Log.isDisabled()) {
-			    Log.printConcatLine(CloudSim.clock(), ": ", getName(), ": Sending cloudlet ",
-					cloudlet.getCloudletId(), " to VM #", vm.getId());
+			if (Log.isLoggable(LOG_CATEGORY, Log.Level.DEBUG)) {
+			    Log.logConcat(LOG_CATEGORY, Log.Level.DEBUG, CloudSim.clock(), ": ", getName(), ": Sending cloudlet ",
+						cloudlet.getCloudletId(), " to VM #", vm.getId());
 			}
 			
 			cloudlet.setVmId(vm.getId());
-			sendNow(getVmsToDatacentersMap().get(vm.getId()), CloudSimTags.CLOUDLET_SUBMIT, cloudlet);
+			if (isBatchSubmission()) {
+				List<Cloudlet> batch = batches.get(vm.getId());
+				if (batch == null) {
+					batch = new ArrayList<Cloudlet>();
+					batches.put(vm.getId(), batch);
+				}
+				batch.add(cloudlet);
+			} else {
+				sendNow(getVmsToDatacentersMap().get(vm.getId()), CloudSimTags.CLOUDLET_SUBMIT, cloudlet);
+			}
 			cloudletsSubmitted++;
+			updateRunningCloudlets(vm.getId(), 1);
 			vmIndex = (vmIndex + 1) % getVmsCreatedList().size();
 			getCloudletSubmittedList().add(cloudlet);
-			successfullySubmitted.add(cloudlet);
+			if (rollingHorizonPlanner != null) {
+				rollingHorizonPlanner.plan(cloudlet.getCloudletId(), cloudlet.getCloudletLength(),
+						cloudlet.getNumberOfPes(), vm, CloudSim.clock());
+			}
 		} 
 
+		// 批量模式下，每个虚拟机只发送一个事件
+		for (Map.Entry<Integer, List<Cloudlet>> batch : batches.entrySet()) {
+			List<Cloudlet> vmCloudlets = batch.getValue();
+			sendNow(getVmsToDatacentersMap().get(batch.getKey()), CloudSimTags.CLOUDLET_SUBMIT_BATCH,
+					vmCloudlets.toArray(new Cloudlet[vmCloudlets.size()]));
+		}
+
 		// remove submitted cloudlets from waiting list
-		getCloudletList().removeAll(successfullySubmitted);
+		cloudlets.subList(postponed, cloudlets.size()).clear();
+
+		// 没有分配到云任务的虚拟机从现在开始空闲
+		if (idleCooldown > 0) {
+			for (Vm vm : getVmsCreatedList()) {
+				if (getRunningCloudletCount(vm.getId()) == 0 && !idleSince.containsKey(vm.getId())) {
+					scheduleIdleCheck(vm.getId());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Rebalances the cloudlets waiting on the created VMs by work stealing: the least loaded VM takes the
+	 * last waiting cloudlet of the most loaded VM as long as it would finish it earlier, the moves being
+	 * sent to the datacenters with {@link CloudSimTags#CLOUDLET_MOVE}.
+	 * 工作窃取：负载最轻的虚拟机从负载最重的虚拟机的等待队列尾部窃取云任务
+	 * <p>
+	 * A cloudlet at the tail of a waiting list finishes about when its VM has done all its work, so it is
+	 * moved when the thief would finish it before that. A VM whose last waiting cloudlet cannot be moved
+	 * with profit is no longer a victim in this round. Only the waiting lists are looked at: the cloudlets
+	 * of a {@link CloudletSchedulerPriority} wait in its own heaps and are never stolen.
+	 * 
+	 * @return the number of cloudlets moved
+	 * @see VmLoadIndex
+	 */
+	public int rebalanceCloudlets() {
+		List<Vm> vms = getVmsCreatedList();
+		int vmCount = vms.size();
+		if (vmCount < 2) {
+			return 0;
+		}
+
+		// 计算每台虚拟机剩余的工作量
+		double[] loads = new double[vmCount];
+		List<List<ResCloudlet>> waitingLists = new ArrayList<List<ResCloudlet>>(vmCount);
+		int[] tails = new int[vmCount];
+		for (int i = 0; i < vmCount; i++) {
+			Vm vm = vms.get(i);
+			CloudletScheduler scheduler = vm.getCloudletScheduler();
+			List<ResCloudlet> waiting = scheduler.getCloudletWaitingList();
+			double length = 0;
+			// 数据中心只在虚拟机有云任务完成时更新其进度，扣除上次更新以来已经执行的部分
+			double elapsed = CloudSim.clock() - scheduler.getPreviousTime();
+			for (ResCloudlet rcl : scheduler.<ResCloudlet>getCloudletExecList()) {
+				length += Math.max(rcl.getRemainingCloudletLength() - elapsed * vm.getMips() * rcl.getNumberOfPes(), 0);
+			}
+			for (ResCloudlet rcl : waiting) {
+				length += rcl.getRemainingCloudletLength();
+			}
+			loads[i] = VmLoadIndex.getLoad(vm, length);
+			waitingLists.add(waiting);
+			tails[i] = waiting.size() - 1;
+		}
+		VmLoadIndex index = new VmLoadIndex(vms, loads);
+		for (int i = 0; i < vmCount; i++) {
+			index.setStealable(i, tails[i] >= 0);
+		}
+
+		int moved = 0;
+		for (int victim = index.getMostLoadedVictim(); victim >= 0; victim = index.getMostLoadedVictim()) {
+			int thief = index.getLeastLoaded();
+			ResCloudlet rcl = waitingLists.get(victim).get(tails[victim]);
+			Vm from = vms.get(victim);
+			Vm to = vms.get(thief);
+			long length = rcl.getRemainingCloudletLength();
+			if (thief == victim || index.getLoad(thief) + VmLoadIndex.getExecTime(to, length) >= index.getLoad(victim)) {
+				index.setStealable(victim, false);
+				continue;
+			}
+
+			tails[victim]--;
+			index.setStealable(victim, tails[victim] >= 0);
+			index.addLoad(victim, -VmLoadIndex.getLoad(from, length));
+			index.addLoad(thief, VmLoadIndex.getLoad(to, length));
+
+			sendCloudletMove(rcl.getCloudletId(), from, to);
+			if (rollingHorizonPlanner != null) {
+				rollingHorizonPlanner.move(rcl.getCloudletId(), length, rcl.getNumberOfPes(), from, to,
+						CloudSim.clock());
+			}
+			moved++;
+		}
+		cloudletsMoved += moved;
+		return moved;
 	}
+
+	/**
+	 * Replans the cloudlets waiting on the VM of a returned cloudlet when the VM drifted from its plan, the
+	 * rolling-horizon way: the plan only covers the cloudlets sent so far and is corrected with every finish
+	 * time the datacenters report.
+	 * 滚动时域重调度：虚拟机的实际进度偏离计划超过阈值时，只重新安排该虚拟机上尚未开始的云任务
+	 * <p>
+	 * Once the returned cloudlet finished later than expected by more than the threshold, every cloudlet
+	 * still queued on its VM is expected that much later too. The waiting cloudlets of the VM are then taken
+	 * from the tail of its waiting list, whose completion drifted the most, and each one is moved with
+	 * {@link CloudSimTags#CLOUDLET_MOVE} to the VM that would finish it first, as long as that beats its
+	 * corrected completion by more than the threshold. Only the cloudlets of the late VM are looked at, so a
+	 * replan costs {@code O(k m)} for {@code k} waiting cloudlets and {@code m} VMs, whatever the size of the
+	 * batch. As in {@link #rebalanceCloudlets()}, the cloudlets waiting in a
+	 * {@link CloudletSchedulerPriority} are never moved.
+	 * 
+	 * @param cloudlet the returned cloudlet
+	 * @return the number of cloudlets moved
+	 * @see RollingHorizonPlanner
+	 */
+	public int rescheduleCloudlets(Cloudlet cloudlet) {
+		if (rollingHorizonPlanner == null || rollingHorizonPlanner.observe(cloudlet) <= 0) {
+			return 0;
+		}
+		Vm from = vmsCreatedById.get(cloudlet.getVmId());
+		if (from == null || getVmsCreatedList().size() < 2) {
+			return 0;
+		}
+		double now = CloudSim.clock();
+		List<ResCloudlet> waiting = from.getCloudletScheduler().getCloudletWaitingList();
+		int moved = 0;
+		for (int i = waiting.size() - 1; i >= 0; i--) {
+			ResCloudlet rcl = waiting.get(i);
+			if (!rollingHorizonPlanner.isPlannedOn(rcl.getCloudletId(), from.getId())) {
+				continue; // 已经被移走，数据中心还没有处理
+			}
+			long length = rcl.getRemainingCloudletLength();
+			Vm to = rollingHorizonPlanner.findEarlierVm(rcl.getCloudletId(), length, rcl.getNumberOfPes(),
+					getVmsCreatedList(), now);
+			if (to == null) {
+				break;
+			}
+			sendCloudletMove(rcl.getCloudletId(), from, to);
+			rollingHorizonPlanner.move(rcl.getCloudletId(), length, rcl.getNumberOfPes(), from, to, now);
+			moved++;
+		}
+		cloudletsRescheduled += moved;
+		return moved;
+	}
+
+	/**
+	 * Asks the datacenter of a VM to move a cloudlet to another VM.
+	 * 
+	 * @param cloudletId the id of the cloudlet
+	 * @param from the VM the cloudlet is on
+	 * @param to the VM the cloudlet goes to
+	 * @see CloudSimTags#CLOUDLET_MOVE
+	 */
+	protected void sendCloudletMove(int cloudletId, Vm from, Vm to) {
+		int[] data = new int[5];
+		data[0] = cloudletId;
+		data[1] = getId();
+		data[2] = from.getId();
+		data[3] = to.getId();
+		data[4] = getVmsToDatacentersMap().get(to.getId());
+		sendNow(getVmsToDatacentersMap().get(from.getId()), CloudSimTags.CLOUDLET_MOVE, data);
+		updateRunningCloudlets(to.getId(), 1);
+		updateRunningCloudlets(from.getId(), -1);
+		if (Log.isLoggable(LOG_CATEGORY, Log.Level.DEBUG)) {
+			Log.logConcat(LOG_CATEGORY, Log.Level.DEBUG, CloudSim.clock(), ": ", getName(), ": Moving cloudlet ",
+					cloudletId, " from VM #", from.getId(), " to VM #", to.getId());
+		}
+	}
+
+	/**
+	 * Provisions a VM for a cloudlet that no VM can serve under its QoS requirements, when the VMs form an
+	 * elastic pool: the VM is of the cheapest type that can still serve the cloudlet, found by the
+	 * {@link VmTypeCatalog} in {@code O(log t)} for {@code t} types. The VM is appended to the VM list and to
+	 * the index of the running algorithm, and is created with {@link CloudSimTags#VM_CREATE_ACK} along with
+	 * the submitted VMs, or right away if those are already created. A VM is only provisioned if a host can
+	 * still fit it, as told by {@link #getHostCapacity()}; a provisioned VM that no datacenter creates after
+	 * all is given up by {@link #dropFailedVms()}.
+	 * 弹性资源池：没有虚拟机能满足云任务的QoS需求时，按需创建能满足其需求的最便宜的虚拟机
+	 * 
+	 * @param cloudlet the cloudlet
+	 * @param index the feasibility index of the running algorithm
+	 * @param lastVmProcessTime the ready time of each VM of the running algorithm, by VM id
+	 * @param readyTime the time at which the new VM is ready
+	 * @return the position of the new VM in the VM list, or -1 if the pool is fixed or full, if no type can
+	 *         serve the cloudlet, or if no host can fit a VM of the type
+	 * @see #setElasticVmPool(VmTypeCatalog, int, double)
+	 */
+	protected int provisionVm(Cloudlet cloudlet, VmFeasibilityIndex index, Map<Integer, Double> lastVmProcessTime,
+			double readyTime) {
+		if (vmTypeCatalog == null || getVmList().size() - getVmsDestroyed() >= maxVms) {
+			return -1;
+		}
+		int type = vmTypeCatalog.findCheapestType(cloudlet, readyTime);
+		if (type < 0) {
+			return -1;
+		}
+		// 只在还有主机能放下这种虚拟机时创建
+		if (!getHostCapacity().reserve(vmTypeCatalog.getMips(type), vmTypeCatalog.getPes(type),
+				vmTypeCatalog.getRam(type), vmTypeCatalog.getBw(type), vmTypeCatalog.getSize(type))) {
+			return -1;
+		}
+
+		int vmId = nextVmId;
+		// 新的虚拟机与已有的虚拟机使用相同的虚拟机监视器和云任务调度器
+		Vm template = getVmList().isEmpty() ? null : getVmList().get(0);
+		CloudletScheduler scheduler = template != null
+				&& template.getCloudletScheduler() instanceof CloudletSchedulerPriority
+						? new CloudletSchedulerPriority() : new CloudletSchedulerSpaceShared();
+		Vm vm = vmTypeCatalog.createVm(type, vmId, getId(), template == null ? "Xen" : template.getVmm(), scheduler);
+		submitVmList(Collections.singletonList(vm));
+		provisionedVmIds.add(vmId);
+		vmsProvisioned++;
+		if (Log.isLoggable(LOG_CATEGORY, Log.Level.DEBUG)) {
+			Log.logConcat(LOG_CATEGORY, Log.Level.DEBUG, CloudSim.clock(), ": ", getName(), ": Provisioning VM #",
+					vmId, " (", vm.getMips(), " MIPS) for cloudlet ", cloudlet.getCloudletId());
+		}
+		if (!getDatacenterRequestedIdsList().isEmpty()) { // 虚拟机已经创建过，立即创建新的虚拟机
+			List<Integer> requested = getDatacenterRequestedIdsList();
+			sendNow(requested.get(requested.size() - 1), CloudSimTags.VM_CREATE_ACK, vm);
+			setVmsRequested(getVmsRequested() + 1);
+		}
+		lastVmProcessTime.put(vmId, readyTime);
+		return index.addVm(readyTime);
+	}
+
+	/**
+	 * Gets the free resources of the hosts of the datacenters once the VMs of the VM list not created yet
+	 * are, in the order of the list.
+	 * 
+	 * @return the ledger, recomputed from the hosts once VMs were created or destroyed since the last call
+	 */
+	protected HostCapacityLedger getHostCapacity() {
+		if (hostCapacity == null) {
+			List<Host> hosts = new ArrayList<Host>();
+			for (SimEntity entity : CloudSim.getEntityList()) {
+				if (entity instanceof Datacenter) {
+					hosts.addAll(((Datacenter) entity).<Host>getHostList());
+				}
+			}
+			hostCapacity = new HostCapacityLedger(hosts);
+			for (Vm vm : getVmList()) {
+				if (!getVmsToDatacentersMap().containsKey(vm.getId())) {
+					hostCapacity.reserve(vm);
+				}
+			}
+		}
+		return hostCapacity;
+	}
+
+	/**
+	 * Gives up the VMs provisioned by the elastic pool that no datacenter could create: they leave the VM
+	 * list, and each cloudlet bound to one of them is bound to the created VM that finishes it first under its
+	 * QoS requirements, after the cloudlets already waiting there, or canceled if there is none.
+	 * 放弃创建失败的按需虚拟机，将其上的云任务重新绑定到满足QoS需求的虚拟机上，或者取消
+	 */
+	protected void dropFailedVms() {
+		Set<Integer> failedIds = new HashSet<Integer>();
+		for (Iterator<Vm> it = getVmList().iterator(); it.hasNext();) {
+			Vm vm = it.next();
+			if (provisionedVmIds.contains(vm.getId()) && !getVmsToDatacentersMap().containsKey(vm.getId())) {
+				failedIds.add(vm.getId());
+				vmsById.remove(vm.getId());
+				it.remove();
+			}
+		}
+		if (failedIds.isEmpty()) {
+			return;
+		}
+		hostCapacity = null;
+
+		// 已创建的虚拟机的就绪时间：等待发送到其上的云任务全部完成的时间
+		List<Vm> createdVms = getVmsCreatedList();
+		VmFeasibilityIndex index = new VmFeasibilityIndex(createdVms, CloudSim.clock());
+		Map<Integer, Integer> positions = new HashMap<Integer, Integer>();
+		for (int j = 0; j < createdVms.size(); j++) {
+			positions.put(createdVms.get(j).getId(), j);
+		}
+		List<Cloudlet> orphans = new ArrayList<Cloudlet>();
+		for (Iterator<Cloudlet> it = getCloudletList().iterator(); it.hasNext();) {
+			Cloudlet cloudlet = it.next();
+			Integer position = positions.get(cloudlet.getVmId());
+			if (position != null) {
+				index.assign(cloudlet, position);
+			} else if (failedIds.contains(cloudlet.getVmId())) {
+				orphans.add(cloudlet);
+				it.remove();
+			}
+		}
+
+		for (Cloudlet cloudlet : orphans) {
+			int position = index.findEarliestFinishVm(cloudlet);
+			if (position < 0) {
+				Log.printConcatLine("云任务：", cloudlet.getCloudletId(), "由于任何虚拟机满足不了其完成期限的需求，故被取消 ");
+				try {
+					cloudlet.setCloudletStatus(Cloudlet.CANCELED);
+				} catch (Exception e) {
+					// CANCELED是合法的状态，不会抛出异常
+				}
+				markCloudletCanceled(cloudlet);
+				continue;
+			}
+			cloudlet.setVmId(createdVms.get(position).getId());
+			index.assign(cloudlet, position);
+			getCloudletList().add(cloudlet);
+		}
+	}
+
+	/**
+	 * Checks whether a VM was provisioned by the elastic pool.
+	 * 
+	 * @param vmId the id of the VM
+	 * @return true if the VM was provisioned on demand
+	 */
+	public boolean isProvisionedVm(int vmId) {
+		return provisionedVmIds.contains(vmId);
+	}
+
+	/**
+	 * Counts the cloudlets sent to a VM and not returned yet, and starts the cooldown of the VM when it has
+	 * none left. Does nothing unless idle VMs are destroyed.
+	 * 
+	 * @param vmId the id of the VM
+	 * @param delta the number of cloudlets sent to the VM, negative for the cloudlets returned or moved away
+	 */
+	protected void updateRunningCloudlets(int vmId, int delta) {
+		if (idleCooldown <= 0) {
+			return;
+		}
+		int running = Math.max(getRunningCloudletCount(vmId) + delta, 0);
+		runningCloudlets.put(vmId, running);
+		if (running > 0) {
+			idleSince.remove(vmId);
+		} else {
+			scheduleIdleCheck(vmId);
+		}
+	}
+
+	/**
+	 * Starts the cooldown of a VM that became idle.
+	 * 
+	 * @param vmId the id of the VM
+	 */
+	protected void scheduleIdleCheck(int vmId) {
+		idleSince.put(vmId, CloudSim.clock());
+		send(getId(), idleCooldown, CloudSimTags.VM_IDLE_CHECK, vmId);
+	}
+
+	/**
+	 * Processes the end of the cooldown of a VM: destroys the VM if it stayed idle since the cooldown started,
+	 * unless it is the last VM left.
+	 * 
+	 * @param ev a SimEvent object carrying the id of the VM
+	 * @see CloudSimTags#VM_IDLE_CHECK
+	 */
+	protected void processIdleCheck(SimEvent ev) {
+		int vmId = (Integer) ev.getData();
+		Vm vm = vmsCreatedById.get(vmId);
+		Double since = idleSince.get(vmId);
+		if (vm == null || since == null || since + idleCooldown > CloudSim.clock()
+				|| getVmsCreatedList().size() < 2) {
+			return; // 冷却期内又有了云任务，或者已经被销毁
+		}
+		Log.printConcatLine(CloudSim.clock(), ": ", getName(), ": Destroying idle VM #", vmId);
+		sendNow(getVmsToDatacentersMap().get(vmId), CloudSimTags.VM_DESTROY, vm);
+		getVmsCreatedList().remove(vm);
+		vmsCreatedById.remove(vmId);
+		idleSince.remove(vmId);
+		setVmsDestroyed(getVmsDestroyed() + 1);
+		hostCapacity = null;
+	}
+
+	/**
+	 * Gets the number of cloudlets sent to a VM and not returned yet. Only counted when idle VMs are destroyed.
+	 * 
+	 * @param vmId the id of the VM
+	 * @return the number of cloudlets
+	 */
+	public int getRunningCloudletCount(int vmId) {
+		Integer running = runningCloudlets.get(vmId);
+		return running == null ? 0 : running;
+	}
+
+	/**
+	 * Schedules the next rebalancing if rebalancing is enabled and none is pending.
+	 */
+	protected void scheduleRebalance() {
+		if (getRebalanceInterval() > 0 && !rebalanceScheduled) {
+			send(getId(), getRebalanceInterval(), CloudSimTags.VM_BROKER_EVENT);
+			rebalanceScheduled = true;
+		}
+	}
+
+	/**
+	 * Processes a rebalancing event: rebalances the waiting cloudlets and schedules the next rebalancing,
+	 * unless no cloudlet is out any more.
+	 * 
+	 * @param ev a SimEvent object
+	 */
+	protected void processRebalance(SimEvent ev) {
+		rebalanceScheduled = false;
+		if (cloudletsSubmitted == 0) {
+			return;
+		}
+		rebalanceCloudlets();
+		scheduleRebalance();
+	}
+
+	/**
+	 * Runs a policy of the scheduling library on the cloudlets not bound yet and puts them in the cloudlet
+	 * list in the order the policy assigned them. The cloudlets already bound keep their place at the head of
+	 * the list and hold their VM for their execution time; the cloudlets the policy canceled are marked
+	 * canceled and, with the ones it left out, dropped from the list.
+	 * 使用调度库中的算法为尚未绑定的云任务分配虚拟机
+	 * 
+	 * @param policy the scheduling policy
+	 * @return the schedule, cloudlets being designated by their position among the unbound ones
+	 * @see com.shiyan.scheduler
+	 */
+	protected Schedule scheduleWithPolicy(SchedulingPolicy policy) {
+		double currentTime = CloudSim.clock();
+		List<Vm> vms = getVmList();
+		Map<Integer, Integer> vmPositions = new HashMap<Integer, Integer>();
+		double[] ready = new double[vms.size()];
+		for (int j = 0; j < vms.size(); j++) {
+			vmPositions.put(vms.get(j).getId(), j);
+			ready[j] = currentTime;
+		}
+		List<Cloudlet> finalCloudlets = new ArrayList<Cloudlet>(getCloudletList().size());
+		List<Cloudlet> waiting = new ArrayList<Cloudlet>();
+		for (Cloudlet cloudlet : getCloudletList()) {
+			if (cloudlet.getVmId() == -1) {
+				waiting.add(cloudlet);
+				continue;
+			}
+			finalCloudlets.add(cloudlet);
+			Integer position = vmPositions.get(cloudlet.getVmId());
+			if (position != null) {
+				ready[position] += cloudlet.getCloudletLength() / vms.get(position).getMips();
+			}
+		}
+
+		List<TaskDescriptor> tasks = new ArrayList<TaskDescriptor>(waiting.size());
+		for (Cloudlet cloudlet : waiting) {
+			tasks.add(toTaskDescriptor(cloudlet));
+		}
+		List<VmDescriptor> vmDescriptors = new ArrayList<VmDescriptor>(vms.size());
+		for (int j = 0; j < vms.size(); j++) {
+			vmDescriptors.add(new VmDescriptor(vms.get(j).getMips(), vms.get(j).getCostPerVm(), ready[j]));
+		}
+		policy.setDecisionLatency(getDecisionLatency());
+		Schedule schedule = policy.schedule(tasks, vmDescriptors);
+
+		for (int k = 0; k < schedule.getAssignedCount(); k++) {
+			int i = schedule.getAssignedTask(k);
+			Cloudlet cloudlet = waiting.get(i);
+			cloudlet.setVmId(vms.get(schedule.getVm(i)).getId());
+			if (schedule.getCompensationType(i) > 0) {
+				compensationTypes.put(cloudlet.getCloudletId(), schedule.getCompensationType(i));
+			}
+			finalCloudlets.add(cloudlet);
+		}
+		for (int i = 0; i < waiting.size(); i++) {
+			if (schedule.isCanceled(i)) {
+				Cloudlet cloudlet = waiting.get(i);
+				Log.printConcatLine("云任务：", cloudlet.getCloudletId(), "由于任何虚拟机满足不了其完成期限的需求，故被取消 ");
+				cloudlet.setUserId(-2);
+				markCloudletCanceled(cloudlet);
+			}
+		}
+		getCloudletList().clear();
+		getCloudletList().addAll(finalCloudlets);
+		return schedule;
+	}
+
+	/**
+	 * Describes a cloudlet for the scheduling library.
+	 * 
+	 * @param cloudlet the cloudlet
+	 * @return its length, submission time, relative deadline and budget
+	 */
+	protected static TaskDescriptor toTaskDescriptor(Cloudlet cloudlet) {
+		return new TaskDescriptor(cloudlet.getCloudletLength(), cloudlet.getStartSubmit(),
+				cloudlet.getDeadlineTime(), cloudlet.getUserMoney());
+	}
+
 	//...................................................................所有算法到此结束。
 	@Override
 	public void processEvent(SimEvent ev) {
@@ -1119,6 +1615,18 @@ public class DatacenterBroker extends SimEntity {
 			case CloudSimTags.CLOUDLET_RETURN:
 				processCloudletReturn(ev);
 				break;
+			// A batch of finished cloudlets returned 一批已经完成的云任务返回
+			case CloudSimTags.CLOUDLET_RETURN_BATCH:
+				processCloudletReturnBatch(ev);
+				break;
+			// Periodic rebalancing of the waiting cloudlets 定期重新平衡等待的云任务
+			case CloudSimTags.VM_BROKER_EVENT:
+				processRebalance(ev);
+				break;
+			// End of the cooldown of an idle VM 空闲虚拟机的冷却期结束
+			case CloudSimTags.VM_IDLE_CHECK:
+				processIdleCheck(ev);
+				break;
 			// if the simulation finishes定义simulation结束
 			case CloudSimTags.END_OF_SIMULATION:
 				shutdownEntity();
@@ -1179,13 +1687,16 @@ public class DatacenterBroker extends SimEntity {
 		int datacenterId = data[0];
 		int vmId = data[1];
 		int result = data[2];
+		hostCapacity = null;
     
 		if (result == CloudSimTags.TRUE) {
 			getVmsToDatacentersMap().put(vmId, datacenterId);
-			getVmsCreatedList().add(VmList.getById(getVmList(), vmId));
+			Vm vm = getVmById(vmId);
+			getVmsCreatedList().add(vm);
+			vmsCreatedById.put(vmId, vm);
 			Log.printConcatLine(CloudSim.clock(), ": ", getName(), ": VM #", vmId,
 					" has been created in Datacenter #", datacenterId, ", Host #",
-					VmList.getById(getVmsCreatedList(), vmId).getHost().getId());
+					vm.getHost().getId());
 		} else {
 			Log.printConcatLine(CloudSim.clock(), ": ", getName(), ": Creation of VM #", vmId,
 					" failed in Datacenter #", datacenterId);
@@ -1196,6 +1707,7 @@ public class DatacenterBroker extends SimEntity {
 		// all the requested VMs have been created所有请求的虚拟机已经被创建
 		if (getVmsCreatedList().size() == getVmList().size() - getVmsDestroyed()) {
 			submitCloudlets();
+			scheduleRebalance();
 		} else {
 			// all the acks received, but some VMs were not created
 			if (getVmsRequested() == getVmsAcks()) {
@@ -1208,8 +1720,10 @@ public class DatacenterBroker extends SimEntity {
 				}
 
 				// all datacenters already queried
+				dropFailedVms();
 				if (getVmsCreatedList().size() > 0) { // if some vm were created
 					submitCloudlets();
+					scheduleRebalance();
 				} else { // no vms created. abort
 					Log.printLine(CloudSim.clock() + ": " + getName()
 							+ ": none of the required VMs could be created. Aborting");
@@ -1229,11 +1743,57 @@ public class DatacenterBroker extends SimEntity {
 	protected void processCloudletReturn(SimEvent ev) {
 		Cloudlet cloudlet = (Cloudlet) ev.getData();
 		getCloudletReceivedList().add(cloudlet);
-		Log.printConcatLine(CloudSim.clock(), ": ", getName(), ": Cloudlet ", cloudlet.getCloudletId(),
-				" received");
+		receivedCloudletIds.set(cloudlet.getCloudletId());
+		if (Log.isLoggable(LOG_CATEGORY, Log.Level.DEBUG)) {
+			Log.logConcat(LOG_CATEGORY, Log.Level.DEBUG, CloudSim.clock(), ": ", getName(), ": Cloudlet ",
+					cloudlet.getCloudletId(), " received");
+		}
 		cloudletsSubmitted--;
+		updateRunningCloudlets(cloudlet.getVmId(), -1);
+		rescheduleCloudlets(cloudlet);
+		checkCloudletsExecuted();
+	}
+
+	/**
+	 * Processes a batch of finished cloudlets returned by a datacenter.
+	 * 处理数据中心批量返回的已完成云任务
+	 * 
+	 * @param ev a SimEvent object carrying a <tt>Cloudlet[]</tt>
+	 * @see CloudSimTags#CLOUDLET_RETURN_BATCH
+	 * @pre ev != $null
+	 * @post $none
+	 */
+	protected void processCloudletReturnBatch(SimEvent ev) {
+		Cloudlet[] batch = (Cloudlet[]) ev.getData();
+		for (Cloudlet cloudlet : batch) {
+			getCloudletReceivedList().add(cloudlet);
+			receivedCloudletIds.set(cloudlet.getCloudletId());
+			if (Log.isLoggable(LOG_CATEGORY, Log.Level.DEBUG)) {
+				Log.logConcat(LOG_CATEGORY, Log.Level.DEBUG, CloudSim.clock(), ": ", getName(), ": Cloudlet ",
+						cloudlet.getCloudletId(), " received");
+			}
+			updateRunningCloudlets(cloudlet.getVmId(), -1);
+			rescheduleCloudlets(cloudlet);
+		}
+		cloudletsSubmitted -= batch.length;
+		checkCloudletsExecuted();
+	}
+
+	/**
+	 * Finishes the execution once every cloudlet came back, or recreates the VMs when only
+	 * cloudlets bound to VMs that were not created are left.
+	 * 所有云任务返回后结束执行
+	 */
+	protected void checkCloudletsExecuted() {
 		if (getCloudletList().size() == 0 && cloudletsSubmitted == 0) { // all cloudlets executed
 			Log.printConcatLine(CloudSim.clock(), ": ", getName(), ": All Cloudlets executed. Finishing...");
+			if (rebalanceScheduled) { // 不再需要重新平衡
+				CloudSim.cancelAll(getId(), new PredicateType(CloudSimTags.VM_BROKER_EVENT));
+				rebalanceScheduled = false;
+			}
+			if (idleCooldown > 0) { // 剩下的虚拟机一起销毁
+				CloudSim.cancelAll(getId(), new PredicateType(CloudSimTags.VM_IDLE_CHECK));
+			}
 			clearDatacenters();
 			finishExecution();
 		} else { // some cloudlets haven't finished yet
@@ -1307,6 +1867,8 @@ public class DatacenterBroker extends SimEntity {
 			sendNow(getVmsToDatacentersMap().get(vm.getId()), CloudSimTags.VM_DESTROY, vm);
 		}
 		getVmsCreatedList().clear();
+		vmsCreatedById.clear();
+		hostCapacity = null;
 	}
 	
 	/**
@@ -1576,4 +2138,258 @@ public class DatacenterBroker extends SimEntity {
 		this.datacenterRequestedIdsList = datacenterRequestedIdsList;
 	}
 
+	/**
+	 * Checks whether cloudlets are sent to datacenters in batches.
+	 * 
+	 * @return true if cloudlets are submitted in batches, one per VM
+	 */
+	public boolean isBatchSubmission() {
+		return batchSubmission;
+	}
+
+	/**
+	 * Sets whether cloudlets are sent to datacenters in batches, one {@link CloudSimTags#CLOUDLET_SUBMIT_BATCH}
+	 * per VM. Datacenters then return finished cloudlets with {@link CloudSimTags#CLOUDLET_RETURN_BATCH}.
+	 * 
+	 * @param batchSubmission true to submit cloudlets in batches
+	 */
+	public void setBatchSubmission(boolean batchSubmission) {
+		this.batchSubmission = batchSubmission;
+	}
+
+	public double getRebalanceInterval() {
+		return rebalanceInterval;
+	}
+
+	/**
+	 * Sets the interval between two rebalancings of the waiting cloudlets. The first one takes place one
+	 * interval after the cloudlets are submitted, and they stop once every cloudlet came back.
+	 * 
+	 * @param rebalanceInterval the interval, or 0 to never rebalance
+	 * @see #rebalanceCloudlets()
+	 */
+	public void setRebalanceInterval(double rebalanceInterval) {
+		this.rebalanceInterval = rebalanceInterval;
+	}
+
+	/**
+	 * Gets the number of cloudlets moved by the rebalancings so far.
+	 * 
+	 * @return the number of moved cloudlets
+	 */
+	public int getMovedCloudletCount() {
+		return cloudletsMoved;
+	}
+
+	/**
+	 * Gets the drift beyond which the rolling-horizon rescheduling replans the cloudlets of a VM.
+	 * 
+	 * @return the threshold in seconds, or 0 if the cloudlets are never rescheduled
+	 */
+	public double getRescheduleThreshold() {
+		return rollingHorizonPlanner == null ? 0.0 : rollingHorizonPlanner.getThreshold();
+	}
+
+	/**
+	 * Enables the rolling-horizon rescheduling of the waiting cloudlets. Must be called before the cloudlets
+	 * are sent, since only the cloudlets sent afterwards are planned.
+	 * 
+	 * @param rescheduleThreshold the drift, in seconds, beyond which the cloudlets waiting on a VM are
+	 *            replanned, or 0 to never reschedule
+	 * @see #rescheduleCloudlets(Cloudlet)
+	 */
+	public void setRescheduleThreshold(double rescheduleThreshold) {
+		rollingHorizonPlanner = rescheduleThreshold > 0 ? new RollingHorizonPlanner(rescheduleThreshold) : null;
+	}
+
+	/**
+	 * Gets the number of cloudlets moved by the rolling-horizon rescheduling so far.
+	 * 
+	 * @return the number of rescheduled cloudlets
+	 */
+	public int getRescheduledCloudletCount() {
+		return cloudletsRescheduled;
+	}
+
+	public VmTypeCatalog getVmTypeCatalog() {
+		return vmTypeCatalog;
+	}
+
+	/**
+	 * Makes the VMs an elastic pool: when {@link #bindCloudletsToVmsIMinMin()} or
+	 * {@link #bindCloudletsToVmsIMaxMin()} finds no VM that meets the QoS requirements of a cloudlet, a VM of
+	 * the cheapest sufficient type is provisioned instead of canceling the cloudlet, and the VMs that stay idle
+	 * for the cooldown are destroyed. The provisioned VMs are appended to {@link #getVmList()}, which is the
+	 * list to print the results with.
+	 * 
+	 * @param vmTypeCatalog the types to provision from, or <tt>null</tt> for a fixed set of VMs
+	 * @param maxVms the maximum number of VMs alive at once, the submitted ones included
+	 * @param idleCooldown the time an idle VM is kept, or 0 to keep the VMs until the end
+	 * @see #provisionVm(Cloudlet, VmFeasibilityIndex, Map, double)
+	 */
+	public void setElasticVmPool(VmTypeCatalog vmTypeCatalog, int maxVms, double idleCooldown) {
+		if (idleCooldown < 0) {
+			throw new IllegalArgumentException("The cooldown of idle VMs must not be negative");
+		}
+		this.vmTypeCatalog = vmTypeCatalog;
+		this.maxVms = maxVms;
+		this.idleCooldown = idleCooldown;
+	}
+
+	public int getMaxVms() {
+		return maxVms;
+	}
+
+	public double getIdleCooldown() {
+		return idleCooldown;
+	}
+
+	/**
+	 * Gets the number of VMs provisioned by the elastic pool so far.
+	 * 
+	 * @return the number of provisioned VMs
+	 */
+	public int getProvisionedVmCount() {
+		return vmsProvisioned;
+	}
+
+	/**
+	 * Gets the number of idle VMs destroyed by the elastic pool so far.
+	 * 
+	 * @return the number of destroyed VMs
+	 */
+	public int getRetiredVmCount() {
+		return getVmsDestroyed();
+	}
+
+	public int getTightCompensationType() {
+		return tightCompensationType;
+	}
+
+	public int getLooseCompensationType() {
+		return looseCompensationType;
+	}
+
+	/**
+	 * Sets the compensation types of {@link #bindCloudletsToVmsQoSMinMin()}: a larger type makes the
+	 * compensation of a late cloudlet smaller, so more late cloudlets are accepted.
+	 * 
+	 * @param tightType the type of the cloudlets with a deadline below the average, 1 by default
+	 * @param looseType the type of the other cloudlets, 2 by default
+	 * @see QoSParameterTuner
+	 */
+	public void setQoSMinMinTypes(int tightType, int looseType) {
+		if (tightType < 1 || looseType < 1) {
+			throw new IllegalArgumentException("Compensation types must be positive");
+		}
+		this.tightCompensationType = tightType;
+		this.looseCompensationType = looseType;
+	}
+
+	/**
+	 * Gets the cost fraction {@link #SLD} requires a late cloudlet to still cover.
+	 * 
+	 * @return the cost fraction, {@link PrintResult#costFraction} unless set
+	 */
+	public double getSldCostFraction() {
+		return Double.isNaN(sldCostFraction) ? PrintResult.costFraction : sldCostFraction;
+	}
+
+	/**
+	 * Sets the cost fraction {@link #SLD} requires a late cloudlet to still cover: a late cloudlet is
+	 * accepted if its income, minus this share and the compensation, is not negative.
+	 * 
+	 * @param sldCostFraction the cost fraction, or NaN to use {@link PrintResult#costFraction}
+	 * @see QoSParameterTuner
+	 */
+	public void setSldCostFraction(double sldCostFraction) {
+		this.sldCostFraction = sldCostFraction;
+	}
+
+	/**
+	 * Starts timing a call of a scheduling algorithm. Calls nested in another algorithm, such as the
+	 * Min-Min seed of the genetic algorithm, are timed as part of the outer one.
+	 * 开始记录调度算法的延迟
+	 * 
+	 * @param algorithm the name of the algorithm
+	 */
+	protected void beginScheduling(String algorithm) {
+		if (schedulingDepth++ > 0) {
+			return;
+		}
+		schedulingAlgorithm = algorithm;
+		if (!bindLatencies.containsKey(algorithm)) {
+			bindLatencies.put(algorithm, new LatencyHistogram());
+			decisionLatencies.put(algorithm, new LatencyHistogram());
+		}
+		schedulingStart = System.nanoTime();
+		lastDecisionTime = schedulingStart;
+	}
+
+	/**
+	 * Stops timing the call started by {@link #beginScheduling(String)} and records its latency.
+	 */
+	protected void endScheduling() {
+		if (--schedulingDepth > 0) {
+			return;
+		}
+		bindLatencies.get(schedulingAlgorithm).record(System.nanoTime() - schedulingStart);
+		schedulingAlgorithm = null;
+	}
+
+	/**
+	 * Records a placement decision of the running algorithm, whose latency is the time since its previous
+	 * decision or the start of the call. Does nothing outside of a scheduling algorithm.
+	 */
+	protected void recordDecision() {
+		if (schedulingAlgorithm == null) {
+			return;
+		}
+		long now = System.nanoTime();
+		decisionLatencies.get(schedulingAlgorithm).record(now - lastDecisionTime);
+		lastDecisionTime = now;
+	}
+
+	/**
+	 * Gets the decision latency histogram of the running algorithm, for schedulers that place the cloudlets
+	 * themselves.
+	 * 
+	 * @return the histogram, or <tt>null</tt> outside of a scheduling algorithm
+	 */
+	protected LatencyHistogram getDecisionLatency() {
+		return schedulingAlgorithm == null ? null : decisionLatencies.get(schedulingAlgorithm);
+	}
+
+	/**
+	 * Gets the latency of the calls of a scheduling algorithm.
+	 * 
+	 * @param algorithm the name of the algorithm, e.g. "MinMin" or "QoSMinMin-4"
+	 * @return the latencies in nanoseconds, or <tt>null</tt> if the algorithm was never run
+	 * @see #getSchedulingAlgorithms()
+	 */
+	public LatencyHistogram getBindLatency(String algorithm) {
+		return bindLatencies.get(algorithm);
+	}
+
+	/**
+	 * Gets the latency of the placement decisions of a scheduling algorithm, i.e. the time it took to bind
+	 * each cloudlet since the previous one was bound. Algorithms that search whole mappings, such as the
+	 * genetic algorithm, only record the decisions of their seed.
+	 * 
+	 * @param algorithm the name of the algorithm
+	 * @return the latencies in nanoseconds, or <tt>null</tt> if the algorithm was never run
+	 */
+	public LatencyHistogram getDecisionLatency(String algorithm) {
+		return decisionLatencies.get(algorithm);
+	}
+
+	/**
+	 * Gets the names of the scheduling algorithms run by this broker.
+	 * 
+	 * @return the names, in the order the algorithms were first run
+	 */
+	public Set<String> getSchedulingAlgorithms() {
+		return Collections.unmodifiableSet(bindLatencies.keySet());
+	}
+
 }
@@ -0,0 +1,241 @@
+package com.shiyan.main;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.shiyan.models.PowerHost;
+import com.shiyan.models.Vm;
+
+/**
+ * Energy accounting of the hosts and VMs of a power datacenter, from their piecewise-constant utilization.
+ * 电源感知数据中心的能耗计量：按主机、虚拟机和数据中心查询任意时间窗口的能耗
+ * <p>
+ * After each update of the hosts, the utilization and power of every host are recorded in its
+ * {@link PowerTrace}, an idle host being switched off as in
+ * {@link PowerHost#getEnergyLinearInterpolation(double, double, double)}. The power of a host is
+ * attributed to its VMs in proportion to the MIPS allocated to them, so the energies of the VMs of a busy
+ * host add up to the energy of the host. The power recorded at an update holds until the next one, and the
+ * energy over a window is the exact integral of this piecewise-constant power, up to the last update. Once
+ * every host and VM has its trace, recording allocates nothing.
+ *
+ * @see PowerDatacenter#setEnergyMeter(EnergyMeter)
+ */
+public class EnergyMeter {
+
+	/** The default number of change points kept for each host and VM. */
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	/** The number of change points kept for each host and VM. */
+	private final int capacity;
+
+	/** The trace of each host, in the order of the hosts. */
+	private final Map<PowerHost, PowerTrace> hostTraces = new LinkedHashMap<PowerHost, PowerTrace>();
+
+	/** The attributed power of each VM. */
+	private final Map<Vm, VmEnergy> vmEnergies = new HashMap<Vm, VmEnergy>();
+
+	/** The VMs with power at the current update. */
+	private List<VmEnergy> activeVms = new ArrayList<VmEnergy>();
+
+	/** The VMs with power at the previous update. */
+	private List<VmEnergy> previousActiveVms = new ArrayList<VmEnergy>();
+
+	/** The number of updates recorded. */
+	private long updates;
+
+	/** The time of the last update, or {@link Double#NaN} before the first one. */
+	private double lastTime = Double.NaN;
+
+	/**
+	 * Instantiates a new EnergyMeter keeping {@link #DEFAULT_CAPACITY} change points for each host and VM.
+	 */
+	public EnergyMeter() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Instantiates a new EnergyMeter.
+	 *
+	 * @param capacity the number of change points kept for each host and VM
+	 */
+	public EnergyMeter(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("The capacity must be at least 1");
+		}
+		this.capacity = capacity;
+	}
+
+	/**
+	 * The power attributed to a VM and its accumulation at the current update; a migrating VM is on two
+	 * hosts.
+	 */
+	private static final class VmEnergy {
+
+		private final PowerTrace trace;
+
+		/** The update the accumulated values belong to. */
+		private long update = -1;
+
+		private double utilization;
+
+		private double power;
+
+		VmEnergy(int capacity) {
+			trace = new PowerTrace(capacity);
+		}
+
+	}
+
+	/**
+	 * Records the utilization and power of the hosts and of their VMs, just after the hosts are updated.
+	 *
+	 * @param time the time of the update
+	 * @param hosts the hosts of the datacenter
+	 */
+	public void record(double time, List<? extends PowerHost> hosts) {
+		long update = ++updates;
+		for (int i = 0; i < hosts.size(); i++) {
+			PowerHost host = hosts.get(i);
+			double utilization = host.getUtilizationOfCpu();
+			// 空闲主机视为关机，与PowerHost#getEnergyLinearInterpolation一致
+			double hostPower = utilization > 0 ? host.getPower() : 0.0;
+			PowerTrace hostTrace = hostTraces.get(host);
+			if (hostTrace == null) {
+				hostTrace = new PowerTrace(capacity);
+				hostTraces.put(host, hostTrace);
+			}
+			hostTrace.record(time, utilization, hostPower);
+
+			List<Vm> vms = host.getVmList();
+			double allocatedMips = 0.0;
+			for (int j = 0; j < vms.size(); j++) {
+				allocatedMips += host.getVmScheduler().getTotalAllocatedMipsForVm(vms.get(j));
+			}
+			if (allocatedMips <= 0.0) {
+				continue;
+			}
+			for (int j = 0; j < vms.size(); j++) {
+				Vm vm = vms.get(j);
+				double mips = host.getVmScheduler().getTotalAllocatedMipsForVm(vm);
+				if (mips <= 0.0) {
+					continue;
+				}
+				VmEnergy energy = vmEnergies.get(vm);
+				if (energy == null) {
+					energy = new VmEnergy(capacity);
+					vmEnergies.put(vm, energy);
+				}
+				if (energy.update != update) {
+					energy.update = update;
+					energy.utilization = 0.0;
+					energy.power = 0.0;
+					activeVms.add(energy);
+				}
+				energy.utilization += mips / host.getTotalMips();
+				energy.power += hostPower * mips / allocatedMips;
+			}
+		}
+
+		// 本次没有功耗的虚拟机从此刻起记为0
+		for (int i = 0; i < previousActiveVms.size(); i++) {
+			VmEnergy energy = previousActiveVms.get(i);
+			if (energy.update != update) {
+				energy.trace.record(time, 0.0, 0.0);
+			}
+		}
+		for (int i = 0; i < activeVms.size(); i++) {
+			VmEnergy energy = activeVms.get(i);
+			energy.trace.record(time, energy.utilization, energy.power);
+		}
+		List<VmEnergy> swap = previousActiveVms;
+		previousActiveVms = activeVms;
+		activeVms = swap;
+		activeVms.clear();
+		lastTime = time;
+	}
+
+	/**
+	 * Gets the energy consumed by a host over a time window.
+	 *
+	 * @param host the host
+	 * @param from the start of the window
+	 * @param to the end of the window, taken up to the last update
+	 * @return the energy in W*sec, or 0 if the host was not recorded
+	 */
+	public double getHostEnergy(PowerHost host, double from, double to) {
+		return getEnergy(hostTraces.get(host), from, to);
+	}
+
+	/**
+	 * Gets the energy attributed to a VM over a time window.
+	 *
+	 * @param vm the VM
+	 * @param from the start of the window
+	 * @param to the end of the window, taken up to the last update
+	 * @return the energy in W*sec, or 0 if the VM never had power attributed
+	 */
+	public double getVmEnergy(Vm vm, double from, double to) {
+		VmEnergy energy = vmEnergies.get(vm);
+		return getEnergy(energy == null ? null : energy.trace, from, to);
+	}
+
+	/**
+	 * Gets the energy consumed by all the hosts over a time window.
+	 *
+	 * @param from the start of the window
+	 * @param to the end of the window, taken up to the last update
+	 * @return the energy, in W*sec
+	 */
+	public double getDatacenterEnergy(double from, double to) {
+		double energy = 0.0;
+		for (PowerTrace trace : hostTraces.values()) {
+			energy += getEnergy(trace, from, to);
+		}
+		return energy;
+	}
+
+	private double getEnergy(PowerTrace trace, double from, double to) {
+		if (trace == null || Double.isNaN(lastTime)) {
+			return 0.0;
+		}
+		return trace.getEnergy(from, Math.min(to, lastTime));
+	}
+
+	/**
+	 * Gets the trace of a host.
+	 *
+	 * @param host the host
+	 * @return the trace, or <tt>null</tt> if the host was not recorded
+	 */
+	public PowerTrace getHostTrace(PowerHost host) {
+		return hostTraces.get(host);
+	}
+
+	/**
+	 * Gets the trace of the power attributed to a VM.
+	 *
+	 * @param vm the VM
+	 * @return the trace, or <tt>null</tt> if the VM never had power attributed
+	 */
+	public PowerTrace getVmTrace(Vm vm) {
+		VmEnergy energy = vmEnergies.get(vm);
+		return energy == null ? null : energy.trace;
+	}
+
+	/**
+	 * Gets the time of the last update.
+	 *
+	 * @return the time, or {@link Double#NaN} before the first update
+	 */
+	public double getLastTime() {
+		return lastTime;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+}
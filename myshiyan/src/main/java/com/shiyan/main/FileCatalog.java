@@ -0,0 +1,111 @@
+package com.shiyan.main;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Catalog of the files of a datacenter: the storage holding each file and its size, by file name.
+ * 数据中心的文件目录：按文件名哈希查找文件所在的存储和大小
+ * <p>
+ * Finding a file costs {@code O(1)}, instead of asking every storage in turn. The catalog is kept by the
+ * datacenter as it adds and deletes files, so the files of its storages must not be changed directly once
+ * they are given to it.
+ *
+ * @see Datacenter#predictFileTransferTime(List)
+ */
+public class FileCatalog {
+
+	/**
+	 * The storage and size of a file.
+	 */
+	public static final class Entry {
+
+		private final Storage storage;
+
+		private final int size;
+
+		Entry(Storage storage, int size) {
+			this.storage = storage;
+			this.size = size;
+		}
+
+		/**
+		 * Gets the storage holding the file.
+		 *
+		 * @return the storage
+		 */
+		public Storage getStorage() {
+			return storage;
+		}
+
+		/**
+		 * Gets the size of the file.
+		 *
+		 * @return the size in MB
+		 */
+		public int getSize() {
+			return size;
+		}
+
+	}
+
+	/** The entries by file name. */
+	private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+	/**
+	 * Adds the files already stored on a storage. A file already in the catalog keeps its first storage.
+	 *
+	 * @param storage the storage
+	 */
+	public void addStorage(Storage storage) {
+		for (String fileName : storage.getFileNameList()) {
+			if (!entries.containsKey(fileName)) {
+				File file = storage.getFile(fileName);
+				if (file != null) {
+					add(fileName, storage, file.getSize());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds a file, or moves it to another storage.
+	 *
+	 * @param fileName the name of the file
+	 * @param storage the storage holding it
+	 * @param size the size of the file in MB
+	 */
+	public void add(String fileName, Storage storage, int size) {
+		entries.put(fileName, new Entry(storage, size));
+	}
+
+	/**
+	 * Gets the storage and size of a file.
+	 *
+	 * @param fileName the name of the file
+	 * @return the entry, or <tt>null</tt> if the file is not in the catalog
+	 */
+	public Entry get(String fileName) {
+		return entries.get(fileName);
+	}
+
+	/**
+	 * Removes a file.
+	 *
+	 * @param fileName the name of the file
+	 * @return the removed entry, or <tt>null</tt> if the file was not in the catalog
+	 */
+	public Entry remove(String fileName) {
+		return entries.remove(fileName);
+	}
+
+	public boolean contains(String fileName) {
+		return entries.containsKey(fileName);
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+}
@@ -0,0 +1,61 @@
+package com.shiyan.main;
+
+import java.util.ArrayDeque;
+
+/**
+ * Queue of the cloudlet schedulers of a datacenter that have finished cloudlets to return.
+ * 有已完成云任务待返回的云任务调度器队列
+ * <p>
+ * A scheduler pushes itself every time one of its cloudlets finishes (see
+ * {@link CloudletScheduler#notifyCloudletFinished()}), so the datacenter only visits the schedulers with
+ * something to return, in the order their cloudlets finished, instead of every VM of every host. A
+ * scheduler is pushed once per finished cloudlet: the entries left after its finished list is emptied find
+ * nothing, and checking costs {@code O(f)} for {@code f} finished cloudlets.
+ * <p>
+ * Pushing is thread-safe, for the hosts a {@link PowerDatacenter} updates in parallel.
+ *
+ * @see Datacenter#checkCloudletCompletion()
+ */
+public class FinishedCloudletQueue {
+
+	/** The schedulers, in the order their cloudlets finished. */
+	private final ArrayDeque<CloudletScheduler> schedulers = new ArrayDeque<CloudletScheduler>();
+
+	/**
+	 * Queues a scheduler that has just finished a cloudlet.
+	 *
+	 * @param scheduler the scheduler
+	 */
+	public synchronized void push(CloudletScheduler scheduler) {
+		schedulers.add(scheduler);
+	}
+
+	/**
+	 * Removes and returns the scheduler that finished a cloudlet first.
+	 *
+	 * @return the scheduler, or <tt>null</tt> if the queue is empty
+	 */
+	public CloudletScheduler poll() {
+		return schedulers.poll();
+	}
+
+	/**
+	 * Removes the schedulers queued after the queue had a given size.
+	 *
+	 * @param size the size to go back to
+	 */
+	public void truncate(int size) {
+		while (schedulers.size() > size) {
+			schedulers.pollLast();
+		}
+	}
+
+	public boolean isEmpty() {
+		return schedulers.isEmpty();
+	}
+
+	public int size() {
+		return schedulers.size();
+	}
+
+}
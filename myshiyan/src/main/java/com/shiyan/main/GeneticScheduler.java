@@ -0,0 +1,321 @@
+package com.shiyan.main;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Genetic search over cloudlet-to-VM mappings for offline batch planning.
+ * 基于遗传算法的任务调度
+ * <p>
+ * Individuals are {@code int[]} mappings scored by a {@link MappingFitness}. Each generation keeps the
+ * best individuals unchanged (elitism) and breeds the rest by tournament selection, uniform crossover and
+ * random reassignment. The fitness of a generation is evaluated in parallel on a {@link ForkJoinPool};
+ * the genetic operators draw from one seeded {@link Random}, so a search with an iteration budget is
+ * reproducible whatever the parallelism.
+ * <p>
+ * The search stops when either budget is spent: a maximum number of generations or a wall-clock time
+ * limit. When a seed mapping is given (e.g. the Min-Min result) it is part of the first generation and
+ * the result is never worse than the seed.
+ *
+ * @see DatacenterBroker#bindCloudletsToVmsGA(int, long)
+ */
+public class GeneticScheduler {
+
+	/** The fitness of the individuals. */
+	private final MappingFitness fitness;
+
+	/** The source of randomness of the genetic operators. */
+	private final Random random;
+
+	private int populationSize = 64;
+
+	private int eliteCount = 2;
+
+	private int tournamentSize = 3;
+
+	private double crossoverRate = 0.9;
+
+	/** Probability that a gene is reassigned; 0 means one gene per offspring on average. */
+	private double mutationRate = 0.0;
+
+	private int maxGenerations = 1000;
+
+	private long timeLimit = Long.MAX_VALUE;
+
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+
+	/** Number of generations run by the last search. */
+	private int generations;
+
+	/** Fitness of the result of the last search. */
+	private double bestFitness;
+
+	/**
+	 * Creates a new genetic search.
+	 *
+	 * @param fitness the fitness of the mappings
+	 * @param seed the seed of the genetic operators
+	 */
+	public GeneticScheduler(MappingFitness fitness, long seed) {
+		this.fitness = fitness;
+		random = new Random(seed);
+	}
+
+	/**
+	 * Searches for the mapping with the largest fitness.
+	 *
+	 * @param seedMapping a mapping to start from, or <tt>null</tt> for a random first generation
+	 * @return the best mapping found
+	 */
+	public int[] search(int[] seedMapping) {
+		long start = System.currentTimeMillis();
+		int genes = fitness.getCloudletCount();
+		int vms = fitness.getVmCount();
+		double geneRate = mutationRate > 0 ? mutationRate : 1.0 / Math.max(genes, 1);
+
+		int[][] population = new int[populationSize][genes];
+		int[][] offspring = new int[populationSize][genes];
+		double[] scores = new double[populationSize];
+
+		// 初始种群：种子方案、种子方案的变异和随机方案各占一部分
+		for (int p = 0; p < populationSize; p++) {
+			if (seedMapping != null && p == 0) {
+				System.arraycopy(seedMapping, 0, population[p], 0, genes);
+			} else if (seedMapping != null && p < populationSize / 2) {
+				System.arraycopy(seedMapping, 0, population[p], 0, genes);
+				mutate(population[p], 0.05, vms);
+			} else {
+				for (int i = 0; i < genes; i++) {
+					population[p][i] = random.nextInt(vms);
+				}
+			}
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			pool.invoke(new EvaluateTask(population, scores, 0, populationSize));
+			int[] best = population[argMax(scores)].clone();
+			bestFitness = max(scores);
+			generations = 0;
+
+			while (generations < maxGenerations && System.currentTimeMillis() - start < timeLimit) {
+				sortByScore(population, scores);
+				for (int p = 0; p < eliteCount && p < populationSize; p++) {
+					System.arraycopy(population[p], 0, offspring[p], 0, genes);
+				}
+				for (int p = eliteCount; p < populationSize; p++) {
+					int[] mother = population[tournament(scores)];
+					int[] father = population[tournament(scores)];
+					int[] child = offspring[p];
+					if (random.nextDouble() < crossoverRate) {
+						for (int i = 0; i < genes; i++) {
+							child[i] = random.nextBoolean() ? mother[i] : father[i];
+						}
+					} else {
+						System.arraycopy(mother, 0, child, 0, genes);
+					}
+					mutate(child, geneRate, vms);
+				}
+
+				int[][] swap = population;
+				population = offspring;
+				offspring = swap;
+				pool.invoke(new EvaluateTask(population, scores, 0, populationSize));
+				generations++;
+
+				int leader = argMax(scores);
+				if (scores[leader] > bestFitness) {
+					bestFitness = scores[leader];
+					System.arraycopy(population[leader], 0, best, 0, genes);
+				}
+			}
+			return best;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Reassigns each gene to a random VM with the given probability.
+	 */
+	private void mutate(int[] mapping, double rate, int vms) {
+		for (int i = 0; i < mapping.length; i++) {
+			if (random.nextDouble() < rate) {
+				mapping[i] = random.nextInt(vms);
+			}
+		}
+	}
+
+	/**
+	 * Returns the index of the best of {@link #tournamentSize} random individuals.
+	 */
+	private int tournament(double[] scores) {
+		int winner = random.nextInt(scores.length);
+		for (int k = 1; k < tournamentSize; k++) {
+			int challenger = random.nextInt(scores.length);
+			if (scores[challenger] > scores[winner]) {
+				winner = challenger;
+			}
+		}
+		return winner;
+	}
+
+	/**
+	 * Moves the {@link #eliteCount} best individuals to the front of the population.
+	 */
+	private void sortByScore(int[][] population, double[] scores) {
+		for (int p = 0; p < eliteCount && p < scores.length; p++) {
+			int best = p;
+			for (int q = p + 1; q < scores.length; q++) {
+				if (scores[q] > scores[best]) {
+					best = q;
+				}
+			}
+			int[] individual = population[p];
+			population[p] = population[best];
+			population[best] = individual;
+			double score = scores[p];
+			scores[p] = scores[best];
+			scores[best] = score;
+		}
+	}
+
+	private static int argMax(double[] values) {
+		int best = 0;
+		for (int i = 1; i < values.length; i++) {
+			if (values[i] > values[best]) {
+				best = i;
+			}
+		}
+		return best;
+	}
+
+	private static double max(double[] values) {
+		return values[argMax(values)];
+	}
+
+	/**
+	 * Evaluates a slice of the population, splitting it in halves until slices are small.
+	 */
+	@SuppressWarnings("serial")
+	private class EvaluateTask extends RecursiveAction {
+
+		private final int[][] population;
+
+		private final double[] scores;
+
+		private final int from;
+
+		private final int to;
+
+		EvaluateTask(int[][] population, double[] scores, int from, int to) {
+			this.population = population;
+			this.scores = scores;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= 2) {
+				for (int p = from; p < to; p++) {
+					scores[p] = fitness.evaluate(population[p]);
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new EvaluateTask(population, scores, from, middle),
+					new EvaluateTask(population, scores, middle, to));
+		}
+
+	}
+
+	public int getPopulationSize() {
+		return populationSize;
+	}
+
+	public void setPopulationSize(int populationSize) {
+		this.populationSize = populationSize;
+	}
+
+	public int getEliteCount() {
+		return eliteCount;
+	}
+
+	public void setEliteCount(int eliteCount) {
+		this.eliteCount = eliteCount;
+	}
+
+	public int getTournamentSize() {
+		return tournamentSize;
+	}
+
+	public void setTournamentSize(int tournamentSize) {
+		this.tournamentSize = tournamentSize;
+	}
+
+	public double getCrossoverRate() {
+		return crossoverRate;
+	}
+
+	public void setCrossoverRate(double crossoverRate) {
+		this.crossoverRate = crossoverRate;
+	}
+
+	public double getMutationRate() {
+		return mutationRate;
+	}
+
+	public void setMutationRate(double mutationRate) {
+		this.mutationRate = mutationRate;
+	}
+
+	public int getMaxGenerations() {
+		return maxGenerations;
+	}
+
+	/**
+	 * Sets the iteration budget.
+	 *
+	 * @param maxGenerations the maximum number of generations
+	 */
+	public void setMaxGenerations(int maxGenerations) {
+		this.maxGenerations = maxGenerations;
+	}
+
+	public long getTimeLimit() {
+		return timeLimit;
+	}
+
+	/**
+	 * Sets the time budget.
+	 *
+	 * @param timeLimit the wall-clock time limit of a search, in milliseconds
+	 */
+	public void setTimeLimit(long timeLimit) {
+		this.timeLimit = timeLimit;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Sets the number of threads evaluating the fitness.
+	 *
+	 * @param parallelism the number of threads
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	public int getGenerations() {
+		return generations;
+	}
+
+	public double getBestFitness() {
+		return bestFitness;
+	}
+
+}
@@ -0,0 +1,399 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package com.shiyan.main;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An implementation of a hard drive. The hard drive is characterized by its capacity, its maximum
+ * transfer rate, its average seek time and its latency; adding, getting or deleting a file takes the
+ * average seek time, the latency and its size over the transfer rate.
+ * 硬盘存储：按寻道时间、延迟和传输速率计算文件操作时间
+ * <p>
+ * The files are kept in a hash map by name, in the order they were added, so getting, checking, adding
+ * and deleting a file do not scan the stored files.
+ *
+ * @author Uros Cibej
+ * @author Anthony Sulistio
+ * @since CloudSim Toolkit 1.0
+ */
+public class HarddriveStorage implements Storage {
+
+	/** The files on the hard drive by name, in the order they were added. */
+	private final Map<String, File> fileMap;
+
+	/** The name of the hard drive. */
+	private final String name;
+
+	/** The maximum transfer rate in MB/sec. */
+	private double maxTransferRate;
+
+	/** The total capacity of the hard drive in MB. */
+	private final double capacity;
+
+	/** The current size of the stored files in MB, including the reserved space. */
+	private double currentSize;
+
+	/** The latency of the hard drive in seconds. */
+	private double latency;
+
+	/** The average seek time of the hard drive in seconds. */
+	private double avgSeekTime;
+
+	/**
+	 * Creates a new hard drive storage with a given name and capacity, and the characteristics of a
+	 * Maxtor DiamonMax 10 ATA hard drive: a latency of 4.17 ms, an average seek time of 9 ms and a maximum
+	 * transfer rate of 133 MB/sec.
+	 *
+	 * @param name the name of the new hard drive storage
+	 * @param capacity the capacity in MByte
+	 * @throws ParameterException when the name or the capacity is not valid
+	 */
+	public HarddriveStorage(String name, double capacity) throws ParameterException {
+		if (name == null || name.length() == 0) {
+			throw new ParameterException(getClass().getSimpleName() + "(): Error - invalid storage name.");
+		}
+		if (capacity <= 0) {
+			throw new ParameterException(getClass().getSimpleName() + "(): Error - capacity <= 0.");
+		}
+		this.name = name;
+		this.capacity = capacity;
+		fileMap = new LinkedHashMap<String, File>();
+		latency = 0.00417;
+		avgSeekTime = 0.009;
+		maxTransferRate = 133;
+	}
+
+	/**
+	 * Creates a new hard drive storage with a given capacity and a default name.
+	 *
+	 * @param capacity the capacity in MByte
+	 * @throws ParameterException when the capacity is not valid
+	 */
+	public HarddriveStorage(double capacity) throws ParameterException {
+		this("HarddriveStorage", capacity);
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public double getCapacity() {
+		return capacity;
+	}
+
+	@Override
+	public double getCurrentSize() {
+		return currentSize;
+	}
+
+	@Override
+	public double getAvailableSpace() {
+		return capacity - currentSize;
+	}
+
+	@Override
+	public boolean isFull() {
+		return Math.abs(currentSize - capacity) < .0000001;
+	}
+
+	@Override
+	public int getNumStoredFile() {
+		return fileMap.size();
+	}
+
+	@Override
+	public boolean reserveSpace(int fileSize) {
+		if (fileSize <= 0 || currentSize + fileSize > capacity) {
+			return false;
+		}
+		currentSize += fileSize;
+		return true;
+	}
+
+	@Override
+	public double addReservedFile(File file) {
+		if (file == null) {
+			return 0;
+		}
+		currentSize -= file.getSize();
+		double result = addFile(file);
+
+		// if add file fails, then set the current size back to its old value
+		if (result == 0.0) {
+			currentSize += file.getSize();
+		}
+		return result;
+	}
+
+	@Override
+	public boolean hasPotentialAvailableSpace(int fileSize) {
+		if (fileSize <= 0) {
+			return false;
+		}
+		if (getAvailableSpace() > fileSize) {
+			return true;
+		}
+
+		// the files that are not master copies could be deleted to make space
+		int deletedFileSize = 0;
+		for (File file : fileMap.values()) {
+			if (!file.isReadOnly()) {
+				deletedFileSize += file.getSize();
+			}
+			if (deletedFileSize > fileSize) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Sets the latency of this hard drive in seconds.
+	 *
+	 * @param latency the new latency in seconds
+	 * @return <tt>true</tt> if the setting succeeded, <tt>false</tt> otherwise
+	 */
+	public boolean setLatency(double latency) {
+		if (latency < 0) {
+			return false;
+		}
+		this.latency = latency;
+		return true;
+	}
+
+	/**
+	 * Gets the latency of this hard drive in seconds.
+	 *
+	 * @return the latency in seconds
+	 */
+	public double getLatency() {
+		return latency;
+	}
+
+	@Override
+	public boolean setMaxTransferRate(int rate) {
+		if (rate <= 0) {
+			return false;
+		}
+		maxTransferRate = rate;
+		return true;
+	}
+
+	@Override
+	public double getMaxTransferRate() {
+		return maxTransferRate;
+	}
+
+	/**
+	 * Sets the average seek time of the hard drive in seconds.
+	 *
+	 * @param seekTime the average seek time in seconds
+	 * @return <tt>true</tt> if the setting succeeded, <tt>false</tt> otherwise
+	 */
+	public boolean setAvgSeekTime(double seekTime) {
+		if (seekTime <= 0.0) {
+			return false;
+		}
+		avgSeekTime = seekTime;
+		return true;
+	}
+
+	/**
+	 * Gets the average seek time of the hard drive in seconds.
+	 *
+	 * @return the average seek time in seconds
+	 */
+	public double getAvgSeekTime() {
+		return avgSeekTime;
+	}
+
+	@Override
+	public File getFile(String fileName) {
+		if (fileName == null || fileName.length() == 0) {
+			Log.printConcatLine(name, ".getFile(): Warning - invalid file name.");
+			return null;
+		}
+		File file = fileMap.get(fileName);
+		if (file != null) {
+			file.setTransactionTime(getSeekTime(file.getSize()) + getTransferTime(file.getSize()));
+		}
+		return file;
+	}
+
+	@Override
+	public List<String> getFileNameList() {
+		return new ArrayList<String>(fileMap.keySet());
+	}
+
+	/**
+	 * Gets the time to find a file on the hard drive: the average seek time for a file with a size, and
+	 * the latency of the drive.
+	 *
+	 * @param fileSize the size of the file in MB
+	 * @return the seek time in seconds
+	 */
+	protected double getSeekTime(int fileSize) {
+		double result = 0;
+		if (fileSize > 0) {
+			result = avgSeekTime;
+		}
+		return result + latency;
+	}
+
+	/**
+	 * Gets the time to read or write a file at the maximum transfer rate.
+	 *
+	 * @param fileSize the size of the file in MB
+	 * @return the transfer time in seconds
+	 */
+	protected double getTransferTime(int fileSize) {
+		double result = 0;
+		if (fileSize > 0) {
+			result = fileSize / maxTransferRate;
+		}
+		return result;
+	}
+
+	/**
+	 * Checks if a file is valid: not <tt>null</tt> and with a name.
+	 *
+	 * @param file the file to check
+	 * @param methodName the name of the calling method, for the warning
+	 * @return <tt>true</tt> if the file is valid, <tt>false</tt> otherwise
+	 */
+	private boolean isFileValid(File file, String methodName) {
+		if (file == null) {
+			Log.printConcatLine(name, ".", methodName, ": Warning - the given file is null.");
+			return false;
+		}
+		String fileName = file.getName();
+		if (fileName == null || fileName.length() == 0) {
+			Log.printConcatLine(name, ".", methodName, ": Warning - invalid file name.");
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public double addFile(File file) {
+		double result = 0.0;
+		if (!isFileValid(file, "addFile()")) {
+			return result;
+		}
+
+		// check the capacity
+		if (file.getSize() + currentSize > capacity) {
+			Log.printConcatLine(name, ".addFile(): Warning - not enough space to store ", file.getName());
+			return result;
+		}
+
+		// check if the same file name is alredy taken
+		if (!contains(file.getName())) {
+			result = getSeekTime(file.getSize()) + getTransferTime(file.getSize());
+			fileMap.put(file.getName(), file);
+			currentSize += file.getSize();
+		}
+
+		file.setTransactionTime(result);
+		return result;
+	}
+
+	@Override
+	public double addFile(List<File> list) {
+		double result = 0.0;
+		if (list == null || list.isEmpty()) {
+			Log.printConcatLine(name, ".addFile(): Warning - list is empty.");
+			return result;
+		}
+
+		Iterator<File> it = list.iterator();
+		while (it.hasNext()) {
+			result += addFile(it.next());
+		}
+		return result;
+	}
+
+	@Override
+	public File deleteFile(String fileName) {
+		if (fileName == null || fileName.length() == 0) {
+			return null;
+		}
+		File file = fileMap.get(fileName);
+		if (file != null) {
+			deleteFile(file);
+		}
+		return file;
+	}
+
+	@Override
+	public double deleteFile(String fileName, File file) {
+		if (file == null) {
+			file = deleteFile(fileName);
+			return file == null ? 0.0 : file.getTransactionTime();
+		}
+		return deleteFile(file);
+	}
+
+	@Override
+	public double deleteFile(File file) {
+		double result = 0.0;
+		if (!isFileValid(file, "deleteFile()")) {
+			return result;
+		}
+
+		// only the stored file itself is deleted, not another file with the same name
+		if (fileMap.get(file.getName()) == file) {
+			fileMap.remove(file.getName());
+			currentSize -= file.getSize();
+			result = getSeekTime(file.getSize()) + getTransferTime(file.getSize());
+			file.setTransactionTime(result);
+		}
+		return result;
+	}
+
+	@Override
+	public boolean contains(String fileName) {
+		if (fileName == null || fileName.length() == 0) {
+			Log.printConcatLine(name, ".contains(): Warning - invalid file name");
+			return false;
+		}
+		return fileMap.containsKey(fileName);
+	}
+
+	@Override
+	public boolean contains(File file) {
+		if (!isFileValid(file, "contains()")) {
+			return false;
+		}
+		return contains(file.getName());
+	}
+
+	@Override
+	public boolean renameFile(File file, String newName) {
+		if (newName == null || newName.length() == 0 || contains(newName)) {
+			return false;
+		}
+		if (!isFileValid(file, "renameFile()") || fileMap.get(file.getName()) != file) {
+			return false;
+		}
+		fileMap.remove(file.getName());
+		file.setName(newName);
+		fileMap.put(newName, file);
+		file.setTransactionTime(0);
+		return true;
+	}
+
+}
@@ -0,0 +1,498 @@
+package com.shiyan.main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import com.shiyan.models.Vm;
+import com.shiyan.models.WorkflowCloudlet;
+import com.shiyan.util.LatencyHistogram;
+
+/**
+ * List scheduling of workflow tasks on heterogeneous VMs: HEFT and CPOP.
+ * 工作流任务的列表调度算法（HEFT和CPOP）
+ * <p>
+ * The mean execution time of a task is its length times the mean of {@code 1 / mips} over the VMs, and the
+ * mean transfer time of an edge its data size over the mean VM bandwidth. The upward rank of a task is its
+ * mean execution time plus the largest mean transfer time and upward rank among its children; it is
+ * computed in one pass over the tasks in reverse topological order. CPOP also needs the downward rank,
+ * computed in one pass in topological order.
+ * <ul>
+ * <li>{@link #HEFT} places the tasks by decreasing upward rank, each on the VM that finishes it first.
+ * <li>{@link #CPOP} places the ready task with the largest upward plus downward rank first. The tasks of the
+ * critical path all go to the VM that runs the whole path fastest, the others to the VM that finishes them
+ * first.
+ * </ul>
+ * A task may start on a VM once the VM is free and the data of every parent has arrived; data sent between
+ * different VMs takes {@link #transferTime(double, Vm, Vm)}. The placement is insertion based: every VM
+ * keeps its busy slots sorted by start time and a task may take an idle gap between two planned tasks if it
+ * fits. The gap search starts with a binary search at the data-ready time and stops as soon as the VM can no
+ * longer beat the best finish time found on the other VMs.
+ * <p>
+ * Ties go to the task that comes first in topological order (the order of the given list among ready
+ * tasks) and to the VM that comes first in the VM list.
+ *
+ * @see WorkflowBroker#bindCloudletsToVmsHEFT()
+ */
+public class HeftScheduler {
+
+	/** Heterogeneous Earliest Finish Time. */
+	public static final int HEFT = 0;
+
+	/** Critical Path On a Processor. */
+	public static final int CPOP = 1;
+
+	/** Relative tolerance when following the critical path by rank. */
+	private static final double RANK_TOLERANCE = 1e-9;
+
+	/** The VMs the tasks are placed on. */
+	private final List<? extends Vm> vmList;
+
+	/** The time at which every VM is ready. */
+	private final double currentTime;
+
+	private int policy = HEFT;
+
+	/** The tasks of the last run, in topological order. */
+	private WorkflowCloudlet[] tasks;
+
+	/** The VM position, planned start and planned finish of each task of the last run, in topological order. */
+	private int[] taskVm;
+
+	private double[] taskStart;
+
+	private double[] taskFinish;
+
+	/** The upward rank of each task of the last run, in topological order. */
+	private double[] upwardRank;
+
+	/** The position of each task of the last run in {@link #tasks}. */
+	private Map<WorkflowCloudlet, Integer> taskIndex;
+
+	/** Where the latency of each placement is recorded, or <tt>null</tt>. */
+	private LatencyHistogram decisionLatency;
+
+	/** The time of the previous placement, in nanoseconds. */
+	private long lastDecisionTime;
+
+	/**
+	 * Creates a new scheduler whose VMs all become ready at the given time.
+	 *
+	 * @param vmList the VMs tasks can be placed on
+	 * @param currentTime the time at which every VM is ready
+	 */
+	public HeftScheduler(List<? extends Vm> vmList, double currentTime) {
+		if (vmList.isEmpty()) {
+			throw new IllegalArgumentException("At least one VM is needed");
+		}
+		this.vmList = vmList;
+		this.currentTime = currentTime;
+	}
+
+	/**
+	 * Gets the time it takes to send data from a task on one VM to a task on another VM.
+	 *
+	 * @param dataSize the size of the data, in bandwidth units times seconds
+	 * @param from the VM of the sending task
+	 * @param to the VM of the receiving task
+	 * @return the transfer time, 0 on the same VM
+	 */
+	public static double transferTime(double dataSize, Vm from, Vm to) {
+		if (from == to || dataSize <= 0) {
+			return 0.0;
+		}
+		return dataSize / Math.min(from.getBw(), to.getBw());
+	}
+
+	/**
+	 * Places the given workflow tasks on VMs and binds each of them to its VM. The parents of every task
+	 * must be in the list, and the edges must not form a cycle.
+	 *
+	 * @param cloudletList the tasks
+	 * @return the tasks by planned start time
+	 */
+	public List<WorkflowCloudlet> schedule(List<? extends WorkflowCloudlet> cloudletList) {
+		lastDecisionTime = System.nanoTime();
+		int n = cloudletList.size();
+		int m = vmList.size();
+		topologicalSort(cloudletList);
+
+		// 任务的平均执行时间和边的平均传输时间
+		double meanInverseMips = 0.0;
+		double meanBw = 0.0;
+		double[] mips = new double[m];
+		double[] bw = new double[m];
+		for (int j = 0; j < m; j++) {
+			mips[j] = vmList.get(j).getMips();
+			bw[j] = vmList.get(j).getBw();
+			meanInverseMips += 1.0 / mips[j] / m;
+			meanBw += bw[j] / m;
+		}
+		double transferFactor = m > 1 && meanBw > 0 ? 1.0 / meanBw : 0.0;
+
+		// 按逆拓扑序一次计算所有任务的向上排序值
+		upwardRank = new double[n];
+		for (int i = n - 1; i >= 0; i--) {
+			WorkflowCloudlet task = tasks[i];
+			double successors = 0.0;
+			List<WorkflowCloudlet> children = task.getChildren();
+			for (int c = 0; c < children.size(); c++) {
+				double rank = task.getChildData(c) * transferFactor + upwardRank[taskIndex.get(children.get(c))];
+				if (rank > successors) {
+					successors = rank;
+				}
+			}
+			upwardRank[i] = task.getCloudletLength() * meanInverseMips + successors;
+		}
+
+		taskVm = new int[n];
+		taskStart = new double[n];
+		taskFinish = new double[n];
+		SlotList[] slots = new SlotList[m];
+		for (int j = 0; j < m; j++) {
+			slots[j] = new SlotList();
+		}
+		double[] dataReady = new double[m];
+
+		if (policy == CPOP) {
+			scheduleCpop(meanInverseMips, transferFactor, mips, slots, dataReady);
+		} else {
+			Integer[] order = new Integer[n];
+			for (int i = 0; i < n; i++) {
+				order[i] = i;
+			}
+			// 按向上排序值从大到小调度，相同时按拓扑序，保证父任务先于子任务
+			Arrays.sort(order, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer a, Integer b) {
+					int result = Double.compare(upwardRank[b], upwardRank[a]);
+					return result != 0 ? result : Integer.compare(a, b);
+				}
+			});
+			for (int i : order) {
+				place(i, -1, mips, slots, dataReady);
+			}
+		}
+
+		Integer[] byStart = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			byStart[i] = i;
+		}
+		Arrays.sort(byStart, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				int result = Double.compare(taskStart[a], taskStart[b]);
+				return result != 0 ? result : Integer.compare(a, b);
+			}
+		});
+		List<WorkflowCloudlet> result = new ArrayList<WorkflowCloudlet>(n);
+		for (int i : byStart) {
+			tasks[i].setVmId(vmList.get(taskVm[i]).getId());
+			result.add(tasks[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * CPOP: ready tasks by decreasing upward plus downward rank, critical path on one VM.
+	 */
+	private void scheduleCpop(double meanInverseMips, double transferFactor, double[] mips, SlotList[] slots,
+			double[] dataReady) {
+		int n = tasks.length;
+		// 按拓扑序一次计算所有任务的向下排序值
+		double[] downwardRank = new double[n];
+		final double[] priority = new double[n];
+		for (int i = 0; i < n; i++) {
+			WorkflowCloudlet task = tasks[i];
+			List<WorkflowCloudlet> parents = task.getParents();
+			for (int p = 0; p < parents.size(); p++) {
+				int parent = taskIndex.get(parents.get(p));
+				double rank = downwardRank[parent] + parents.get(p).getCloudletLength() * meanInverseMips
+						+ task.getParentData(p) * transferFactor;
+				if (rank > downwardRank[i]) {
+					downwardRank[i] = rank;
+				}
+			}
+			priority[i] = downwardRank[i] + upwardRank[i];
+		}
+
+		// 关键路径：从优先级最大的入口任务出发，沿优先级等于关键路径长度的子任务前进
+		boolean[] critical = new boolean[n];
+		int entry = -1;
+		for (int i = 0; i < n; i++) {
+			if (tasks[i].isEntry() && (entry < 0 || priority[i] > priority[entry])) {
+				entry = i;
+			}
+		}
+		double pathLength = entry < 0 ? 0.0 : priority[entry];
+		double tolerance = Math.abs(pathLength) * RANK_TOLERANCE;
+		for (int i = entry; i >= 0;) {
+			critical[i] = true;
+			int next = -1;
+			for (WorkflowCloudlet child : tasks[i].getChildren()) {
+				int c = taskIndex.get(child);
+				if (Math.abs(priority[c] - pathLength) <= tolerance && (next < 0 || c < next)) {
+					next = c;
+				}
+			}
+			i = next;
+		}
+		int criticalVm = 0;
+		double criticalWork = Double.MAX_VALUE;
+		for (int j = 0; j < mips.length; j++) {
+			double work = 0.0;
+			for (int i = 0; i < n; i++) {
+				if (critical[i]) {
+					work += tasks[i].getCloudletLength() / mips[j];
+				}
+			}
+			if (work < criticalWork) {
+				criticalWork = work;
+				criticalVm = j;
+			}
+		}
+
+		int[] waitingParents = new int[n];
+		PriorityQueue<Integer> ready = new PriorityQueue<Integer>(Math.max(n, 1), new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				int result = Double.compare(priority[b], priority[a]);
+				return result != 0 ? result : Integer.compare(a, b);
+			}
+		});
+		for (int i = 0; i < n; i++) {
+			waitingParents[i] = tasks[i].getParents().size();
+			if (waitingParents[i] == 0) {
+				ready.add(i);
+			}
+		}
+		while (!ready.isEmpty()) {
+			int i = ready.poll();
+			place(i, critical[i] ? criticalVm : -1, mips, slots, dataReady);
+			for (WorkflowCloudlet child : tasks[i].getChildren()) {
+				int c = taskIndex.get(child);
+				if (--waitingParents[c] == 0) {
+					ready.add(c);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Places a task on the given VM, or on the VM that finishes it first when the VM is -1.
+	 */
+	private void place(int i, int fixedVm, double[] mips, SlotList[] slots, double[] dataReady) {
+		WorkflowCloudlet task = tasks[i];
+		int m = mips.length;
+		// 每个虚拟机上父任务数据全部到达的时间
+		Arrays.fill(dataReady, currentTime);
+		List<WorkflowCloudlet> parents = task.getParents();
+		for (int p = 0; p < parents.size(); p++) {
+			int parent = taskIndex.get(parents.get(p));
+			Vm parentVm = vmList.get(taskVm[parent]);
+			for (int j = 0; j < m; j++) {
+				double arrival = taskFinish[parent] + transferTime(task.getParentData(p), parentVm, vmList.get(j));
+				if (arrival > dataReady[j]) {
+					dataReady[j] = arrival;
+				}
+			}
+		}
+
+		int bestVm = -1;
+		double bestStart = 0.0;
+		double bestFinish = Double.MAX_VALUE;
+		for (int j = fixedVm < 0 ? 0 : fixedVm; j < (fixedVm < 0 ? m : fixedVm + 1); j++) {
+			double duration = task.getCloudletLength() / mips[j];
+			double start = slots[j].findStart(dataReady[j], duration, bestFinish);
+			if (start + duration < bestFinish) {
+				bestFinish = start + duration;
+				bestStart = start;
+				bestVm = j;
+			}
+		}
+		slots[bestVm].insert(bestStart, bestFinish);
+		taskVm[i] = bestVm;
+		taskStart[i] = bestStart;
+		taskFinish[i] = bestFinish;
+		if (decisionLatency != null) {
+			long now = System.nanoTime();
+			decisionLatency.record(now - lastDecisionTime);
+			lastDecisionTime = now;
+		}
+	}
+
+	/**
+	 * Orders the tasks topologically (Kahn), keeping the given order among tasks that are ready together.
+	 */
+	private void topologicalSort(List<? extends WorkflowCloudlet> cloudletList) {
+		int n = cloudletList.size();
+		Map<WorkflowCloudlet, Integer> position = new HashMap<WorkflowCloudlet, Integer>(n * 2);
+		for (int i = 0; i < n; i++) {
+			position.put(cloudletList.get(i), i);
+		}
+		int[] waitingParents = new int[n];
+		PriorityQueue<Integer> ready = new PriorityQueue<Integer>(Math.max(n, 1));
+		for (int i = 0; i < n; i++) {
+			for (WorkflowCloudlet parent : cloudletList.get(i).getParents()) {
+				if (!position.containsKey(parent)) {
+					throw new IllegalArgumentException("The parent #" + parent.getCloudletId() + " of cloudlet #"
+							+ cloudletList.get(i).getCloudletId() + " is not scheduled");
+				}
+			}
+			waitingParents[i] = cloudletList.get(i).getParents().size();
+			if (waitingParents[i] == 0) {
+				ready.add(i);
+			}
+		}
+		tasks = new WorkflowCloudlet[n];
+		taskIndex = new HashMap<WorkflowCloudlet, Integer>(n * 2);
+		int count = 0;
+		while (!ready.isEmpty()) {
+			int i = ready.poll();
+			tasks[count] = cloudletList.get(i);
+			taskIndex.put(tasks[count], count);
+			count++;
+			for (WorkflowCloudlet child : cloudletList.get(i).getChildren()) {
+				Integer c = position.get(child);
+				if (c != null && --waitingParents[c] == 0) {
+					ready.add(c);
+				}
+			}
+		}
+		if (count < n) {
+			throw new IllegalArgumentException("The workflow has a cycle");
+		}
+	}
+
+	/**
+	 * The busy slots of a VM, sorted by start time.
+	 */
+	private static class SlotList {
+
+		private double[] starts = new double[16];
+
+		private double[] finishes = new double[16];
+
+		private int size;
+
+		/**
+		 * Finds the earliest start not before the ready time of a gap that fits the duration. Returns
+		 * {@link Double#MAX_VALUE} if the task cannot finish before the limit.
+		 */
+		double findStart(double readyTime, double duration, double limit) {
+			// 二分查找第一个在就绪时间之后结束的时间段
+			int low = 0;
+			int high = size;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (finishes[middle] <= readyTime) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			double start = low > 0 ? Math.max(readyTime, finishes[low - 1]) : readyTime;
+			for (int k = low; k < size; k++) {
+				if (start + duration >= limit) {
+					return Double.MAX_VALUE;
+				}
+				if (start + duration <= starts[k]) {
+					return start;
+				}
+				start = Math.max(start, finishes[k]);
+			}
+			return start;
+		}
+
+		void insert(double start, double finish) {
+			if (size == starts.length) {
+				starts = Arrays.copyOf(starts, size * 2);
+				finishes = Arrays.copyOf(finishes, size * 2);
+			}
+			int k = size;
+			while (k > 0 && starts[k - 1] > start) {
+				k--;
+			}
+			System.arraycopy(starts, k, starts, k + 1, size - k);
+			System.arraycopy(finishes, k, finishes, k + 1, size - k);
+			starts[k] = start;
+			finishes[k] = finish;
+			size++;
+		}
+
+	}
+
+	/**
+	 * Sets the list scheduling policy.
+	 *
+	 * @param policy {@link #HEFT} or {@link #CPOP}
+	 */
+	public void setPolicy(int policy) {
+		if (policy != HEFT && policy != CPOP) {
+			throw new IllegalArgumentException("Unknown policy " + policy);
+		}
+		this.policy = policy;
+	}
+
+	public int getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * Sets where the latency of each placement is recorded: the time since the previous placement, or since
+	 * the start of {@link #schedule(List)} for the first one, ranking included.
+	 *
+	 * @param decisionLatency the histogram, or <tt>null</tt> not to record anything
+	 */
+	public void setDecisionLatency(LatencyHistogram decisionLatency) {
+		this.decisionLatency = decisionLatency;
+	}
+
+	/**
+	 * Gets the planned start time of a task of the last run.
+	 *
+	 * @param cloudlet the task
+	 * @return the planned start time
+	 */
+	public double getPlannedStart(WorkflowCloudlet cloudlet) {
+		return taskStart[taskIndex.get(cloudlet)];
+	}
+
+	/**
+	 * Gets the planned finish time of a task of the last run.
+	 *
+	 * @param cloudlet the task
+	 * @return the planned finish time
+	 */
+	public double getPlannedFinish(WorkflowCloudlet cloudlet) {
+		return taskFinish[taskIndex.get(cloudlet)];
+	}
+
+	/**
+	 * Gets the upward rank of a task of the last run.
+	 *
+	 * @param cloudlet the task
+	 * @return the upward rank
+	 */
+	public double getUpwardRank(WorkflowCloudlet cloudlet) {
+		return upwardRank[taskIndex.get(cloudlet)];
+	}
+
+	/**
+	 * Gets the planned makespan of the last run.
+	 *
+	 * @return the latest planned finish time
+	 */
+	public double getMakespan() {
+		double makespan = currentTime;
+		for (double finish : taskFinish) {
+			makespan = Math.max(makespan, finish);
+		}
+		return makespan;
+	}
+
+}
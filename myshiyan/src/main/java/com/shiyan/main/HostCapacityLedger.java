@@ -0,0 +1,116 @@
+package com.shiyan.main;
+
+import java.util.List;
+
+import com.shiyan.models.Host;
+import com.shiyan.models.Vm;
+
+/**
+ * Ledger of the free resources of a set of hosts, to know whether a datacenter can still create a VM.
+ * 主机剩余资源账本，用于判断数据中心是否还能创建虚拟机
+ * <p>
+ * The ledger starts from the resources the hosts have left, and every reservation takes a VM off them with
+ * the rules of {@link Host#vmCreate(Vm)} and {@link VmSchedulerTimeShared}: each PE of the VM needs no
+ * more MIPS than a PE of the host, and the host needs enough free MIPS, RAM, bandwidth and storage. The host
+ * is chosen as {@link VmAllocationPolicySimple} does, the one with the most free PEs among those that fit;
+ * on a tie, the first one. A reservation costs {@code O(h)} for {@code h} hosts. The hosts are not
+ * changed: the ledger only predicts their state once the reserved VMs are created.
+ *
+ * @see DatacenterBroker#provisionVm(com.shiyan.models.Cloudlet, VmFeasibilityIndex, java.util.Map, double)
+ */
+public class HostCapacityLedger {
+
+	/** The MIPS of a PE of each host. */
+	private final double[] peMips;
+
+	/** The free MIPS of each host. */
+	private final double[] freeMips;
+
+	/** The number of PEs of each host not used by a VM. */
+	private final int[] freePes;
+
+	/** The free RAM of each host. */
+	private final int[] freeRam;
+
+	/** The free bandwidth of each host. */
+	private final long[] freeBw;
+
+	/** The free storage of each host. */
+	private final long[] freeStorage;
+
+	/**
+	 * Creates a ledger of the resources the hosts have left.
+	 *
+	 * @param hosts the hosts
+	 */
+	public HostCapacityLedger(List<? extends Host> hosts) {
+		int hostCount = hosts.size();
+		peMips = new double[hostCount];
+		freeMips = new double[hostCount];
+		freePes = new int[hostCount];
+		freeRam = new int[hostCount];
+		freeBw = new long[hostCount];
+		freeStorage = new long[hostCount];
+		for (int h = 0; h < hostCount; h++) {
+			Host host = hosts.get(h);
+			peMips[h] = host.getVmScheduler().getPeCapacity();
+			freeMips[h] = host.getAvailableMips();
+			freePes[h] = host.getNumberOfPes();
+			for (Vm vm : host.getVmList()) {
+				freePes[h] -= vm.getNumberOfPes();
+			}
+			freeRam[h] = host.getRamProvisioner().getAvailableRam();
+			freeBw[h] = host.getBwProvisioner().getAvailableBw();
+			freeStorage[h] = host.getStorage();
+		}
+	}
+
+	/**
+	 * Reserves the resources of a VM.
+	 *
+	 * @param vm the VM
+	 * @return true if a host can still create the VM, false otherwise, in which case nothing is reserved
+	 */
+	public boolean reserve(Vm vm) {
+		return reserve(vm.getMips(), vm.getNumberOfPes(), vm.getRam(), vm.getBw(), vm.getSize());
+	}
+
+	/**
+	 * Reserves the resources of a VM.
+	 *
+	 * @param mips the MIPS of each PE of the VM
+	 * @param pes the number of PEs of the VM
+	 * @param ram the RAM of the VM
+	 * @param bw the bandwidth of the VM
+	 * @param size the image size of the VM
+	 * @return true if a host can still create the VM, false otherwise, in which case nothing is reserved
+	 */
+	public boolean reserve(double mips, int pes, int ram, long bw, long size) {
+		int best = -1;
+		for (int h = 0; h < peMips.length; h++) {
+			if (mips <= peMips[h] && mips * pes <= freeMips[h] && ram <= freeRam[h] && bw <= freeBw[h]
+					&& size <= freeStorage[h] && (best < 0 || freePes[h] > freePes[best])) {
+				best = h;
+			}
+		}
+		if (best < 0) {
+			return false;
+		}
+		freeMips[best] -= mips * pes;
+		freePes[best] -= pes;
+		freeRam[best] -= ram;
+		freeBw[best] -= bw;
+		freeStorage[best] -= size;
+		return true;
+	}
+
+	/**
+	 * Gets the number of hosts of the ledger.
+	 *
+	 * @return the number of hosts
+	 */
+	public int getHostCount() {
+		return peMips.length;
+	}
+
+}
@@ -10,30 +10,69 @@ package com.shiyan.main;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Logger used for performing logging of the simulation process. It provides the ability to
  * substitute the output stream by any OutputStream subclass.
+ * <p>
+ * Every message has a {@link Level} and may have a category, usually the simple name of the class that
+ * logs it; a message is written if its level is within the level of its category, or the global level for
+ * a category without its own. The print methods log at {@link Level#INFO} without category. A hot path
+ * checks {@link #isLoggable(String, Level)} before building the arguments of a message, so a filtered
+ * message allocates nothing.
+ * 日志分级别和类别过滤，可以异步写出
+ * <p>
+ * By default a message is written at once. After {@link #enableAsync(int)}, the messages are queued in a
+ * bounded ring buffer and written in batches by a background thread, which also does the concatenation and
+ * formatting of {@link #logConcat(String, Level, Object...)} and {@link #logFormat(String, Level, String, Object...)}:
+ * their arguments must not change after the call. A full buffer makes the caller wait, so no message is
+ * lost and the order is kept. {@link #flush()} waits until the queued messages are written; the buffer is
+ * also flushed at the end of a simulation and when the JVM exits.
  * 
  * @author Anton Beloglazov
  * @since CloudSim Toolkit 2.0
- * @todo To add a method to print formatted text, such as the 
- * {@link String#format(java.lang.String, java.lang.Object...)} method.
  */
 public class Log {
 
+	/**
+	 * The level of a message, from the most to the least important.
+	 * 日志级别
+	 */
+	public enum Level {
+		ERROR, WARNING, INFO, DEBUG
+	}
+
 	/** The Constant LINE_SEPARATOR. */
 	private static final String LINE_SEPARATOR = System.getProperty("line.separator");
 
+	/** The default capacity of the ring buffer of the asynchronous writer. */
+	public static final int DEFAULT_ASYNC_CAPACITY = 8192;
+
 	/** The stream where the log will the outputted. */
 	private static OutputStream output;
 
 	/** Indicates if the logger is disabled or not. If set to true,
          the call for any print method has no effect. */
-	private static boolean disabled;
-	
-	/** Buffer to avoid creating new string builder upon every print. */
-	private static StringBuilder buffer = new StringBuilder();		    
+	private static volatile boolean disabled;
+
+	/** The level of the messages without category, or of a category without its own level. */
+	private static volatile Level level = Level.INFO;
+
+	/** The levels of the categories that have their own. */
+	private static final Map<String, Level> categoryLevels = new ConcurrentHashMap<String, Level>();
+
+	/** The asynchronous writer, or <tt>null</tt> if the messages are written at once. */
+	private static volatile AsyncWriter asyncWriter;
+
+	/** Whether the hook flushing the asynchronous writer at the exit of the JVM is registered. */
+	private static boolean shutdownHookAdded;
+
+	/** The messages held back by the current thread, or <tt>null</tt> if it writes them. */
+	private static final ThreadLocal<List<Object>> heldMessages = new ThreadLocal<List<Object>>();
 
 	/**
 	 * Prints a message.
@@ -41,12 +80,8 @@ public class Log {
 	 * @param message the message
 	 */
 	public static void print(String message) {
-		if (!isDisabled()) {
-			try {
-				getOutput().write(message.getBytes());
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
+		if (isLoggable(null, Level.INFO)) {
+			emit(message);
 		}
 	}
 
@@ -56,7 +91,7 @@ public class Log {
 	 * @param message the message
 	 */
 	public static void print(Object message) {
-		if (!isDisabled()) {
+		if (isLoggable(null, Level.INFO)) {
 			print(String.valueOf(message));
 		}
 	}
@@ -67,7 +102,7 @@ public class Log {
 	 * @param message the message
 	 */
 	public static void printLine(String message) {
-		if (!isDisabled()) {
+		if (isLoggable(null, Level.INFO)) {
 			print(message + LINE_SEPARATOR);
 		}
 	}
@@ -76,7 +111,7 @@ public class Log {
 	 * Prints an empty line.
 	 */
 	public static void printLine() {
-		if (!isDisabled()) {
+		if (isLoggable(null, Level.INFO)) {
 			print(LINE_SEPARATOR);
 		}
 	}
@@ -88,12 +123,8 @@ public class Log {
 	 * @param messages the messages to print
 	 */
 	public static void printConcat(Object... messages) {
-		if (!isDisabled()) {
-			buffer.setLength(0); // Clear the buffer		    
-			for(int i = 0 ; i < messages.length ; i ++) {
-				buffer.append(String.valueOf(messages[i]));
-			}
-			print(buffer);
+		if (isLoggable(null, Level.INFO)) {
+			emit(new Message(null, messages, false));
 		}
 	}
 	
@@ -103,30 +134,26 @@ public class Log {
 	 * @param messages the messages to print
 	 */
 	public static void printConcatLine(Object... messages) {
-		if (!isDisabled()) {
-			buffer.setLength(0); // Clear the buffer		    
-			for(int i = 0 ; i < messages.length ; i ++) {
-				buffer.append(String.valueOf(messages[i]));
-			}
-			printLine(buffer);
+		if (isLoggable(null, Level.INFO)) {
+			emit(new Message(null, messages, true));
 		}
 	}
 
-	
-	
+
+
 	/**
 	 * Prints the message passed as a non-String object and a new line.
 	 * 
 	 * @param message the message
 	 */
 	public static void printLine(Object message) {
-	    if (!isDisabled()) {
+	    if (isLoggable(null, Level.INFO)) {
 		printLine(String.valueOf(message));
 	    }
 	}
 
-	
-	
+
+
 	/**
 	 * Prints a string formated as in String.format().
 	 * 
@@ -134,8 +161,8 @@ public class Log {
 	 * @param args the args
 	 */
 	public static void format(String format, Object... args) {
-		if (!isDisabled()) {
-			print(String.format(format, args));
+		if (isLoggable(null, Level.INFO)) {
+			emit(new Message(format, args, false));
 		}
 	}
 
@@ -146,17 +173,390 @@ public class Log {
 	 * @param args the args
 	 */
 	public static void formatLine(String format, Object... args) {
-		if (!isDisabled()) {
-			printLine(String.format(format, args));
+		if (isLoggable(null, Level.INFO)) {
+			emit(new Message(format, args, true));
+		}
+	}
+
+	/**
+	 * Prints a message and a new line if its level is logged for its category.
+	 * 
+	 * @param category the category, or <tt>null</tt>
+	 * @param level the level
+	 * @param message the message
+	 */
+	public static void log(String category, Level level, String message) {
+		if (isLoggable(category, level)) {
+			emit(message + LINE_SEPARATOR);
+		}
+	}
+
+	/**
+	 * Prints the concatenated text representation of the arguments and a new line if their level is logged
+	 * for their category.
+	 * 
+	 * @param category the category, or <tt>null</tt>
+	 * @param level the level
+	 * @param messages the messages to print
+	 */
+	public static void logConcat(String category, Level level, Object... messages) {
+		if (isLoggable(category, level)) {
+			emit(new Message(null, messages, true));
+		}
+	}
+
+	/**
+	 * Prints a string formated as in String.format(), followed by a new line, if its level is logged for
+	 * its category.
+	 * 
+	 * @param category the category, or <tt>null</tt>
+	 * @param level the level
+	 * @param format the format
+	 * @param args the args
+	 */
+	public static void logFormat(String category, Level level, String format, Object... args) {
+		if (isLoggable(category, level)) {
+			emit(new Message(format, args, true));
 		}
 	}
 
 	/**
-	 * Sets the output stream.
+	 * Checks if the messages of a level are logged for a category.
+	 * 
+	 * @param category the category, or <tt>null</tt> for the global level
+	 * @param level the level
+	 * @return true, if the messages are logged
+	 */
+	public static boolean isLoggable(String category, Level level) {
+		return !isDisabled() && level.compareTo(getLevel(category)) <= 0;
+	}
+
+	/**
+	 * Writes a message at once, or queues it for the asynchronous writer.
+	 * 
+	 * @param message a String, or a {@link Message} to render
+	 */
+	private static void emit(Object message) {
+		List<Object> held = heldMessages.get();
+		if (held != null) {
+			held.add(message);
+			return;
+		}
+		AsyncWriter writer = asyncWriter;
+		if (writer != null && writer.add(message)) {
+			return;
+		}
+		synchronized (Log.class) {
+			try {
+				getOutput().write(render(message).getBytes());
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private static String render(Object message) {
+		return message instanceof Message ? ((Message) message).render() : (String) message;
+	}
+
+	/**
+	 * A message whose concatenation or formatting is deferred until it is written.
+	 */
+	private static final class Message {
+
+		/** The format, or <tt>null</tt> to concatenate the arguments. */
+		private final String format;
+
+		private final Object[] args;
+
+		private final boolean newLine;
+
+		Message(String format, Object[] args, boolean newLine) {
+			this.format = format;
+			this.args = args;
+			this.newLine = newLine;
+		}
+
+		String render() {
+			StringBuilder text = new StringBuilder();
+			if (format != null) {
+				text.append(String.format(format, args));
+			} else {
+				for (Object arg : args) {
+					text.append(String.valueOf(arg));
+				}
+			}
+			if (newLine) {
+				text.append(LINE_SEPARATOR);
+			}
+			return text.toString();
+		}
+
+	}
+
+	/**
+	 * The background thread writing the queued messages in batches. The messages are kept in a bounded ring
+	 * buffer: a caller waits while the buffer is full, and writes its message itself once the thread is
+	 * terminated. A message that cannot be rendered is reported and skipped.
+	 * 异步写日志的后台线程
+	 */
+	private static final class AsyncWriter extends Thread {
+
+		private final Object[] ring;
+
+		/** The index of the oldest queued message. */
+		private int head;
+
+		/** The number of queued messages. */
+		private int size;
+
+		/** The number of messages queued so far. */
+		private long queued;
+
+		/** The number of messages written so far. */
+		private long written;
+
+		private boolean stopped;
+
+		/** Whether the thread has terminated, so no more message is written. */
+		private boolean terminated;
+
+		AsyncWriter(int capacity) {
+			super("Log writer");
+			setDaemon(true);
+			ring = new Object[capacity];
+		}
+
+		/**
+		 * Queues a message, waiting while the buffer is full.
+		 * 
+		 * @param message the message
+		 * @return <tt>false</tt> if the message was not queued, because the thread is terminated or the
+		 *         caller was interrupted
+		 */
+		synchronized boolean add(Object message) {
+			while (size == ring.length && !terminated) {
+				if (!waitUninterruptibly()) {
+					break;
+				}
+			}
+			if (terminated || size == ring.length) {
+				return false;
+			}
+			ring[(head + size) % ring.length] = message;
+			size++;
+			queued++;
+			if (size == 1) {
+				notifyAll();
+			}
+			return true;
+		}
+
+		/** Waits until every message queued so far is written. */
+		synchronized void flush() {
+			long target = queued;
+			while (written < target && !terminated) {
+				if (!waitUninterruptibly()) {
+					return;
+				}
+			}
+		}
+
+		/** Writes the queued messages and stops the thread. */
+		void shutdown() {
+			synchronized (this) {
+				stopped = true;
+				notifyAll();
+			}
+			try {
+				join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				writeBatches();
+			} finally {
+				synchronized (this) {
+					terminated = true;
+					notifyAll();
+				}
+			}
+		}
+
+		private void writeBatches() {
+			Object[] batch = new Object[ring.length];
+			StringBuilder text = new StringBuilder();
+			while (true) {
+				int count;
+				synchronized (this) {
+					while (size == 0 && !stopped) {
+						waitUninterruptibly();
+					}
+					if (size == 0) {
+						return;
+					}
+					count = size;
+					for (int i = 0; i < count; i++) {
+						int slot = (head + i) % ring.length;
+						batch[i] = ring[slot];
+						ring[slot] = null;
+					}
+					head = (head + count) % ring.length;
+					size = 0;
+					notifyAll();
+				}
+				text.setLength(0);
+				for (int i = 0; i < count; i++) {
+					try {
+						text.append(render(batch[i]));
+					} catch (RuntimeException e) {
+						e.printStackTrace();
+					}
+					batch[i] = null;
+				}
+				try {
+					OutputStream out = getOutput();
+					out.write(text.toString().getBytes());
+					out.flush();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+				synchronized (this) {
+					written += count;
+					notifyAll();
+				}
+			}
+		}
+
+		/**
+		 * Waits on this writer, keeping the interrupt status of the thread.
+		 * 
+		 * @return <tt>false</tt> if the thread was interrupted
+		 */
+		private boolean waitUninterruptibly() {
+			try {
+				wait();
+				return true;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+
+	}
+
+	/**
+	 * Holds back the messages of the current thread until {@link #releaseMessages()}, for a task that runs
+	 * in parallel with others and whose messages are written later in a fixed order.
+	 */
+	public static void holdMessages() {
+		heldMessages.set(new ArrayList<Object>());
+	}
+
+	/**
+	 * Stops holding back the messages of the current thread.
+	 * 
+	 * @return the messages held back since {@link #holdMessages()}, to give to {@link #writeMessages(List)}
+	 */
+	public static List<?> releaseMessages() {
+		List<Object> held = heldMessages.get();
+		heldMessages.remove();
+		return held;
+	}
+
+	/**
+	 * Writes messages held back by {@link #holdMessages()}, in their order.
+	 * 
+	 * @param messages the messages, or <tt>null</tt>
+	 */
+	public static void writeMessages(List<?> messages) {
+		if (messages == null) {
+			return;
+		}
+		for (int i = 0; i < messages.size(); i++) {
+			emit(messages.get(i));
+		}
+	}
+
+	/**
+	 * Writes the messages in batches on a background thread from now on.
+	 * 
+	 * @param capacity the number of messages the ring buffer holds
+	 */
+	public static synchronized void enableAsync(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("The capacity must be at least 1");
+		}
+		disableAsync();
+		asyncWriter = new AsyncWriter(capacity);
+		asyncWriter.start();
+		if (!shutdownHookAdded) {
+			shutdownHookAdded = true;
+			Runtime.getRuntime().addShutdownHook(new Thread("Log flush") {
+				@Override
+				public void run() {
+					disableAsync();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Writes the messages in batches on a background thread from now on, with a ring buffer of
+	 * {@link #DEFAULT_ASYNC_CAPACITY} messages.
+	 */
+	public static void enableAsync() {
+		enableAsync(DEFAULT_ASYNC_CAPACITY);
+	}
+
+	/**
+	 * Writes the queued messages, stops the background thread and writes the messages at once from now on.
+	 */
+	public static synchronized void disableAsync() {
+		AsyncWriter writer = asyncWriter;
+		if (writer != null) {
+			asyncWriter = null;
+			writer.shutdown();
+		}
+	}
+
+	/**
+	 * Checks if the messages are written by a background thread.
+	 * 
+	 * @return true, if the messages are written asynchronously
+	 */
+	public static boolean isAsync() {
+		return asyncWriter != null;
+	}
+
+	/**
+	 * Waits until the messages queued so far are written, and flushes the output stream.
+	 */
+	public static void flush() {
+		AsyncWriter writer = asyncWriter;
+		if (writer != null) {
+			writer.flush();
+		}
+		synchronized (Log.class) {
+			try {
+				getOutput().flush();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Sets the output stream. The queued messages are written to the previous one.
 	 * 
 	 * @param _output the new output
 	 */
 	public static void setOutput(OutputStream _output) {
+		flush();
 		output = _output;
 	}
 
@@ -167,11 +567,57 @@ public class Log {
 	 */
 	public static OutputStream getOutput() {
 		if (output == null) {
-			setOutput(System.out);
+			output = System.out;
 		}
 		return output;
 	}
 
+	/**
+	 * Sets the level of the messages without category, and of the categories without their own level.
+	 * 
+	 * @param level the level
+	 */
+	public static void setLevel(Level level) {
+		Log.level = level;
+	}
+
+	/**
+	 * Gets the level of the messages without category.
+	 * 
+	 * @return the global level
+	 */
+	public static Level getLevel() {
+		return level;
+	}
+
+	/**
+	 * Sets the level of a category.
+	 * 
+	 * @param category the category
+	 * @param level the level, or <tt>null</tt> to use the global level
+	 */
+	public static void setLevel(String category, Level level) {
+		if (level == null) {
+			categoryLevels.remove(category);
+		} else {
+			categoryLevels.put(category, level);
+		}
+	}
+
+	/**
+	 * Gets the level of a category.
+	 * 
+	 * @param category the category, or <tt>null</tt>
+	 * @return the level of the category, or the global level if it has none
+	 */
+	public static Level getLevel(String category) {
+		if (category == null || categoryLevels.isEmpty()) {
+			return level;
+		}
+		Level categoryLevel = categoryLevels.get(category);
+		return categoryLevel != null ? categoryLevel : level;
+	}
+
 	/**
 	 * Sets the disable output flag.
 	 * 
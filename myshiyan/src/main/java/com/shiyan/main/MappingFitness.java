@@ -0,0 +1,220 @@
+package com.shiyan.main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.shiyan.models.Cloudlet;
+import com.shiyan.models.Vm;
+
+/**
+ * Fitness of a static cloudlet-to-VM mapping, used by the metaheuristic schedulers.
+ * 任务映射方案的适应度计算
+ * <p>
+ * A mapping is an {@code int[]} whose element {@code i} is the position, in the VM list, of the VM the
+ * {@code i}-th cloudlet runs on. Every VM runs its cloudlets one after the other in cloudlet-list order,
+ * starting at the given start time, which is the ready-time model of the broker heuristics. The fitness
+ * combines:
+ * <ul>
+ * <li>the makespan;
+ * <li>the number of QoS violations, by the rules of {@link PrintResult#checkFinalQoS(Cloudlet, Vm)};
+ * <li>the provider profit as computed by {@link PrintResult}: 80% of the income of a satisfied cloudlet,
+ * minus 20% of the income of a violated one, 20% being {@link PrintResult#costFraction}.
+ * </ul>
+ * Each term is normalized by the value of a reference mapping (see {@link #setReference(int[])}), so the
+ * weights are comparable. Larger fitness is better.
+ * <p>
+ * The expected execution times (ETC) are precomputed once per distinct VM MIPS value, so the table stays
+ * {@code n * k} for {@code k} VM types. {@link #evaluate(int[])} only reads shared state and is safe to
+ * call from several threads at once.
+ *
+ * @see GeneticScheduler
+ */
+public class MappingFitness {
+
+	/** Number of cloudlets. */
+	private final int cloudletCount;
+
+	/** Number of VMs. */
+	private final int vmCount;
+
+	/** Number of distinct VM MIPS values. */
+	private final int speedCount;
+
+	/** The speed class of each VM, i.e. its column in {@link #etc}. */
+	private final int[] vmSpeed;
+
+	/** The cost per second of each VM. */
+	private final double[] vmCost;
+
+	/** The expected execution time of cloudlet {@code i} on speed class {@code k}, at {@code i * speedCount + k}. */
+	private final double[] etc;
+
+	/** The absolute deadline of each cloudlet. */
+	private final double[] deadline;
+
+	/** The budget of each cloudlet. */
+	private final double[] money;
+
+	/** The time at which every VM is ready. */
+	private final double startTime;
+
+	/** Income share the provider pays as running cost, {@link PrintResult#costFraction}. 服务商的执行成本比例 */
+	private final double costFraction = PrintResult.costFraction;
+
+	/** Per-thread VM ready times, so evaluations do not allocate. */
+	private final ThreadLocal<double[]> readyTimes;
+
+	/** Per-thread metrics buffer. */
+	private final ThreadLocal<double[]> metricsBuffer = new ThreadLocal<double[]>() {
+		@Override
+		protected double[] initialValue() {
+			return new double[3];
+		}
+	};
+
+	private double makespanWeight = 1.0;
+
+	private double violationWeight = 1.0;
+
+	private double profitWeight = 1.0;
+
+	private double referenceMakespan = 1.0;
+
+	private double referenceProfit = 1.0;
+
+	/**
+	 * Creates the fitness function of the given cloudlets on the given VMs.
+	 *
+	 * @param cloudletList the cloudlets, in the order they are dispatched
+	 * @param vmList the VMs; mapping values are positions in this list
+	 * @param startTime the time at which every VM is ready
+	 */
+	public MappingFitness(List<? extends Cloudlet> cloudletList, List<? extends Vm> vmList, double startTime) {
+		this.startTime = startTime;
+		cloudletCount = cloudletList.size();
+		vmCount = vmList.size();
+		vmSpeed = new int[vmCount];
+		vmCost = new double[vmCount];
+
+		List<Double> speeds = new ArrayList<Double>();
+		for (int j = 0; j < vmCount; j++) {
+			Vm vm = vmList.get(j);
+			int speed = speeds.indexOf(vm.getMips());
+			if (speed < 0) {
+				speed = speeds.size();
+				speeds.add(vm.getMips());
+			}
+			vmSpeed[j] = speed;
+			vmCost[j] = vm.getCostPerVm();
+		}
+		speedCount = speeds.size();
+
+		etc = new double[cloudletCount * speedCount];
+		deadline = new double[cloudletCount];
+		money = new double[cloudletCount];
+		for (int i = 0; i < cloudletCount; i++) {
+			Cloudlet cloudlet = cloudletList.get(i);
+			for (int k = 0; k < speedCount; k++) {
+				etc[i * speedCount + k] = cloudlet.getCloudletLength() / speeds.get(k);
+			}
+			deadline[i] = cloudlet.getStartSubmit() + cloudlet.getDeadlineTime();
+			money[i] = cloudlet.getUserMoney();
+		}
+
+		final int vms = vmCount;
+		readyTimes = new ThreadLocal<double[]>() {
+			@Override
+			protected double[] initialValue() {
+				return new double[vms];
+			}
+		};
+	}
+
+	/**
+	 * Computes the fitness of a mapping. Larger is better.
+	 *
+	 * @param mapping the VM position of each cloudlet
+	 * @return the weighted, normalized fitness
+	 */
+	public double evaluate(int[] mapping) {
+		double[] metrics = simulate(mapping, readyTimes.get(), metricsBuffer.get());
+		return profitWeight * metrics[2] / referenceProfit
+				- makespanWeight * (metrics[0] - startTime) / referenceMakespan
+				- violationWeight * metrics[1] / cloudletCount;
+	}
+
+	/**
+	 * Computes the makespan, number of QoS violations and profit of a mapping.
+	 *
+	 * @param mapping the VM position of each cloudlet
+	 * @return {makespan, violations, profit}
+	 */
+	public double[] getMetrics(int[] mapping) {
+		return simulate(mapping, new double[vmCount], new double[3]);
+	}
+
+	/**
+	 * Runs the cloudlets of a mapping on their VMs and fills {makespan, violations, profit}.
+	 */
+	private double[] simulate(int[] mapping, double[] ready, double[] metrics) {
+		Arrays.fill(ready, startTime);
+		double makespan = startTime;
+		int violations = 0;
+		double profit = 0.0;
+		for (int i = 0; i < cloudletCount; i++) {
+			int vm = mapping[i];
+			double execTime = etc[i * speedCount + vmSpeed[vm]];
+			double finish = ready[vm] + execTime;
+			ready[vm] = finish;
+			if (finish > makespan) {
+				makespan = finish;
+			}
+			// 与PrintResult相同：满足QoS获得80%的收入，违背QoS（成本或截止时间）损失20%的执行成本
+			double income = execTime * vmCost[vm];
+			if (income > money[i] || finish > deadline[i]) {
+				violations++;
+				profit -= income * costFraction;
+			} else {
+				profit += income * (1 - costFraction);
+			}
+		}
+		metrics[0] = makespan;
+		metrics[1] = violations;
+		metrics[2] = profit;
+		return metrics;
+	}
+
+	/**
+	 * Uses the makespan and profit of the given mapping as the units of the fitness terms.
+	 *
+	 * @param mapping the reference mapping, usually the seed of the search
+	 */
+	public void setReference(int[] mapping) {
+		double[] metrics = getMetrics(mapping);
+		referenceMakespan = Math.max(metrics[0] - startTime, Double.MIN_NORMAL);
+		referenceProfit = Math.max(Math.abs(metrics[2]), Double.MIN_NORMAL);
+	}
+
+	/**
+	 * Sets the weights of the fitness terms.
+	 *
+	 * @param makespanWeight weight of the makespan
+	 * @param violationWeight weight of the share of violated cloudlets
+	 * @param profitWeight weight of the profit
+	 */
+	public void setWeights(double makespanWeight, double violationWeight, double profitWeight) {
+		this.makespanWeight = makespanWeight;
+		this.violationWeight = violationWeight;
+		this.profitWeight = profitWeight;
+	}
+
+	public int getCloudletCount() {
+		return cloudletCount;
+	}
+
+	public int getVmCount() {
+		return vmCount;
+	}
+
+}
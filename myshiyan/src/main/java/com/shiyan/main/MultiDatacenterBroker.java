@@ -0,0 +1,292 @@
+package com.shiyan.main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.shiyan.core.CloudSim;
+import com.shiyan.core.CloudSimTags;
+import com.shiyan.core.SimEvent;
+import com.shiyan.models.Cloudlet;
+import com.shiyan.models.Vm;
+
+/**
+ * A broker for federated scenarios: it creates its VMs in all the datacenters at once and sends the unbound
+ * cloudlets to the VM that would finish them first, network delay included.
+ * 多数据中心代理：同时在所有数据中心中创建虚拟机，并按照包含网络延迟的预计完成时间分派云任务
+ * <p>
+ * {@link DatacenterBroker} asks one datacenter for all its VMs and only tries the next one once every ack
+ * came back. This broker spreads the VMs over the datacenters registered with the
+ * {@link com.shiyan.core.CloudInformationService} as soon as their characteristics are known, each one
+ * receiving a share proportional to its weight {@code mips / costPerSecond^costWeight} (see
+ * {@link #setCostWeight(double)}). A VM goes to the datacenter whose share is the least used once the VM is
+ * added to it, among the ones with enough PEs left; every request is sent at once, and a VM whose creation
+ * failed is retried in the next datacenter of its own ranking.
+ * <p>
+ * The cloudlets bound by a scheduling algorithm go to their VM as usual. An unbound cloudlet goes to the VM
+ * with the earliest estimated completion time, which is the time the cloudlet reaches the datacenter of the
+ * VM ({@link NetworkTopology#getDelay(int, int)} after it is sent), or the time a PE of the VM is free if
+ * later, plus its execution time. The estimates keep the PEs of every VM busy with the cloudlets already
+ * sent to it.
+ *
+ * @see com.shiyan.demo.FederationMain
+ */
+public class MultiDatacenterBroker extends DatacenterBroker {
+
+	/** The exponent of the price in the weight of a datacenter; 0 weights by capacity only. */
+	private double costWeight = 1.0;
+
+	/** The datacenters to try for each VM, best first, by VM id. 每台虚拟机依次尝试的数据中心 */
+	private final Map<Integer, List<Integer>> vmDatacenters = new HashMap<Integer, List<Integer>>();
+
+	/** The position in its datacenter list of the datacenter each VM was last requested from, by VM id. */
+	private final Map<Integer, Integer> vmAttempts = new HashMap<Integer, Integer>();
+
+	/** The number of VM creations still waiting for an ack. */
+	private int pendingAcks;
+
+	/** The estimated time each PE of each created VM is free, earliest first, by VM id. */
+	private final Map<Integer, double[]> peReadyTimes = new HashMap<Integer, double[]>();
+
+	/**
+	 * Creates a new multi-datacenter broker.
+	 *
+	 * @param name the name of the broker
+	 * @throws Exception the exception
+	 */
+	public MultiDatacenterBroker(String name) throws Exception {
+		super(name);
+	}
+
+	@Override
+	protected void processResourceCharacteristics(SimEvent ev) {
+		DatacenterCharacteristics characteristics = (DatacenterCharacteristics) ev.getData();
+		getDatacenterCharacteristicsList().put(characteristics.getId(), characteristics);
+
+		if (getDatacenterCharacteristicsList().size() == getDatacenterIdsList().size()) {
+			setDatacenterRequestedIdsList(new ArrayList<Integer>());
+			createVmsInDatacenters();
+		}
+	}
+
+	/**
+	 * Ranks the datacenters for every VM not created yet and sends all the creation requests at once.
+	 * 按照数据中心的容量和价格同时在所有数据中心中创建虚拟机
+	 */
+	protected void createVmsInDatacenters() {
+		List<Integer> datacenterIds = getDatacenterIdsList();
+		int datacenterCount = datacenterIds.size();
+		final double[] weight = new double[datacenterCount];
+		final double[] used = new double[datacenterCount];
+		int[] freePes = new int[datacenterCount];
+		for (int d = 0; d < datacenterCount; d++) {
+			DatacenterCharacteristics characteristics = getDatacenterCharacteristicsList().get(datacenterIds.get(d));
+			double price = characteristics.getCostPerSecond() > 0 ? characteristics.getCostPerSecond() : 1.0;
+			weight[d] = characteristics.getMips() / Math.pow(price, costWeight);
+			freePes[d] = characteristics.getNumberOfPes();
+		}
+
+		Integer[] order = new Integer[datacenterCount];
+		for (Vm vm : getVmList()) {
+			if (getVmsToDatacentersMap().containsKey(vm.getId())) {
+				continue;
+			}
+			final double demand = vm.getMips() * vm.getNumberOfPes();
+			for (int d = 0; d < datacenterCount; d++) {
+				order[d] = d;
+			}
+			// 按加入该虚拟机后数据中心份额的使用率排序，相同时按数据中心的顺序
+			Arrays.sort(order, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer a, Integer b) {
+					return Double.compare((used[a] + demand) / weight[a], (used[b] + demand) / weight[b]);
+				}
+			});
+			List<Integer> ranking = new ArrayList<Integer>(datacenterCount);
+			List<Integer> full = new ArrayList<Integer>();
+			for (int d : order) {
+				if (freePes[d] >= vm.getNumberOfPes()) {
+					ranking.add(datacenterIds.get(d));
+				} else {
+					full.add(datacenterIds.get(d));
+				}
+			}
+			ranking.addAll(full);
+
+			int chosen = datacenterIds.indexOf(ranking.get(0));
+			used[chosen] += demand;
+			freePes[chosen] -= vm.getNumberOfPes();
+			vmDatacenters.put(vm.getId(), ranking);
+			vmAttempts.put(vm.getId(), 0);
+			requestVm(vm, ranking.get(0));
+			pendingAcks++;
+		}
+		setVmsRequested(pendingAcks);
+		setVmsAcks(0);
+	}
+
+	private void requestVm(Vm vm, int datacenterId) {
+		Log.printLine(CloudSim.clock() + ": " + getName() + ": Trying to Create VM #" + vm.getId() + " in "
+				+ CloudSim.getEntityName(datacenterId));
+		sendNow(datacenterId, CloudSimTags.VM_CREATE_ACK, vm);
+		if (!getDatacenterRequestedIdsList().contains(datacenterId)) {
+			getDatacenterRequestedIdsList().add(datacenterId);
+		}
+	}
+
+	@Override
+	protected void processVmCreate(SimEvent ev) {
+		int[] data = (int[]) ev.getData();
+		int datacenterId = data[0];
+		int vmId = data[1];
+		int result = data[2];
+		Vm vm = getVmById(vmId);
+
+		if (result == CloudSimTags.TRUE) {
+			getVmsToDatacentersMap().put(vmId, datacenterId);
+			getVmsCreatedList().add(vm);
+			vmsCreatedById.put(vmId, vm);
+			Log.printConcatLine(CloudSim.clock(), ": ", getName(), ": VM #", vmId,
+					" has been created in Datacenter #", datacenterId, ", Host #", vm.getHost().getId());
+		} else {
+			Log.printConcatLine(CloudSim.clock(), ": ", getName(), ": Creation of VM #", vmId,
+					" failed in Datacenter #", datacenterId);
+			// 在该虚拟机排序中的下一个数据中心重试
+			List<Integer> ranking = vmDatacenters.get(vmId);
+			int attempt = vmAttempts.get(vmId) + 1;
+			if (ranking != null && attempt < ranking.size()) {
+				vmAttempts.put(vmId, attempt);
+				requestVm(vm, ranking.get(attempt));
+				return;
+			}
+		}
+		incrementVmsAcks();
+		pendingAcks--;
+
+		if (pendingAcks == 0) {
+			if (getVmsCreatedList().size() > 0) {
+				submitCloudlets();
+				scheduleRebalance();
+			} else { // no vms created. abort
+				Log.printLine(CloudSim.clock() + ": " + getName()
+						+ ": none of the required VMs could be created. Aborting");
+				finishExecution();
+			}
+		}
+	}
+
+	/**
+	 * Binds every unbound cloudlet to the VM with the earliest estimated completion time, then submits the
+	 * cloudlets as {@link DatacenterBroker#submitCloudlets()} does.
+	 */
+	@Override
+	protected void submitCloudlets() {
+		double now = CloudSim.clock();
+		for (Cloudlet cloudlet : getCloudletList()) {
+			Vm vm;
+			if (cloudlet.getVmId() == -1) {
+				vm = findEarliestVm(cloudlet, now);
+				cloudlet.setVmId(vm.getId());
+			} else {
+				vm = vmsCreatedById.get(cloudlet.getVmId());
+				if (vm == null) { // 绑定的虚拟机还没有创建，云任务会被推迟
+					continue;
+				}
+			}
+			occupy(vm, cloudlet, estimateStartTime(vm, cloudlet, now));
+		}
+		super.submitCloudlets();
+	}
+
+	/**
+	 * Finds the created VM that would finish a cloudlet first, the first one in the created list on a tie.
+	 */
+	private Vm findEarliestVm(Cloudlet cloudlet, double now) {
+		Vm best = null;
+		double bestFinish = Double.MAX_VALUE;
+		for (Vm vm : getVmsCreatedList()) {
+			double finish = estimateStartTime(vm, cloudlet, now) + cloudlet.getCloudletLength() / vm.getMips();
+			if (finish < bestFinish) {
+				bestFinish = finish;
+				best = vm;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Estimates the time a cloudlet sent now would start on a VM: when it reaches the datacenter of the VM,
+	 * or when enough PEs of the VM are free if later.
+	 */
+	private double estimateStartTime(Vm vm, Cloudlet cloudlet, double now) {
+		double arrival = now + getDelay(getVmsToDatacentersMap().get(vm.getId()));
+		double[] ready = getPeReadyTimes(vm);
+		int pes = Math.min(cloudlet.getNumberOfPes(), ready.length);
+		return Math.max(arrival, ready[pes - 1]);
+	}
+
+	/**
+	 * Marks the PEs a cloudlet uses on a VM as busy until its estimated finish time.
+	 */
+	private void occupy(Vm vm, Cloudlet cloudlet, double start) {
+		double[] ready = getPeReadyTimes(vm);
+		int pes = Math.min(cloudlet.getNumberOfPes(), ready.length);
+		double finish = start + cloudlet.getCloudletLength() / vm.getMips();
+		for (int k = 0; k < pes; k++) {
+			ready[k] = finish;
+		}
+		Arrays.sort(ready);
+	}
+
+	private double[] getPeReadyTimes(Vm vm) {
+		double[] ready = peReadyTimes.get(vm.getId());
+		if (ready == null) {
+			ready = new double[vm.getNumberOfPes()];
+			peReadyTimes.put(vm.getId(), ready);
+		}
+		return ready;
+	}
+
+	/**
+	 * Gets the network delay of a message from this broker to a datacenter.
+	 *
+	 * @param datacenterId the id of the datacenter
+	 * @return the delay, 0 if the network is not simulated
+	 */
+	public double getDelay(int datacenterId) {
+		return NetworkTopology.isNetworkEnabled() ? NetworkTopology.getDelay(getId(), datacenterId) : 0.0;
+	}
+
+	/**
+	 * Gets the number of VMs created in each datacenter, including the ones destroyed since.
+	 *
+	 * @return the number of VMs, by datacenter id
+	 */
+	public Map<Integer, Integer> getVmCountByDatacenter() {
+		Map<Integer, Integer> counts = new HashMap<Integer, Integer>();
+		for (int datacenterId : getVmsToDatacentersMap().values()) {
+			Integer count = counts.get(datacenterId);
+			counts.put(datacenterId, count == null ? 1 : count + 1);
+		}
+		return Collections.unmodifiableMap(counts);
+	}
+
+	public double getCostWeight() {
+		return costWeight;
+	}
+
+	/**
+	 * Sets how much the price of a datacenter lowers its share of the VMs: the weight of a datacenter is
+	 * {@code mips / costPerSecond^costWeight}.
+	 *
+	 * @param costWeight the exponent of the price, 0 to weight by capacity only, 1 by default
+	 */
+	public void setCostWeight(double costWeight) {
+		this.costWeight = costWeight;
+	}
+
+}
@@ -0,0 +1,411 @@
+package com.shiyan.main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.shiyan.models.Cloudlet;
+import com.shiyan.models.Vm;
+import com.shiyan.util.LatencyHistogram;
+
+/**
+ * QoS-MinMin over k deadline classes, scheduled in parallel on reserved slices of the VM pool.
+ * 按截止时间分为k类并行调度的QoS-MinMin算法
+ * <p>
+ * {@link DatacenterBroker#bindCloudletsToVmsQoSMinMin()} splits the cloudlets in two around the average
+ * deadline and schedules the tight class (compensation type 1) before the loose one (type 2) on the whole
+ * pool. Here the cloudlets are split at the quantiles of {@link Cloudlet#getDeadlineTime()} into k classes,
+ * class {@code i} having compensation type {@code i + 1} unless set otherwise. Every VM is reserved for one
+ * class, giving each class a share of the total MIPS proportional to the MIPS its cloudlets need to meet
+ * their deadlines, the sum of {@code length / deadline} over the class, and the classes are scheduled in
+ * parallel on a {@link ForkJoinPool}, each on its own slice. A final sequential pass reconciles
+ * the classes: the cloudlets their slice could not serve get another chance on the whole pool, after every
+ * cloudlet already placed; those still left are canceled.
+ * <p>
+ * Inside a class the Min-Min step always picks the shortest waiting cloudlet (the first one in the
+ * submitted list on a tie) and its earliest-finishing VM, so the class is sorted once and each step takes
+ * the VM from a {@link VmFeasibilityIndex}. A cloudlet that would break its QoS on that VM falls back to
+ * {@link DatacenterBroker#findBestVmBySLD(Cloudlet, List, Map, int)}, as in QoS-MinMin.
+ *
+ * @see DatacenterBroker#bindCloudletsToVmsQoSMinMin(int)
+ */
+public class PartitionedQoSScheduler {
+
+	/** The broker whose QoS and SLD rules are applied. */
+	private final DatacenterBroker broker;
+
+	/** The VMs cloudlets are bound to. */
+	private final List<? extends Vm> vmList;
+
+	/** The time at which every VM is ready. */
+	private final double currentTime;
+
+	/** The number of deadline classes. */
+	private final int classCount;
+
+	/** The compensation type of each class, tightest deadlines first. */
+	private int[] classTypes;
+
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+
+	/** The compensation type of each bound cloudlet, by cloudlet id. */
+	private final Map<Integer, Integer> compensationTypes = new HashMap<Integer, Integer>();
+
+	/** Number of cloudlets placed by the reconcile pass in the last run. */
+	private int reconciled;
+
+	/** Where the latency of each placement is recorded, or <tt>null</tt>. Shared by the class tasks. */
+	private LatencyHistogram decisionLatency;
+
+	/**
+	 * Creates a new scheduler whose VMs all become ready at the given time.
+	 *
+	 * @param broker the broker providing the QoS and SLD rules
+	 * @param vmList the VMs cloudlets can be bound to
+	 * @param currentTime the time at which every VM is ready
+	 * @param classCount the number of deadline classes
+	 */
+	public PartitionedQoSScheduler(DatacenterBroker broker, List<? extends Vm> vmList, double currentTime,
+			int classCount) {
+		if (classCount < 1) {
+			throw new IllegalArgumentException("The number of deadline classes must be at least 1");
+		}
+		this.broker = broker;
+		this.vmList = vmList;
+		this.currentTime = currentTime;
+		this.classCount = classCount;
+		classTypes = new int[classCount];
+		for (int c = 0; c < classCount; c++) {
+			classTypes[c] = c + 1;
+		}
+	}
+
+	/**
+	 * Binds the given cloudlets to VMs.
+	 * <p>
+	 * Cloudlets already bound to a VM or already canceled keep their place at the head of the returned
+	 * list; bound ones still occupy their VM. The other cloudlets follow class by class, tightest deadlines
+	 * first, then the cloudlets placed by the reconcile pass. Cloudlets that no VM can serve are marked
+	 * {@link Cloudlet#CANCELED} and left out.
+	 *
+	 * @param cloudletList the cloudlets to bind
+	 * @return the bound cloudlets in submission order
+	 * @throws Exception if a cloudlet cannot be canceled
+	 */
+	public List<Cloudlet> schedule(List<? extends Cloudlet> cloudletList) throws Exception {
+		List<Cloudlet> finalCloudlets = new ArrayList<Cloudlet>(cloudletList.size());
+		compensationTypes.clear();
+		reconciled = 0;
+
+		Map<Integer, Double> readyTimes = new HashMap<Integer, Double>();
+		for (Vm vm : vmList) {
+			readyTimes.put(vm.getId(), currentTime);
+		}
+		List<Cloudlet> waiting = new ArrayList<Cloudlet>();
+		for (Cloudlet cloudlet : cloudletList) {
+			if (cloudlet.getVmId() != -1 || cloudlet.getStatus() == Cloudlet.CANCELED) {
+				Vm vm = broker.getVmById(cloudlet.getVmId());
+				if (vm != null && readyTimes.containsKey(vm.getId())) {
+					readyTimes.put(vm.getId(), broker.calculateFinishLine(cloudlet, vm, readyTimes, "+"));
+				}
+				finalCloudlets.add(cloudlet);
+				continue;
+			}
+			waiting.add(cloudlet);
+		}
+
+		// 按截止时间的分位数将云任务分为k类
+		double[] deadlines = new double[waiting.size()];
+		for (int i = 0; i < deadlines.length; i++) {
+			deadlines[i] = waiting.get(i).getDeadlineTime();
+		}
+		Arrays.sort(deadlines);
+		double[] bounds = new double[classCount - 1];
+		for (int c = 1; c < classCount; c++) {
+			bounds[c - 1] = deadlines.length == 0 ? 0.0 : deadlines[(int) ((long) c * deadlines.length / classCount)];
+		}
+		List<Partition> partitions = new ArrayList<Partition>(classCount);
+		for (int c = 0; c < classCount; c++) {
+			partitions.add(new Partition(classTypes[c]));
+		}
+		for (Cloudlet cloudlet : waiting) {
+			Partition partition = partitions.get(classOf(cloudlet.getDeadlineTime(), bounds));
+			partition.cloudlets.add(cloudlet);
+			partition.work += cloudlet.getCloudletLength() / Math.max(cloudlet.getDeadlineTime(), Double.MIN_NORMAL);
+		}
+
+		// 为每一类预留一组虚拟机，计算能力与该类任务按期完成所需的计算能力（长度/截止时间之和）成正比
+		double totalWork = 0.0;
+		double totalMips = 0.0;
+		for (Partition partition : partitions) {
+			totalWork += partition.work;
+		}
+		for (Vm vm : vmList) {
+			totalMips += vm.getMips();
+		}
+		for (Vm vm : vmList) {
+			Partition target = null;
+			double maxDeficit = -Double.MAX_VALUE;
+			for (Partition partition : partitions) {
+				double share = totalWork > 0 ? totalMips * partition.work / totalWork : 0.0;
+				double deficit = share - partition.mips;
+				if (!partition.cloudlets.isEmpty() && deficit > maxDeficit) {
+					maxDeficit = deficit;
+					target = partition;
+				}
+			}
+			if (target == null) {
+				break;
+			}
+			target.vms.add(vm);
+			target.mips += vm.getMips();
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			List<PartitionTask> tasks = new ArrayList<PartitionTask>(classCount);
+			for (Partition partition : partitions) {
+				tasks.add(new PartitionTask(partition, readyTimes));
+			}
+			pool.invoke(new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void compute() {
+					invokeAll(tasks);
+				}
+			});
+		} finally {
+			pool.shutdown();
+		}
+
+		// 汇总各类的调度结果，并在全部虚拟机上为无法调度的任务再找一次虚拟机
+		List<Cloudlet> unresolved = new ArrayList<Cloudlet>();
+		long lastDecisionTime = System.nanoTime();
+		for (Partition partition : partitions) {
+			for (Cloudlet cloudlet : partition.bound) {
+				compensationTypes.put(cloudlet.getCloudletId(), partition.type);
+			}
+			finalCloudlets.addAll(partition.bound);
+			readyTimes.putAll(partition.readyTimes);
+			unresolved.addAll(partition.unresolved);
+		}
+		for (Cloudlet cloudlet : unresolved) {
+			int type = classTypes[classOf(cloudlet.getDeadlineTime(), bounds)];
+			Vm bestVm = null;
+			double minFinishLine = Double.MAX_VALUE;
+			for (Vm vm : vmList) {
+				double finishLine = broker.calculateFinishLine(cloudlet, vm, readyTimes, "+");
+				if (finishLine < minFinishLine) {
+					minFinishLine = finishLine;
+					bestVm = vm;
+				}
+			}
+			if (bestVm != null && !broker.checkQoS(cloudlet, bestVm, readyTimes)) {
+				bestVm = broker.findBestVmBySLD(cloudlet, vmList, readyTimes, type);
+			}
+			if (bestVm == null) {
+				Log.printConcatLine("云任务：", cloudlet.getCloudletId(), "由于任何虚拟机满足不了其完成期限的需求，故被取消 ");
+				cloudlet.setCloudletStatus(Cloudlet.CANCELED);
+				continue;
+			}
+			cloudlet.setVmId(bestVm.getId());
+			readyTimes.put(bestVm.getId(), broker.calculateFinishLine(cloudlet, bestVm, readyTimes, "+"));
+			compensationTypes.put(cloudlet.getCloudletId(), type);
+			finalCloudlets.add(cloudlet);
+			reconciled++;
+			lastDecisionTime = recordDecision(lastDecisionTime);
+		}
+		return finalCloudlets;
+	}
+
+	/**
+	 * Records the latency of a placement, if asked to.
+	 *
+	 * @param lastDecisionTime the time of the previous placement of the same pass, in nanoseconds
+	 * @return the time of this placement
+	 */
+	private long recordDecision(long lastDecisionTime) {
+		if (decisionLatency == null) {
+			return lastDecisionTime;
+		}
+		long now = System.nanoTime();
+		decisionLatency.record(now - lastDecisionTime);
+		return now;
+	}
+
+	/**
+	 * Returns the class of a deadline: the number of class bounds not above it.
+	 */
+	private static int classOf(double deadline, double[] bounds) {
+		int low = 0;
+		int high = bounds.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (bounds[middle] <= deadline) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/** Orders cloudlets by length; the sort is stable, so ties keep the submitted order. */
+	private static final Comparator<Cloudlet> LENGTH_ORDER = new Comparator<Cloudlet>() {
+		@Override
+		public int compare(Cloudlet a, Cloudlet b) {
+			return Long.compare(a.getCloudletLength(), b.getCloudletLength());
+		}
+	};
+
+	/**
+	 * A deadline class and the slice of the VM pool reserved for it.
+	 */
+	private static class Partition {
+
+		final int type;
+
+		final List<Cloudlet> cloudlets = new ArrayList<Cloudlet>();
+
+		final List<Vm> vms = new ArrayList<Vm>();
+
+		/** The MIPS the cloudlets of the class need to meet their deadlines, the sum of length / deadline. */
+		double work;
+
+		double mips;
+
+		final List<Cloudlet> bound = new ArrayList<Cloudlet>();
+
+		final List<Cloudlet> unresolved = new ArrayList<Cloudlet>();
+
+		final Map<Integer, Double> readyTimes = new HashMap<Integer, Double>();
+
+		Partition(int type) {
+			this.type = type;
+		}
+
+	}
+
+	/**
+	 * Runs QoS-MinMin for one class on its slice. Only touches the cloudlets and ready times of the class.
+	 */
+	private class PartitionTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Partition partition;
+
+		private final Map<Integer, Double> initialReadyTimes;
+
+		PartitionTask(Partition partition, Map<Integer, Double> initialReadyTimes) {
+			this.partition = partition;
+			this.initialReadyTimes = initialReadyTimes;
+		}
+
+		@Override
+		protected void compute() {
+			long lastDecisionTime = System.nanoTime();
+			List<Vm> vms = partition.vms;
+			Map<Integer, Double> readyTimes = partition.readyTimes;
+			Map<Integer, Integer> positions = new HashMap<Integer, Integer>();
+			for (int j = 0; j < vms.size(); j++) {
+				readyTimes.put(vms.get(j).getId(), initialReadyTimes.get(vms.get(j).getId()));
+				positions.put(vms.get(j).getId(), j);
+			}
+			VmFeasibilityIndex index = new VmFeasibilityIndex(vms, currentTime);
+			for (int j = 0; j < vms.size(); j++) {
+				index.setReadyTime(j, readyTimes.get(vms.get(j).getId()));
+			}
+
+			List<Cloudlet> cloudlets = new ArrayList<Cloudlet>(partition.cloudlets);
+			Collections.sort(cloudlets, LENGTH_ORDER);
+			for (Cloudlet cloudlet : cloudlets) {
+				int position = index.findEarliestVm(cloudlet);
+				if (position < 0) {
+					partition.unresolved.add(cloudlet);
+					continue;
+				}
+				Vm bestVm = vms.get(position);
+				//如果这个最好的虚拟机不能够满足QoS的需求，则启用延迟补偿和收益敏感的策略
+				if (!broker.checkQoS(cloudlet, bestVm, readyTimes)) {
+					bestVm = broker.findBestVmBySLD(cloudlet, vms, readyTimes, partition.type);
+					if (bestVm == null) {
+						partition.unresolved.add(cloudlet);
+						continue;
+					}
+					position = positions.get(bestVm.getId());
+				}
+				cloudlet.setVmId(bestVm.getId());
+				readyTimes.put(bestVm.getId(), broker.calculateFinishLine(cloudlet, bestVm, readyTimes, "+"));
+				index.assign(cloudlet, position);
+				partition.bound.add(cloudlet);
+				lastDecisionTime = recordDecision(lastDecisionTime);
+			}
+		}
+
+	}
+
+	/**
+	 * Sets the compensation type of each class.
+	 *
+	 * @param classTypes the compensation types, tightest deadlines first
+	 */
+	public void setClassTypes(int[] classTypes) {
+		if (classTypes.length != classCount) {
+			throw new IllegalArgumentException("Expected " + classCount + " compensation types");
+		}
+		this.classTypes = classTypes.clone();
+	}
+
+	/**
+	 * Sets where the latency of each placement is recorded. The classes are scheduled in parallel, each one
+	 * timing its placements from the start of its own task, so the histogram gets one series per class.
+	 *
+	 * @param decisionLatency the histogram, or <tt>null</tt> not to record anything
+	 */
+	public void setDecisionLatency(LatencyHistogram decisionLatency) {
+		this.decisionLatency = decisionLatency;
+	}
+
+	public int[] getClassTypes() {
+		return classTypes.clone();
+	}
+
+	public int getClassCount() {
+		return classCount;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Sets the number of threads scheduling the classes.
+	 *
+	 * @param parallelism the number of threads
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Gets the compensation type of each cloudlet bound by the last run.
+	 *
+	 * @return the compensation types by cloudlet id
+	 */
+	public Map<Integer, Integer> getCompensationTypes() {
+		return compensationTypes;
+	}
+
+	public int getReconciled() {
+		return reconciled;
+	}
+
+}
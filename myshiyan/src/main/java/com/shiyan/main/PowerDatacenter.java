@@ -8,8 +8,11 @@
 
 package com.shiyan.main;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import com.shiyan.core.CloudSim;
 import com.shiyan.core.CloudSimTags;
@@ -20,6 +23,9 @@ import com.shiyan.models.Vm;
 
 public class PowerDatacenter extends Datacenter {
 
+	/** The log category of the power datacenters. */
+	public static final String LOG_CATEGORY = "PowerDatacenter";
+
 	/** The datacenter consumed power. */
 	private double power;
 	
@@ -34,6 +40,22 @@ public class PowerDatacenter extends Datacenter {
 	/** The VM migration count. */
 	private int migrationCount;
 
+	/** The delays of the internal events to send at the flush event, or <tt>null</tt> if the internal
+	 * events were not reset since the first change of the current time. 推迟到合并事件的内部事件 */
+	private List<Double> deferredEventDelays;
+
+	/** The number of hosts a task updates without splitting, when the hosts are updated in parallel. */
+	private static final int HOSTS_PER_TASK = 16;
+
+	/** The number of threads updating the hosts. */
+	private int parallelism = 1;
+
+	/** The pool updating the hosts in parallel, or <tt>null</tt> to update them one by one. */
+	private ForkJoinPool hostUpdatePool;
+
+	/** The meter recording the power of the hosts and VMs, or <tt>null</tt> if it is not recorded. */
+	private EnergyMeter energyMeter;
+
 	/**
 	 * Instantiates a new PowerDatacenter.
 	 * 
@@ -59,10 +81,35 @@ public class PowerDatacenter extends Datacenter {
 		setMigrationCount(0);
 	}
 
+	/**
+	 * Every VM is updated on every event, since the utilization and power of the hosts are recorded at each
+	 * update.
+	 */
+	@Override
+	protected boolean isLazyVmProcessingSupported() {
+		return false;
+	}
+
+	/**
+	 * Resets the internal events on every change of a time when Cloudlets were submitted: while the
+	 * changes of the current time are pending, the reset is deferred to the
+	 * {@link CloudSimTags#VM_DATACENTER_FLUSH} event, so the future event queue is scanned once per time
+	 * instead of once per Cloudlet. The events scheduled after the last reset are kept until then.
+	 */
+	@Override
+	protected void beginUpdate() {
+		updateCloudletProcessing();
+	}
+
 	@Override
 	protected void updateCloudletProcessing() {
 		
 		if (getCloudletSubmitted() == -1 || getCloudletSubmitted() == CloudSim.clock()) {
+			if (isUpdatePending()) {
+				// 本时刻的更改尚未完成，内部事件在合并事件时再重置
+				deferredEventDelays = new ArrayList<Double>();
+				return;
+			}
 			CloudSim.cancelAll(getId(), new PredicateType(CloudSimTags.VM_DATACENTER_EVENT));
 			schedule(getId(), getSchedulingInterval(), CloudSimTags.VM_DATACENTER_EVENT);
 			return;
@@ -71,8 +118,6 @@ public class PowerDatacenter extends Datacenter {
 
 		// if some time passed since last processing
 		if (currentTime > getLastProcessTime()) {
-			System.out.print(currentTime + " ");
-
 			double minTime = updateCloudetProcessingWithoutSchedulingFutureEventsForce();
 
 			//isDisableMigrations()中，不允许迁移，则返回true，允许则返回false
@@ -158,80 +203,121 @@ public class PowerDatacenter extends Datacenter {
 		double timeDiff = currentTime - getLastProcessTime();
 		double timeFrameDatacenterEnergy = 0.0;
 
-		Log.printLine("\n\n--------------------------------------------------------------\n\n");
-		//在300.10开始的时间段内使用新的资源
-		Log.formatLine("New resource usage for the time frame starting at %.2f:", currentTime);
+		if (isParallelHostUpdate()) {
+			// 并行更新各主机，再按主机顺序合并下一事件时间和能耗
+			List<PowerHost> hosts = this.<PowerHost> getHostList();
+			double[] nextTimes = new double[hosts.size()];
+			double[] energies = new double[hosts.size()];
+			// 日志开启时先保留各主机的消息，再按主机顺序写出
+			List<?>[] messages = Log.isDisabled() ? null : new List<?>[hosts.size()];
+			int queued = getFinishedCloudletQueue().size();
+			getHostUpdatePool().invoke(new HostUpdateTask(hosts, currentTime, timeDiff, nextTimes, energies,
+					messages, 0, hosts.size()));
+			requeueFinishedCloudlets(hosts, queued);
+			for (int i = 0; i < hosts.size(); i++) {
+				if (messages != null) {
+					Log.writeMessages(messages[i]);
+				}
+				if (nextTimes[i] < minTime) {
+					minTime = nextTimes[i];
+				}
+				timeFrameDatacenterEnergy += energies[i];
+			}
+		} else {
+			boolean debug = Log.isLoggable(LOG_CATEGORY, Log.Level.DEBUG);
+			if (debug) {
+				Log.log(LOG_CATEGORY, Log.Level.DEBUG, "\n\n--------------------------------------------------------------\n\n");
+				//在300.10开始的时间段内使用新的资源
+				Log.logFormat(LOG_CATEGORY, Log.Level.DEBUG, "New resource usage for the time frame starting at %.2f:",
+						currentTime);
+			}
 		
-		for (PowerHost host : this.<PowerHost> getHostList()) {
-			Log.printLine();
+			for (PowerHost host : this.<PowerHost> getHostList()) {
+				if (debug) {
+					Log.log(LOG_CATEGORY, Log.Level.DEBUG, "");
+				}
 
-			double time = host.updateVmsProcessing(currentTime); // inform VMs to update processing通知VMs更新处理，返回任务执行用时最少的执行时间
+				double time = host.updateVmsProcessing(currentTime); // inform VMs to update processing通知VMs更新处理，返回任务执行用时最少的执行时间
 			
-			if (time < minTime) {
-				minTime = time;
-			}
+				if (time < minTime) {
+					minTime = time;
+				}
 
-			Log.formatLine(
-					"%.2f: [Host #%d] utilization is %.2f%%,当前错误率为： %.2f%%",",当前发生迁移的数量为：",
-					currentTime,
-					host.getId(),
-					host.getUtilizationOfCpu() * 100, host.getHostWrongProbability(),
-					host.getVmScheduler().getVmsMigrationSize());
-		}
+				if (debug) {
+					Log.logFormat(LOG_CATEGORY, Log.Level.DEBUG,
+							"%.2f: [Host #%d] utilization is %.2f%%,当前错误率为： %.2f%%,当前发生迁移的数量为：%d",
+							currentTime,
+							host.getId(),
+							host.getUtilizationOfCpu() * 100, host.getHostWrongProbability(),
+							host.getVmScheduler().getVmsMigrationSize());
+				}
+			}
 
-		if (timeDiff > 0) {
-			Log.formatLine(
-					"\nEnergy consumption for the last time frame from %.2f to %.2f:",
-					getLastProcessTime(),
-					currentTime);
+			if (timeDiff > 0) {
+				if (debug) {
+					Log.logFormat(LOG_CATEGORY, Log.Level.DEBUG,
+							"\nEnergy consumption for the last time frame from %.2f to %.2f:",
+							getLastProcessTime(),
+							currentTime);
+				}
 
-			for (PowerHost host : this.<PowerHost> getHostList()) {
+				for (PowerHost host : this.<PowerHost> getHostList()) {
 				
-				double previousUtilizationOfCpu = host.getPreviousUtilizationOfCpu();
-				double previousHostWrongProbability = host.getPreviousHostWrongProbability();
-				int previousvmmigrationsize = host.getPreviousVmMigrationSize();
-				double utilizationOfCpu = host.getUtilizationOfCpu();
-				double hostWrongProbability = host.getHostWrongProbability();
-				double hostMigrationSize =host.getVmMigrationSize();
+					double previousUtilizationOfCpu = host.getPreviousUtilizationOfCpu();
+					double utilizationOfCpu = host.getUtilizationOfCpu();
 				
-				double timeFrameHostEnergy = host.getEnergyLinearInterpolation(
-						previousUtilizationOfCpu,
-						utilizationOfCpu,
-						timeDiff);
-				timeFrameDatacenterEnergy += timeFrameHostEnergy;
-
-				Log.printLine();
-				Log.formatLine(
-						"%.2f: [Host #%d] utilization at %.2f was %.2f%%, now is %.2f%%",
-						"错误率是 %.2f%%, now is %.2f%%", "迁移数量 %.2f%%, now is %.2f%%", "错误率增幅：%.2f%%","迁移增幅：%.2f%%",
-						currentTime,
-						host.getId(),
-						getLastProcessTime(),
-						previousUtilizationOfCpu * 100,
-						utilizationOfCpu * 100,
-						previousHostWrongProbability * 100,
-						hostWrongProbability* 100,
-						previousvmmigrationsize,
-						hostMigrationSize,
-						hostWrongProbability* 100-previousHostWrongProbability * 100,
-						(hostMigrationSize-previousvmmigrationsize)/previousvmmigrationsize*100
-						);
-				Log.formatLine(
-						"%.2f: [Host #%d] energy is %.2f W*sec",
-						currentTime,
-						host.getId(),
-						timeFrameHostEnergy);
+					double timeFrameHostEnergy = host.getEnergyLinearInterpolation(
+							previousUtilizationOfCpu,
+							utilizationOfCpu,
+							timeDiff);
+					timeFrameDatacenterEnergy += timeFrameHostEnergy;
+
+					if (debug) {
+						double previousHostWrongProbability = host.getPreviousHostWrongProbability();
+						int previousvmmigrationsize = host.getPreviousVmMigrationSize();
+						double hostWrongProbability = host.getHostWrongProbability();
+						double hostMigrationSize =host.getVmMigrationSize();
+
+						Log.log(LOG_CATEGORY, Log.Level.DEBUG, "");
+						Log.logFormat(LOG_CATEGORY, Log.Level.DEBUG,
+								"%.2f: [Host #%d] utilization at %.2f was %.2f%%, now is %.2f%%, "
+										+ "错误率是 %.2f%%, now is %.2f%%, 迁移数量 %d, now is %.0f, 错误率增幅：%.2f%%, 迁移增幅：%.2f%%",
+								currentTime,
+								host.getId(),
+								getLastProcessTime(),
+								previousUtilizationOfCpu * 100,
+								utilizationOfCpu * 100,
+								previousHostWrongProbability * 100,
+								hostWrongProbability* 100,
+								previousvmmigrationsize,
+								hostMigrationSize,
+								hostWrongProbability* 100-previousHostWrongProbability * 100,
+								(hostMigrationSize-previousvmmigrationsize)/previousvmmigrationsize*100
+								);
+						Log.logFormat(LOG_CATEGORY, Log.Level.DEBUG,
+								"%.2f: [Host #%d] energy is %.2f W*sec",
+								currentTime,
+								host.getId(),
+								timeFrameHostEnergy);
+					}
 				
-			}
+				}
 
-			Log.formatLine(
-					"\n%.2f: Data center's energy is %.2f W*sec\n",
-					currentTime,
-					timeFrameDatacenterEnergy);
+				if (debug) {
+					Log.logFormat(LOG_CATEGORY, Log.Level.DEBUG,
+							"\n%.2f: Data center's energy is %.2f W*sec\n",
+							currentTime,
+							timeFrameDatacenterEnergy);
+				}
+			}
 		}
 
 		setPower(getPower() + timeFrameDatacenterEnergy);
 
+		if (getEnergyMeter() != null) {
+			getEnergyMeter().record(currentTime, this.<PowerHost> getHostList());
+		}
+
 		checkCloudletCompletion();
 
 		/** Remove completed VMs **/
@@ -243,12 +329,143 @@ public class PowerDatacenter extends Datacenter {
 			}
 		}
 
-		Log.printLine();
+		if (Log.isLoggable(LOG_CATEGORY, Log.Level.DEBUG)) {
+			Log.log(LOG_CATEGORY, Log.Level.DEBUG, "");
+		}
 
 		setLastProcessTime(currentTime);
 		return minTime;
 	}
 
+	/**
+	 * Checks whether the hosts can be updated in parallel: a pool is set, the per-host lines of this
+	 * Datacenter are not logged (see {@link #LOG_CATEGORY}), since they come between the updates of the
+	 * hosts, and no VM is migrating, since a migrating VM is on the lists of both its hosts. The messages of
+	 * the hosts themselves are held back and written in the order of the hosts.
+	 * 
+	 * @return <tt>true</tt> if the hosts can be updated in parallel
+	 */
+	protected boolean isParallelHostUpdate() {
+		if (getHostUpdatePool() == null || Log.isLoggable(LOG_CATEGORY, Log.Level.DEBUG)) {
+			return false;
+		}
+		for (PowerHost host : this.<PowerHost> getHostList()) {
+			if (!host.getVmsMigratingIn().isEmpty()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Queues again, in the order of the hosts and of their VMs, the schedulers that finished cloudlets while
+	 * the hosts were updated in parallel: the cloudlets are then returned in the same order as after a
+	 * sequential update.
+	 * 
+	 * @param hosts the hosts
+	 * @param queued the size of the finished cloudlet queue before the update
+	 */
+	private void requeueFinishedCloudlets(List<PowerHost> hosts, int queued) {
+		FinishedCloudletQueue queue = getFinishedCloudletQueue();
+		if (queue.size() == queued) {
+			return;
+		}
+		queue.truncate(queued);
+		for (PowerHost host : hosts) {
+			for (Vm vm : host.getVmList()) {
+				CloudletScheduler scheduler = vm.getCloudletScheduler();
+				if (scheduler.getFinishedCloudletQueue() == queue && scheduler.isFinishedCloudlets()) {
+					queue.push(scheduler);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Updates the processing of a range of hosts, and computes their next event time and their energy over
+	 * the last time frame. The hosts share no state while they are updated, so the ranges run in parallel;
+	 * each host only writes its own slot of the result arrays.
+	 * 并行更新一段主机
+	 */
+	private static class HostUpdateTask extends RecursiveAction {
+
+		/** The Constant serialVersionUID. */
+		private static final long serialVersionUID = 1L;
+
+		private final List<PowerHost> hosts;
+
+		private final double currentTime;
+
+		private final double timeDiff;
+
+		private final double[] nextTimes;
+
+		private final double[] energies;
+
+		/** The messages logged by each host, or <tt>null</tt> if the log is disabled. */
+		private final List<?>[] messages;
+
+		private final int from;
+
+		private final int to;
+
+		HostUpdateTask(List<PowerHost> hosts, double currentTime, double timeDiff, double[] nextTimes,
+				double[] energies, List<?>[] messages, int from, int to) {
+			this.hosts = hosts;
+			this.currentTime = currentTime;
+			this.timeDiff = timeDiff;
+			this.nextTimes = nextTimes;
+			this.energies = energies;
+			this.messages = messages;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= HOSTS_PER_TASK) {
+				for (int i = from; i < to; i++) {
+					if (messages == null) {
+						update(i);
+						continue;
+					}
+					Log.holdMessages();
+					try {
+						update(i);
+					} finally {
+						messages[i] = Log.releaseMessages();
+					}
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new HostUpdateTask(hosts, currentTime, timeDiff, nextTimes, energies, messages, from,
+					middle), new HostUpdateTask(hosts, currentTime, timeDiff, nextTimes, energies, messages,
+					middle, to));
+		}
+
+		private void update(int i) {
+			PowerHost host = hosts.get(i);
+			nextTimes[i] = host.updateVmsProcessing(currentTime);
+			if (timeDiff > 0) {
+				energies[i] = host.getEnergyLinearInterpolation(
+						host.getPreviousUtilizationOfCpu(),
+						host.getUtilizationOfCpu(),
+						timeDiff);
+			}
+		}
+
+	}
+
+	@Override
+	public void shutdownEntity() {
+		super.shutdownEntity();
+		if (hostUpdatePool != null) {
+			hostUpdatePool.shutdown();
+			hostUpdatePool = null;
+		}
+	}
+
 	@Override
 	protected void processVmMigrate(SimEvent ev, boolean ack) {
 		updateCloudetProcessingWithoutSchedulingFutureEvents();
@@ -259,12 +476,45 @@ public class PowerDatacenter extends Datacenter {
 		}
 	}
 
+	@Override
+	protected void scheduleProcessingEvent(double delay) {
+		if (deferredEventDelays != null) {
+			deferredEventDelays.add(delay);
+		} else {
+			super.scheduleProcessingEvent(delay);
+		}
+	}
+
+	/**
+	 * Applies the deferred reset of the internal events, then returns the finished Cloudlets. The
+	 * processing is not updated again: it is up to date since the first change of the current time.
+	 */
+	@Override
+	protected void processUpdateFlush() {
+		setUpdatePending(false);
+		if (deferredEventDelays != null) {
+			CloudSim.cancelAll(getId(), new PredicateType(CloudSimTags.VM_DATACENTER_EVENT));
+			schedule(getId(), getSchedulingInterval(), CloudSimTags.VM_DATACENTER_EVENT);
+			for (double delay : deferredEventDelays) {
+				super.scheduleProcessingEvent(delay);
+			}
+			deferredEventDelays = null;
+		}
+		checkCloudletCompletion();
+	}
+
 	@Override
 	protected void processCloudletSubmit(SimEvent ev, boolean ack) {
 		super.processCloudletSubmit(ev, ack);
 		setCloudletSubmitted(CloudSim.clock());
 	}
 
+	@Override
+	protected void processCloudletSubmitBatch(SimEvent ev) {
+		super.processCloudletSubmitBatch(ev);
+		setCloudletSubmitted(CloudSim.clock());
+	}
+
 	/**
 	 * Gets the power.
 	 * 
@@ -368,4 +618,64 @@ public class PowerDatacenter extends Datacenter {
 		this.datacenterWrongProbability = datacenterWrongProbability;
 	}
 
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Sets the number of threads updating the hosts on each time frame. With more than one thread, the hosts
+	 * are updated in parallel on a {@link ForkJoinPool}, and their next event times and energies are combined
+	 * in the order of the hosts, for the same results as a sequential update. The hosts are still updated one
+	 * by one while the per-host lines of this Datacenter are logged at {@link Log.Level#DEBUG} and while a VM
+	 * is migrating (see {@link #isParallelHostUpdate()}); the messages the hosts log while updated in
+	 * parallel are written afterwards in the order of the hosts. The utilization models of the cloudlets on
+	 * different hosts must not share state.
+	 * 设置并行更新主机的线程数
+	 * 
+	 * @param parallelism the number of threads, 1 to update the hosts one by one
+	 */
+	public void setParallelism(int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("The parallelism must be at least 1");
+		}
+		this.parallelism = parallelism;
+		if (hostUpdatePool != null) {
+			hostUpdatePool.shutdown();
+			hostUpdatePool = null;
+		}
+		if (parallelism > 1) {
+			hostUpdatePool = new ForkJoinPool(parallelism);
+		}
+	}
+
+	/**
+	 * Gets the pool updating the hosts in parallel.
+	 * 
+	 * @return the pool, or <tt>null</tt> if the hosts are updated one by one
+	 */
+	protected ForkJoinPool getHostUpdatePool() {
+		return hostUpdatePool;
+	}
+
+	/**
+	 * Sets the meter recording the power of the hosts and VMs after each update, for energy queries over
+	 * any time window. The energy of {@link #getPower()} is still interpolated linearly between the
+	 * updates.
+	 * 设置能耗计量器
+	 * 
+	 * @param energyMeter the meter, or <tt>null</tt> to stop recording
+	 */
+	public void setEnergyMeter(EnergyMeter energyMeter) {
+		this.energyMeter = energyMeter;
+	}
+
+	/**
+	 * Gets the meter recording the power of the hosts and VMs.
+	 * 
+	 * @return the meter, or <tt>null</tt> if the power is not recorded
+	 */
+	public EnergyMeter getEnergyMeter() {
+		return energyMeter;
+	}
+
 }
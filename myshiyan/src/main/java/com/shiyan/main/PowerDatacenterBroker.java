@@ -45,7 +45,8 @@ public class PowerDatacenterBroker extends DatacenterBroker {
 		int[] data = (int[]) ev.getData();
 		int result = data[2];
 
-		if (result != CloudSimTags.TRUE) {
+		// 按需创建的虚拟机创建失败时由代理放弃，不结束模拟
+		if (result != CloudSimTags.TRUE && !isProvisionedVm(data[1])) {
 			int datacenterId = data[0];
 			int vmId = data[1];
 			System.out.println(CloudSim.clock() + ": " + getName() + ": Creation of VM #" + vmId
@@ -0,0 +1,218 @@
+package com.shiyan.main;
+
+/**
+ * Piecewise-constant trace of the utilization and power of a host or a VM, kept in a ring buffer.
+ * 主机或虚拟机的分段常数利用率和功率记录（环形缓冲区）
+ * <p>
+ * Each entry is a change point: the utilization and power recorded at its time hold until the time of the
+ * next entry, or until the end of a query for the last one. The energy from the start of the trace to
+ * each change point is kept with it, so the energy over any window is integrated exactly in
+ * {@code O(log n)} for {@code n} entries. The entries are primitive arrays allocated once: recording
+ * allocates nothing, and a full buffer overwrites its oldest entry, after which the trace starts at the
+ * next one.
+ *
+ * @see EnergyMeter
+ */
+public class PowerTrace {
+
+	/** The times of the change points. */
+	private final double[] times;
+
+	/** The utilization from each change point, between 0 and 1. */
+	private final double[] utilizations;
+
+	/** The power from each change point, in W. */
+	private final double[] powers;
+
+	/** The energy from the start of the trace to each change point, in W*sec. */
+	private final double[] energies;
+
+	/** The index of the oldest entry. */
+	private int head;
+
+	/** The number of entries. */
+	private int size;
+
+	/** Whether entries were overwritten, so the energy before the oldest one is not known. */
+	private boolean truncated;
+
+	/**
+	 * Instantiates a new PowerTrace.
+	 *
+	 * @param capacity the number of change points kept
+	 */
+	public PowerTrace(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("The capacity must be at least 1");
+		}
+		times = new double[capacity];
+		utilizations = new double[capacity];
+		powers = new double[capacity];
+		energies = new double[capacity];
+	}
+
+	/**
+	 * Records the utilization and power from a time on. Nothing is recorded if they do not change, and a
+	 * change at the time of the last entry replaces it.
+	 *
+	 * @param time the time, not before the last one recorded
+	 * @param utilization the utilization, between 0 and 1
+	 * @param power the power, in W
+	 */
+	public void record(double time, double utilization, double power) {
+		if (size > 0) {
+			int last = slot(size - 1);
+			if (time < times[last]) {
+				throw new IllegalArgumentException("The time " + time + " is before the last recorded time "
+						+ times[last]);
+			}
+			if (utilizations[last] == utilization && powers[last] == power) {
+				return;
+			}
+			if (time == times[last]) {
+				utilizations[last] = utilization;
+				powers[last] = power;
+				return;
+			}
+		}
+		double energy = size > 0 ? getEnergyUntil(time) : 0.0;
+		int next;
+		if (size == times.length) {
+			next = head;
+			head = (head + 1) % times.length;
+			truncated = true;
+		} else {
+			next = slot(size);
+			size++;
+		}
+		times[next] = time;
+		utilizations[next] = utilization;
+		powers[next] = power;
+		energies[next] = energy;
+	}
+
+	/**
+	 * Gets the energy consumed over a time window.
+	 *
+	 * @param from the start of the window, not before {@link #getStartTime()}
+	 * @param to the end of the window
+	 * @return the energy, in W*sec
+	 */
+	public double getEnergy(double from, double to) {
+		if (to <= from) {
+			return 0.0;
+		}
+		return getEnergyUntil(to) - getEnergyUntil(from);
+	}
+
+	/**
+	 * Gets the energy consumed from the start of the trace to a time.
+	 *
+	 * @param time the time, not before {@link #getStartTime()}
+	 * @return the energy, in W*sec
+	 */
+	private double getEnergyUntil(double time) {
+		int index = indexAt(time);
+		if (index < 0) {
+			if (truncated) {
+				throw new IllegalArgumentException("The time " + time + " is before the start of the trace "
+						+ getStartTime());
+			}
+			return 0.0;
+		}
+		int entry = slot(index);
+		return energies[entry] + powers[entry] * (time - times[entry]);
+	}
+
+	/**
+	 * Gets the utilization at a time.
+	 *
+	 * @param time the time
+	 * @return the utilization, or 0 before the first entry
+	 */
+	public double getUtilization(double time) {
+		int index = indexAt(time);
+		return index < 0 ? 0.0 : utilizations[slot(index)];
+	}
+
+	/**
+	 * Gets the power at a time.
+	 *
+	 * @param time the time
+	 * @return the power in W, or 0 before the first entry
+	 */
+	public double getPower(double time) {
+		int index = indexAt(time);
+		return index < 0 ? 0.0 : powers[slot(index)];
+	}
+
+	/**
+	 * Gets the time of the oldest entry.
+	 *
+	 * @return the time, or {@link Double#NaN} if the trace is empty
+	 */
+	public double getStartTime() {
+		return size == 0 ? Double.NaN : times[head];
+	}
+
+	/**
+	 * Gets the time of the last change point.
+	 *
+	 * @return the time, or {@link Double#NaN} if the trace is empty
+	 */
+	public double getLastTime() {
+		return size == 0 ? Double.NaN : times[slot(size - 1)];
+	}
+
+	/**
+	 * Gets the last recorded power.
+	 *
+	 * @return the power in W, or 0 if the trace is empty
+	 */
+	public double getLastPower() {
+		return size == 0 ? 0.0 : powers[slot(size - 1)];
+	}
+
+	/**
+	 * Checks if entries were overwritten, so the trace no longer starts at its first change point.
+	 *
+	 * @return true, if the oldest entries were overwritten
+	 */
+	public boolean isTruncated() {
+		return truncated;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getCapacity() {
+		return times.length;
+	}
+
+	/**
+	 * Finds the last entry at or before a time.
+	 *
+	 * @param time the time
+	 * @return the logical index of the entry, or -1 if the time is before the oldest one
+	 */
+	private int indexAt(double time) {
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (times[slot(middle)] <= time) {
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return high;
+	}
+
+	private int slot(int index) {
+		int slot = head + index;
+		return slot < times.length ? slot : slot - times.length;
+	}
+
+}
@@ -3,14 +3,22 @@ package com.shiyan.main;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import com.shiyan.models.Cloudlet;
 import com.shiyan.models.Vm;
+import com.shiyan.util.LatencyHistogram;
 
 public class PrintResult {
 	
 	public static String wayName = null;
 	
+	//按截止时间分为k类的QoS-MinMin算法中每个云任务的补偿类型，为空时按平均截止时间分为两类
+	public static Map<Integer, Integer> compensationTypes = null;
+	
+	//服务商的执行成本占收入的比例，满足QoS的任务的其余收入为盈利
+	public static double costFraction = 0.2;
+	
 	@SuppressWarnings("deprecation")
 	public static void printCloudletList(int cloudlets,List<Cloudlet> list,List<Vm> vmlist) {
 		
@@ -83,14 +91,16 @@ public class PrintResult {
 						+indent +indent+indent+indent+dft.format(cloudlet.getUserMoney()));
 				//从这里开始我们计算服务商的收益
 				if(checkFinalQoS(cloudlet,vm1)==0) {
-					allVmprofit-=cloudlet.getActualCPUTime()*vm1.getCostPerVm()*0.2;
+					allVmprofit-=cloudlet.getActualCPUTime()*vm1.getCostPerVm()*costFraction;
 				}
 				else if(checkFinalQoS(cloudlet,vm1)==1) {
 					if(wayName==null||wayName.equals("")) {
-						allVmprofit-=cloudlet.getActualCPUTime()*vm1.getCostPerVm()*0.2;
+						allVmprofit-=cloudlet.getActualCPUTime()*vm1.getCostPerVm()*costFraction;
 					}
 					else if(wayName.equals("QoSMinMin")) {
-						if(cloudlet.getDeadlineTime()<averageDeadTime) 
+						if(compensationTypes!=null&&compensationTypes.containsKey(cloudlet.getCloudletId()))
+							allVmprofit += calculateCloudletFinalPay(cloudlet,vmlist.get(cloudlet.getVmId()),compensationTypes.get(cloudlet.getCloudletId()));
+						else if(cloudlet.getDeadlineTime()<averageDeadTime) 
 							allVmprofit += calculateCloudletFinalPay(cloudlet,vmlist.get(cloudlet.getVmId()),1);
 						else
 							allVmprofit += calculateCloudletFinalPay(cloudlet,vmlist.get(cloudlet.getVmId()),2);
@@ -98,7 +108,7 @@ public class PrintResult {
 				}
 			}
 			else {
-				allVmprofit+= cloudlet.getActualCPUTime()*vmlist.get(cloudlet.getVmId()).getCostPerVm()*0.8;
+				allVmprofit+= cloudlet.getActualCPUTime()*vmlist.get(cloudlet.getVmId()).getCostPerVm()*(1-costFraction);
 			}
 		}
 		//算出每一个虚拟机中执行的所有任务的花费，作为服务商的最终收益
@@ -158,29 +168,70 @@ public class PrintResult {
 	}
 	//这里用来计算当我们降低QoS需求时，服务商最终所收到的盈利
 	public static double calculateCloudletFinalPay(Cloudlet cloudlet,Vm vm, int type) {
+		//服务商正常收入
+		double VmNormalIncome = vm.getCostPerVm()*cloudlet.getActualCPUTime();
+		return calculateFinalPay(VmNormalIncome, cloudlet.getFinishTime(), cloudlet.getDeadlineTime(),
+				cloudlet.getStartSubmit(), cloudlet.getUserMoney(), type);
+	}
+	
+	/**
+	 * 降低QoS需求时服务商的最终盈利，{@link StaticMappingEvaluator}不运行仿真时也用它计算
+	 * @param VmNormalIncome 服务商正常收入
+	 * @param finishTime 任务完成时间
+	 * @param deadlineTime 任务截止时间
+	 * @param startSubmit 任务提交时间
+	 * @param userMoney 用户的最高承受价格
+	 * @param type 补偿类型
+	 */
+	public static double calculateFinalPay(double VmNormalIncome, double finishTime, double deadlineTime,
+			double startSubmit, double userMoney, int type) {
+		return calculateFinalPay(VmNormalIncome, finishTime, deadlineTime, startSubmit, userMoney, type, costFraction);
+	}
+	
+	/**
+	 * 降低QoS需求时服务商的最终盈利，执行成本按给定的比例计算
+	 * @param costFraction 执行成本占收入的比例
+	 * @see #calculateFinalPay(double, double, double, double, double, int)
+	 */
+	public static double calculateFinalPay(double VmNormalIncome, double finishTime, double deadlineTime,
+			double startSubmit, double userMoney, int type, double costFraction) {
 		//获得云任务的延迟时间
-		double cloudletDealyTime = cloudlet.getFinishTime() - cloudlet.getDeadlineTime();
+		double cloudletDealyTime = finishTime - deadlineTime;
 		//任务原收益
 		//double cloudletPrimaryProfit = cloudlet.getUserMoney()-cloudlet.getCloudletLength()/vm.getMips()*vm.getCostPerVm();
 		//补偿率=任务延迟时间/任务截止时间
 		//double compensationProbability = cloudletDealyTime/(cloudletDealyTime-cloudlet.getStartSubmit());
 		
-		//服务商正常收入
-		double VmNormalIncome = vm.getCostPerVm()*cloudlet.getActualCPUTime();
-		
 		//补偿成本=虚拟机单位运行成本*虚拟机预计运行时间/（任务类型*（任务截止时间-任务提交时间））*任务延迟时间
-		double compensationCost = VmNormalIncome/(type*(cloudlet.getDeadlineTime()-cloudlet.getStartSubmit()))*cloudletDealyTime;
+		double compensationCost = VmNormalIncome/(type*(deadlineTime-startSubmit))*cloudletDealyTime;
 		//double compensationCost = cloudlet.getUserMoney()/(type*(cloudlet.getDeadlineTime()-cloudlet.getStartSubmit()))*cloudletDealyTime;
 		//云任务最终花费=服务商正常收入-补偿成本
 		double cloudletFinalCost = VmNormalIncome - compensationCost;
 		
 		//服务商最终盈利=服务商正常收入*80%-补偿成本
-		//虚拟机执行成本=服务商正常收入*20%
-		double cloudletFinalProfit = VmNormalIncome - VmNormalIncome*0.2 - compensationCost;
-		if(cloudletFinalCost > cloudlet.getUserMoney())
-			cloudletFinalProfit = -VmNormalIncome*0.2;//如果云任务最终花费大于用户的最高承受价格，用户将不会为任务支付任何费用，并且还会减去虚拟机的执行成本
+		//虚拟机执行成本=服务商正常收入*20%（costFraction）
+		double cloudletFinalProfit = VmNormalIncome - VmNormalIncome*costFraction - compensationCost;
+		if(cloudletFinalCost > userMoney)
+			cloudletFinalProfit = -VmNormalIncome*costFraction;//如果云任务最终花费大于用户的最高承受价格，用户将不会为任务支付任何费用，并且还会减去虚拟机的执行成本
 		return cloudletFinalProfit;
-		
-		
+	}
+
+	//输出代理中各调度算法每次调用和每个任务分配决策的延迟分布（微秒）
+	public static void printSchedulingLatency(DatacenterBroker broker) {
+		if (broker.getSchedulingAlgorithms().isEmpty()) {
+			return;
+		}
+		Log.printLine();
+		Log.printLine("========== SCHEDULING LATENCY (us) ==========");
+		Log.formatLine("%-14s%8s%12s%12s%12s%10s%10s%10s%10s%12s", "Algorithm", "Calls", "Call p50", "Call p99",
+				"Call max", "Decisions", "p50", "p99", "p999", "max");
+		for (String algorithm : broker.getSchedulingAlgorithms()) {
+			LatencyHistogram calls = broker.getBindLatency(algorithm);
+			LatencyHistogram decisions = broker.getDecisionLatency(algorithm);
+			Log.formatLine("%-14s%8d%12.1f%12.1f%12.1f%10d%10.2f%10.2f%10.2f%12.1f", algorithm, calls.getCount(),
+					calls.getP50() / 1e3, calls.getP99() / 1e3, calls.getMax() / 1e3, decisions.getCount(),
+					decisions.getP50() / 1e3, decisions.getP99() / 1e3, decisions.getP999() / 1e3,
+					decisions.getMax() / 1e3);
+		}
 	}
 }
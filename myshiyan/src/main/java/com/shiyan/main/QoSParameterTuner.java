@@ -0,0 +1,465 @@
+package com.shiyan.main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.shiyan.core.CloudSim;
+import com.shiyan.models.Cloudlet;
+import com.shiyan.models.Vm;
+import com.shiyan.scheduler.QoSMinMinPolicy;
+import com.shiyan.scheduler.Schedule;
+import com.shiyan.scheduler.SldPolicy;
+import com.shiyan.scheduler.TaskDescriptor;
+import com.shiyan.scheduler.VmDescriptor;
+
+/**
+ * Auto-tuner of the parameters of the QoS-MinMin algorithm.
+ * QoS-MinMin算法参数的自动调优
+ * <p>
+ * {@link DatacenterBroker#bindCloudletsToVmsQoSMinMin()} has three parameters: the compensation type of the
+ * cloudlets with a deadline below the average, that of the other ones, and the cost fraction {@link
+ * DatacenterBroker#SLD} requires a late cloudlet to still cover. The tuner tries every combination of types
+ * up to {@link #setMaxType(int)} and of the given cost fractions, and returns the one giving the largest
+ * provider profit, as {@link PrintResult} counts it with {@link PrintResult#costFraction}.
+ * <p>
+ * A setting is evaluated without running the simulation: the sampled cloudlets and VMs are described for
+ * the scheduling library and bound by the {@link QoSMinMinPolicy} the broker runs, so the replay makes
+ * the same choices as the broker, and the resulting mapping is given to a {@link StaticMappingEvaluator}. The search is a successive halving: every setting is first evaluated on a
+ * small sample of the workload, the best {@code 1/eta} of them on a sample {@code eta} times larger, and so
+ * on up to the whole workload, so most settings only cost a small sample; the settings tied with the last
+ * one kept are kept too. A sample takes VMs evenly across the capacities and random cloudlets in
+ * proportion to the sampled capacity, so it is as loaded as the whole workload. The settings of a round are
+ * evaluated in parallel on a {@link ForkJoinPool}; the cloudlets are drawn from a seeded {@link Random} and
+ * ties are broken by setting order, so the result does not depend on the parallelism.
+ *
+ * @see DatacenterBroker#setQoSMinMinTypes(int, int)
+ * @see DatacenterBroker#setSldCostFraction(double)
+ */
+public class QoSParameterTuner {
+
+	/** The cloudlets to bind, in the order of the broker's cloudlet list. */
+	private final List<? extends Cloudlet> cloudletList;
+
+	/** The VMs, in the order of the broker's VM list. */
+	private final List<? extends Vm> vmList;
+
+	/** The time at which the broker binds the cloudlets, i.e. the initial ready time of the VMs. */
+	private final double bindTime;
+
+	/** The time at which the cloudlets reach their VMs. */
+	private final double startTime;
+
+	/** The income share the provider pays as running cost, read when the tuner is created. */
+	private final double costFraction = PrintResult.costFraction;
+
+	/** The description of each cloudlet, by position in {@link #cloudletList}. */
+	private final TaskDescriptor[] tasks;
+
+	/** The capacity ({@code mips * pes}) of each VM, by position in {@link #vmList}. */
+	private final double[] capacity;
+
+	/** The total capacity of the VMs. */
+	private double totalCapacity;
+
+	/** The positions of the VMs, by capacity then position. */
+	private final int[] capacityOrder;
+
+	private int maxType = 4;
+
+	private double[] sldCostFractions = { 0.0, 0.05, 0.1, 0.15, 0.2, 0.25, 0.3 };
+
+	private int eta = 3;
+
+	/** The least number of cloudlets a sample may have. */
+	private int minSampleSize = 50;
+
+	/** The least number of VMs a sample may have; with fewer, the order of the settings is mostly noise. */
+	private int minSampleVmCount = 4;
+
+	private long seed = 1L;
+
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+
+	/** The number of settings evaluated by the last search, counting every round. */
+	private int evaluations;
+
+	/**
+	 * Creates a tuner for the given cloudlets and VMs, binding at the current simulation time.
+	 *
+	 * @param cloudletList the cloudlets, in the order of the broker's cloudlet list
+	 * @param vmList the VMs, in the order of the broker's VM list
+	 * @param startTime the time at which the cloudlets reach their VMs
+	 */
+	public QoSParameterTuner(List<? extends Cloudlet> cloudletList, List<? extends Vm> vmList, double startTime) {
+		this.cloudletList = cloudletList;
+		this.vmList = vmList;
+		this.bindTime = CloudSim.clock();
+		this.startTime = startTime;
+
+		tasks = new TaskDescriptor[cloudletList.size()];
+		for (int i = 0; i < tasks.length; i++) {
+			tasks[i] = DatacenterBroker.toTaskDescriptor(cloudletList.get(i));
+		}
+
+		capacity = new double[vmList.size()];
+		Integer[] vmOrder = new Integer[vmList.size()];
+		for (int j = 0; j < vmList.size(); j++) {
+			capacity[j] = vmList.get(j).getMips() * vmList.get(j).getNumberOfPes();
+			totalCapacity += capacity[j];
+			vmOrder[j] = j;
+		}
+		Arrays.sort(vmOrder, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Double.compare(capacity[a], capacity[b]);
+			}
+		});
+		capacityOrder = new int[vmList.size()];
+		for (int j = 0; j < vmList.size(); j++) {
+			capacityOrder[j] = vmOrder[j];
+		}
+	}
+
+	/**
+	 * Searches for the setting with the largest profit.
+	 *
+	 * @return the best setting, evaluated on the whole workload
+	 */
+	public Setting tune() {
+		List<Setting> candidates = new ArrayList<Setting>();
+		for (int tight = 1; tight <= maxType; tight++) {
+			for (int loose = 1; loose <= maxType; loose++) {
+				for (double fraction : sldCostFractions) {
+					candidates.add(new Setting(tight, loose, fraction));
+				}
+			}
+		}
+
+		// 轮数：每一轮样本扩大eta倍，最小的样本不少于minSampleSize个任务和minSampleVmCount台虚拟机
+		int cloudletCount = cloudletList.size();
+		int rounds = 0;
+		long scale = 1;
+		while (scale * eta <= candidates.size() && cloudletCount / (scale * eta) >= minSampleSize
+				&& vmList.size() / (scale * eta) >= minSampleVmCount) {
+			scale *= eta;
+			rounds++;
+		}
+
+		int[] cloudletPermutation = permutation(cloudletCount, new Random(seed));
+
+		evaluations = 0;
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			for (int round = 0; round <= rounds; round++) {
+				Workload workload = new Workload(cloudletPermutation, 1.0 / scale);
+				pool.invoke(new EvaluateTask(candidates, workload, 0, candidates.size()));
+				evaluations += candidates.size();
+
+				List<Setting> ranked = new ArrayList<Setting>(candidates);
+				Collections.sort(ranked, new Comparator<Setting>() {
+					@Override
+					public int compare(Setting a, Setting b) {
+						return Double.compare(b.profit, a.profit);
+					}
+				});
+				int survivors = round == rounds ? 1 : (candidates.size() + eta - 1) / eta;
+				// 小样本上很多设置的盈利相同，与最后一个保留的设置并列的设置也都保留
+				while (round < rounds && survivors < ranked.size()
+						&& ranked.get(survivors).profit == ranked.get(survivors - 1).profit) {
+					survivors++;
+				}
+				candidates = new ArrayList<Setting>(ranked.subList(0, survivors));
+				scale /= eta;
+			}
+		} finally {
+			pool.shutdown();
+		}
+		return candidates.get(0);
+	}
+
+	/**
+	 * Returns a random permutation of {@code 0 .. n - 1}.
+	 */
+	private static int[] permutation(int n, Random random) {
+		int[] values = new int[n];
+		for (int i = 0; i < n; i++) {
+			values[i] = i;
+		}
+		for (int i = n - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int swap = values[i];
+			values[i] = values[j];
+			values[j] = swap;
+		}
+		return values;
+	}
+
+	/**
+	 * Replays QoS-MinMin with the given setting on a sample and evaluates the result.
+	 */
+	private void evaluate(Setting setting, Workload workload) {
+		QoSMinMinPolicy policy = new QoSMinMinPolicy(new SldPolicy(setting.sldCostFraction));
+		policy.setCompensationTypes(setting.tightType, setting.looseType);
+		Schedule schedule = policy.schedule(workload.tasks, workload.vms);
+
+		int assignedCount = schedule.getAssignedCount();
+		List<Cloudlet> bound = new ArrayList<Cloudlet>(assignedCount);
+		int[] positions = new int[assignedCount];
+		Map<Integer, Integer> types = new HashMap<Integer, Integer>();
+		for (int k = 0; k < assignedCount; k++) {
+			int task = schedule.getAssignedTask(k);
+			Cloudlet cloudlet = cloudletList.get(workload.cloudlets[task]);
+			bound.add(cloudlet);
+			positions[k] = schedule.getVm(task);
+			types.put(cloudlet.getCloudletId(), schedule.getCompensationType(task));
+		}
+
+		StaticMappingEvaluator evaluator = new StaticMappingEvaluator(workload.vmList, startTime);
+		evaluator.setCostFraction(costFraction);
+		evaluator.setQoSMinMin(true);
+		evaluator.setCompensationTypes(types);
+		evaluator.evaluate(bound, positions);
+		setting.profit = evaluator.getProfit();
+		setting.violations = evaluator.getViolationCount();
+		setting.canceled = workload.tasks.size() - assignedCount;
+	}
+
+	/**
+	 * A sample of the cloudlets and VMs.
+	 */
+	private class Workload {
+
+		/** The positions of the sampled cloudlets, in cloudlet-list order. */
+		final int[] cloudlets;
+
+		/** The descriptions of the sampled cloudlets, in cloudlet-list order. */
+		final List<TaskDescriptor> tasks = new ArrayList<TaskDescriptor>();
+
+		/** The descriptions of the sampled VMs, in VM-list order, ready at the binding time. */
+		final List<VmDescriptor> vms = new ArrayList<VmDescriptor>();
+
+		final List<Vm> vmList = new ArrayList<Vm>();
+
+		Workload(int[] cloudletPermutation, double share) {
+			// 按容量分层抽取虚拟机，再按抽到的容量比例抽取任务，使样本的负载与整体相同
+			int vmCount = Math.max(1, (int) Math.ceil(capacityOrder.length * share));
+			int[] positions = new int[vmCount];
+			double sampledCapacity = 0;
+			for (int k = 0; k < vmCount; k++) {
+				positions[k] = capacityOrder[(int) ((k + 0.5) * capacityOrder.length / vmCount)];
+				sampledCapacity += capacity[positions[k]];
+			}
+			Arrays.sort(positions);
+			for (int k : positions) {
+				Vm vm = QoSParameterTuner.this.vmList.get(k);
+				vmList.add(vm);
+				vms.add(new VmDescriptor(vm.getMips(), vm.getCostPerVm(), bindTime));
+			}
+			int cloudletCount = vmCount == capacityOrder.length ? cloudletPermutation.length
+					: (int) Math.min(cloudletPermutation.length,
+							Math.max(1, Math.round(cloudletPermutation.length * sampledCapacity / totalCapacity)));
+			cloudlets = Arrays.copyOf(cloudletPermutation, cloudletCount);
+			Arrays.sort(cloudlets);
+			for (int i : cloudlets) {
+				tasks.add(QoSParameterTuner.this.tasks[i]);
+			}
+		}
+
+	}
+
+	/**
+	 * Evaluates a slice of the settings, splitting it in halves until slices are small.
+	 */
+	@SuppressWarnings("serial")
+	private class EvaluateTask extends RecursiveAction {
+
+		private final List<Setting> settings;
+
+		private final Workload workload;
+
+		private final int from;
+
+		private final int to;
+
+		EvaluateTask(List<Setting> settings, Workload workload, int from, int to) {
+			this.settings = settings;
+			this.workload = workload;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= 2) {
+				for (int s = from; s < to; s++) {
+					evaluate(settings.get(s), workload);
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new EvaluateTask(settings, workload, from, middle),
+					new EvaluateTask(settings, workload, middle, to));
+		}
+
+	}
+
+	/**
+	 * A setting of the QoS-MinMin parameters, with its result on the last workload it was evaluated on.
+	 */
+	public static final class Setting {
+
+		private final int tightType;
+
+		private final int looseType;
+
+		private final double sldCostFraction;
+
+		private double profit;
+
+		private int violations;
+
+		private int canceled;
+
+		Setting(int tightType, int looseType, double sldCostFraction) {
+			this.tightType = tightType;
+			this.looseType = looseType;
+			this.sldCostFraction = sldCostFraction;
+		}
+
+		/**
+		 * Makes a broker use this setting.
+		 *
+		 * @param broker the broker
+		 */
+		public void apply(DatacenterBroker broker) {
+			broker.setQoSMinMinTypes(tightType, looseType);
+			broker.setSldCostFraction(sldCostFraction);
+		}
+
+		public int getTightType() {
+			return tightType;
+		}
+
+		public int getLooseType() {
+			return looseType;
+		}
+
+		public double getSldCostFraction() {
+			return sldCostFraction;
+		}
+
+		public double getProfit() {
+			return profit;
+		}
+
+		public int getViolationCount() {
+			return violations;
+		}
+
+		/**
+		 * Gets the number of cloudlets QoS-MinMin cancels or leaves unbound with this setting.
+		 *
+		 * @return the number of cloudlets not run
+		 */
+		public int getCanceledCount() {
+			return canceled;
+		}
+
+		@Override
+		public String toString() {
+			return "types " + tightType + "/" + looseType + ", SLD cost fraction " + sldCostFraction + ", profit "
+					+ profit + ", violations " + violations + ", canceled " + canceled;
+		}
+
+	}
+
+	public int getMaxType() {
+		return maxType;
+	}
+
+	/**
+	 * Sets the largest compensation type tried.
+	 *
+	 * @param maxType the largest type, at least 1
+	 */
+	public void setMaxType(int maxType) {
+		this.maxType = maxType;
+	}
+
+	public double[] getSldCostFractions() {
+		return sldCostFractions.clone();
+	}
+
+	/**
+	 * Sets the cost fractions tried for {@link DatacenterBroker#SLD}.
+	 *
+	 * @param sldCostFractions the cost fractions
+	 */
+	public void setSldCostFractions(double... sldCostFractions) {
+		this.sldCostFractions = sldCostFractions.clone();
+	}
+
+	public int getEta() {
+		return eta;
+	}
+
+	/**
+	 * Sets the factor by which a round of the successive halving shrinks the settings and grows the sample.
+	 *
+	 * @param eta the factor, at least 2
+	 */
+	public void setEta(int eta) {
+		this.eta = eta;
+	}
+
+	public int getMinSampleSize() {
+		return minSampleSize;
+	}
+
+	public void setMinSampleSize(int minSampleSize) {
+		this.minSampleSize = minSampleSize;
+	}
+
+	public int getMinSampleVmCount() {
+		return minSampleVmCount;
+	}
+
+	public void setMinSampleVmCount(int minSampleVmCount) {
+		this.minSampleVmCount = minSampleVmCount;
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Sets the number of threads evaluating the settings.
+	 *
+	 * @param parallelism the number of threads
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Gets the number of settings evaluated by the last search, counting every round.
+	 *
+	 * @return the number of evaluations
+	 */
+	public int getEvaluationCount() {
+		return evaluations;
+	}
+
+}
@@ -0,0 +1,416 @@
+package com.shiyan.main;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import com.shiyan.models.Vm;
+
+/**
+ * Advance reservations of VM time slots.
+ * 虚拟机时间段的预先预留服务
+ * <p>
+ * A reservation books a VM exclusively over the half-open interval {@code [start, start + duration)}, so
+ * the reservations of a VM never overlap. Each VM keeps its reservations in a treap ordered by start time,
+ * every node being augmented with the earliest start, the latest end and the largest free gap between two
+ * reservations of its subtree. Both the conflict check of a booking and the search of the earliest free
+ * slot of a given length then cost {@code O(log n)} for {@code n} reservations on the VM.
+ * <p>
+ * Brokers book slots ahead of time and put the returned id on the cloudlet with
+ * {@link com.shiyan.models.Cloudlet#setReservationId(int)}; a datacenter sharing this service admits such a
+ * cloudlet at the start time of its reservation (see {@link Datacenter#setReservationService}). The
+ * reservations are stored in flat arrays indexed by id, so millions of bookings remain cheap.
+ * <p>
+ * VMs are told apart by user id and VM id, so several brokers may share one service.
+ *
+ * @see DatacenterBroker#reserveCloudlet(int, int, double, double)
+ */
+public class ReservationService {
+
+	/** The seed of the treap priorities, fixed so that runs are reproducible. */
+	private static final long PRIORITY_SEED = 2024L;
+
+	/** The slots booked on each VM, by {@link #key(int, int)}. 每个虚拟机的预留时间段 */
+	private final Map<Long, SlotTree> trees = new HashMap<Long, SlotTree>();
+
+	/** The start time of each reservation, by id; NaN once canceled. */
+	private double[] starts = new double[16];
+
+	/** The end time of each reservation, by id. */
+	private double[] ends = new double[16];
+
+	/** The VM of each reservation, by id. */
+	private int[] vmIds = new int[16];
+
+	/** The owner of the VM of each reservation, by id. */
+	private int[] userIds = new int[16];
+
+	/** The next reservation id; ids start at 1 as required by the cloudlets. */
+	private int nextId = 1;
+
+	/** The number of reservations not canceled. */
+	private int activeCount;
+
+	private final Random random = new Random(PRIORITY_SEED);
+
+	/**
+	 * Books a VM over {@code [start, start + duration)}.
+	 *
+	 * @param vm the VM
+	 * @param start the start time
+	 * @param duration the duration, greater than 0
+	 * @return the id of the reservation, or -1 if the slot overlaps another reservation of the VM
+	 */
+	public int book(Vm vm, double start, double duration) {
+		return book(vm.getUserId(), vm.getId(), start, duration);
+	}
+
+	/**
+	 * Books a VM over {@code [start, start + duration)}.
+	 *
+	 * @param userId the owner of the VM
+	 * @param vmId the id of the VM
+	 * @param start the start time
+	 * @param duration the duration, greater than 0
+	 * @return the id of the reservation, or -1 if the slot overlaps another reservation of the VM
+	 */
+	public int book(int userId, int vmId, double start, double duration) {
+		if (!(duration > 0) || start < 0 || Double.isInfinite(start + duration)) {
+			throw new IllegalArgumentException("Invalid reservation [" + start + ", " + (start + duration) + ")");
+		}
+		SlotTree tree = getTree(userId, vmId, true);
+		double end = start + duration;
+		if (tree.overlaps(start, end)) {
+			return -1;
+		}
+		tree.insert(new Slot(start, end, random.nextInt()));
+		return store(userId, vmId, start, end);
+	}
+
+	/**
+	 * Books the earliest free slot of a VM that starts at or after the given time.
+	 *
+	 * @param vm the VM
+	 * @param from the earliest start time
+	 * @param duration the duration, greater than 0
+	 * @return the id of the reservation
+	 */
+	public int bookEarliest(Vm vm, double from, double duration) {
+		return book(vm, findEarliestFit(vm, from, duration), duration);
+	}
+
+	/**
+	 * Finds the earliest start time, not before {@code from}, at which a VM is free for {@code duration}.
+	 * 查找虚拟机最早的空闲时间段
+	 *
+	 * @param vm the VM
+	 * @param from the earliest start time
+	 * @param duration the duration
+	 * @return the earliest start time
+	 */
+	public double findEarliestFit(Vm vm, double from, double duration) {
+		SlotTree tree = getTree(vm.getUserId(), vm.getId(), false);
+		return tree == null ? from : tree.findEarliestFit(from, duration);
+	}
+
+	/**
+	 * Checks whether a VM is free over {@code [start, start + duration)}.
+	 *
+	 * @param vm the VM
+	 * @param start the start time
+	 * @param duration the duration
+	 * @return true if no reservation of the VM overlaps the slot
+	 */
+	public boolean isFree(Vm vm, double start, double duration) {
+		SlotTree tree = getTree(vm.getUserId(), vm.getId(), false);
+		return tree == null || !tree.overlaps(start, start + duration);
+	}
+
+	/**
+	 * Cancels a reservation and frees its slot.
+	 *
+	 * @param reservationId the id of the reservation
+	 * @return false if there is no such reservation or it was already canceled
+	 */
+	public boolean cancel(int reservationId) {
+		if (!isActive(reservationId)) {
+			return false;
+		}
+		getTree(userIds[reservationId], vmIds[reservationId], false).remove(starts[reservationId]);
+		starts[reservationId] = Double.NaN;
+		activeCount--;
+		return true;
+	}
+
+	/**
+	 * Checks whether a reservation exists and was not canceled.
+	 *
+	 * @param reservationId the id of the reservation
+	 * @return true if the reservation is active
+	 */
+	public boolean isActive(int reservationId) {
+		return reservationId > 0 && reservationId < nextId && !Double.isNaN(starts[reservationId]);
+	}
+
+	/**
+	 * Gets the start time of a reservation.
+	 *
+	 * @param reservationId the id of the reservation
+	 * @return the start time, or NaN if the reservation is not active
+	 */
+	public double getStartTime(int reservationId) {
+		return isActive(reservationId) ? starts[reservationId] : Double.NaN;
+	}
+
+	/**
+	 * Gets the end time of a reservation.
+	 *
+	 * @param reservationId the id of the reservation
+	 * @return the end time, or NaN if the reservation is not active
+	 */
+	public double getEndTime(int reservationId) {
+		return isActive(reservationId) ? ends[reservationId] : Double.NaN;
+	}
+
+	/**
+	 * Gets the VM a reservation books.
+	 *
+	 * @param reservationId the id of the reservation
+	 * @return the id of the VM, or -1 if there is no such reservation
+	 */
+	public int getVmId(int reservationId) {
+		return reservationId > 0 && reservationId < nextId ? vmIds[reservationId] : -1;
+	}
+
+	/**
+	 * Gets the number of active reservations.
+	 *
+	 * @return the number of reservations not canceled
+	 */
+	public int getReservationCount() {
+		return activeCount;
+	}
+
+	/**
+	 * Gets the number of active reservations of a VM.
+	 *
+	 * @param vm the VM
+	 * @return the number of reservations of the VM
+	 */
+	public int getReservationCount(Vm vm) {
+		SlotTree tree = getTree(vm.getUserId(), vm.getId(), false);
+		return tree == null ? 0 : tree.size;
+	}
+
+	private int store(int userId, int vmId, double start, double end) {
+		int id = nextId++;
+		if (id == starts.length) {
+			int capacity = starts.length * 2;
+			starts = Arrays.copyOf(starts, capacity);
+			ends = Arrays.copyOf(ends, capacity);
+			vmIds = Arrays.copyOf(vmIds, capacity);
+			userIds = Arrays.copyOf(userIds, capacity);
+		}
+		starts[id] = start;
+		ends[id] = end;
+		vmIds[id] = vmId;
+		userIds[id] = userId;
+		activeCount++;
+		return id;
+	}
+
+	private SlotTree getTree(int userId, int vmId, boolean create) {
+		Long key = key(userId, vmId);
+		SlotTree tree = trees.get(key);
+		if (tree == null && create) {
+			tree = new SlotTree();
+			trees.put(key, tree);
+		}
+		return tree;
+	}
+
+	private static long key(int userId, int vmId) {
+		return ((long) userId << 32) | (vmId & 0xffffffffL);
+	}
+
+	/**
+	 * A booked slot, node of the treap of its VM.
+	 */
+	private static final class Slot {
+
+		final double start;
+
+		final double end;
+
+		final int priority;
+
+		Slot left;
+
+		Slot right;
+
+		/** The earliest start of the subtree, i.e. the start of its leftmost slot. */
+		double minStart;
+
+		/** The latest end of the subtree, i.e. the end of its rightmost slot. */
+		double maxEnd;
+
+		/** The largest free gap between two consecutive slots of the subtree. */
+		double maxGap;
+
+		Slot(double start, double end, int priority) {
+			this.start = start;
+			this.end = end;
+			this.priority = priority;
+			update();
+		}
+
+		void update() {
+			minStart = left == null ? start : left.minStart;
+			maxEnd = right == null ? end : right.maxEnd;
+			double gap = 0;
+			if (left != null) {
+				gap = Math.max(left.maxGap, start - left.maxEnd);
+			}
+			if (right != null) {
+				gap = Math.max(gap, Math.max(right.maxGap, right.minStart - end));
+			}
+			maxGap = gap;
+		}
+
+	}
+
+	/**
+	 * The non-overlapping slots of one VM, in a treap ordered by start time.
+	 */
+	private static final class SlotTree {
+
+		Slot root;
+
+		int size;
+
+		/** The candidate start time of {@link #findEarliestFit(double, double)}. */
+		private double cursor;
+
+		/**
+		 * Checks whether a slot overlaps {@code [start, end)}: only the last slot starting before
+		 * {@code end} can, since the slots do not overlap each other.
+		 */
+		boolean overlaps(double start, double end) {
+			Slot node = root;
+			Slot last = null;
+			while (node != null) {
+				if (node.start < end) {
+					last = node;
+					node = node.right;
+				} else {
+					node = node.left;
+				}
+			}
+			return last != null && last.end > start;
+		}
+
+		void insert(Slot slot) {
+			root = insert(root, slot);
+			size++;
+		}
+
+		void remove(double start) {
+			root = remove(root, start);
+			size--;
+		}
+
+		private static Slot insert(Slot node, Slot slot) {
+			if (node == null) {
+				return slot;
+			}
+			if (slot.start < node.start) {
+				node.left = insert(node.left, slot);
+				if (node.left.priority > node.priority) { // 右旋
+					Slot top = node.left;
+					node.left = top.right;
+					node.update();
+					top.right = node;
+					node = top;
+				}
+			} else {
+				node.right = insert(node.right, slot);
+				if (node.right.priority > node.priority) { // 左旋
+					Slot top = node.right;
+					node.right = top.left;
+					node.update();
+					top.left = node;
+					node = top;
+				}
+			}
+			node.update();
+			return node;
+		}
+
+		private static Slot remove(Slot node, double start) {
+			if (node.start == start) {
+				return merge(node.left, node.right);
+			}
+			if (start < node.start) {
+				node.left = remove(node.left, start);
+			} else {
+				node.right = remove(node.right, start);
+			}
+			node.update();
+			return node;
+		}
+
+		/** Merges two subtrees whose slots of the first all start before those of the second. */
+		private static Slot merge(Slot a, Slot b) {
+			if (a == null) {
+				return b;
+			}
+			if (b == null) {
+				return a;
+			}
+			if (a.priority > b.priority) {
+				a.right = merge(a.right, b);
+				a.update();
+				return a;
+			}
+			b.left = merge(a, b.left);
+			b.update();
+			return b;
+		}
+
+		double findEarliestFit(double from, double duration) {
+			cursor = from;
+			fit(root, duration);
+			return cursor;
+		}
+
+		/**
+		 * Moves {@link #cursor} past the slots of the subtree that leave no room for {@code duration} before
+		 * it. Subtrees lying after the cursor whose largest gap is too small are skipped as a whole.
+		 *
+		 * @return true if a free slot starts at the cursor
+		 */
+		private boolean fit(Slot node, double duration) {
+			if (node == null || node.maxEnd <= cursor) {
+				return false;
+			}
+			if (node.minStart >= cursor + duration) {
+				return true;
+			}
+			if (node.minStart >= cursor && node.maxGap < duration) {
+				cursor = node.maxEnd;
+				return false;
+			}
+			if (fit(node.left, duration)) {
+				return true;
+			}
+			if (node.start >= cursor + duration) {
+				return true;
+			}
+			cursor = Math.max(cursor, node.end);
+			return fit(node.right, duration);
+		}
+
+	}
+
+}
@@ -0,0 +1,210 @@
+package com.shiyan.main;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.shiyan.models.Cloudlet;
+import com.shiyan.models.Vm;
+
+/**
+ * The expected completion times of the cloudlets a broker sent, kept up to date with the finish times the
+ * datacenters report, for the rolling-horizon rescheduling of the cloudlets still waiting.
+ * 滚动时域重调度的计划：记录已发送云任务的预计完成时间，并根据实际完成时间修正
+ * <p>
+ * Every VM runs its cloudlets in the order they were sent, each one as soon as enough of its PEs are free,
+ * for {@code length / mips}, as in {@link StaticMappingEvaluator}. A cloudlet is planned when it is sent,
+ * on the planned ready times of the PEs of its VM. When a cloudlet comes back, its drift is its actual
+ * finish time minus its expected one; a drift beyond the threshold shifts the expected completion of every
+ * cloudlet still queued on that VM, in {@code O(p)} for a VM of {@code p} PEs, through an offset per VM
+ * rather than cloudlet by cloudlet. Smaller drifts are not absorbed, so they add up until they are beyond
+ * the threshold too.
+ * <p>
+ * Finding a VM that would finish a cloudlet earlier looks at every VM once, so replanning {@code k}
+ * cloudlets costs {@code O(k m)} for {@code m} VMs, whatever the number of cloudlets sent.
+ *
+ * @see DatacenterBroker#rescheduleCloudlets(Cloudlet)
+ */
+public class RollingHorizonPlanner {
+
+	/** The drift, in seconds, beyond which the plan of a VM is corrected and its cloudlets replanned. */
+	private final double threshold;
+
+	/** The planned time each PE of each VM is free, earliest first, by VM id. */
+	private final Map<Integer, double[]> peReadyTimes = new HashMap<Integer, double[]>();
+
+	/** The drift accumulated by each VM since its cloudlets were planned, by VM id. 虚拟机的累计偏差 */
+	private final Map<Integer, Double> offsets = new HashMap<Integer, Double>();
+
+	/** The expected finish time of each planned cloudlet without the offset of its VM, by cloudlet id. */
+	private final Map<Integer, Double> baseFinishTimes = new HashMap<Integer, Double>();
+
+	/** The VM each planned cloudlet is planned on, by cloudlet id. */
+	private final Map<Integer, Integer> plannedVms = new HashMap<Integer, Integer>();
+
+	/**
+	 * Creates an empty plan.
+	 *
+	 * @param threshold the drift, in seconds, beyond which the plan of a VM is corrected
+	 */
+	public RollingHorizonPlanner(double threshold) {
+		if (threshold <= 0) {
+			throw new IllegalArgumentException("The threshold must be positive");
+		}
+		this.threshold = threshold;
+	}
+
+	/**
+	 * Plans a cloudlet sent to a VM at the given time after the cloudlets already planned on it.
+	 *
+	 * @param cloudletId the id of the cloudlet
+	 * @param length the length of the cloudlet still to run, in MI
+	 * @param pes the number of PEs of the cloudlet
+	 * @param vm the VM
+	 * @param time the time the cloudlet is sent
+	 * @return the expected finish time of the cloudlet
+	 */
+	public double plan(int cloudletId, double length, int pes, Vm vm, double time) {
+		double[] ready = getPeReadyTimes(vm);
+		pes = Math.min(pes, ready.length);
+		double finish = Math.max(time, ready[pes - 1]) + length / vm.getMips();
+		for (int k = 0; k < pes; k++) {
+			ready[k] = finish;
+		}
+		Arrays.sort(ready);
+		baseFinishTimes.put(cloudletId, finish - getOffset(vm.getId()));
+		plannedVms.put(cloudletId, vm.getId());
+		return finish;
+	}
+
+	/**
+	 * Takes the finish time of a returned cloudlet into account and forgets the cloudlet. When its drift is
+	 * beyond the threshold, the cloudlets still queued on its VM are expected to drift as much.
+	 *
+	 * @param cloudlet the returned cloudlet
+	 * @return the drift of the VM of the cloudlet if beyond the threshold, 0 otherwise
+	 */
+	public double observe(Cloudlet cloudlet) {
+		int cloudletId = cloudlet.getCloudletId();
+		Integer vmId = plannedVms.remove(cloudletId);
+		Double base = baseFinishTimes.remove(cloudletId);
+		if (vmId == null || cloudlet.getStatus() != Cloudlet.SUCCESS) {
+			return 0.0;
+		}
+		double drift = cloudlet.getFinishTime() - (base + getOffset(vmId));
+		if (Math.abs(drift) <= threshold) {
+			return 0.0;
+		}
+		offsets.put(vmId, getOffset(vmId) + drift);
+		double[] ready = peReadyTimes.get(vmId);
+		for (int k = 0; k < ready.length; k++) {
+			ready[k] += drift;
+		}
+		return drift;
+	}
+
+	/**
+	 * Finds the VM that would finish a planned cloudlet first if it were sent there now, provided it beats
+	 * the expected finish time of the cloudlet by more than the threshold.
+	 *
+	 * @param cloudletId the id of the cloudlet
+	 * @param length the length of the cloudlet still to run, in MI
+	 * @param pes the number of PEs of the cloudlet
+	 * @param vmList the VMs the cloudlet may go to
+	 * @param time the current time
+	 * @return the VM, or <tt>null</tt> if no VM is earlier enough
+	 */
+	public Vm findEarlierVm(int cloudletId, double length, int pes, List<? extends Vm> vmList, double time) {
+		double bestFinish = getExpectedFinishTime(cloudletId) - threshold;
+		Vm best = null;
+		for (Vm vm : vmList) {
+			double[] ready = getPeReadyTimes(vm);
+			double finish = Math.max(time, ready[Math.min(pes, ready.length) - 1]) + length / vm.getMips();
+			if (finish < bestFinish) {
+				bestFinish = finish;
+				best = vm;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Moves a planned cloudlet at the tail of the queue of its VM to the tail of the queue of another VM.
+	 * The PEs it held on its VM are freed from its expected start time.
+	 *
+	 * @param cloudletId the id of the cloudlet
+	 * @param length the length of the cloudlet still to run, in MI
+	 * @param pes the number of PEs of the cloudlet
+	 * @param from the VM the cloudlet is planned on
+	 * @param to the VM the cloudlet goes to
+	 * @param time the time the cloudlet is moved
+	 * @return the expected finish time of the cloudlet on its new VM
+	 */
+	public double move(int cloudletId, double length, int pes, Vm from, Vm to, double time) {
+		if (isPlannedOn(cloudletId, from.getId())) {
+			double finish = getExpectedFinishTime(cloudletId);
+			double start = finish - length / from.getMips();
+			double[] ready = getPeReadyTimes(from);
+			double tolerance = 1e-9 * Math.max(1.0, Math.abs(finish));
+			int freed = 0;
+			for (int k = ready.length - 1; k >= 0 && freed < pes; k--) {
+				if (Math.abs(ready[k] - finish) <= tolerance) {
+					ready[k] = start;
+					freed++;
+				}
+			}
+			Arrays.sort(ready);
+		}
+		return plan(cloudletId, length, pes, to, time);
+	}
+
+	/**
+	 * Gets whether a cloudlet is planned on a VM. A cloudlet moved away from a VM is no longer planned on it
+	 * even if the datacenter did not move it yet.
+	 *
+	 * @param cloudletId the id of the cloudlet
+	 * @param vmId the id of the VM
+	 * @return true if the cloudlet is planned on the VM
+	 */
+	public boolean isPlannedOn(int cloudletId, int vmId) {
+		Integer plannedVm = plannedVms.get(cloudletId);
+		return plannedVm != null && plannedVm == vmId;
+	}
+
+	/**
+	 * Gets the expected finish time of a planned cloudlet, drift of its VM included.
+	 *
+	 * @param cloudletId the id of the cloudlet
+	 * @return the expected finish time, or NaN if the cloudlet is not planned
+	 */
+	public double getExpectedFinishTime(int cloudletId) {
+		Double base = baseFinishTimes.get(cloudletId);
+		return base == null ? Double.NaN : base + getOffset(plannedVms.get(cloudletId));
+	}
+
+	/**
+	 * Gets the drift a VM accumulated since its first cloudlet was planned.
+	 *
+	 * @param vmId the id of the VM
+	 * @return the drift, positive when the VM is late
+	 */
+	public double getOffset(int vmId) {
+		Double offset = offsets.get(vmId);
+		return offset == null ? 0.0 : offset;
+	}
+
+	public double getThreshold() {
+		return threshold;
+	}
+
+	private double[] getPeReadyTimes(Vm vm) {
+		double[] ready = peReadyTimes.get(vm.getId());
+		if (ready == null) {
+			ready = new double[vm.getNumberOfPes()];
+			peReadyTimes.put(vm.getId(), ready);
+		}
+		return ready;
+	}
+
+}
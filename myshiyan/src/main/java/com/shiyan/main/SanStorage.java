@@ -0,0 +1,109 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package com.shiyan.main;
+
+/**
+ * A storage area network (SAN): a hard drive reached through a network. Adding or getting a file also
+ * takes the latency of the network and the size of the file over its bandwidth.
+ * 存储区域网络：在硬盘时间之上加上网络延迟和传输时间
+ *
+ * @author Rodrigo N. Calheiros
+ * @since CloudSim Toolkit 1.0
+ */
+public class SanStorage extends HarddriveStorage {
+
+	/** The bandwidth of the network in MB/sec. */
+	private final double bandwidth;
+
+	/** The latency of the network in seconds. */
+	private final double networkLatency;
+
+	/**
+	 * Creates a new SAN with a given capacity, bandwidth and network latency.
+	 *
+	 * @param capacity the capacity of the SAN in MB
+	 * @param bandwidth the bandwidth of the network in MB/sec
+	 * @param networkLatency the latency of the network in seconds
+	 * @throws ParameterException when the capacity, the bandwidth or the latency is not valid
+	 */
+	public SanStorage(double capacity, double bandwidth, double networkLatency) throws ParameterException {
+		this("SanStorage", capacity, bandwidth, networkLatency);
+	}
+
+	/**
+	 * Creates a new SAN with a given name, capacity, bandwidth and network latency.
+	 *
+	 * @param name the name of the SAN
+	 * @param capacity the capacity of the SAN in MB
+	 * @param bandwidth the bandwidth of the network in MB/sec
+	 * @param networkLatency the latency of the network in seconds
+	 * @throws ParameterException when the name, the capacity, the bandwidth or the latency is not valid
+	 */
+	public SanStorage(String name, double capacity, double bandwidth, double networkLatency)
+			throws ParameterException {
+		super(name, capacity);
+		if (bandwidth <= 0) {
+			throw new ParameterException("SanStorage(): Error - bandwidth <= 0.");
+		}
+		if (networkLatency < 0) {
+			throw new ParameterException("SanStorage(): Error - network latency < 0.");
+		}
+		this.bandwidth = bandwidth;
+		this.networkLatency = networkLatency;
+	}
+
+	/**
+	 * Gets the time to send a file through the network of the SAN.
+	 *
+	 * @param fileSize the size of the file in MB
+	 * @return the network time in seconds
+	 */
+	protected double getNetworkTime(int fileSize) {
+		return networkLatency + fileSize / bandwidth;
+	}
+
+	@Override
+	public File getFile(String fileName) {
+		File file = super.getFile(fileName);
+		if (file != null) {
+			file.setTransactionTime(file.getTransactionTime() + getNetworkTime(file.getSize()));
+		}
+		return file;
+	}
+
+	@Override
+	public double addFile(File file) {
+		double time = super.addFile(file);
+		if (time > 0.0) {
+			time += getNetworkTime(file.getSize());
+			file.setTransactionTime(time);
+		}
+		return time;
+	}
+
+	/**
+	 * Gets the maximum rate at which a file is read or written through the SAN: the slower of the hard
+	 * drive and the network.
+	 *
+	 * @return the maximum transfer rate in MB/sec
+	 */
+	@Override
+	public double getMaxTransferRate() {
+		return Math.min(super.getMaxTransferRate(), bandwidth);
+	}
+
+	public double getBandwidth() {
+		return bandwidth;
+	}
+
+	public double getNetworkLatency() {
+		return networkLatency;
+	}
+
+}
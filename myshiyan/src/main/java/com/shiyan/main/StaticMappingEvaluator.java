@@ -0,0 +1,299 @@
+package com.shiyan.main;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.shiyan.models.Cloudlet;
+import com.shiyan.models.Vm;
+
+/**
+ * Closed-form evaluation of a static cloudlet-to-VM mapping, giving the metrics of {@link PrintResult}
+ * without running the simulation.
+ * 不运行仿真，直接计算静态映射方案的执行结果和PrintResult中的各项指标
+ * <p>
+ * On space-shared VMs with a fixed MIPS, no migration and no file transfer, a VM runs its cloudlets in the
+ * order they are submitted, each one as soon as enough of its PEs are free, for
+ * {@code getCloudletLength() / getMips()}. The cloudlets are taken in the order of the broker's cloudlet
+ * list: a cloudlet bound to a VM goes to that VM, an unbound one to the next VM in round robin, as
+ * {@link DatacenterBroker#submitCloudlets()} does. One pass over the cloudlets then gives every start and
+ * finish time, in {@code O(n p)} for VMs of at most {@code p} PEs, and the metrics follow:
+ * <ul>
+ * <li>the makespan and the average waiting time;
+ * <li>the QoS violations, by the rules of {@link PrintResult};
+ * <li>the standard deviation of the last finish time of the VMs, which measures the load balance;
+ * <li>the provider profit, including the compensations of the QoS-MinMin algorithm when
+ * {@link PrintResult#wayName} says so.
+ * </ul>
+ * The accounting settings are read from {@link PrintResult} when the evaluator is created and may be changed
+ * per evaluator, so several evaluators can run in parallel with different settings.
+ * The result matches the simulation as long as the cloudlets all reach the datacenter at the given start
+ * time, i.e. {@link com.shiyan.core.CloudSim#getMinTimeBetweenEvents()} after the start of the simulation
+ * with the default setup.
+ * <p>
+ * Unlike {@link MappingFitness}, which queues the cloudlets of a VM one after the other, the PEs of a VM run
+ * cloudlets in parallel here.
+ *
+ * @see PrintResult#printCloudletList(int, List, List)
+ */
+public class StaticMappingEvaluator {
+
+	/** The VMs, in the order the broker created them. */
+	private final List<? extends Vm> vmList;
+
+	/** The time at which the cloudlets reach their VMs. */
+	private final double startTime;
+
+	/** The position of each VM in {@link #vmList}, by VM id. */
+	private final Map<Integer, Integer> vmPositions = new HashMap<Integer, Integer>();
+
+	/** The evaluated cloudlets. */
+	private List<? extends Cloudlet> cloudletList;
+
+	/** The position of the VM of each cloudlet, by position in {@link #cloudletList}. */
+	private int[] vmOf;
+
+	/** The start time of each cloudlet. 开始执行时间 */
+	private double[] start;
+
+	/** The finish time of each cloudlet. 完成时间 */
+	private double[] finish;
+
+	/** The last finish time of each VM, 0 if it runs nothing. */
+	private double[] vmFinish;
+
+	private double makespan;
+
+	private int violations;
+
+	private double profit;
+
+	private double waitTime;
+
+	private double loadBalanceStd;
+
+	/** Income share the provider pays as running cost. */
+	private double costFraction = PrintResult.costFraction;
+
+	/** Whether deadline violations are compensated as in the QoS-MinMin algorithm. */
+	private boolean qosMinMin = "QoSMinMin".equals(PrintResult.wayName);
+
+	/** The compensation type of each cloudlet, by cloudlet id. */
+	private Map<Integer, Integer> compensationTypes = PrintResult.compensationTypes;
+
+	/**
+	 * Creates an evaluator for the given VMs.
+	 *
+	 * @param vmList the VMs, in the order the broker created them
+	 * @param startTime the time at which the cloudlets reach their VMs
+	 */
+	public StaticMappingEvaluator(List<? extends Vm> vmList, double startTime) {
+		this.vmList = vmList;
+		this.startTime = startTime;
+		for (int j = 0; j < vmList.size(); j++) {
+			vmPositions.put(vmList.get(j).getId(), j);
+		}
+	}
+
+	/**
+	 * Computes the execution of the given cloudlets and its metrics.
+	 *
+	 * @param cloudletList the cloudlets, in the order the broker submits them
+	 */
+	public void evaluate(List<? extends Cloudlet> cloudletList) {
+		int cloudletCount = cloudletList.size();
+		int vmCount = vmList.size();
+		int[] positions = new int[cloudletCount];
+		int vmIndex = 0;
+		for (int i = 0; i < cloudletCount; i++) {
+			Cloudlet cloudlet = cloudletList.get(i);
+			positions[i] = cloudlet.getVmId() == -1 ? vmIndex : vmPositions.get(cloudlet.getVmId());
+			vmIndex = (vmIndex + 1) % vmCount;
+		}
+		evaluate(cloudletList, positions);
+	}
+
+	/**
+	 * Computes the execution of the given cloudlets on the given VMs and its metrics, ignoring the VM the
+	 * cloudlets are bound to.
+	 *
+	 * @param cloudletList the cloudlets, in the order the broker submits them
+	 * @param positions the position in the VM list of the VM of each cloudlet
+	 */
+	public void evaluate(List<? extends Cloudlet> cloudletList, int[] positions) {
+		this.cloudletList = cloudletList;
+		int cloudletCount = cloudletList.size();
+		int vmCount = vmList.size();
+		vmOf = new int[cloudletCount];
+		start = new double[cloudletCount];
+		finish = new double[cloudletCount];
+		vmFinish = new double[vmCount];
+
+		// 每台虚拟机每个PE的空闲时刻，按从早到晚排列
+		double[][] peReady = new double[vmCount][];
+		for (int j = 0; j < vmCount; j++) {
+			peReady[j] = new double[vmList.get(j).getNumberOfPes()];
+			Arrays.fill(peReady[j], startTime);
+		}
+
+		for (int i = 0; i < cloudletCount; i++) {
+			Cloudlet cloudlet = cloudletList.get(i);
+			int vm = positions[i];
+			vmOf[i] = vm;
+
+			// 任务占用最早空闲的若干个PE
+			double[] ready = peReady[vm];
+			int pes = Math.min(cloudlet.getNumberOfPes(), ready.length);
+			start[i] = ready[pes - 1];
+			finish[i] = start[i] + cloudlet.getCloudletLength() / vmList.get(vm).getMips();
+			for (int k = 0; k < pes; k++) {
+				ready[k] = finish[i];
+			}
+			Arrays.sort(ready);
+			vmFinish[vm] = Math.max(vmFinish[vm], finish[i]);
+		}
+
+		computeMetrics();
+	}
+
+	/**
+	 * Computes the metrics of {@link PrintResult} from the start and finish times.
+	 */
+	private void computeMetrics() {
+		int cloudletCount = cloudletList.size();
+		makespan = 0;
+		violations = 0;
+		profit = 0;
+		waitTime = 0;
+		double totalDeadTime = 0;
+		for (int i = 0; i < cloudletCount; i++) {
+			Cloudlet cloudlet = cloudletList.get(i);
+			makespan = Math.max(makespan, finish[i]);
+			waitTime += start[i] - cloudlet.getStartSubmit();
+			totalDeadTime += cloudlet.getDeadlineTime();
+		}
+		double averageDeadTime = totalDeadTime / cloudletCount;
+
+		for (int i = 0; i < cloudletCount; i++) {
+			Cloudlet cloudlet = cloudletList.get(i);
+			Vm vm = vmList.get(vmOf[i]);
+			double income = (finish[i] - start[i]) * vm.getCostPerVm();
+			if (income > cloudlet.getUserMoney()) {
+				violations++;
+				profit -= income * costFraction;
+			} else if (finish[i] > cloudlet.getDeadlineTime() + cloudlet.getStartSubmit()) {
+				violations++;
+				if (!qosMinMin) {
+					profit -= income * costFraction;
+				} else {
+					int type;
+					if (compensationTypes != null && compensationTypes.containsKey(cloudlet.getCloudletId())) {
+						type = compensationTypes.get(cloudlet.getCloudletId());
+					} else {
+						type = cloudlet.getDeadlineTime() < averageDeadTime ? 1 : 2;
+					}
+					profit += PrintResult.calculateFinalPay(income, finish[i], cloudlet.getDeadlineTime(),
+							cloudlet.getStartSubmit(), cloudlet.getUserMoney(), type, costFraction);
+				}
+			} else {
+				profit += income * (1 - costFraction);
+			}
+		}
+
+		// 与PrintResult相同：没有任务的虚拟机的完成时间记为0
+		double mean = 0;
+		for (double time : vmFinish) {
+			mean += time;
+		}
+		mean /= vmFinish.length;
+		double variance = 0;
+		for (double time : vmFinish) {
+			variance += (time - mean) * (time - mean);
+		}
+		loadBalanceStd = Math.sqrt(variance / vmFinish.length);
+	}
+
+	public double getStartTime(int index) {
+		return start[index];
+	}
+
+	public double getFinishTime(int index) {
+		return finish[index];
+	}
+
+	/**
+	 * Gets the VM a cloudlet runs on.
+	 *
+	 * @param index the position of the cloudlet in the evaluated list
+	 * @return the VM
+	 */
+	public Vm getVm(int index) {
+		return vmList.get(vmOf[index]);
+	}
+
+	public double getMakespan() {
+		return makespan;
+	}
+
+	public int getViolationCount() {
+		return violations;
+	}
+
+	public double getProfit() {
+		return profit;
+	}
+
+	/**
+	 * Gets the average time the cloudlets wait between their submission and their start.
+	 *
+	 * @return the average waiting time
+	 */
+	public double getAverageWaitTime() {
+		return waitTime / cloudletList.size();
+	}
+
+	/**
+	 * Gets the standard deviation of the last finish time of the VMs.
+	 *
+	 * @return the load-balance standard deviation
+	 */
+	public double getLoadBalanceStd() {
+		return loadBalanceStd;
+	}
+
+	public int getCloudletCount() {
+		return cloudletList.size();
+	}
+
+	/**
+	 * Sets the income share the provider pays as running cost.
+	 *
+	 * @param costFraction the cost fraction, {@link PrintResult#costFraction} by default
+	 */
+	public void setCostFraction(double costFraction) {
+		this.costFraction = costFraction;
+	}
+
+	/**
+	 * Sets whether deadline violations are compensated as in the QoS-MinMin algorithm.
+	 *
+	 * @param qosMinMin true to compensate them, by default when {@link PrintResult#wayName} is
+	 *            {@code "QoSMinMin"}
+	 */
+	public void setQoSMinMin(boolean qosMinMin) {
+		this.qosMinMin = qosMinMin;
+	}
+
+	/**
+	 * Sets the compensation type of the cloudlets; the cloudlets without one are split in two classes by
+	 * the average deadline, as in {@link PrintResult}.
+	 *
+	 * @param compensationTypes the compensation types by cloudlet id, {@link PrintResult#compensationTypes}
+	 *            by default
+	 */
+	public void setCompensationTypes(Map<Integer, Integer> compensationTypes) {
+		this.compensationTypes = compensationTypes;
+	}
+
+}
@@ -0,0 +1,366 @@
+package com.shiyan.main;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.shiyan.models.Cloudlet;
+import com.shiyan.models.Vm;
+import com.shiyan.util.LatencyHistogram;
+
+/**
+ * QoS-aware Sufferage (I-Sufferage) engine used by {@link DatacenterBroker#bindCloudletsToVmsISufferage()}.
+ * 嵌入QoS需求的Sufferage算法
+ * <p>
+ * Every round each waiting cloudlet bids for the feasible VM that completes it earliest; its sufferage is
+ * the gap between its best and second-best feasible completion times. Each contended VM is given to the
+ * bidder with the largest sufferage (on a tie, the cloudlet that comes first in the submitted list) and
+ * the ready times of the winning VMs are advanced. A VM is feasible for a cloudlet under the same
+ * deadline and {@link Cloudlet#getUserMoney()} rules as
+ * {@link DatacenterBroker#checkQoS(Cloudlet, Vm, Map)}; cloudlets left without a feasible VM are canceled.
+ * The second-best time is the true one over all feasible VMs, not the previous best met while scanning the
+ * VMs in order as {@link com.shiyan.scheduler.SufferagePolicy} does.
+ * <p>
+ * Cloudlets with the same length, absolute deadline and budget always bid identically, so they are kept
+ * as one profile with a FIFO of members. The best and second-best VM of every profile are cached. Ready
+ * times only grow and feasibility only shrinks, so after a round only the profiles whose best or
+ * second-best VM won a cloudlet are refreshed. A refresh looks the two VMs up in a
+ * {@link VmFeasibilityIndex}, in {@code O(k)} for {@code k} affordable VM types and {@code O(k log m)} at
+ * worst, instead of scanning the {@code m} VMs. Every contended VM wins a cloudlet in each round, so all
+ * its bidders are refreshed: a VM only keeps its best bidder, compared when the bids are registered.
+ * <p>
+ * The saving therefore comes from profiles, not from the refreshes. A round places at most one cloudlet
+ * per VM and refreshes every profile bidding for a VM that won, which is most of the waiting ones when
+ * all VMs are busy. With {@code p} distinct profiles there are about {@code n / m} rounds of up to
+ * {@code p} refreshes each, so distinct cloudlets cost about {@code O(n^2 / m * k log m)}: still quadratic
+ * in {@code n}, only cheaper than scanning every VM per bid. Giving a winning VM several bidders per round does
+ * not bound this: with a few VMs of each type the second-best VM is usually a twin of the best one, so the
+ * next bidder almost never still finishes earliest on the winner.
+ *
+ * @see DatacenterBroker#bindCloudletsToVmsISufferage()
+ */
+public class SufferageScheduler {
+
+	/** The VMs cloudlets are bound to. */
+	private final List<? extends Vm> vmList;
+
+	/** The MIPS of each VM, by position in {@link #vmList}. */
+	private final double[] mips;
+
+	/** The feasible VMs of the profiles, with the ready time of each VM. 虚拟机的就绪时间 */
+	private final VmFeasibilityIndex feasibilityIndex;
+
+	/** The best and second-best VM found by the last refresh. */
+	private final int[] topVms = new int[2];
+
+	/** The best bidder of each VM, or <tt>null</tt>. */
+	private final Profile[] topBidders;
+
+	/** The profiles whose best or second-best VM is a given VM (may contain stale entries). */
+	private final List<List<Profile>> watchers;
+
+	/** The VMs that have at least one bidder. */
+	private final BitSet contendedVms;
+
+	/** Where the latency of each placement is recorded, or <tt>null</tt>. */
+	private LatencyHistogram decisionLatency;
+
+	/**
+	 * Creates a new engine whose VMs all become ready at the given time.
+	 *
+	 * @param vmList the VMs cloudlets can be bound to
+	 * @param currentTime the time at which every VM is ready
+	 */
+	public SufferageScheduler(List<? extends Vm> vmList, double currentTime) {
+		this.vmList = vmList;
+		int vmCount = vmList.size();
+		mips = new double[vmCount];
+		feasibilityIndex = new VmFeasibilityIndex(vmList, currentTime);
+		topBidders = new Profile[vmCount];
+		watchers = new ArrayList<List<Profile>>(vmCount);
+		contendedVms = new BitSet(vmCount);
+		for (int i = 0; i < vmCount; i++) {
+			Vm vm = vmList.get(i);
+			mips[i] = vm.getMips();
+			watchers.add(new ArrayList<Profile>());
+		}
+	}
+
+	/**
+	 * Binds the given cloudlets to VMs.
+	 * <p>
+	 * Cloudlets already bound to a VM or already canceled keep their place at the head of the returned
+	 * list; bound ones still occupy their VM. The other cloudlets follow in the order they were assigned,
+	 * round by round. Cloudlets that no VM can serve are marked {@link Cloudlet#CANCELED} and left out.
+	 *
+	 * @param cloudletList the cloudlets to bind
+	 * @return the bound cloudlets in submission order
+	 * @throws Exception if a cloudlet cannot be canceled
+	 */
+	public List<Cloudlet> schedule(List<? extends Cloudlet> cloudletList) throws Exception {
+		List<Cloudlet> finalCloudlets = new ArrayList<Cloudlet>(cloudletList.size());
+		Map<Integer, Integer> vmIndex = new HashMap<Integer, Integer>();
+		for (int i = 0; i < vmList.size(); i++) {
+			vmIndex.put(vmList.get(i).getId(), i);
+		}
+
+		// 按照长度、截止时间和预算对云任务分组，同组任务的竞价完全相同
+		Map<ProfileKey, Profile> profiles = new HashMap<ProfileKey, Profile>();
+		List<Profile> profileList = new ArrayList<Profile>();
+		for (int i = 0; i < cloudletList.size(); i++) {
+			Cloudlet cloudlet = cloudletList.get(i);
+			if (cloudlet.getVmId() != -1 || cloudlet.getStatus() == Cloudlet.CANCELED) {
+				Integer vm = vmIndex.get(cloudlet.getVmId());
+				if (vm != null) {
+					feasibilityIndex.assign(cloudlet, vm);
+				}
+				finalCloudlets.add(cloudlet);
+				continue;
+			}
+			ProfileKey key = new ProfileKey(cloudlet);
+			Profile profile = profiles.get(key);
+			if (profile == null) {
+				profile = new Profile(profileList.size(), cloudlet);
+				profiles.put(key, profile);
+				profileList.add(profile);
+			}
+			profile.add(cloudlet, i);
+		}
+
+		for (Profile profile : profileList) {
+			refresh(profile);
+		}
+
+		List<Profile> winners = new ArrayList<Profile>();
+		List<Profile> stale = new ArrayList<Profile>();
+		int round = 0;
+		long lastDecisionTime = System.nanoTime();
+		while (!contendedVms.isEmpty()) {
+			round++;
+			// 每个虚拟机只分配给调度损失最大的任务
+			winners.clear();
+			for (int vm = contendedVms.nextSetBit(0); vm >= 0; vm = contendedVms.nextSetBit(vm + 1)) {
+				winners.add(topBidders[vm]);
+				topBidders[vm] = null;
+			}
+			contendedVms.clear();
+			Collections.sort(winners, HEAD_ORDER);
+
+			stale.clear();
+			for (Profile winner : winners) {
+				int vm = winner.best;
+				detach(winner);
+				Cloudlet cloudlet = winner.poll();
+				cloudlet.setVmId(vmList.get(vm).getId());
+				finalCloudlets.add(cloudlet);
+				feasibilityIndex.assign(cloudlet, vm);
+				if (decisionLatency != null) {
+					long now = System.nanoTime();
+					decisionLatency.record(now - lastDecisionTime);
+					lastDecisionTime = now;
+				}
+				markStale(winner, round, stale);
+				for (Profile watcher : watchers.get(vm)) {
+					if (watcher.best == vm || watcher.second == vm) {
+						markStale(watcher, round, stale);
+					}
+				}
+				watchers.get(vm).clear();
+			}
+			// 只有最佳或次佳虚拟机的就绪时间发生变化的任务组需要重新计算
+			for (Profile profile : stale) {
+				refresh(profile);
+			}
+		}
+		return finalCloudlets;
+	}
+
+	/**
+	 * Sets where the latency of each placement is recorded: the time since the previous placement, or since
+	 * the bidding started for the first one.
+	 *
+	 * @param decisionLatency the histogram, or <tt>null</tt> not to record anything
+	 */
+	public void setDecisionLatency(LatencyHistogram decisionLatency) {
+		this.decisionLatency = decisionLatency;
+	}
+
+	/**
+	 * Adds a profile to the refresh list of the current round, once.
+	 */
+	private void markStale(Profile profile, int round, List<Profile> stale) {
+		if (profile.staleRound != round) {
+			profile.staleRound = round;
+			stale.add(profile);
+		}
+	}
+
+	/**
+	 * Clears the best and second-best VM of a profile; its bid was withdrawn when its VM was given away.
+	 */
+	private void detach(Profile profile) {
+		profile.best = -1;
+		profile.second = -1;
+	}
+
+	/**
+	 * Recomputes the best and second-best feasible VM of a profile and re-registers its bid. Profiles
+	 * without a feasible VM have all their waiting cloudlets canceled.
+	 */
+	private void refresh(Profile profile) throws Exception {
+		detach(profile);
+		if (profile.isEmpty()) {
+			return;
+		}
+
+		// 与checkQoS相同的截止时间和预算约束，同组任务的可行虚拟机相同
+		feasibilityIndex.findTwoEarliestFinishVms(profile.peek(), topVms);
+		profile.best = topVms[0];
+		profile.second = topVms[1];
+		if (profile.best < 0) {
+			for (Cloudlet cloudlet = profile.poll(); cloudlet != null; cloudlet = profile.poll()) {
+				Log.printConcatLine("云任务：", cloudlet.getCloudletId(), "由于任何虚拟机满足不了其完成期限的需求，故被取消 ");
+				cloudlet.setCloudletStatus(Cloudlet.CANCELED);
+			}
+			return;
+		}
+		double bestFinish = feasibilityIndex.getReadyTime(profile.best) + profile.length / mips[profile.best];
+		double secondFinish = profile.second < 0 ? Double.MAX_VALUE
+				: feasibilityIndex.getReadyTime(profile.second) + profile.length / mips[profile.second];
+		profile.sufferage = secondFinish - bestFinish;
+		Profile top = topBidders[profile.best];
+		if (top == null || BIDDER_ORDER.compare(profile, top) < 0) {
+			topBidders[profile.best] = profile;
+		}
+		contendedVms.set(profile.best);
+		watchers.get(profile.best).add(profile);
+		if (profile.second >= 0) {
+			watchers.get(profile.second).add(profile);
+		}
+	}
+
+	/** Orders the bidders of a VM: largest sufferage first, then the earliest waiting cloudlet. */
+	private static final Comparator<Profile> BIDDER_ORDER = new Comparator<Profile>() {
+		@Override
+		public int compare(Profile a, Profile b) {
+			int result = Double.compare(b.sufferage, a.sufferage);
+			if (result == 0) {
+				result = HEAD_ORDER.compare(a, b);
+			}
+			return result;
+		}
+	};
+
+	/** Orders profiles by the submission position of their earliest waiting cloudlet. */
+	private static final Comparator<Profile> HEAD_ORDER = new Comparator<Profile>() {
+		@Override
+		public int compare(Profile a, Profile b) {
+			int result = Integer.compare(a.headPosition(), b.headPosition());
+			if (result == 0) {
+				result = Integer.compare(a.id, b.id);
+			}
+			return result;
+		}
+	};
+
+	/**
+	 * Cloudlets that bid identically: same length, absolute deadline and budget. The waiting members are
+	 * kept in submission order.
+	 */
+	private static class Profile {
+
+		final int id;
+
+		final long length;
+
+		/** The absolute deadline, i.e. submission time plus deadline. */
+		final double deadline;
+
+		final double money;
+
+		final List<Cloudlet> members = new ArrayList<Cloudlet>();
+
+		final List<Integer> positions = new ArrayList<Integer>();
+
+		int head;
+
+		int best = -1;
+
+		int second = -1;
+
+		double sufferage;
+
+		int staleRound;
+
+		Profile(int id, Cloudlet cloudlet) {
+			this.id = id;
+			length = cloudlet.getCloudletLength();
+			deadline = cloudlet.getStartSubmit() + cloudlet.getDeadlineTime();
+			money = cloudlet.getUserMoney();
+		}
+
+		void add(Cloudlet cloudlet, int position) {
+			members.add(cloudlet);
+			positions.add(position);
+		}
+
+		boolean isEmpty() {
+			return head == members.size();
+		}
+
+		int headPosition() {
+			return positions.get(head);
+		}
+
+		Cloudlet peek() {
+			return isEmpty() ? null : members.get(head);
+		}
+
+		Cloudlet poll() {
+			return isEmpty() ? null : members.get(head++);
+		}
+
+	}
+
+	/**
+	 * Hash key of a {@link Profile}.
+	 */
+	private static class ProfileKey {
+
+		final long length;
+
+		final double deadline;
+
+		final double money;
+
+		ProfileKey(Cloudlet cloudlet) {
+			length = cloudlet.getCloudletLength();
+			deadline = cloudlet.getStartSubmit() + cloudlet.getDeadlineTime();
+			money = cloudlet.getUserMoney();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof ProfileKey)) {
+				return false;
+			}
+			ProfileKey other = (ProfileKey) obj;
+			return length == other.length
+					&& Double.compare(deadline, other.deadline) == 0
+					&& Double.compare(money, other.money) == 0;
+		}
+
+		@Override
+		public int hashCode() {
+			int result = Long.hashCode(length);
+			result = 31 * result + Double.hashCode(deadline);
+			return 31 * result + Double.hashCode(money);
+		}
+
+	}
+
+}
@@ -0,0 +1,153 @@
+package com.shiyan.main;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.shiyan.models.Vm;
+
+/**
+ * Priority queue of the VMs of a datacenter by the time their next cloudlet completes.
+ * 虚拟机按下一个云任务完成时间排序的优先队列
+ * <p>
+ * Each VM is queued at most once: queuing it again moves it to its new time. The queue is a binary heap
+ * with the position of every VM, so adding, moving, removing and polling a VM all cost {@code O(log m)} for
+ * {@code m} queued VMs.
+ *
+ * @see Datacenter#updateCloudletProcessing()
+ */
+public class VmCompletionQueue {
+
+	/** The queued VMs, as a binary heap. */
+	private Vm[] vms = new Vm[16];
+
+	/** The completion time of each VM of the heap. */
+	private double[] times = new double[16];
+
+	/** The number of queued VMs. */
+	private int size;
+
+	/** The index of each queued VM in the heap. */
+	private final Map<Vm, Integer> indexes = new HashMap<Vm, Integer>();
+
+	/**
+	 * Queues a VM at the time its next cloudlet completes, or removes it if it has nothing to complete.
+	 *
+	 * @param vm the VM
+	 * @param time the time of its next completion, or 0 or {@link Double#MAX_VALUE} if there is none
+	 */
+	public void update(Vm vm, double time) {
+		if (time <= 0.0 || time == Double.MAX_VALUE) {
+			remove(vm);
+			return;
+		}
+		Integer index = indexes.get(vm);
+		if (index == null) {
+			if (size == vms.length) {
+				vms = Arrays.copyOf(vms, 2 * size);
+				times = Arrays.copyOf(times, 2 * size);
+			}
+			place(size++, vm, time);
+			siftUp(size - 1);
+		} else if (time < times[index]) {
+			times[index] = time;
+			siftUp(index);
+		} else {
+			times[index] = time;
+			siftDown(index);
+		}
+	}
+
+	/**
+	 * Removes a VM from the queue.
+	 *
+	 * @param vm the VM
+	 */
+	public void remove(Vm vm) {
+		Integer index = indexes.remove(vm);
+		if (index == null) {
+			return;
+		}
+		size--;
+		if (index == size) {
+			vms[size] = null;
+			return;
+		}
+		place(index, vms[size], times[size]);
+		vms[size] = null;
+		siftDown(index);
+		siftUp(index);
+	}
+
+	/**
+	 * Removes and returns the VM that completes first.
+	 *
+	 * @return the VM, or <tt>null</tt> if the queue is empty
+	 */
+	public Vm poll() {
+		if (size == 0) {
+			return null;
+		}
+		Vm first = vms[0];
+		remove(first);
+		return first;
+	}
+
+	/**
+	 * Gets the time of the first completion.
+	 *
+	 * @return the time, or {@link Double#MAX_VALUE} if the queue is empty
+	 */
+	public double peekTime() {
+		return size == 0 ? Double.MAX_VALUE : times[0];
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	private void place(int index, Vm vm, double time) {
+		vms[index] = vm;
+		times[index] = time;
+		indexes.put(vm, index);
+	}
+
+	private void siftUp(int index) {
+		Vm vm = vms[index];
+		double time = times[index];
+		while (index > 0) {
+			int parent = (index - 1) >>> 1;
+			if (times[parent] <= time) {
+				break;
+			}
+			place(index, vms[parent], times[parent]);
+			index = parent;
+		}
+		place(index, vm, time);
+	}
+
+	private void siftDown(int index) {
+		Vm vm = vms[index];
+		double time = times[index];
+		while (true) {
+			int child = 2 * index + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && times[child + 1] < times[child]) {
+				child++;
+			}
+			if (times[child] >= time) {
+				break;
+			}
+			place(index, vms[child], times[child]);
+			index = child;
+		}
+		place(index, vm, time);
+	}
+
+}
@@ -0,0 +1,542 @@
+package com.shiyan.main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+
+import com.shiyan.models.Cloudlet;
+import com.shiyan.models.Vm;
+
+/**
+ * Index of the VMs that can serve a cloudlet under its QoS requirements.
+ * 满足用户QoS需求的虚拟机索引
+ * <p>
+ * A VM is feasible for a cloudlet under the same rules as
+ * {@link DatacenterBroker#checkQoS(Cloudlet, Vm, java.util.Map)}: the cloudlet finishes before its deadline
+ * when queued after the VM's ready time, and its execution cost does not exceed
+ * {@link Cloudlet#getUserMoney()}. The budget constraint only depends on the VM type (MIPS and cost per
+ * second), so the types are kept sorted by cost per MI and the affordable types are a prefix found by binary
+ * search. Inside a type the deadline constraint is monotone in the ready time, so each type keeps its VMs in
+ * a set ordered by ready time and the feasible VMs of the type are a head of that set.
+ * <p>
+ * Queries cost {@code O(k log m)} for {@code k} affordable types instead of a scan over the {@code m} VMs.
+ * Ties are broken by position in the VM list, as the linear scans of the broker do. VMs appended to the VM
+ * list after the index was built are indexed with {@link #addVm(double)}.
+ *
+ * @see DatacenterBroker#bindCloudletsToVmsIMinMin()
+ */
+public class VmFeasibilityIndex {
+
+	/** Relative slack of the binary search over cost per MI; the affordable types are then checked exactly. */
+	private static final double BUDGET_SLACK = 1e-9;
+
+	/** A key of {@link #readyQueues} after every VM ready at {@link #probeReady}, for {@link TreeSet#higher}. */
+	private static final int PROBE = Integer.MAX_VALUE;
+
+	/** The number of VMs of each type kept in {@link #typeHeads}. */
+	private static final int HEAD_SIZE = 3;
+
+	/** The indexed VMs. */
+	private final List<? extends Vm> vmList;
+
+	/** The number of indexed VMs, the first ones of {@link #vmList}. */
+	private int vmCount;
+
+	/** The ready time of each VM, by position in {@link #vmList}. 虚拟机的就绪时间 */
+	private double[] ready;
+
+	/** The MIPS of each type, by ascending cost per MI. */
+	private double[] typeMips;
+
+	/** The cost per second of each type, by ascending cost per MI. */
+	private double[] typeCost;
+
+	/** The cost per MI of each type, ascending. */
+	private double[] typeCostPerMi;
+
+	/** The type of each VM, by position in {@link #vmList}. */
+	private int[] vmType;
+
+	/** The VMs of each type, by ready time then position. */
+	private final List<TreeSet<Integer>> readyQueues;
+
+	/** The order of the VMs in {@link #readyQueues}. */
+	private final Comparator<Integer> readyOrder;
+
+	/** The ready time of {@link #PROBE}. */
+	private double probeReady;
+
+	/**
+	 * The first VMs of each ready queue that may be among the two earliest to finish a cloudlet, followed by
+	 * -1 if there are no others; <tt>null</tt> once the queue changed.
+	 */
+	private final List<int[]> typeHeads;
+
+	/**
+	 * Creates an index whose VMs all become ready at the given time.
+	 *
+	 * @param vmList the VMs to index
+	 * @param currentTime the time at which every VM is ready
+	 */
+	public VmFeasibilityIndex(List<? extends Vm> vmList, double currentTime) {
+		this.vmList = vmList;
+		vmCount = vmList.size();
+		ready = new double[vmCount];
+		vmType = new int[vmCount];
+
+		// 按照单位指令成本对虚拟机类型排序
+		List<double[]> types = new ArrayList<double[]>();
+		for (Vm vm : vmList) {
+			if (findType(types, vm) < 0) {
+				types.add(new double[] { vm.getMips(), vm.getCostPerVm() });
+			}
+		}
+		Collections.sort(types, new Comparator<double[]>() {
+			@Override
+			public int compare(double[] a, double[] b) {
+				return Double.compare(a[1] / a[0], b[1] / b[0]);
+			}
+		});
+		int typeCount = types.size();
+		typeMips = new double[typeCount];
+		typeCost = new double[typeCount];
+		typeCostPerMi = new double[typeCount];
+		readyQueues = new ArrayList<TreeSet<Integer>>(typeCount);
+		typeHeads = new ArrayList<int[]>(typeCount);
+		readyOrder = new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				int result = Double.compare(a == PROBE ? probeReady : ready[a], b == PROBE ? probeReady : ready[b]);
+				if (result == 0) {
+					result = Integer.compare(a, b);
+				}
+				return result;
+			}
+		};
+		for (int t = 0; t < typeCount; t++) {
+			typeMips[t] = types.get(t)[0];
+			typeCost[t] = types.get(t)[1];
+			typeCostPerMi[t] = typeCost[t] / typeMips[t];
+			readyQueues.add(new TreeSet<Integer>(readyOrder));
+			typeHeads.add(null);
+		}
+
+		for (int i = 0; i < vmCount; i++) {
+			ready[i] = currentTime;
+			vmType[i] = findType(types, vmList.get(i));
+			readyQueues.get(vmType[i]).add(i);
+		}
+	}
+
+	private static int findType(List<double[]> types, Vm vm) {
+		for (int t = 0; t < types.size(); t++) {
+			double[] type = types.get(t);
+			if (type[0] == vm.getMips() && type[1] == vm.getCostPerVm()) {
+				return t;
+			}
+		}
+		return -1;
+	}
+
+	private int findType(Vm vm) {
+		for (int t = 0; t < typeMips.length; t++) {
+			if (typeMips[t] == vm.getMips() && typeCost[t] == vm.getCostPerVm()) {
+				return t;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Inserts the type of a VM in the order of cost per MI, after the types of the same cost per MI.
+	 *
+	 * @return the new type
+	 */
+	private int insertType(Vm vm) {
+		double costPerMi = vm.getCostPerVm() / vm.getMips();
+		int type = 0;
+		while (type < typeCostPerMi.length && typeCostPerMi[type] <= costPerMi) {
+			type++;
+		}
+		int typeCount = typeMips.length + 1;
+		double[] mips = new double[typeCount];
+		double[] cost = new double[typeCount];
+		double[] costPerMis = new double[typeCount];
+		for (int t = 0, old = 0; t < typeCount; t++) {
+			if (t == type) {
+				mips[t] = vm.getMips();
+				cost[t] = vm.getCostPerVm();
+				costPerMis[t] = costPerMi;
+			} else {
+				mips[t] = typeMips[old];
+				cost[t] = typeCost[old];
+				costPerMis[t] = typeCostPerMi[old];
+				old++;
+			}
+		}
+		typeMips = mips;
+		typeCost = cost;
+		typeCostPerMi = costPerMis;
+		readyQueues.add(type, new TreeSet<Integer>(readyOrder));
+		typeHeads.add(type, null);
+		for (int i = 0; i < vmCount; i++) {
+			if (vmType[i] >= type) {
+				vmType[i]++;
+			}
+		}
+		return type;
+	}
+
+	/**
+	 * Indexes the next VM of the VM list, e.g. one a broker provisioned after the index was built. A VM of a
+	 * new type costs {@code O(t + m)} for {@code t} types, to insert the type; otherwise {@code O(t + log m)}.
+	 *
+	 * @param readyTime the time at which the VM is ready
+	 * @return the position of the VM in the VM list
+	 */
+	public int addVm(double readyTime) {
+		int position = vmCount;
+		Vm vm = vmList.get(position);
+		if (position == ready.length) {
+			int capacity = Math.max(2 * position, 4);
+			ready = Arrays.copyOf(ready, capacity);
+			vmType = Arrays.copyOf(vmType, capacity);
+		}
+		int type = findType(vm);
+		if (type < 0) {
+			type = insertType(vm);
+		}
+		ready[position] = readyTime;
+		vmType[position] = type;
+		vmCount++;
+		readyQueues.get(type).add(position);
+		typeHeads.set(type, null);
+		return position;
+	}
+
+	/**
+	 * Returns the number of leading types that may fit the budget of the cloudlet. The exact budget rule is
+	 * checked by {@link #isAffordable(Cloudlet, int)}.
+	 */
+	private int affordableTypes(Cloudlet cloudlet) {
+		double limit = cloudlet.getUserMoney() / cloudlet.getCloudletLength() * (1 + BUDGET_SLACK);
+		int low = 0;
+		int high = typeCostPerMi.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (typeCostPerMi[middle] <= limit) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Checks the budget rule of {@link DatacenterBroker#checkQoS(Cloudlet, Vm, java.util.Map)} for a type.
+	 */
+	private boolean isAffordable(Cloudlet cloudlet, int type) {
+		return cloudlet.getCloudletLength() / typeMips[type] * typeCost[type] <= cloudlet.getUserMoney();
+	}
+
+	/**
+	 * Returns the earliest-ready VM of a type if the cloudlet meets its deadline on it, -1 otherwise.
+	 */
+	private int earliestInTime(Cloudlet cloudlet, int type) {
+		TreeSet<Integer> queue = readyQueues.get(type);
+		if (queue.isEmpty()) {
+			return -1;
+		}
+		int vm = queue.first();
+		return ready[vm] + cloudlet.getCloudletLength() / typeMips[type]
+				<= cloudlet.getStartSubmit() + cloudlet.getDeadlineTime() ? vm : -1;
+	}
+
+	/**
+	 * Checks whether any VM can serve the cloudlet under its QoS requirements.
+	 *
+	 * @param cloudlet the cloudlet
+	 * @return true if a feasible VM exists
+	 */
+	public boolean hasFeasibleVm(Cloudlet cloudlet) {
+		return findCheapestFeasibleVm(cloudlet) >= 0;
+	}
+
+	/**
+	 * Finds the feasible VM on which the cloudlet finishes first; on a tie, the first one in the VM list.
+	 *
+	 * @param cloudlet the cloudlet
+	 * @return the position of the VM in the VM list, or -1 if no VM is feasible
+	 */
+	public int findEarliestFinishVm(Cloudlet cloudlet) {
+		int best = -1;
+		double bestFinish = Double.MAX_VALUE;
+		int types = affordableTypes(cloudlet);
+		for (int t = 0; t < types; t++) {
+			if (!isAffordable(cloudlet, t)) {
+				continue;
+			}
+			int vm = earliestInTime(cloudlet, t);
+			if (vm < 0) {
+				continue;
+			}
+			double finish = ready[vm] + cloudlet.getCloudletLength() / typeMips[t];
+			if (finish < bestFinish || (finish == bestFinish && vm < best)) {
+				bestFinish = finish;
+				best = vm;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Finds the two feasible VMs on which the cloudlet finishes first; on a tie, the first one in the VM list
+	 * comes first. Inside a type the finish time never decreases along the ready order, so a type is only
+	 * read until its VMs finish after the second-best one: usually its first VMs, which are cached until the
+	 * queue changes, so a query costs {@code O(k)} for {@code k} affordable types and {@code O(k log m)} at
+	 * worst. A VM ready later may still finish at the same time once rounded and come first by position, so
+	 * such VMs are checked too, two per distinct ready time. When there are about as many types as VMs, a
+	 * scan over the VMs is cheaper and gives the same result.
+	 *
+	 * @param cloudlet the cloudlet
+	 * @param vms where the positions in the VM list are stored: the best VM, then the second-best one, or -1
+	 *            for each that does not exist
+	 */
+	public void findTwoEarliestFinishVms(Cloudlet cloudlet, int[] vms) {
+		int best = -1;
+		int second = -1;
+		double bestFinish = Double.MAX_VALUE;
+		double secondFinish = Double.MAX_VALUE;
+		double deadline = cloudlet.getStartSubmit() + cloudlet.getDeadlineTime();
+		if (typeMips.length * HEAD_SIZE >= vmCount) {
+			for (int vm = 0; vm < vmCount; vm++) {
+				double execTime = cloudlet.getCloudletLength() / typeMips[vmType[vm]];
+				double finish = ready[vm] + execTime;
+				if (finish > deadline || execTime * typeCost[vmType[vm]] > cloudlet.getUserMoney()) {
+					continue;
+				}
+				if (finish < bestFinish) {
+					second = best;
+					secondFinish = bestFinish;
+					best = vm;
+					bestFinish = finish;
+				} else if (finish < secondFinish) {
+					second = vm;
+					secondFinish = finish;
+				}
+			}
+			vms[0] = best;
+			vms[1] = second;
+			return;
+		}
+		int types = affordableTypes(cloudlet);
+		for (int t = 0; t < types; t++) {
+			if (!isAffordable(cloudlet, t)) {
+				continue;
+			}
+			double execTime = cloudlet.getCloudletLength() / typeMips[t];
+			int[] heads = getHeads(t);
+			int rank = 0;
+			int vm = heads[0];
+			while (vm >= 0) {
+				double finish = ready[vm] + execTime;
+				if (finish > deadline || finish > secondFinish) {
+					break;
+				}
+				boolean entered = true;
+				if (finish < bestFinish || (finish == bestFinish && vm < best)) {
+					second = best;
+					secondFinish = bestFinish;
+					best = vm;
+					bestFinish = finish;
+				} else if (finish < secondFinish || (finish == secondFinish && vm < second)) {
+					second = vm;
+					secondFinish = finish;
+				} else {
+					entered = false;
+				}
+				if (rank + 1 < heads.length) {
+					vm = heads[++rank];
+				} else if (entered) {
+					vm = next(readyQueues.get(t).higher(vm));
+				} else {
+					// 就绪时间相同的后续虚拟机位置更靠后，直接跳到下一个就绪时间
+					probeReady = ready[vm];
+					vm = next(readyQueues.get(t).higher(PROBE));
+				}
+			}
+		}
+		vms[0] = best;
+		vms[1] = second;
+	}
+
+	/**
+	 * Gets the first VMs of the ready queue of a type, at most two per distinct ready time since a third
+	 * one cannot finish before both, followed by -1 if the queue has no other VM.
+	 */
+	private int[] getHeads(int type) {
+		int[] heads = typeHeads.get(type);
+		if (heads != null) {
+			return heads;
+		}
+		TreeSet<Integer> queue = readyQueues.get(type);
+		heads = new int[HEAD_SIZE + 1];
+		int count = 0;
+		int run = 0;
+		int vm = queue.isEmpty() ? -1 : queue.first();
+		while (vm >= 0 && count < HEAD_SIZE) {
+			run = count > 0 && ready[vm] == ready[heads[count - 1]] ? run + 1 : 1;
+			if (run > 2) {
+				probeReady = ready[vm];
+				vm = next(queue.higher(PROBE));
+				continue;
+			}
+			heads[count++] = vm;
+			vm = next(queue.higher(vm));
+		}
+		if (vm < 0) {
+			heads[count++] = -1;
+		}
+		heads = Arrays.copyOf(heads, count);
+		typeHeads.set(type, heads);
+		return heads;
+	}
+
+	private static int next(Integer vm) {
+		return vm == null ? -1 : vm;
+	}
+
+	/**
+	 * Finds the VM on which the cloudlet finishes first, regardless of its QoS requirements; on a tie, the
+	 * first one in the VM list.
+	 *
+	 * @param cloudlet the cloudlet
+	 * @return the position of the VM in the VM list, or -1 if there is no VM
+	 */
+	public int findEarliestVm(Cloudlet cloudlet) {
+		int best = -1;
+		double bestFinish = Double.MAX_VALUE;
+		for (int t = 0; t < typeMips.length; t++) {
+			TreeSet<Integer> queue = readyQueues.get(t);
+			if (queue.isEmpty()) {
+				continue;
+			}
+			int vm = queue.first();
+			double finish = ready[vm] + cloudlet.getCloudletLength() / typeMips[t];
+			if (finish < bestFinish || (finish == bestFinish && vm < best)) {
+				bestFinish = finish;
+				best = vm;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Finds the feasible VM with the lowest execution cost for the cloudlet; among VMs of the cheapest
+	 * feasible type, the one ready first.
+	 *
+	 * @param cloudlet the cloudlet
+	 * @return the position of the VM in the VM list, or -1 if no VM is feasible
+	 */
+	public int findCheapestFeasibleVm(Cloudlet cloudlet) {
+		int types = affordableTypes(cloudlet);
+		for (int t = 0; t < types; t++) {
+			if (isAffordable(cloudlet, t)) {
+				int vm = earliestInTime(cloudlet, t);
+				if (vm >= 0) {
+					return vm;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Finds all the VMs that can serve the cloudlet under its QoS requirements.
+	 *
+	 * @param cloudlet the cloudlet
+	 * @return the positions of the feasible VMs in the VM list, ascending
+	 */
+	public List<Integer> findFeasibleVms(Cloudlet cloudlet) {
+		List<Integer> feasible = new ArrayList<Integer>();
+		int types = affordableTypes(cloudlet);
+		for (int t = 0; t < types; t++) {
+			if (!isAffordable(cloudlet, t)) {
+				continue;
+			}
+			double execTime = cloudlet.getCloudletLength() / typeMips[t];
+			double deadline = cloudlet.getStartSubmit() + cloudlet.getDeadlineTime();
+			for (int vm : readyQueues.get(t)) {
+				if (ready[vm] + execTime > deadline) {
+					break;
+				}
+				feasible.add(vm);
+			}
+		}
+		Collections.sort(feasible);
+		return feasible;
+	}
+
+	/**
+	 * Queues a cloudlet on a VM, advancing the ready time of the VM.
+	 *
+	 * @param cloudlet the cloudlet
+	 * @param position the position of the VM in the VM list
+	 * @return the new ready time of the VM, i.e. the expected finish time of the cloudlet
+	 */
+	public double assign(Cloudlet cloudlet, int position) {
+		TreeSet<Integer> queue = readyQueues.get(vmType[position]);
+		queue.remove(position);
+		ready[position] += cloudlet.getCloudletLength() / typeMips[vmType[position]];
+		queue.add(position);
+		typeHeads.set(vmType[position], null);
+		return ready[position];
+	}
+
+	/**
+	 * Sets the ready time of a VM, e.g. to account for cloudlets queued before the index was built.
+	 *
+	 * @param position the position of the VM in the VM list
+	 * @param time the time at which the VM finishes its queued cloudlets
+	 */
+	public void setReadyTime(int position, double time) {
+		TreeSet<Integer> queue = readyQueues.get(vmType[position]);
+		queue.remove(position);
+		ready[position] = time;
+		queue.add(position);
+		typeHeads.set(vmType[position], null);
+	}
+
+	/**
+	 * Gets the ready time of a VM.
+	 *
+	 * @param position the position of the VM in the VM list
+	 * @return the time at which the VM finishes its queued cloudlets
+	 */
+	public double getReadyTime(int position) {
+		return ready[position];
+	}
+
+	/**
+	 * Gets an indexed VM.
+	 *
+	 * @param position the position of the VM in the VM list
+	 * @return the VM
+	 */
+	public Vm getVm(int position) {
+		return vmList.get(position);
+	}
+
+	public int getVmCount() {
+		return vmCount;
+	}
+
+	public int getTypeCount() {
+		return typeMips.length;
+	}
+
+}
@@ -0,0 +1,149 @@
+package com.shiyan.main;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+
+import com.shiyan.models.Vm;
+
+/**
+ * Index of the load of a list of VMs, for the rebalancing of cloudlets between them.
+ * 虚拟机负载索引，用于在虚拟机之间重新平衡云任务
+ * <p>
+ * The load of a VM is the time it needs to finish the work queued on it, i.e. its remaining MI divided by
+ * its capacity ({@code mips * pes}, the VM running one single-PE cloudlet per PE). The VMs are kept in a
+ * set ordered by load, and the VMs that still have cloudlets to give away in a second one, so the least
+ * loaded VM and the most loaded VM with something to steal are both found, and a load updated, in
+ * {@code O(log m)} for {@code m} VMs. Ties are broken by position in the VM list.
+ *
+ * @see DatacenterBroker#rebalanceCloudlets()
+ */
+public class VmLoadIndex {
+
+	/** The indexed VMs. */
+	private final List<? extends Vm> vmList;
+
+	/** The load of each VM, by position in {@link #vmList}. 虚拟机的负载 */
+	private final double[] load;
+
+	/** Whether each VM has cloudlets that may be stolen, by position in {@link #vmList}. */
+	private final boolean[] stealable;
+
+	/** All the VMs, by load then position. */
+	private final TreeSet<Integer> byLoad;
+
+	/** The VMs with cloudlets that may be stolen, by load then position. */
+	private final TreeSet<Integer> victims;
+
+	/**
+	 * Creates an index of VMs with the given loads; no VM is stealable until
+	 * {@link #setStealable(int, boolean)} is called.
+	 *
+	 * @param vmList the VMs to index
+	 * @param loads the load of each VM, by position in the list
+	 */
+	public VmLoadIndex(List<? extends Vm> vmList, double[] loads) {
+		this.vmList = vmList;
+		load = loads.clone();
+		stealable = new boolean[vmList.size()];
+		Comparator<Integer> comparator = new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				int result = Double.compare(load[a], load[b]);
+				return result != 0 ? result : Integer.compare(a, b);
+			}
+		};
+		byLoad = new TreeSet<Integer>(comparator);
+		victims = new TreeSet<Integer>(comparator);
+		for (int i = 0; i < load.length; i++) {
+			byLoad.add(i);
+		}
+	}
+
+	/**
+	 * Gets the time a VM needs to run a cloudlet of the given length on one of its PEs.
+	 *
+	 * @param vm the VM
+	 * @param length the length of the cloudlet, in MI
+	 * @return the execution time
+	 */
+	public static double getExecTime(Vm vm, double length) {
+		return length / vm.getMips();
+	}
+
+	/**
+	 * Gets the share of the load of a VM that a cloudlet of the given length is.
+	 *
+	 * @param vm the VM
+	 * @param length the length of the cloudlet, in MI
+	 * @return the load the cloudlet adds to the VM
+	 */
+	public static double getLoad(Vm vm, double length) {
+		return length / (vm.getMips() * vm.getNumberOfPes());
+	}
+
+	/**
+	 * Gets the position of the least loaded VM.
+	 *
+	 * @return the position in the VM list
+	 */
+	public int getLeastLoaded() {
+		return byLoad.first();
+	}
+
+	/**
+	 * Gets the position of the most loaded VM that has cloudlets to steal.
+	 *
+	 * @return the position in the VM list, or -1 if no VM has cloudlets to steal
+	 */
+	public int getMostLoadedVictim() {
+		return victims.isEmpty() ? -1 : victims.last();
+	}
+
+	/**
+	 * Adds to the load of a VM.
+	 *
+	 * @param position the position of the VM
+	 * @param delta the load to add, negative to remove load
+	 */
+	public void addLoad(int position, double delta) {
+		byLoad.remove(position);
+		boolean victim = victims.remove(position);
+		load[position] += delta;
+		byLoad.add(position);
+		if (victim) {
+			victims.add(position);
+		}
+	}
+
+	/**
+	 * Sets whether a VM has cloudlets that may be stolen.
+	 *
+	 * @param position the position of the VM
+	 * @param value true if cloudlets may be stolen from the VM
+	 */
+	public void setStealable(int position, boolean value) {
+		if (stealable[position] == value) {
+			return;
+		}
+		stealable[position] = value;
+		if (value) {
+			victims.add(position);
+		} else {
+			victims.remove(position);
+		}
+	}
+
+	public double getLoad(int position) {
+		return load[position];
+	}
+
+	public Vm getVm(int position) {
+		return vmList.get(position);
+	}
+
+	public int getVmCount() {
+		return vmList.size();
+	}
+
+}
@@ -0,0 +1,188 @@
+package com.shiyan.main;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import com.shiyan.models.Cloudlet;
+import com.shiyan.models.Vm;
+
+/**
+ * The VM types a broker can provision on demand, to find the cheapest type that can still serve a cloudlet.
+ * 可以按需创建的虚拟机类型，用于查找能满足云任务QoS需求的最便宜的类型
+ * <p>
+ * A cloudlet costs {@code length * cost / mips} on a type, so the cheapest type is the one with the lowest
+ * cost per MI. A fresh VM meets the deadline of the cloudlet if its MIPS reach
+ * {@code length / (deadline - readyTime)}, and the types that do are a suffix of the types sorted by MIPS.
+ * The catalog keeps, for every suffix, the type with the lowest cost per MI: a query is a binary search for
+ * the suffix, in {@code O(log t)} for {@code t} types. Since the budget of the cloudlet only bounds the cost
+ * per MI, the type found is affordable if any sufficient type is.
+ *
+ * @see DatacenterBroker#setElasticVmPool(VmTypeCatalog, int, double)
+ */
+public class VmTypeCatalog {
+
+	/** The MIPS of each type, ascending. */
+	private final double[] mips;
+
+	/** The number of PEs of each type, by ascending MIPS. */
+	private final int[] pes;
+
+	/** The RAM of each type, by ascending MIPS. */
+	private final int[] ram;
+
+	/** The bandwidth of each type, by ascending MIPS. */
+	private final long[] bw;
+
+	/** The image size of each type, by ascending MIPS. */
+	private final long[] size;
+
+	/** The cost per second of each type, by ascending MIPS. */
+	private final double[] cost;
+
+	/** The type with the lowest cost per MI among the types from each one on. 后缀中单位指令成本最低的类型 */
+	private final int[] cheapestFrom;
+
+	/**
+	 * Creates a catalog; the arrays give the parameters of each type, as in {@link com.shiyan.init.Constants}.
+	 *
+	 * @param mips the MIPS of each type
+	 * @param pes the number of PEs of each type
+	 * @param ram the RAM of each type
+	 * @param bw the bandwidth of each type
+	 * @param size the image size of each type
+	 * @param cost the cost per second of each type
+	 */
+	public VmTypeCatalog(final double[] mips, int[] pes, int[] ram, long[] bw, int[] size, double[] cost) {
+		int typeCount = mips.length;
+		if (pes.length != typeCount || ram.length != typeCount || bw.length != typeCount
+				|| size.length != typeCount || cost.length != typeCount) {
+			throw new IllegalArgumentException("Every VM type needs all its parameters");
+		}
+		Integer[] order = new Integer[typeCount];
+		for (int t = 0; t < typeCount; t++) {
+			order[t] = t;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Double.compare(mips[a], mips[b]);
+			}
+		});
+		this.mips = new double[typeCount];
+		this.pes = new int[typeCount];
+		this.ram = new int[typeCount];
+		this.bw = new long[typeCount];
+		this.size = new long[typeCount];
+		this.cost = new double[typeCount];
+		for (int t = 0; t < typeCount; t++) {
+			int type = order[t];
+			this.mips[t] = mips[type];
+			this.pes[t] = pes[type];
+			this.ram[t] = ram[type];
+			this.bw[t] = bw[type];
+			this.size[t] = size[type];
+			this.cost[t] = cost[type];
+		}
+
+		// 从后往前计算每个后缀中单位指令成本最低的类型，成本相同时取较慢的类型
+		cheapestFrom = new int[typeCount];
+		for (int t = typeCount - 1; t >= 0; t--) {
+			cheapestFrom[t] = t;
+			if (t + 1 < typeCount && getCostPerMi(cheapestFrom[t + 1]) < getCostPerMi(t)) {
+				cheapestFrom[t] = cheapestFrom[t + 1];
+			}
+		}
+	}
+
+	/**
+	 * Finds the type with the lowest cost per MI among the types with at least the given MIPS; on a tie,
+	 * the slowest one.
+	 *
+	 * @param requiredMips the minimum MIPS
+	 * @return the type, or -1 if no type is fast enough
+	 */
+	public int findCheapestType(double requiredMips) {
+		int low = 0;
+		int high = mips.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (mips[middle] < requiredMips) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low < mips.length ? cheapestFrom[low] : -1;
+	}
+
+	/**
+	 * Finds the cheapest type on which a fresh VM serves a cloudlet under its QoS requirements, with the rules
+	 * of {@link DatacenterBroker#checkQoS(Cloudlet, Vm, java.util.Map)}: the cloudlet finishes before its
+	 * deadline and costs no more than {@link Cloudlet#getUserMoney()}.
+	 *
+	 * @param cloudlet the cloudlet
+	 * @param readyTime the time the VM would be ready
+	 * @return the type, or -1 if no type can serve the cloudlet
+	 */
+	public int findCheapestType(Cloudlet cloudlet, double readyTime) {
+		double window = cloudlet.getStartSubmit() + cloudlet.getDeadlineTime() - readyTime;
+		if (window <= 0) {
+			return -1;
+		}
+		long length = cloudlet.getCloudletLength();
+		int type = findCheapestType(length / window);
+		if (type < 0 || readyTime + length / mips[type] > cloudlet.getStartSubmit() + cloudlet.getDeadlineTime()
+				|| length / mips[type] * cost[type] > cloudlet.getUserMoney()) {
+			return -1;
+		}
+		return type;
+	}
+
+	/**
+	 * Creates a VM of a type.
+	 *
+	 * @param type the type
+	 * @param id the id of the VM
+	 * @param userId the id of the broker of the VM
+	 * @param vmm the virtual machine monitor
+	 * @param cloudletScheduler the cloudlet scheduler of the VM
+	 * @return the VM
+	 */
+	public Vm createVm(int type, int id, int userId, String vmm, CloudletScheduler cloudletScheduler) {
+		return new Vm(id, userId, mips[type], pes[type], ram[type], bw[type], size[type], cost[type], vmm,
+				cloudletScheduler);
+	}
+
+	public int getTypeCount() {
+		return mips.length;
+	}
+
+	public double getMips(int type) {
+		return mips[type];
+	}
+
+	public int getPes(int type) {
+		return pes[type];
+	}
+
+	public int getRam(int type) {
+		return ram[type];
+	}
+
+	public long getBw(int type) {
+		return bw[type];
+	}
+
+	public long getSize(int type) {
+		return size[type];
+	}
+
+	public double getCostPerSecond(int type) {
+		return cost[type];
+	}
+
+	public double getCostPerMi(int type) {
+		return cost[type] / mips[type];
+	}
+
+}
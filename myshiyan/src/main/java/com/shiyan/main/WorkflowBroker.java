@@ -0,0 +1,243 @@
+package com.shiyan.main;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.shiyan.core.CloudSim;
+import com.shiyan.core.CloudSimTags;
+import com.shiyan.core.SimEvent;
+import com.shiyan.models.Cloudlet;
+import com.shiyan.models.Vm;
+import com.shiyan.models.WorkflowCloudlet;
+
+/**
+ * A broker that runs workflows: a {@link WorkflowCloudlet} is only sent to its VM once all its parents
+ * came back.
+ * 支持工作流的代理，所有父任务返回后才提交子任务
+ * <p>
+ * When the VMs are created the tasks without parents are sent as usual and the others are held back. Each
+ * returned task releases the children whose last parent it was; a released task is sent with a delay so
+ * that it arrives when the data of its last parent does, i.e. at the latest
+ * {@code parent finish time + transfer time} over its parents (see
+ * {@link HeftScheduler#transferTime(double, Vm, Vm)}). Tasks whose parents can never come back (canceled
+ * or failed) are canceled once nothing else is running, so the simulation still ends.
+ * <p>
+ * Tasks are always sent one by one: batch submission does not apply to workflows.
+ *
+ * @see HeftScheduler
+ */
+public class WorkflowBroker extends PowerDatacenterBroker {
+
+	/** The tasks held back until their parents return, by cloudlet id. 等待父任务返回的云任务 */
+	private final Map<Integer, WorkflowCloudlet> blockedCloudlets = new LinkedHashMap<Integer, WorkflowCloudlet>();
+
+	/** The number of parents each held-back task still waits for, by cloudlet id. */
+	private final Map<Integer, Integer> waitingParents = new HashMap<Integer, Integer>();
+
+	/** The position in the created VM list of the next VM for unbound tasks. */
+	private int vmIndex;
+
+	/** The scheduler of the last {@link #bindCloudletsToVmsHEFT()} or {@link #bindCloudletsToVmsCPOP()}. */
+	private HeftScheduler scheduler;
+
+	/**
+	 * Creates a new workflow broker.
+	 *
+	 * @param name the name of the broker
+	 * @throws Exception the exception
+	 */
+	public WorkflowBroker(String name) throws Exception {
+		super(name);
+	}
+
+	/**
+	 * 这里是工作流的列表调度算法——HEFT算法
+	 * 按照向上排序值从大到小依次将任务放到能最早完成它的虚拟机上，允许插入空闲时间段
+	 */
+	public void bindCloudletsToVmsHEFT() {
+		bindWorkflow(HeftScheduler.HEFT);
+	}
+
+	/**
+	 * 这里是工作流的列表调度算法——CPOP算法
+	 * 关键路径上的任务都放到执行关键路径最快的虚拟机上，其余任务放到能最早完成它的虚拟机上
+	 */
+	public void bindCloudletsToVmsCPOP() {
+		bindWorkflow(HeftScheduler.CPOP);
+	}
+
+	/**
+	 * Binds every workflow task of the cloudlet list with the given policy and puts them, by planned start
+	 * time, after the other cloudlets.
+	 */
+	private void bindWorkflow(int policy) {
+		String name = policy == HeftScheduler.CPOP ? "CPOP" : "HEFT";
+		beginScheduling(name);
+		List<WorkflowCloudlet> tasks = new ArrayList<WorkflowCloudlet>();
+		List<Cloudlet> newCloudlets = new ArrayList<Cloudlet>();
+		for (Cloudlet cloudlet : getCloudletList()) {
+			if (cloudlet instanceof WorkflowCloudlet) {
+				tasks.add((WorkflowCloudlet) cloudlet);
+			} else {
+				newCloudlets.add(cloudlet);
+			}
+		}
+		scheduler = new HeftScheduler(getVmList(), CloudSim.clock());
+		scheduler.setPolicy(policy);
+		scheduler.setDecisionLatency(getDecisionLatency());
+		newCloudlets.addAll(scheduler.schedule(tasks));
+		getCloudletList().clear();
+		getCloudletList().addAll(newCloudlets);
+		endScheduling();
+		Log.formatLine("%s: %d tasks, planned makespan %.2f", name, tasks.size(), scheduler.getMakespan());
+	}
+
+	@Override
+	protected void submitCloudlets() {
+		List<Cloudlet> cloudlets = getCloudletList();
+		int postponed = 0;
+		for (int i = 0; i < cloudlets.size(); i++) {
+			Cloudlet cloudlet = cloudlets.get(i);
+			if (cloudlet instanceof WorkflowCloudlet) {
+				WorkflowCloudlet task = (WorkflowCloudlet) cloudlet;
+				int waiting = 0;
+				for (WorkflowCloudlet parent : task.getParents()) {
+					if (!isCloudletReceived(parent.getCloudletId())) {
+						waiting++;
+					}
+				}
+				if (waiting > 0) { // 父任务尚未全部返回
+					blockedCloudlets.put(task.getCloudletId(), task);
+					waitingParents.put(task.getCloudletId(), waiting);
+					continue;
+				}
+			}
+			if (!release(cloudlet)) {
+				cloudlets.set(postponed++, cloudlet);
+			}
+		}
+		cloudlets.subList(postponed, cloudlets.size()).clear();
+	}
+
+	/**
+	 * Sends a task to its VM, delayed until the data of its parents arrives.
+	 *
+	 * @param cloudlet the task
+	 * @return false if the VM of the task was not created
+	 */
+	protected boolean release(Cloudlet cloudlet) {
+		Vm vm;
+		if (cloudlet.getVmId() == -1) {
+			vm = getVmsCreatedList().get(vmIndex);
+			vmIndex = (vmIndex + 1) % getVmsCreatedList().size();
+		} else {
+			vm = vmsCreatedById.get(cloudlet.getVmId());
+			if (vm == null) {
+				if (!Log.isDisabled()) {
+					Log.printConcatLine(CloudSim.clock(), ": ", getName(), ": Postponing execution of cloudlet ",
+							cloudlet.getCloudletId(), ": bount VM not available");
+				}
+				return false;
+			}
+		}
+
+		// 数据到达时间=父任务完成时间+数据传输时间
+		double arrival = CloudSim.clock();
+		if (cloudlet instanceof WorkflowCloudlet) {
+			WorkflowCloudlet task = (WorkflowCloudlet) cloudlet;
+			List<WorkflowCloudlet> parents = task.getParents();
+			for (int p = 0; p < parents.size(); p++) {
+				WorkflowCloudlet parent = parents.get(p);
+				double parentArrival = parent.getFinishTime()
+						+ HeftScheduler.transferTime(task.getParentData(p), getVmById(parent.getVmId()), vm);
+				arrival = Math.max(arrival, parentArrival);
+			}
+		}
+
+		if (!Log.isDisabled()) {
+			Log.printConcatLine(CloudSim.clock(), ": ", getName(), ": Sending cloudlet ",
+					cloudlet.getCloudletId(), " to VM #", vm.getId());
+		}
+		cloudlet.setVmId(vm.getId());
+		send(getVmsToDatacentersMap().get(vm.getId()), arrival - CloudSim.clock(), CloudSimTags.CLOUDLET_SUBMIT,
+				cloudlet);
+		cloudletsSubmitted++;
+		getCloudletSubmittedList().add(cloudlet);
+		return true;
+	}
+
+	/**
+	 * Releases the held-back children whose last parent is the given task.
+	 */
+	protected void releaseChildren(Cloudlet cloudlet) {
+		if (!(cloudlet instanceof WorkflowCloudlet)) {
+			return;
+		}
+		for (WorkflowCloudlet child : ((WorkflowCloudlet) cloudlet).getChildren()) {
+			Integer waiting = waitingParents.get(child.getCloudletId());
+			if (waiting == null) {
+				continue;
+			}
+			if (waiting > 1) {
+				waitingParents.put(child.getCloudletId(), waiting - 1);
+				continue;
+			}
+			waitingParents.remove(child.getCloudletId());
+			blockedCloudlets.remove(child.getCloudletId());
+			if (!release(child)) {
+				getCloudletList().add(child);
+			}
+		}
+	}
+
+	@Override
+	protected void processCloudletReturn(SimEvent ev) {
+		releaseChildren((Cloudlet) ev.getData());
+		super.processCloudletReturn(ev);
+	}
+
+	@Override
+	protected void processCloudletReturnBatch(SimEvent ev) {
+		for (Cloudlet cloudlet : (Cloudlet[]) ev.getData()) {
+			releaseChildren(cloudlet);
+		}
+		super.processCloudletReturnBatch(ev);
+	}
+
+	@Override
+	protected void checkCloudletsExecuted() {
+		if (cloudletsSubmitted == 0 && getCloudletList().isEmpty() && !blockedCloudlets.isEmpty()) {
+			// 没有正在执行的任务时，仍在等待的任务的父任务不会再返回
+			for (WorkflowCloudlet cloudlet : blockedCloudlets.values()) {
+				Log.printConcatLine(CloudSim.clock(), ": ", getName(), ": Cloudlet ", cloudlet.getCloudletId(),
+						" canceled: its parents did not finish");
+				markCloudletCanceled(cloudlet);
+			}
+			blockedCloudlets.clear();
+			waitingParents.clear();
+		}
+		super.checkCloudletsExecuted();
+	}
+
+	/**
+	 * Gets the scheduler of the last HEFT or CPOP run, e.g. for the planned times.
+	 *
+	 * @return the scheduler, or <tt>null</tt> if none was run
+	 */
+	public HeftScheduler getScheduler() {
+		return scheduler;
+	}
+
+	/**
+	 * Gets the number of tasks held back until their parents return.
+	 *
+	 * @return the number of blocked tasks
+	 */
+	public int getBlockedCloudletCount() {
+		return blockedCloudlets.size();
+	}
+
+}
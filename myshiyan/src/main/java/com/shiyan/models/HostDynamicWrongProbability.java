@@ -28,6 +28,9 @@ import com.shiyan.provisioners.RamProvisioner;
  */
 public class HostDynamicWrongProbability extends Host {
 
+	/** The log category of the hosts. */
+	public static final String LOG_CATEGORY = "HostDynamicWrongProbability";
+
 	/** The utilization mips. */
 	private double utilizationMips;
 	
@@ -108,8 +111,8 @@ public class HostDynamicWrongProbability extends Host {
 			double totalAllocatedMips = getVmScheduler().getTotalAllocatedMipsForVm(vm);
 			double currentwrongProbability = vm.getCloudletScheduler().getCurrentWrongProbability();
 			
-			if (!Log.isDisabled()) {
-				Log.formatLine(
+			if (Log.isLoggable(LOG_CATEGORY, Log.Level.DEBUG)) {
+				Log.logFormat(LOG_CATEGORY, Log.Level.DEBUG,
 						"%.2f: [Host #" + getId() + "] Total allocated MIPS for VM #" + vm.getId()
 								+ " (Host #" + vm.getHost().getId()
 								+ ") is %.2f, was requested %.2f out of total %.2f (%.2f%%)"+" 错误率为：%.2f%%",
@@ -125,7 +128,7 @@ public class HostDynamicWrongProbability extends Host {
 					pesString.append(String.format(" PE #" + pe.getId() + ": %.2f.", pe.getPeProvisioner()
 							.getTotalAllocatedMipsForVm(vm)));
 				}
-				Log.formatLine(
+				Log.logFormat(LOG_CATEGORY, Log.Level.DEBUG,
 						"%.2f: [Host #" + getId() + "] MIPS for VM #" + vm.getId() + " by PEs ("
 								+ getNumberOfPes() + " * " + getVmScheduler().getPeCapacity() + ")."
 								+ pesString,
@@ -133,12 +136,15 @@ public class HostDynamicWrongProbability extends Host {
 			}
 
 			if (getVmsMigratingIn().contains(vm)) {
-				Log.formatLine("%.2f: [Host #" + getId() + "] VM #" + vm.getId()
-						+ " is being migrated to Host #" + getId(), CloudSim.clock());
+				if (Log.isLoggable(LOG_CATEGORY, Log.Level.DEBUG)) {
+					Log.logFormat(LOG_CATEGORY, Log.Level.DEBUG, "%.2f: [Host #" + getId() + "] VM #" + vm.getId()
+							+ " is being migrated to Host #" + getId(), CloudSim.clock());
+				}
 			} else {
-				if (totalAllocatedMips + 0.1 < totalRequestedMips) {
-					Log.formatLine("%.2f: [Host #" + getId() + "] Under allocated MIPS for VM #" + vm.getId()
-							+ ": %.2f", CloudSim.clock(), totalRequestedMips - totalAllocatedMips);
+				if (totalAllocatedMips + 0.1 < totalRequestedMips && Log.isLoggable(LOG_CATEGORY, Log.Level.WARNING)) {
+					Log.logFormat(LOG_CATEGORY, Log.Level.WARNING, "%.2f: [Host #" + getId()
+							+ "] Under allocated MIPS for VM #" + vm.getId() + ": %.2f", CloudSim.clock(),
+							totalRequestedMips - totalAllocatedMips);
 				}
 
 				vm.addStateHistoryEntry(
@@ -149,9 +155,11 @@ public class HostDynamicWrongProbability extends Host {
 						(vm.isInMigration() && !getVmsMigratingIn().contains(vm)));
 
 				if (vm.isInMigration()) {
-					Log.formatLine(
-							"%.2f: [Host #" + getId() + "] VM #" + vm.getId() + " is in migration",
-							CloudSim.clock());
+					if (Log.isLoggable(LOG_CATEGORY, Log.Level.DEBUG)) {
+						Log.logFormat(LOG_CATEGORY, Log.Level.DEBUG,
+								"%.2f: [Host #" + getId() + "] VM #" + vm.getId() + " is in migration",
+								CloudSim.clock());
+					}
 					totalAllocatedMips /= 0.9; // performance degradation due to migration - 10%由于迁移造成的性能下降
 				}
 			}
@@ -0,0 +1,111 @@
+package com.shiyan.models;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A cloudlet that is a task of a workflow: it may only start once all its parents finished and their
+ * output data reached it.
+ * 工作流中的云任务，所有父任务完成且数据传输完毕后才能执行
+ * <p>
+ * The edges of the workflow are kept on both ends: every parent knows its children and every child its
+ * parents, each edge carrying the size of the data sent along it. The data size is in the unit the VM
+ * bandwidth is given per second (see {@link Vm#getBw()}), so the transfer time of an edge between two
+ * VMs is the data size divided by the bandwidth; there is no transfer between tasks on the same VM.
+ *
+ * @see com.shiyan.main.WorkflowBroker
+ * @see com.shiyan.main.HeftScheduler
+ */
+public class WorkflowCloudlet extends Cloudlet {
+
+	/** The parent tasks. */
+	private final List<WorkflowCloudlet> parents = new ArrayList<WorkflowCloudlet>(2);
+
+	/** The data received from each parent, in the order of {@link #parents}. */
+	private final List<Double> parentData = new ArrayList<Double>(2);
+
+	/** The child tasks. */
+	private final List<WorkflowCloudlet> children = new ArrayList<WorkflowCloudlet>(2);
+
+	/** The data sent to each child, in the order of {@link #children}. */
+	private final List<Double> childData = new ArrayList<Double>(2);
+
+	/**
+	 * Creates a new workflow task without edges.
+	 *
+	 * @param cloudletId the unique ID of this cloudlet
+	 * @param cloudletLength the length of this cloudlet, in MI
+	 * @param deadlineTime the deadline, relative to the submission time
+	 * @param pesNumber the pes number
+	 * @param utilizationModelCpu the utilization model of cpu
+	 * @param utilizationModelRam the utilization model of ram
+	 * @param utilizationModelBw the utilization model of bw
+	 * @param userMoney the highest price the user accepts for this cloudlet
+	 */
+	public WorkflowCloudlet(
+			final int cloudletId,
+			final long cloudletLength,
+			double deadlineTime,
+			final int pesNumber,
+			final UtilizationModel utilizationModelCpu,
+			final UtilizationModel utilizationModelRam,
+			final UtilizationModel utilizationModelBw,
+			double userMoney) {
+		super(cloudletId, cloudletLength, deadlineTime, pesNumber, utilizationModelCpu, utilizationModelRam,
+				utilizationModelBw, userMoney);
+	}
+
+	/**
+	 * Adds an edge from this task to a child task.
+	 *
+	 * @param child the task that depends on this one
+	 * @param dataSize the size of the data this task sends to the child
+	 */
+	public void addChild(WorkflowCloudlet child, double dataSize) {
+		if (child == this) {
+			throw new IllegalArgumentException("Cloudlet #" + getCloudletId() + " cannot depend on itself");
+		}
+		children.add(child);
+		childData.add(dataSize);
+		child.parents.add(this);
+		child.parentData.add(dataSize);
+	}
+
+	public List<WorkflowCloudlet> getParents() {
+		return Collections.unmodifiableList(parents);
+	}
+
+	/**
+	 * Gets the size of the data received from a parent.
+	 *
+	 * @param index the position of the parent in {@link #getParents()}
+	 * @return the data size
+	 */
+	public double getParentData(int index) {
+		return parentData.get(index);
+	}
+
+	public List<WorkflowCloudlet> getChildren() {
+		return Collections.unmodifiableList(children);
+	}
+
+	/**
+	 * Gets the size of the data sent to a child.
+	 *
+	 * @param index the position of the child in {@link #getChildren()}
+	 * @return the data size
+	 */
+	public double getChildData(int index) {
+		return childData.get(index);
+	}
+
+	public boolean isEntry() {
+		return parents.isEmpty();
+	}
+
+	public boolean isExit() {
+		return children.isEmpty();
+	}
+
+}
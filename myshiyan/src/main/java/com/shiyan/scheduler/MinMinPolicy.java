@@ -0,0 +1,45 @@
+package com.shiyan.scheduler;
+
+import java.util.List;
+
+/**
+ * The Min-Min algorithm: every step assigns the task with the earliest possible finish time to the VM that
+ * gives it, until every task is assigned.
+ * Min-Min算法
+ * <p>
+ * A task finishes on a VM at {@code ready + length / mips}, which grows with the length of the task for
+ * every VM, so the task picked by each step is always the shortest one left (the first submitted on a
+ * tie). The tasks are thus sorted once, and each step only looks for the VM that finishes the task first
+ * with a {@link ReadyTimeIndex}: {@code O(g + log m)} for {@code g} distinct MIPS values and {@code m} VMs
+ * instead of a scan over every task and VM, for the same decisions as
+ * {@link com.shiyan.main.DatacenterBroker#bindCloudletsToVmsMinMin()}.
+ */
+public class MinMinPolicy extends SchedulingPolicy {
+
+	@Override
+	public Schedule schedule(List<TaskDescriptor> tasks, List<VmDescriptor> vms) {
+		double[] mips = mipsOf(vms);
+		double[] ready = readyTimesOf(vms);
+		Schedule schedule = new Schedule(tasks.size(), ready);
+		if (vms.isEmpty()) {
+			return schedule;
+		}
+		ReadyTimeIndex index = new ReadyTimeIndex(mips, ready);
+		int[] all = new int[tasks.size()];
+		for (int i = 0; i < all.length; i++) {
+			all[i] = i;
+		}
+		int[] order = byLength(tasks, all);
+		startDecisions();
+		for (int i : order) {
+			long length = tasks.get(i).getLength();
+			int vm = index.findEarliestFinish(length);
+			double finish = ready[vm] + length / mips[vm];
+			index.setReadyTime(vm, finish);
+			schedule.assign(i, vm, finish, 0);
+			recordDecision();
+		}
+		return schedule;
+	}
+
+}
@@ -0,0 +1,132 @@
+package com.shiyan.scheduler;
+
+import java.util.List;
+
+/**
+ * The QoS-MinMin algorithm: Min-Min over two deadline classes, with the {@link SldPolicy} for the tasks
+ * that would violate their QoS.
+ * 基于用户QoS需求降级的Min-Min算法
+ * <p>
+ * The tasks whose relative deadline is below the average are scheduled first, with the tight compensation
+ * type, then the others with the loose one, on the same VMs. Inside a class every step takes the shortest
+ * task left (see {@link MinMinPolicy}) and the VM that finishes it first; if the task misses its deadline
+ * or budget there, it goes to the VM found by {@link SldPolicy#findVm}. A task no VM can serve is canceled
+ * and ends its class: the longer tasks of the class are left out, as in
+ * {@link com.shiyan.main.DatacenterBroker#bindCloudletsToVmsQoSMinMin()}.
+ * <p>
+ * A step costs {@code O(g + log m)} for {@code g} distinct MIPS values and {@code m} VMs, plus {@code O(m)}
+ * when the SLD rule is needed.
+ */
+public class QoSMinMinPolicy extends SchedulingPolicy {
+
+	private final SldPolicy sldPolicy;
+
+	/** The compensation type of the tasks with a deadline below the average. */
+	private int tightCompensationType = 1;
+
+	/** The compensation type of the other tasks. */
+	private int looseCompensationType = 2;
+
+	/**
+	 * Creates the policy.
+	 *
+	 * @param sldPolicy the rule for the tasks that would violate their QoS
+	 */
+	public QoSMinMinPolicy(SldPolicy sldPolicy) {
+		this.sldPolicy = sldPolicy;
+	}
+
+	@Override
+	public Schedule schedule(List<TaskDescriptor> tasks, List<VmDescriptor> vms) {
+		int taskCount = tasks.size();
+		double[] mips = mipsOf(vms);
+		double[] costs = costsOf(vms);
+		double[] ready = readyTimesOf(vms);
+		Schedule schedule = new Schedule(taskCount, ready);
+		if (vms.isEmpty() || taskCount == 0) {
+			return schedule;
+		}
+
+		// 按照平均截止时间分为两类
+		double totalDeadline = 0;
+		for (TaskDescriptor task : tasks) {
+			totalDeadline += task.getDeadline();
+		}
+		double averageDeadline = totalDeadline / taskCount;
+		int tightCount = 0;
+		for (TaskDescriptor task : tasks) {
+			if (task.getDeadline() < averageDeadline) {
+				tightCount++;
+			}
+		}
+		int[] tight = new int[tightCount];
+		int[] loose = new int[taskCount - tightCount];
+		int t = 0;
+		int l = 0;
+		for (int i = 0; i < taskCount; i++) {
+			if (tasks.get(i).getDeadline() < averageDeadline) {
+				tight[t++] = i;
+			} else {
+				loose[l++] = i;
+			}
+		}
+
+		ReadyTimeIndex index = new ReadyTimeIndex(mips, ready);
+		tight = byLength(tasks, tight);
+		loose = byLength(tasks, loose);
+		startDecisions();
+		scheduleClass(tasks, tight, tightCompensationType, mips, costs, ready, index, schedule);
+		scheduleClass(tasks, loose, looseCompensationType, mips, costs, ready, index, schedule);
+		return schedule;
+	}
+
+	/**
+	 * Schedules the tasks of one class, shortest first, until one of them is canceled.
+	 */
+	private void scheduleClass(List<TaskDescriptor> tasks, int[] order, int type, double[] mips, double[] costs,
+			double[] ready, ReadyTimeIndex index, Schedule schedule) {
+		for (int i : order) {
+			TaskDescriptor task = tasks.get(i);
+			int vm = index.findEarliestFinish(task.getLength());
+			//如果这个最好的虚拟机不能够满足QoS的需求，则启用延迟补偿和收益敏感的策略
+			if (!task.meetsQoS(mips[vm], costs[vm], ready[vm])) {
+				vm = sldPolicy.findVm(task, mips, costs, ready, type);
+				if (vm < 0) {
+					schedule.cancel(i);
+					return;
+				}
+			}
+			double finish = ready[vm] + task.getExecTime(mips[vm]);
+			index.setReadyTime(vm, finish);
+			schedule.assign(i, vm, finish, type);
+			recordDecision();
+		}
+	}
+
+	/**
+	 * Sets the compensation types of the two deadline classes.
+	 *
+	 * @param tight the type of the tasks with a deadline below the average, 1 by default
+	 * @param loose the type of the other tasks, 2 by default
+	 */
+	public void setCompensationTypes(int tight, int loose) {
+		if (tight < 1 || loose < 1) {
+			throw new IllegalArgumentException("Compensation types must be at least 1");
+		}
+		tightCompensationType = tight;
+		looseCompensationType = loose;
+	}
+
+	public int getTightCompensationType() {
+		return tightCompensationType;
+	}
+
+	public int getLooseCompensationType() {
+		return looseCompensationType;
+	}
+
+	public SldPolicy getSldPolicy() {
+		return sldPolicy;
+	}
+
+}
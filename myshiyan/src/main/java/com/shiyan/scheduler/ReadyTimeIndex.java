@@ -0,0 +1,184 @@
+package com.shiyan.scheduler;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Index of the ready times of VMs, to find the VM that finishes a task first.
+ * 虚拟机就绪时间索引，用于查找最早完成任务的虚拟机
+ * <p>
+ * The VMs are grouped by MIPS. Inside a group the finish time of a task never decreases with the ready
+ * time, so each group keeps the ready times of its VMs in a tournament tree, in position order: the root is
+ * the earliest ready time of the group, a query compares the roots of every group, and the first VM that
+ * finishes at the best time is found by a descent. A query costs {@code O(g + log m)} for {@code g}
+ * distinct MIPS values, and updating a ready time {@code O(log m)}. Everything is kept in primitive arrays,
+ * with no allocation after construction. Ties are broken by position, as the linear scans of
+ * {@link com.shiyan.main.DatacenterBroker} do, including VMs ready at different times whose finish times
+ * are equal once rounded.
+ */
+class ReadyTimeIndex {
+
+	/** The ready time of each VM, by position. */
+	private final double[] ready;
+
+	/** The MIPS of each group. */
+	private final double[] groupMips;
+
+	/** The group of each VM, by position. */
+	private final int[] groupOf;
+
+	/** The VMs of each group, by ascending position. */
+	private final int[][] members;
+
+	/** The index of each VM in the members of its group, by position. */
+	private final int[] memberIndex;
+
+	/** The tournament tree of each group: node 1 is the root, and the leaves are the ready times. */
+	private final double[][] trees;
+
+	/** The number of leaves of the tree of each group, a power of two. */
+	private final int[] leafCounts;
+
+	/**
+	 * Creates an index.
+	 *
+	 * @param mips the MIPS of each VM
+	 * @param ready the ready time of each VM, updated in place by {@link #setReadyTime(int, double)}
+	 */
+	ReadyTimeIndex(double[] mips, double[] ready) {
+		this.ready = ready;
+		int vmCount = mips.length;
+		groupOf = new int[vmCount];
+		Map<Double, Integer> groups = new HashMap<Double, Integer>();
+		for (int j = 0; j < vmCount; j++) {
+			Integer group = groups.get(mips[j]);
+			if (group == null) {
+				group = groups.size();
+				groups.put(mips[j], group);
+			}
+			groupOf[j] = group;
+		}
+		int groupCount = groups.size();
+		groupMips = new double[groupCount];
+		int[] sizes = new int[groupCount];
+		for (int j = 0; j < vmCount; j++) {
+			groupMips[groupOf[j]] = mips[j];
+			sizes[groupOf[j]]++;
+		}
+		members = new int[groupCount][];
+		trees = new double[groupCount][];
+		leafCounts = new int[groupCount];
+		for (int g = 0; g < groupCount; g++) {
+			members[g] = new int[sizes[g]];
+			leafCounts[g] = Integer.highestOneBit(Math.max(1, sizes[g] - 1)) << 1;
+			trees[g] = new double[2 * leafCounts[g]];
+			Arrays.fill(trees[g], Double.POSITIVE_INFINITY);
+			sizes[g] = 0;
+		}
+		memberIndex = new int[vmCount];
+		for (int j = 0; j < vmCount; j++) {
+			int g = groupOf[j];
+			memberIndex[j] = sizes[g];
+			members[g][sizes[g]++] = j;
+			trees[g][leafCounts[g] + memberIndex[j]] = ready[j];
+		}
+		for (int g = 0; g < groupCount; g++) {
+			double[] tree = trees[g];
+			for (int node = leafCounts[g] - 1; node >= 1; node--) {
+				tree[node] = Math.min(tree[2 * node], tree[2 * node + 1]);
+			}
+		}
+	}
+
+	/**
+	 * Finds the VM on which a task finishes first; on a tie, the first one.
+	 *
+	 * @param length the length of the task, in MI
+	 * @return the position of the VM, or -1 if there is no VM
+	 */
+	int findEarliestFinish(long length) {
+		double bestFinish = Double.MAX_VALUE;
+		for (int g = 0; g < trees.length; g++) {
+			bestFinish = Math.min(bestFinish, trees[g][1] + length / groupMips[g]);
+		}
+		int best = -1;
+		for (int g = 0; g < trees.length; g++) {
+			double execTime = length / groupMips[g];
+			if (trees[g][1] + execTime != bestFinish) {
+				continue;
+			}
+			// 舍入后完成时间相同的虚拟机中位置最靠前的一个
+			double[] tree = trees[g];
+			int node = 1;
+			while (node < leafCounts[g]) {
+				node = tree[2 * node] + execTime <= bestFinish ? 2 * node : 2 * node + 1;
+			}
+			int vm = members[g][node - leafCounts[g]];
+			if (best < 0 || vm < best) {
+				best = vm;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Gets the earliest time at which a task finishes on the VMs before a position.
+	 *
+	 * @param length the length of the task, in MI
+	 * @param end the position of the first VM left out
+	 * @return the finish time, or {@link Double#MAX_VALUE} if there is no VM before the position
+	 */
+	double getEarliestFinishBefore(long length, int end) {
+		double bestFinish = Double.MAX_VALUE;
+		for (int g = 0; g < trees.length; g++) {
+			int count = Arrays.binarySearch(members[g], end);
+			if (count < 0) {
+				count = -count - 1;
+			}
+			double[] tree = trees[g];
+			double earliest = Double.POSITIVE_INFINITY;
+			for (int low = leafCounts[g], high = leafCounts[g] + count; low < high; low >>>= 1, high >>>= 1) {
+				if ((low & 1) == 1) {
+					earliest = Math.min(earliest, tree[low++]);
+				}
+				if ((high & 1) == 1) {
+					earliest = Math.min(earliest, tree[--high]);
+				}
+			}
+			if (count > 0) {
+				bestFinish = Math.min(bestFinish, earliest + length / groupMips[g]);
+			}
+		}
+		return bestFinish;
+	}
+
+	/**
+	 * Gets the number of groups, i.e. of distinct MIPS values.
+	 */
+	int getGroupCount() {
+		return trees.length;
+	}
+
+	double getReadyTime(int vm) {
+		return ready[vm];
+	}
+
+	/**
+	 * Sets the ready time of a VM.
+	 *
+	 * @param vm the position of the VM
+	 * @param time the new ready time
+	 */
+	void setReadyTime(int vm, double time) {
+		ready[vm] = time;
+		int g = groupOf[vm];
+		double[] tree = trees[g];
+		int node = leafCounts[g] + memberIndex[vm];
+		tree[node] = time;
+		for (node >>>= 1; node >= 1; node >>>= 1) {
+			tree[node] = Math.min(tree[2 * node], tree[2 * node + 1]);
+		}
+	}
+
+}
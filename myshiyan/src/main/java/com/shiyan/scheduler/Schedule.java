@@ -0,0 +1,146 @@
+package com.shiyan.scheduler;
+
+import java.util.Arrays;
+
+/**
+ * The result of a {@link SchedulingPolicy}: the VM of every task, in the order the tasks were assigned.
+ * 调度结果：每个任务分配到的虚拟机及分配顺序
+ * <p>
+ * Tasks and VMs are designated by their position in the lists given to
+ * {@link SchedulingPolicy#schedule(java.util.List, java.util.List)}. A task is either assigned, canceled
+ * because no VM can serve it, or left out when the policy stopped before reaching it.
+ */
+public class Schedule {
+
+	/** The VM of each task, or -1. */
+	private final int[] vmOf;
+
+	/** The expected finish time of each task, or NaN. */
+	private final double[] finishTimes;
+
+	/** The compensation type of each task, or 0 if the policy does not compensate delays. */
+	private final int[] compensationTypes;
+
+	/** Whether each task was canceled. */
+	private final boolean[] canceled;
+
+	/** The assigned tasks, in assignment order. */
+	private final int[] order;
+
+	private int assignedCount;
+
+	/** The ready time of each VM once all the tasks are assigned. */
+	private final double[] readyTimes;
+
+	Schedule(int taskCount, double[] readyTimes) {
+		vmOf = new int[taskCount];
+		Arrays.fill(vmOf, -1);
+		finishTimes = new double[taskCount];
+		Arrays.fill(finishTimes, Double.NaN);
+		compensationTypes = new int[taskCount];
+		canceled = new boolean[taskCount];
+		order = new int[taskCount];
+		this.readyTimes = readyTimes;
+	}
+
+	/**
+	 * Assigns a task, after the tasks already assigned.
+	 */
+	void assign(int task, int vm, double finishTime, int compensationType) {
+		vmOf[task] = vm;
+		finishTimes[task] = finishTime;
+		compensationTypes[task] = compensationType;
+		order[assignedCount++] = task;
+	}
+
+	void cancel(int task) {
+		canceled[task] = true;
+	}
+
+	/**
+	 * Gets the VM of a task.
+	 *
+	 * @param task the position of the task
+	 * @return the position of its VM, or -1 if the task is not assigned
+	 */
+	public int getVm(int task) {
+		return vmOf[task];
+	}
+
+	/**
+	 * Gets the time a task is expected to finish, its VM running its tasks one after the other.
+	 *
+	 * @param task the position of the task
+	 * @return the expected finish time, or NaN if the task is not assigned
+	 */
+	public double getFinishTime(int task) {
+		return finishTimes[task];
+	}
+
+	/**
+	 * Gets the compensation type a task was assigned with, i.e. how much of its income is paid back per
+	 * unit of delay.
+	 *
+	 * @param task the position of the task
+	 * @return the type, or 0 if the policy does not compensate delays or the task is not assigned
+	 * @see SldPolicy
+	 */
+	public int getCompensationType(int task) {
+		return compensationTypes[task];
+	}
+
+	/**
+	 * Checks whether a task was canceled because no VM can serve it.
+	 *
+	 * @param task the position of the task
+	 * @return true if the task was canceled
+	 */
+	public boolean isCanceled(int task) {
+		return canceled[task];
+	}
+
+	public int getTaskCount() {
+		return vmOf.length;
+	}
+
+	public int getAssignedCount() {
+		return assignedCount;
+	}
+
+	/**
+	 * Gets an assigned task by assignment order; the tasks are meant to be sent to their VMs in that order.
+	 *
+	 * @param index the rank of the task in the assignment order
+	 * @return the position of the task
+	 */
+	public int getAssignedTask(int index) {
+		if (index >= assignedCount) {
+			throw new IndexOutOfBoundsException("Only " + assignedCount + " tasks are assigned");
+		}
+		return order[index];
+	}
+
+	/**
+	 * Gets the time a VM is ready once all the tasks are assigned.
+	 *
+	 * @param vm the position of the VM
+	 * @return the ready time
+	 */
+	public double getReadyTime(int vm) {
+		return readyTimes[vm];
+	}
+
+	/**
+	 * Gets the latest expected finish time of the assigned tasks.
+	 *
+	 * @return the makespan, 0 if no task is assigned
+	 */
+	public double getMakespan() {
+		double makespan = 0;
+		for (int k = 0; k < assignedCount; k++) {
+			makespan = Math.max(makespan, finishTimes[order[k]]);
+		}
+		return makespan;
+	}
+
+}
@@ -0,0 +1,127 @@
+package com.shiyan.scheduler;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import com.shiyan.util.LatencyHistogram;
+
+/**
+ * A batch scheduling algorithm over primitive task and VM descriptors, independent of the simulator: no
+ * simulation clock, no entity, and the descriptors are never modified.
+ * 与仿真器无关的批量调度算法，输入为任务和虚拟机的描述，输出为调度结果
+ * <p>
+ * The policies make the same decisions as the matching algorithms of
+ * {@link com.shiyan.main.DatacenterBroker}, which delegates to them, so a dispatcher embedding this package
+ * and the simulator agree on every assignment. A policy keeps no state between two calls besides its
+ * settings, so one instance may be reused, but not shared by several threads at once.
+ */
+public abstract class SchedulingPolicy {
+
+	/** Where the latency of each assignment is recorded, or <tt>null</tt>. */
+	private LatencyHistogram decisionLatency;
+
+	/** The time of the previous assignment, from {@link System#nanoTime()}. */
+	private long lastDecisionTime;
+
+	/**
+	 * Assigns tasks to VMs.
+	 *
+	 * @param tasks the tasks, in the order they were submitted
+	 * @param vms the VMs, with the time each one is done with the work already queued on it
+	 * @return the schedule, tasks and VMs being designated by their position in the lists
+	 */
+	public abstract Schedule schedule(List<TaskDescriptor> tasks, List<VmDescriptor> vms);
+
+	/**
+	 * Sets where the latency of each assignment is recorded: the time since the previous assignment, or
+	 * since the end of the set-up of {@link #schedule(List, List)} (sorting and indexing) for the first one.
+	 *
+	 * @param decisionLatency the histogram, or <tt>null</tt> not to record anything
+	 */
+	public void setDecisionLatency(LatencyHistogram decisionLatency) {
+		this.decisionLatency = decisionLatency;
+	}
+
+	public LatencyHistogram getDecisionLatency() {
+		return decisionLatency;
+	}
+
+	/**
+	 * Starts the timing of the assignments; called by {@link #schedule(List, List)} once it is set up.
+	 */
+	protected void startDecisions() {
+		lastDecisionTime = System.nanoTime();
+	}
+
+	/**
+	 * Records the latency of an assignment, if asked to.
+	 */
+	protected void recordDecision() {
+		if (decisionLatency != null) {
+			long now = System.nanoTime();
+			decisionLatency.record(now - lastDecisionTime);
+			lastDecisionTime = now;
+		}
+	}
+
+	/**
+	 * Copies the MIPS of the VMs.
+	 */
+	static double[] mipsOf(List<VmDescriptor> vms) {
+		double[] mips = new double[vms.size()];
+		for (int j = 0; j < mips.length; j++) {
+			mips[j] = vms.get(j).getMips();
+		}
+		return mips;
+	}
+
+	/**
+	 * Copies the cost per second of the VMs.
+	 */
+	static double[] costsOf(List<VmDescriptor> vms) {
+		double[] costs = new double[vms.size()];
+		for (int j = 0; j < costs.length; j++) {
+			costs[j] = vms.get(j).getCostPerSecond();
+		}
+		return costs;
+	}
+
+	/**
+	 * Copies the ready times of the VMs.
+	 */
+	static double[] readyTimesOf(List<VmDescriptor> vms) {
+		double[] ready = new double[vms.size()];
+		for (int j = 0; j < ready.length; j++) {
+			ready[j] = vms.get(j).getReadyTime();
+		}
+		return ready;
+	}
+
+	/**
+	 * Sorts task positions by length; the sort is stable, so ties keep the given order.
+	 *
+	 * @param tasks the tasks
+	 * @param positions the positions of the tasks to sort, in submission order
+	 * @return the sorted positions
+	 */
+	static int[] byLength(final List<TaskDescriptor> tasks, int[] positions) {
+		int n = positions.length;
+		Integer[] sorted = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			sorted[i] = positions[i];
+		}
+		Arrays.sort(sorted, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Long.compare(tasks.get(a).getLength(), tasks.get(b).getLength());
+			}
+		});
+		int[] order = new int[n];
+		for (int i = 0; i < n; i++) {
+			order[i] = sorted[i];
+		}
+		return order;
+	}
+
+}
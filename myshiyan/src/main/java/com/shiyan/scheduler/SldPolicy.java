@@ -0,0 +1,86 @@
+package com.shiyan.scheduler;
+
+/**
+ * The delay-compensation and income-sensitive (SLD) rule of the QoS-MinMin algorithm.
+ * 延迟补偿和收益敏感的策略
+ * <p>
+ * A task that cannot meet its deadline may still be accepted late if the provider pays back part of its
+ * income: the compensation is {@code income / (type * (deadline - submitTime)) * delay}, so a higher
+ * compensation type pays back less. The task is accepted on a VM if the provider still makes a profit
+ * once the running cost ({@code costFraction} of the income) and the compensation are paid, and if the task
+ * then costs the user no more than its budget. As in {@link com.shiyan.main.DatacenterBroker#SLD}, the delay
+ * is counted from the relative deadline of the task.
+ */
+public class SldPolicy {
+
+	/** The share of the income the provider pays as running cost. */
+	private final double costFraction;
+
+	/**
+	 * Creates the rule.
+	 *
+	 * @param costFraction the share of the income the provider pays as running cost
+	 */
+	public SldPolicy(double costFraction) {
+		this.costFraction = costFraction;
+	}
+
+	/**
+	 * Checks whether a task may run late on a VM with compensation.
+	 *
+	 * @param task the task
+	 * @param mips the MIPS of the VM
+	 * @param costPerSecond the cost per second of the VM
+	 * @param readyTime the time the VM is ready
+	 * @param type the compensation type of the task, at least 1
+	 * @return true if the provider still makes a profit and the user pays no more than the budget
+	 */
+	public boolean accepts(TaskDescriptor task, double mips, double costPerSecond, double readyTime, int type) {
+		double execTime = task.getExecTime(mips);
+		//延迟时间=完成时间-截止时间
+		double delay = readyTime + execTime - task.getDeadline();
+		//服务商正常收入
+		double income = costPerSecond * execTime;
+		//补偿成本=服务商正常收入/（任务类型*（任务截止时间-任务提交时间））*任务延迟时间
+		double compensation = income / (type * (task.getDeadline() - task.getSubmitTime())) * delay;
+		//服务商最终盈利=服务商正常收入-服务商成本-补偿成本
+		double profit = income - costFraction * income - compensation;
+		return profit >= 0 && income - compensation <= task.getBudget();
+	}
+
+	/**
+	 * Finds a VM for a task that violates its QoS on the VM that finishes it first: among the VMs within
+	 * its budget, the one that finishes it first and either meets its deadline or accepts it late with
+	 * compensation; on a tie, the first one. One pass over the VMs, in {@code O(m)}.
+	 *
+	 * @param task the task
+	 * @param mips the MIPS of each VM
+	 * @param costs the cost per second of each VM
+	 * @param ready the ready time of each VM
+	 * @param type the compensation type of the task, at least 1
+	 * @return the position of the VM, or -1 if the task should be canceled
+	 */
+	public int findVm(TaskDescriptor task, double[] mips, double[] costs, double[] ready, int type) {
+		int best = -1;
+		double bestFinish = 0;
+		for (int j = 0; j < mips.length; j++) {
+			if (!task.isAffordable(mips[j], costs[j])) {
+				continue;
+			}
+			double finish = ready[j] + task.getExecTime(mips[j]);
+			if (best >= 0 && finish >= bestFinish) {
+				continue;
+			}
+			if (finish <= task.getAbsoluteDeadline() || accepts(task, mips[j], costs[j], ready[j], type)) {
+				best = j;
+				bestFinish = finish;
+			}
+		}
+		return best;
+	}
+
+	public double getCostFraction() {
+		return costFraction;
+	}
+
+}
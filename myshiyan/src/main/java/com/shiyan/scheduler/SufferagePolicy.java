@@ -0,0 +1,116 @@
+package com.shiyan.scheduler;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The Sufferage algorithm, in rounds: every waiting task in turn asks for the VM that finishes it first,
+ * and a VM already asked for in the round goes to the task that would suffer more from not getting it;
+ * the VMs given away in a round then advance their ready time, until every task is assigned.
+ * Sufferage算法
+ * <p>
+ * The sufferage of a task is the gap between the finish time on its VM and the best finish time found
+ * before it while scanning the VMs in order, as {@link com.shiyan.main.DatacenterBroker#bindCloudletsToVmsSufferage()}
+ * computes it; a task that loses its VM to a later one waits for the next round. The ready times do not
+ * change during a round, so both finish times are looked up in a {@link ReadyTimeIndex}: the best VM, then
+ * the earliest finish on the VMs before it. A round costs {@code O(n (g + log m))} for {@code n} waiting
+ * tasks, {@code g} distinct MIPS values and {@code m} VMs, instead of {@code O(n m)}; when the MIPS values
+ * are nearly all distinct the VMs are scanned instead, which is then cheaper. Every task still bids
+ * in every round, so when most tasks want the same few VMs the rounds place few tasks each and the total
+ * grows with the square of the number of tasks. For a QoS-aware variant with cached bids, see
+ * {@link com.shiyan.main.SufferageScheduler}.
+ * <p>
+ * The decision latency is recorded for every bid that takes a VM in a round, including the bids replaced
+ * later in the round, so it does not measure the time to assign a task.
+ */
+public class SufferagePolicy extends SchedulingPolicy {
+
+	/** The VMs are scanned when there are fewer than this many VMs per distinct MIPS value. */
+	private static final int SCAN_RATIO = 8;
+
+	@Override
+	public Schedule schedule(List<TaskDescriptor> tasks, List<VmDescriptor> vms) {
+		int taskCount = tasks.size();
+		int vmCount = vms.size();
+		double[] mips = mipsOf(vms);
+		double[] ready = readyTimesOf(vms);
+		Schedule schedule = new Schedule(taskCount, ready);
+		if (vmCount == 0) {
+			return schedule;
+		}
+
+		ReadyTimeIndex index = new ReadyTimeIndex(mips, ready);
+		boolean scan = index.getGroupCount() * SCAN_RATIO >= vmCount;
+		long[] length = new long[taskCount];
+		for (int i = 0; i < taskCount; i++) {
+			length[i] = tasks.get(i).getLength();
+		}
+		int[] vmOf = new int[taskCount];
+		Arrays.fill(vmOf, -1);
+		double[] sufferage = new double[taskCount];
+		// 本轮中每台虚拟机上暂时分配的任务
+		int[] holder = new int[vmCount];
+		// 本轮暂时分配的任务，按分配顺序，被替换的任务记为-1
+		int[] round = new int[taskCount];
+		int[] roundSlot = new int[taskCount];
+		int assigned = 0;
+
+		startDecisions();
+		while (assigned < taskCount) {
+			Arrays.fill(holder, -1);
+			int roundSize = 0;
+			for (int i = 0; i < taskCount; i++) {
+				if (vmOf[i] != -1) {
+					continue;
+				}
+				double min = Double.MAX_VALUE;
+				double secondMin = Double.MAX_VALUE;
+				int best = -1;
+				if (scan) {
+					for (int j = 0; j < vmCount; j++) {
+						double finish = ready[j] + length[i] / mips[j];
+						if (finish < min) {
+							secondMin = min;
+							min = finish;
+							best = j;
+						}
+					}
+				} else {
+					best = index.findEarliestFinish(length[i]);
+					min = ready[best] + length[i] / mips[best];
+					secondMin = index.getEarliestFinishBefore(length[i], best);
+				}
+				double newSufferage = secondMin - min;
+				int previous = holder[best];
+				if (previous == -1) {
+					vmOf[i] = best;
+				} else if (newSufferage > sufferage[previous]) {
+					//替换掉调度损失较小的任务，它在下一轮重新竞争
+					vmOf[i] = best;
+					vmOf[previous] = -1;
+					round[roundSlot[previous]] = -1;
+				} else {
+					continue;
+				}
+				holder[best] = i;
+				sufferage[i] = newSufferage;
+				roundSlot[i] = roundSize;
+				round[roundSize++] = i;
+				recordDecision();
+			}
+			//更新本轮分配了任务的虚拟机的就绪时间
+			for (int k = 0; k < roundSize; k++) {
+				int i = round[k];
+				if (i == -1) {
+					continue;
+				}
+				int vm = vmOf[i];
+				index.setReadyTime(vm, ready[vm] + length[i] / mips[vm]);
+				schedule.assign(i, vm, ready[vm], 0);
+				assigned++;
+			}
+		}
+		return schedule;
+	}
+
+}
@@ -0,0 +1,108 @@
+package com.shiyan.scheduler;
+
+/**
+ * A task to schedule, described by primitive values only.
+ * 待调度的任务：长度、提交时间、截止时间和预算
+ * <p>
+ * The fields mirror {@link com.shiyan.models.Cloudlet}: the deadline is relative to the submission time, as
+ * {@code Cloudlet#getDeadlineTime()}, so the task must finish by {@code submitTime + deadline}; the budget is
+ * the most the task may cost, i.e. its execution time times the cost per second of its VM.
+ */
+public final class TaskDescriptor {
+
+	/** The length of the task, in MI. */
+	private final long length;
+
+	/** The time the task was submitted. */
+	private final double submitTime;
+
+	/** The deadline of the task, relative to its submission time. */
+	private final double deadline;
+
+	/** The most the task may cost. */
+	private final double budget;
+
+	/**
+	 * Creates a task.
+	 *
+	 * @param length the length of the task, in MI
+	 * @param submitTime the time the task was submitted
+	 * @param deadline the deadline of the task, relative to its submission time
+	 * @param budget the most the task may cost
+	 */
+	public TaskDescriptor(long length, double submitTime, double deadline, double budget) {
+		if (length < 0) {
+			throw new IllegalArgumentException("The length of a task cannot be negative");
+		}
+		this.length = length;
+		this.submitTime = submitTime;
+		this.deadline = deadline;
+		this.budget = budget;
+	}
+
+	public long getLength() {
+		return length;
+	}
+
+	public double getSubmitTime() {
+		return submitTime;
+	}
+
+	public double getDeadline() {
+		return deadline;
+	}
+
+	/**
+	 * Gets the time by which the task must finish.
+	 *
+	 * @return the submission time plus the deadline
+	 */
+	public double getAbsoluteDeadline() {
+		return submitTime + deadline;
+	}
+
+	public double getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Gets the time the task takes on a VM.
+	 *
+	 * @param mips the MIPS of the VM
+	 * @return the execution time
+	 */
+	public double getExecTime(double mips) {
+		return length / mips;
+	}
+
+	/**
+	 * Checks the QoS requirements of the task on a VM: it finishes by its deadline when queued after the
+	 * ready time of the VM, and it does not cost more than its budget.
+	 *
+	 * @param mips the MIPS of the VM
+	 * @param costPerSecond the cost per second of the VM
+	 * @param readyTime the time the VM is ready
+	 * @return true if both requirements are met
+	 */
+	public boolean meetsQoS(double mips, double costPerSecond, double readyTime) {
+		return readyTime + length / mips <= submitTime + deadline && isAffordable(mips, costPerSecond);
+	}
+
+	/**
+	 * Checks the budget of the task on a VM.
+	 *
+	 * @param mips the MIPS of the VM
+	 * @param costPerSecond the cost per second of the VM
+	 * @return true if the task does not cost more than its budget
+	 */
+	public boolean isAffordable(double mips, double costPerSecond) {
+		return length / mips * costPerSecond <= budget;
+	}
+
+	@Override
+	public String toString() {
+		return "TaskDescriptor[length=" + length + ", submitTime=" + submitTime + ", deadline=" + deadline
+				+ ", budget=" + budget + "]";
+	}
+
+}
@@ -0,0 +1,55 @@
+package com.shiyan.scheduler;
+
+/**
+ * A VM tasks can be assigned to, described by primitive values only.
+ * 可分配任务的虚拟机：计算能力、单位时间成本和就绪时间
+ * <p>
+ * A VM runs the tasks assigned to it one after the other: a task starts when the VM is ready and the VM is
+ * ready again once the task ran for {@code length / mips}, as in the scheduling algorithms of
+ * {@link com.shiyan.main.DatacenterBroker}.
+ */
+public final class VmDescriptor {
+
+	/** The MIPS of the VM. */
+	private final double mips;
+
+	/** The cost of the VM per second of execution. */
+	private final double costPerSecond;
+
+	/** The time the VM is done with the work already queued on it. */
+	private final double readyTime;
+
+	/**
+	 * Creates a VM.
+	 *
+	 * @param mips the MIPS of the VM
+	 * @param costPerSecond the cost of the VM per second of execution
+	 * @param readyTime the time the VM is done with the work already queued on it
+	 */
+	public VmDescriptor(double mips, double costPerSecond, double readyTime) {
+		if (mips <= 0) {
+			throw new IllegalArgumentException("The MIPS of a VM must be positive");
+		}
+		this.mips = mips;
+		this.costPerSecond = costPerSecond;
+		this.readyTime = readyTime;
+	}
+
+	public double getMips() {
+		return mips;
+	}
+
+	public double getCostPerSecond() {
+		return costPerSecond;
+	}
+
+	public double getReadyTime() {
+		return readyTime;
+	}
+
+	@Override
+	public String toString() {
+		return "VmDescriptor[mips=" + mips + ", costPerSecond=" + costPerSecond + ", readyTime=" + readyTime + "]";
+	}
+
+}
@@ -0,0 +1,222 @@
+package com.shiyan.util;
+
+import java.util.Arrays;
+
+/**
+ * A histogram of latencies with a bounded relative error, for percentiles such as p50, p99 and p999.
+ * 延迟直方图，按相对误差分桶，用于统计p50/p99/p999等分位数
+ * <p>
+ * Values are non-negative longs, usually nanoseconds. Values below {@code 2^s} each have their own bucket;
+ * above, every power of two is split in {@code 2^s} buckets of equal width, {@code s} being the number of
+ * significant bits. A recorded value is thus known within a relative error of {@code 2^-s} (under 1% with
+ * the default 7 bits), whatever its magnitude, and recording costs a few shifts. The exact count, minimum,
+ * maximum and sum are kept besides the buckets.
+ * <p>
+ * All methods are synchronized, so a histogram may be shared by several threads.
+ */
+public class LatencyHistogram {
+
+	/** The default number of significant bits. */
+	public static final int DEFAULT_SIGNIFICANT_BITS = 7;
+
+	/** The number of significant bits of a bucket. */
+	private final int significantBits;
+
+	/** The number of buckets per power of two, {@code 2^significantBits}. */
+	private final int subBucketCount;
+
+	/** The number of values recorded in each bucket. */
+	private final long[] counts;
+
+	private long count;
+
+	private long min = Long.MAX_VALUE;
+
+	private long max;
+
+	private double sum;
+
+	/**
+	 * Creates a histogram with {@link #DEFAULT_SIGNIFICANT_BITS} significant bits.
+	 */
+	public LatencyHistogram() {
+		this(DEFAULT_SIGNIFICANT_BITS);
+	}
+
+	/**
+	 * Creates a histogram.
+	 *
+	 * @param significantBits the number of significant bits of a bucket, from 1 to 16
+	 */
+	public LatencyHistogram(int significantBits) {
+		if (significantBits < 1 || significantBits > 16) {
+			throw new IllegalArgumentException("significantBits must be between 1 and 16");
+		}
+		this.significantBits = significantBits;
+		subBucketCount = 1 << significantBits;
+		counts = new long[(64 - significantBits) * subBucketCount];
+	}
+
+	/**
+	 * Records a value.
+	 *
+	 * @param value the value, negative values being recorded as 0
+	 */
+	public synchronized void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		counts[bucketOf(value)]++;
+		count++;
+		sum += value;
+		if (value < min) {
+			min = value;
+		}
+		if (value > max) {
+			max = value;
+		}
+	}
+
+	/**
+	 * Adds the values of another histogram of the same precision to this one.
+	 *
+	 * @param other the other histogram
+	 */
+	public void add(LatencyHistogram other) {
+		if (other.significantBits != significantBits) {
+			throw new IllegalArgumentException("Histograms of different precisions");
+		}
+		long[] otherCounts;
+		long otherCount, otherMin, otherMax;
+		double otherSum;
+		synchronized (other) {
+			otherCounts = other.counts.clone();
+			otherCount = other.count;
+			otherMin = other.min;
+			otherMax = other.max;
+			otherSum = other.sum;
+		}
+		synchronized (this) {
+			for (int i = 0; i < counts.length; i++) {
+				counts[i] += otherCounts[i];
+			}
+			count += otherCount;
+			sum += otherSum;
+			min = Math.min(min, otherMin);
+			max = Math.max(max, otherMax);
+		}
+	}
+
+	/**
+	 * Gets the value below or at which the given percentage of the recorded values are.
+	 *
+	 * @param percentile the percentage, from 0 to 100
+	 * @return the highest value of the bucket holding that rank, at most the maximum; 0 if nothing was
+	 *         recorded
+	 */
+	public synchronized long getValueAtPercentile(double percentile) {
+		if (count == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(Math.min(Math.max(percentile, 0.0), 100.0) / 100.0 * count);
+		rank = Math.max(rank, 1);
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return Math.min(highestValueOf(i), max);
+			}
+		}
+		return max;
+	}
+
+	public long getP50() {
+		return getValueAtPercentile(50.0);
+	}
+
+	public long getP99() {
+		return getValueAtPercentile(99.0);
+	}
+
+	public long getP999() {
+		return getValueAtPercentile(99.9);
+	}
+
+	public synchronized long getCount() {
+		return count;
+	}
+
+	/**
+	 * Gets the smallest recorded value.
+	 *
+	 * @return the minimum, 0 if nothing was recorded
+	 */
+	public synchronized long getMin() {
+		return count == 0 ? 0 : min;
+	}
+
+	public synchronized long getMax() {
+		return max;
+	}
+
+	/**
+	 * Gets the mean of the recorded values.
+	 *
+	 * @return the mean, 0 if nothing was recorded
+	 */
+	public synchronized double getMean() {
+		return count == 0 ? 0.0 : sum / count;
+	}
+
+	public synchronized long getTotal() {
+		return (long) sum;
+	}
+
+	/**
+	 * Removes all the recorded values.
+	 */
+	public synchronized void reset() {
+		Arrays.fill(counts, 0);
+		count = 0;
+		min = Long.MAX_VALUE;
+		max = 0;
+		sum = 0;
+	}
+
+	public int getSignificantBits() {
+		return significantBits;
+	}
+
+	/**
+	 * Gets the bucket of a value: the value itself below {@code 2^s}, then {@code 2^s} buckets per power of
+	 * two.
+	 */
+	private int bucketOf(long value) {
+		if (value < subBucketCount) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int shift = exponent - significantBits;
+		int subBucket = (int) (value >>> shift) - subBucketCount;
+		return (shift + 1) * subBucketCount + subBucket;
+	}
+
+	/**
+	 * Gets the highest value a bucket holds.
+	 */
+	private long highestValueOf(int bucket) {
+		if (bucket < subBucketCount) {
+			return bucket;
+		}
+		int shift = bucket / subBucketCount - 1;
+		long top = (bucket % subBucketCount) + subBucketCount;
+		return ((top + 1) << shift) - 1;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "count=" + count + ", p50=" + getP50() + ", p99=" + getP99() + ", p999=" + getP999() + ", max="
+				+ max;
+	}
+
+}
@@ -0,0 +1,125 @@
+package com.shiyan.main;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.shiyan.core.CloudSim;
+import com.shiyan.init.InitShiyan;
+import com.shiyan.models.Cloudlet;
+import com.shiyan.models.Host;
+import com.shiyan.models.Vm;
+
+/**
+ * Checks that the elastic pool of {@link DatacenterBroker} only provisions the VMs the hosts can fit, and
+ * that the cloudlets of a provisioned VM that could not be created are bound again or canceled.
+ */
+public class ElasticVmPoolTest {
+
+	private static final int CLOUDLET_COUNT = 1000;
+
+	private static final int VM_COUNT = 10;
+
+	@BeforeClass
+	public static void disableLog() {
+		Log.disable();
+	}
+
+	@AfterClass
+	public static void enableLog() {
+		Log.enable();
+	}
+
+	@Test
+	public void testProvisionsOnlyWhatHostsFit() throws Exception {
+		CloudSim.init(1, Calendar.getInstance(), false);
+		DatacenterBroker broker = InitShiyan.createBroker("Broker_0");
+
+		List<Cloudlet> received = run(broker);
+
+		assertTrue(broker.getProvisionedVmCount() > 0);
+		// 所有按需创建的虚拟机都创建成功
+		assertEquals(VM_COUNT + broker.getProvisionedVmCount(), broker.getVmList().size());
+		checkEveryCloudletAccounted(broker, received);
+	}
+
+	@Test
+	public void testRebindsCloudletsOfFailedVms() throws Exception {
+		CloudSim.init(1, Calendar.getInstance(), false);
+		// 账本以为主机放得下所有虚拟机，按需创建的虚拟机在数据中心创建失败
+		final HostCapacityLedger unlimited = new HostCapacityLedger(InitShiyan.createHostList(1000));
+		DatacenterBroker broker = new PowerDatacenterBroker("Broker_0") {
+
+			@Override
+			protected HostCapacityLedger getHostCapacity() {
+				return unlimited;
+			}
+
+		};
+
+		List<Cloudlet> received = run(broker);
+
+		assertTrue(VM_COUNT + broker.getProvisionedVmCount() > broker.getVmList().size());
+		for (Vm vm : broker.getVmList()) {
+			assertTrue("VM #" + vm.getId(), broker.getVmsToDatacentersMap().containsKey(vm.getId()));
+		}
+		checkEveryCloudletAccounted(broker, received);
+	}
+
+	@Test
+	public void testLedgerMatchesAllocationPolicy() throws Exception {
+		CloudSim.init(1, Calendar.getInstance(), false);
+		VmTypeCatalog catalog = InitShiyan.createVmTypeCatalog();
+		HostCapacityLedger ledger = new HostCapacityLedger(InitShiyan.createHostList(3));
+		VmAllocationPolicySimple policy = new VmAllocationPolicySimple(InitShiyan.createHostList(3));
+		Random random = new Random(43);
+		for (int id = 0; id < 200; id++) {
+			Vm vm = catalog.createVm(random.nextInt(catalog.getTypeCount()), id, 0, "Xen",
+					new CloudletSchedulerSpaceShared());
+			assertEquals("VM #" + id, policy.allocateHostForVm(vm), ledger.reserve(vm));
+		}
+	}
+
+	/**
+	 * Runs I-MaxMin with an elastic pool of up to 200 VMs on 2 hosts, which cannot fit them all.
+	 */
+	private static List<Cloudlet> run(DatacenterBroker broker) throws Exception {
+		List<Host> hosts = InitShiyan.createHostList(2);
+		InitShiyan.createDatacenter("Datacenter_1", hosts);
+		broker.submitVmList(InitShiyan.createVmList(VM_COUNT, broker.getId(), "Xen"));
+		broker.submitCloudletList(InitShiyan.createCloudletList(broker.getId(), CLOUDLET_COUNT));
+		broker.setElasticVmPool(InitShiyan.createVmTypeCatalog(), 200, 600);
+		broker.bindCloudletsToVmsIMaxMin();
+
+		CloudSim.startSimulation();
+		List<Cloudlet> received = new ArrayList<Cloudlet>(broker.<Cloudlet>getCloudletReceivedList());
+		CloudSim.stopSimulation();
+		return received;
+	}
+
+	/**
+	 * Checks that every cloudlet either came back from a VM of the pool or was canceled.
+	 */
+	private static void checkEveryCloudletAccounted(DatacenterBroker broker, List<Cloudlet> received) {
+		Set<Integer> vmIds = new HashSet<Integer>();
+		for (Vm vm : broker.getVmList()) {
+			vmIds.add(vm.getId());
+		}
+		for (Cloudlet cloudlet : received) {
+			assertTrue("cloudlet " + cloudlet.getCloudletId(), vmIds.contains(cloudlet.getVmId()));
+			assertTrue(!broker.isCloudletCanceled(cloudlet.getCloudletId()));
+		}
+		assertEquals(CLOUDLET_COUNT, received.size() + broker.getCanceledCloudletCount());
+	}
+
+}
@@ -0,0 +1,134 @@
+package com.shiyan.main;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.shiyan.core.CloudSim;
+import com.shiyan.core.SimEvent;
+import com.shiyan.init.InitShiyan;
+import com.shiyan.models.Host;
+
+/**
+ * Checks that the {@link FileCatalog} of a datacenter follows the files added to and deleted from its
+ * storages, against a lookup that asks every storage in turn.
+ */
+public class FileCatalogTest {
+
+	@BeforeClass
+	public static void initSimulation() {
+		Log.disable();
+		// 创建文件前需要初始化CloudSim
+		CloudSim.init(1, Calendar.getInstance(), false);
+	}
+
+	@AfterClass
+	public static void enableLog() {
+		Log.enable();
+	}
+
+	@Test
+	public void testAddStorageKeepsFirstStorage() throws Exception {
+		HarddriveStorage first = new HarddriveStorage("first", 1000);
+		HarddriveStorage second = new HarddriveStorage("second", 1000);
+		first.addFile(new File("a", 100));
+		second.addFile(new File("a", 200));
+		second.addFile(new File("b", 300));
+
+		FileCatalog catalog = new FileCatalog();
+		catalog.addStorage(first);
+		catalog.addStorage(second);
+
+		assertEquals(2, catalog.size());
+		assertSame(first, catalog.get("a").getStorage());
+		assertEquals(100, catalog.get("a").getSize());
+		assertSame(second, catalog.get("b").getStorage());
+		assertEquals(300, catalog.remove("b").getSize());
+		assertNull(catalog.remove("b"));
+		assertFalse(catalog.contains("b"));
+	}
+
+	@Test
+	public void testFollowsDatacenterFiles() throws Exception {
+		List<Storage> storages = new ArrayList<Storage>();
+		storages.add(new HarddriveStorage("hd", 1000));
+		storages.add(new SanStorage("san", 5000, 10, 0.02));
+		storages.get(0).addFile(new File("f0", 100));
+		storages.get(1).addFile(new File("f1", 50));
+		List<Host> hosts = InitShiyan.createHostList(2);
+		DatacenterCharacteristics characteristics = new DatacenterCharacteristics("x86", "Linux", "Xen", hosts,
+				10.0, 3.0, 0.05, 0.1, 0.1);
+		Datacenter datacenter = new Datacenter("FileCatalogTest", characteristics,
+				new VmAllocationPolicySimple(hosts), storages, 300);
+
+		Random random = new Random(50);
+		List<String> names = new ArrayList<String>();
+		for (int i = 0; i < 40; i++) {
+			names.add("f" + i);
+		}
+		checkCatalog(datacenter, storages, names);
+		for (int step = 0; step < 2000; step++) {
+			String name = names.get(random.nextInt(names.size()));
+			if (random.nextBoolean()) {
+				boolean stored = findStorage(storages, name) != null;
+				int msg = datacenter.addFile(new File(name, 1 + random.nextInt(400)));
+				if (stored) {
+					assertEquals(DataCloudTags.FILE_ADD_ERROR_EXIST_READ_ONLY, msg);
+				}
+			} else {
+				datacenter.processDataDelete(createDeleteEvent(name), false);
+			}
+			checkCatalog(datacenter, storages, names);
+		}
+	}
+
+	private static void checkCatalog(Datacenter datacenter, List<Storage> storages, List<String> names) {
+		double expectedTime = 0;
+		for (String name : names) {
+			Storage storage = findStorage(storages, name);
+			FileCatalog.Entry entry = datacenter.getFileCatalog().get(name);
+			assertEquals(name, storage != null, datacenter.contains(name));
+			if (storage != null) {
+				assertSame(name, storage, entry.getStorage());
+				assertEquals(name, storage.getFile(name).getSize(), entry.getSize());
+				expectedTime += storage.getFile(name).getSize() / storage.getMaxTransferRate();
+			} else {
+				assertNull(name, entry);
+			}
+		}
+		assertEquals(expectedTime, datacenter.predictFileTransferTime(names), 1e-9);
+		assertTrue(datacenter.getFileCatalog().size() <= names.size());
+	}
+
+	private static Storage findStorage(List<Storage> storages, String name) {
+		for (Storage storage : storages) {
+			if (storage.contains(name)) {
+				return storage;
+			}
+		}
+		return null;
+	}
+
+	private static SimEvent createDeleteEvent(final String name) {
+		return new SimEvent() {
+
+			@Override
+			public Object getData() {
+				return new Object[] { name, Integer.valueOf(-1) };
+			}
+
+		};
+	}
+
+}
@@ -0,0 +1,123 @@
+package com.shiyan.main;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the window integrals of {@link PowerTrace} against a second-by-second sum of the recorded power.
+ */
+public class PowerTraceTest {
+
+	@Test
+	public void testEnergyMatchesSum() {
+		Random random = new Random(49);
+		int count = 1000;
+		int[] times = new int[count];
+		double[] powers = new double[count];
+		int time = 0;
+		for (int i = 0; i < count; i++) {
+			// 时间可以重复，同一时间的记录替换前一条
+			time += random.nextInt(5);
+			times[i] = time;
+			powers[i] = random.nextInt(3) * 50;
+		}
+		int end = time + 10;
+
+		for (int capacity : new int[] { 1, 3, 17, 2000 }) {
+			PowerTrace trace = new PowerTrace(capacity);
+			for (int i = 0; i < count; i++) {
+				trace.record(times[i], powers[i] / 250, powers[i]);
+			}
+			assertEquals(capacity < 2000, trace.isTruncated());
+			int start = (int) trace.getStartTime();
+			for (int k = 0; k < 500; k++) {
+				int from = start + random.nextInt(end - start);
+				int to = from + random.nextInt(end - from + 1);
+				double expected = 0;
+				for (int second = from; second < to; second++) {
+					expected += getPower(times, powers, second);
+				}
+				assertEquals("capacity " + capacity + " window " + from + "-" + to, expected,
+						trace.getEnergy(from, to), 1e-6);
+				assertEquals(getPower(times, powers, to), trace.getPower(to), 0);
+			}
+		}
+	}
+
+	@Test
+	public void testPartialSeconds() {
+		PowerTrace trace = new PowerTrace(10);
+		trace.record(0, 0.5, 100);
+		trace.record(10, 1, 200);
+
+		assertEquals(0.0, trace.getEnergy(-5, 0), 0);
+		assertEquals(250.0 + 100.0, trace.getEnergy(7.5, 10.5), 1e-9);
+		// 最后一条记录一直持续到查询结束
+		assertEquals(200.0 * 90, trace.getEnergy(10, 100), 1e-9);
+		assertEquals(0.0, trace.getEnergy(5, 5), 0);
+	}
+
+	@Test
+	public void testRecordAtSameTimeReplacesEntry() {
+		PowerTrace trace = new PowerTrace(10);
+		trace.record(0, 0.5, 100);
+		trace.record(5, 1, 200);
+		trace.record(5, 0.2, 50);
+		// 未变化的值不记录
+		trace.record(8, 0.2, 50);
+
+		assertEquals(2, trace.size());
+		assertEquals(50.0, trace.getLastPower(), 0);
+		assertEquals(0.2, trace.getUtilization(6), 0);
+		assertEquals(500.0 + 250.0, trace.getEnergy(0, 10), 1e-9);
+	}
+
+	@Test
+	public void testRejectsTimeBeforeLastEntry() {
+		PowerTrace trace = new PowerTrace(10);
+		trace.record(5, 1, 200);
+		try {
+			trace.record(4, 0, 100);
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertEquals(1, trace.size());
+		}
+	}
+
+	@Test
+	public void testRejectsWindowBeforeTruncatedStart() {
+		PowerTrace trace = new PowerTrace(2);
+		trace.record(0, 0, 10);
+		trace.record(1, 0, 20);
+		assertFalse(trace.isTruncated());
+		trace.record(2, 0, 30);
+
+		assertTrue(trace.isTruncated());
+		assertEquals(1.0, trace.getStartTime(), 0);
+		assertEquals(20.0 + 30.0, trace.getEnergy(1, 3), 1e-9);
+		try {
+			trace.getEnergy(0, 3);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// 截断之前的能耗未知
+		}
+	}
+
+	/**
+	 * Gets the power recorded last at or before a time.
+	 */
+	private static double getPower(int[] times, double[] powers, int time) {
+		double power = 0;
+		for (int i = 0; i < times.length && times[i] <= time; i++) {
+			power = powers[i];
+		}
+		return power;
+	}
+
+}
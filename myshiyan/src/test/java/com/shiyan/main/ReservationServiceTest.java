@@ -0,0 +1,135 @@
+package com.shiyan.main;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.shiyan.models.Vm;
+
+/**
+ * Checks the conflict detection and the free slot search of {@link ReservationService} against a plain
+ * list of the booked intervals.
+ */
+public class ReservationServiceTest {
+
+	@Test
+	public void testHalfOpenSlotsDoNotConflict() {
+		ReservationService service = new ReservationService();
+		Vm vm = createVm(0);
+
+		int first = service.book(vm, 0, 10);
+		int second = service.book(vm, 10, 10);
+
+		assertTrue(first > 0);
+		assertTrue(second > 0);
+		assertEquals(-1, service.book(vm, 5, 10));
+		assertEquals(-1, service.book(vm, 19.5, 1));
+		assertEquals(-1, service.book(vm, 2, 3));
+		assertEquals(2, service.getReservationCount(vm));
+		assertEquals(20.0, service.findEarliestFit(vm, 0, 1), 0);
+	}
+
+	@Test
+	public void testCancelFreesTheSlot() {
+		ReservationService service = new ReservationService();
+		Vm vm = createVm(0);
+		int id = service.book(vm, 10, 10);
+
+		assertFalse(service.isFree(vm, 15, 1));
+		assertTrue(service.cancel(id));
+		assertFalse(service.cancel(id));
+		assertFalse(service.isActive(id));
+		assertTrue(service.isFree(vm, 15, 1));
+		assertTrue(service.book(vm, 12, 3) > 0);
+	}
+
+	@Test
+	public void testVmsOfOtherUsersAreIndependent() {
+		ReservationService service = new ReservationService();
+
+		assertTrue(service.book(1, 0, 0, 10) > 0);
+		assertTrue(service.book(2, 0, 0, 10) > 0);
+		assertEquals(-1, service.book(1, 0, 5, 1));
+		assertEquals(2, service.getReservationCount());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRejectsEmptySlot() {
+		new ReservationService().book(createVm(0), 0, 0);
+	}
+
+	@Test
+	public void testMatchesIntervalList() {
+		Random random = new Random(34);
+		ReservationService service = new ReservationService();
+		int vmCount = 3;
+		List<List<double[]>> booked = new ArrayList<List<double[]>>();
+		List<List<Integer>> ids = new ArrayList<List<Integer>>();
+		for (int j = 0; j < vmCount; j++) {
+			booked.add(new ArrayList<double[]>());
+			ids.add(new ArrayList<Integer>());
+		}
+
+		for (int step = 0; step < 5000; step++) {
+			int j = random.nextInt(vmCount);
+			Vm vm = createVm(j);
+			List<double[]> slots = booked.get(j);
+			double start = random.nextInt(2000);
+			double duration = 1 + random.nextInt(40);
+			int action = random.nextInt(10);
+			if (action < 6) {
+				int id = service.book(vm, start, duration);
+				boolean free = isFree(slots, start, start + duration);
+				assertEquals("step " + step, free, id > 0);
+				if (id > 0) {
+					slots.add(new double[] { start, start + duration });
+					ids.get(j).add(id);
+				}
+			} else if (action < 8 && !slots.isEmpty()) {
+				int k = random.nextInt(slots.size());
+				assertTrue(service.cancel(ids.get(j).remove(k)));
+				slots.remove(k);
+			} else if (action < 9) {
+				assertEquals("step " + step, isFree(slots, start, start + duration),
+						service.isFree(vm, start, duration));
+			} else {
+				assertEquals("step " + step, findEarliestFit(slots, start, duration),
+						service.findEarliestFit(vm, start, duration), 0);
+			}
+			assertEquals(slots.size(), service.getReservationCount(vm));
+		}
+	}
+
+	private static boolean isFree(List<double[]> slots, double start, double end) {
+		for (double[] slot : slots) {
+			if (slot[0] < end && start < slot[1]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The earliest free start is either the given time or the end of a slot after it.
+	 */
+	private static double findEarliestFit(List<double[]> slots, double from, double duration) {
+		double earliest = isFree(slots, from, from + duration) ? from : Double.MAX_VALUE;
+		for (double[] slot : slots) {
+			if (slot[1] > from && slot[1] < earliest && isFree(slots, slot[1], slot[1] + duration)) {
+				earliest = slot[1];
+			}
+		}
+		return earliest;
+	}
+
+	private static Vm createVm(int id) {
+		return new Vm(id, 0, 1000, 1, 512, 1000, 1000, 0.001, "Xen", null);
+	}
+
+}
@@ -0,0 +1,228 @@
+package com.shiyan.main;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.shiyan.models.Cloudlet;
+import com.shiyan.models.UtilizationModel;
+import com.shiyan.models.UtilizationModelFull;
+import com.shiyan.models.Vm;
+
+/**
+ * Checks {@link SufferageScheduler} against a round-by-round I-Sufferage that scans every VM for every
+ * waiting cloudlet.
+ */
+public class SufferageSchedulerTest {
+
+	private static final UtilizationModel FULL = new UtilizationModelFull();
+
+	@BeforeClass
+	public static void disableLog() {
+		Log.disable();
+	}
+
+	@AfterClass
+	public static void enableLog() {
+		Log.enable();
+	}
+
+	@Test
+	public void testMatchesReferenceWithFewVmTypes() throws Exception {
+		for (int seed = 0; seed < 30; seed++) {
+			Random random = new Random(seed);
+			List<Vm> vms = createVms(random, 40 + random.nextInt(120), new double[] { 42, 83, 125 },
+					new double[] { 0.0001, 0.0002 });
+			checkAgainstReference(seed, vms, 100 + random.nextInt(600));
+		}
+	}
+
+	@Test
+	public void testMatchesReferenceWithDistinctVmTypes() throws Exception {
+		for (int seed = 0; seed < 30; seed++) {
+			Random random = new Random(seed);
+			int vmCount = 5 + random.nextInt(60);
+			double[] mips = new double[vmCount];
+			double[] costs = new double[10];
+			for (int j = 0; j < vmCount; j++) {
+				mips[j] = 20 + random.nextInt(200);
+			}
+			for (int k = 0; k < costs.length; k++) {
+				costs[k] = 0.0001 * (k + 1);
+			}
+			checkAgainstReference(seed, createVms(random, vmCount, mips, costs), 100 + random.nextInt(600));
+		}
+	}
+
+	@Test
+	public void testBreaksRoundedFinishTiesByPosition() throws Exception {
+		// 1e15的相邻浮点数相差0.125：VM 0晚就绪0.125，但完成时间舍入后与其他VM相同
+		List<Vm> vms = new ArrayList<Vm>();
+		for (int j = 0; j < 4; j++) {
+			vms.add(new Vm(j, 0, 8, 1, 512, 1000, 1000, 0, "Xen", null));
+		}
+		List<Cloudlet> cloudlets = new ArrayList<Cloudlet>();
+		Cloudlet bound = createCloudlet(0, 1, 1e16, 1e9);
+		bound.setVmId(0);
+		cloudlets.add(bound);
+		cloudlets.add(createCloudlet(1, 8000000000000000L, 1e16, 1e9));
+
+		List<Cloudlet> result = new SufferageScheduler(vms, 1e15).schedule(cloudlets);
+
+		assertEquals(2, result.size());
+		assertEquals(bound, result.get(0));
+		assertEquals(0, result.get(1).getVmId());
+	}
+
+	@Test
+	public void testCancelsCloudletsWithoutFeasibleVm() throws Exception {
+		List<Vm> vms = new ArrayList<Vm>();
+		vms.add(new Vm(0, 0, 100, 1, 512, 1000, 1000, 0.001, "Xen", null));
+		List<Cloudlet> cloudlets = new ArrayList<Cloudlet>();
+		cloudlets.add(createCloudlet(0, 1000, 100, 1));
+		// 截止时间不够
+		cloudlets.add(createCloudlet(1, 1000, 5, 1));
+		// 预算不够
+		cloudlets.add(createCloudlet(2, 1000, 100, 0.001));
+
+		List<Cloudlet> result = new SufferageScheduler(vms, 0).schedule(cloudlets);
+
+		assertEquals(Collections.singletonList(cloudlets.get(0)), result);
+		assertEquals(Cloudlet.CANCELED, cloudlets.get(1).getStatus());
+		assertEquals(Cloudlet.CANCELED, cloudlets.get(2).getStatus());
+	}
+
+	private static void checkAgainstReference(int seed, List<Vm> vms, int cloudletCount) throws Exception {
+		List<Cloudlet> cloudlets = createCloudlets(new Random(seed * 7 + 1), cloudletCount);
+		List<Cloudlet> expected = createCloudlets(new Random(seed * 7 + 1), cloudletCount);
+
+		List<Cloudlet> result = new SufferageScheduler(vms, 0).schedule(cloudlets);
+		List<Cloudlet> reference = scheduleByScan(vms, expected);
+
+		assertTrue("seed " + seed + " should cancel some cloudlets", reference.size() < cloudletCount);
+		assertEquals("seed " + seed, describe(reference), describe(result));
+		for (int i = 0; i < cloudletCount; i++) {
+			assertEquals("seed " + seed + " cloudlet " + i, expected.get(i).getStatus(),
+					cloudlets.get(i).getStatus());
+		}
+	}
+
+	/**
+	 * I-Sufferage by brute force: every round each waiting cloudlet scans the VMs for its best and
+	 * second-best feasible finish time, the largest sufferage takes each VM (the first cloudlet on a tie),
+	 * and the winners are bound in submission order.
+	 */
+	private static List<Cloudlet> scheduleByScan(List<Vm> vms, List<Cloudlet> cloudlets) throws Exception {
+		int vmCount = vms.size();
+		double[] ready = new double[vmCount];
+		boolean[] done = new boolean[cloudlets.size()];
+		List<Cloudlet> result = new ArrayList<Cloudlet>();
+		while (true) {
+			int[] winner = new int[vmCount];
+			double[] winnerSufferage = new double[vmCount];
+			Arrays.fill(winner, -1);
+			for (int i = 0; i < cloudlets.size(); i++) {
+				if (done[i]) {
+					continue;
+				}
+				Cloudlet cloudlet = cloudlets.get(i);
+				double deadline = cloudlet.getStartSubmit() + cloudlet.getDeadlineTime();
+				double best = Double.MAX_VALUE;
+				double second = Double.MAX_VALUE;
+				int bestVm = -1;
+				for (int j = 0; j < vmCount; j++) {
+					double execTime = cloudlet.getCloudletLength() / vms.get(j).getMips();
+					double finish = ready[j] + execTime;
+					if (finish > deadline || execTime * vms.get(j).getCostPerVm() > cloudlet.getUserMoney()) {
+						continue;
+					}
+					if (finish < best) {
+						second = best;
+						best = finish;
+						bestVm = j;
+					} else if (finish < second) {
+						second = finish;
+					}
+				}
+				if (bestVm < 0) {
+					done[i] = true;
+					cloudlet.setCloudletStatus(Cloudlet.CANCELED);
+					continue;
+				}
+				if (winner[bestVm] < 0 || second - best > winnerSufferage[bestVm]) {
+					winner[bestVm] = i;
+					winnerSufferage[bestVm] = second - best;
+				}
+			}
+			List<Integer> winners = new ArrayList<Integer>();
+			int[] vmOf = new int[cloudlets.size()];
+			for (int j = 0; j < vmCount; j++) {
+				if (winner[j] >= 0) {
+					winners.add(winner[j]);
+					vmOf[winner[j]] = j;
+				}
+			}
+			if (winners.isEmpty()) {
+				return result;
+			}
+			Collections.sort(winners);
+			for (int i : winners) {
+				Cloudlet cloudlet = cloudlets.get(i);
+				int vm = vmOf[i];
+				cloudlet.setVmId(vms.get(vm).getId());
+				ready[vm] += cloudlet.getCloudletLength() / vms.get(vm).getMips();
+				done[i] = true;
+				result.add(cloudlet);
+			}
+		}
+	}
+
+	private static List<Vm> createVms(Random random, int count, double[] mips, double[] costs) {
+		List<Vm> vms = new ArrayList<Vm>();
+		for (int j = 0; j < count; j++) {
+			vms.add(new Vm(j, 0, mips[random.nextInt(mips.length)], 1, 512, 1000, 1000,
+					costs[random.nextInt(costs.length)], "Xen", null));
+		}
+		return vms;
+	}
+
+	/**
+	 * Creates cloudlets whose lengths repeat about half the time, with deadlines and budgets tight enough to
+	 * cancel some of them.
+	 */
+	private static List<Cloudlet> createCloudlets(Random random, int count) {
+		List<Cloudlet> cloudlets = new ArrayList<Cloudlet>();
+		for (int i = 0; i < count; i++) {
+			long length = 1000 + random.nextInt(random.nextBoolean() ? 5 : 200000);
+			double deadline = 3600 * (1 + random.nextInt(5));
+			double money = 0.01 + random.nextInt(10) * 0.01;
+			cloudlets.add(createCloudlet(i, length, deadline, money));
+		}
+		return cloudlets;
+	}
+
+	private static Cloudlet createCloudlet(int id, long length, double deadline, double money) {
+		Cloudlet cloudlet = new Cloudlet(id, length, deadline, 1, FULL, FULL, FULL, money);
+		cloudlet.setUserId(0);
+		cloudlet.setVmId(-1);
+		return cloudlet;
+	}
+
+	private static String describe(List<Cloudlet> cloudlets) {
+		StringBuilder builder = new StringBuilder();
+		for (Cloudlet cloudlet : cloudlets) {
+			builder.append(cloudlet.getCloudletId()).append("->").append(cloudlet.getVmId()).append(' ');
+		}
+		return builder.toString();
+	}
+
+}
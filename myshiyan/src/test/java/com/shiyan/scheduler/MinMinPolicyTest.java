@@ -0,0 +1,117 @@
+package com.shiyan.scheduler;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks {@link MinMinPolicy} against the Min-Min loops of
+ * {@link com.shiyan.main.DatacenterBroker#bindCloudletsToVmsMinMin()}, which scan every VM for every waiting
+ * task to assign one task.
+ */
+public class MinMinPolicyTest {
+
+	@Test
+	public void testMatchesScanWithFewVmTypes() {
+		for (int seed = 0; seed < 50; seed++) {
+			Random random = new Random(seed);
+			double[] types = new double[1 + random.nextInt(4)];
+			for (int t = 0; t < types.length; t++) {
+				types[t] = random.nextBoolean() ? 42 + random.nextInt(200) : 0.1 * (1 + random.nextInt(30)) * 7.3;
+			}
+			int vmCount = 2 + random.nextInt(60);
+			double[] mips = new double[vmCount];
+			double[] ready = new double[vmCount];
+			for (int j = 0; j < vmCount; j++) {
+				mips[j] = types[random.nextInt(types.length)];
+				ready[j] = random.nextInt(3) == 0 ? random.nextDouble() * 100 : 0;
+			}
+			long[] lengths = new long[50 + random.nextInt(300)];
+			for (int i = 0; i < lengths.length; i++) {
+				lengths[i] = random.nextBoolean() ? 1000 + random.nextInt(7) * 1000 : 1 + random.nextInt(1000000);
+			}
+			checkAgainstScan(seed, lengths, mips, ready);
+		}
+	}
+
+	@Test
+	public void testBreaksRoundedFinishTiesByPosition() {
+		// 就绪时间相差几个ulp，完成时间舍入后常常相同，此时应选位置最靠前的任务和虚拟机
+		for (int seed = 0; seed < 50; seed++) {
+			Random random = new Random(seed);
+			double[] types = new double[1 + random.nextInt(3)];
+			for (int t = 0; t < types.length; t++) {
+				types[t] = 1 + random.nextInt(3);
+			}
+			int vmCount = 2 + random.nextInt(60);
+			double[] mips = new double[vmCount];
+			double[] ready = new double[vmCount];
+			for (int j = 0; j < vmCount; j++) {
+				mips[j] = types[random.nextInt(types.length)];
+				ready[j] = 1e6 + random.nextInt(4) * Math.ulp(1e6);
+			}
+			long[] lengths = new long[50 + random.nextInt(300)];
+			for (int i = 0; i < lengths.length; i++) {
+				lengths[i] = random.nextBoolean() ? 1000 + random.nextInt(7) * 1000 : 1500000 + random.nextInt(1000000);
+			}
+			checkAgainstScan(seed, lengths, mips, ready);
+		}
+	}
+
+	private static void checkAgainstScan(int seed, long[] lengths, double[] mips, double[] ready) {
+		List<TaskDescriptor> tasks = new ArrayList<TaskDescriptor>();
+		for (long length : lengths) {
+			tasks.add(new TaskDescriptor(length, 0, 1e12, 1e12));
+		}
+		List<VmDescriptor> vms = new ArrayList<VmDescriptor>();
+		for (int j = 0; j < mips.length; j++) {
+			vms.add(new VmDescriptor(mips[j], 0, ready[j]));
+		}
+		Schedule schedule = new MinMinPolicy().schedule(tasks, vms);
+
+		List<int[]> expected = scheduleByScan(lengths, mips, ready.clone());
+		assertEquals("seed " + seed, expected.size(), schedule.getAssignedCount());
+		for (int k = 0; k < expected.size(); k++) {
+			int task = schedule.getAssignedTask(k);
+			assertEquals("seed " + seed + " assignment " + k, expected.get(k)[0], task);
+			assertEquals("seed " + seed + " task " + task, expected.get(k)[1], schedule.getVm(task));
+		}
+	}
+
+	/**
+	 * Min-Min by brute force, in assignment order: each step scans every waiting task on every VM and assigns
+	 * the pair with the earliest finish time, the first one on a tie.
+	 */
+	private static List<int[]> scheduleByScan(long[] lengths, double[] mips, double[] ready) {
+		int taskCount = lengths.length;
+		boolean[] done = new boolean[taskCount];
+		List<int[]> result = new ArrayList<int[]>();
+		for (int k = 0; k < taskCount; k++) {
+			double bestFinish = Double.MAX_VALUE;
+			int bestTask = -1;
+			int bestVm = -1;
+			for (int i = 0; i < taskCount; i++) {
+				if (done[i]) {
+					continue;
+				}
+				for (int j = 0; j < mips.length; j++) {
+					double finish = ready[j] + lengths[i] / mips[j];
+					if (finish < bestFinish) {
+						bestFinish = finish;
+						bestTask = i;
+						bestVm = j;
+					}
+				}
+			}
+			done[bestTask] = true;
+			ready[bestVm] = bestFinish;
+			result.add(new int[] { bestTask, bestVm });
+		}
+		return result;
+	}
+
+}
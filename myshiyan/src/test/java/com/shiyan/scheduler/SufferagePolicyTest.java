@@ -0,0 +1,160 @@
+package com.shiyan.scheduler;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks {@link SufferagePolicy} against the Sufferage loops of
+ * {@link com.shiyan.main.DatacenterBroker#bindCloudletsToVmsSufferage()}, which scan every VM for every task.
+ */
+public class SufferagePolicyTest {
+
+	@Test
+	public void testMatchesScanWithFewVmTypes() {
+		for (int seed = 0; seed < 50; seed++) {
+			Random random = new Random(seed);
+			double[] types = new double[1 + random.nextInt(4)];
+			for (int t = 0; t < types.length; t++) {
+				types[t] = random.nextBoolean() ? 42 + random.nextInt(200) : 0.1 * (1 + random.nextInt(30)) * 7.3;
+			}
+			int vmCount = 2 + random.nextInt(60);
+			double[] mips = new double[vmCount];
+			double[] ready = new double[vmCount];
+			for (int j = 0; j < vmCount; j++) {
+				mips[j] = types[random.nextInt(types.length)];
+				ready[j] = random.nextInt(3) == 0 ? random.nextDouble() * 100 : 0;
+			}
+			long[] lengths = new long[50 + random.nextInt(300)];
+			for (int i = 0; i < lengths.length; i++) {
+				lengths[i] = random.nextBoolean() ? 1000 + random.nextInt(7) * 1000 : 1 + random.nextInt(1000000);
+			}
+			checkAgainstScan(seed, lengths, mips, ready);
+		}
+	}
+
+	@Test
+	public void testMatchesScanWithDistinctMips() {
+		for (int seed = 0; seed < 20; seed++) {
+			Random random = new Random(seed);
+			int vmCount = 2 + random.nextInt(40);
+			double[] mips = new double[vmCount];
+			for (int j = 0; j < vmCount; j++) {
+				mips[j] = 20 + random.nextInt(1000);
+			}
+			long[] lengths = new long[50 + random.nextInt(300)];
+			for (int i = 0; i < lengths.length; i++) {
+				lengths[i] = 1 + random.nextInt(1000000);
+			}
+			checkAgainstScan(seed, lengths, mips, new double[vmCount]);
+		}
+	}
+
+	@Test
+	public void testBreaksRoundedFinishTiesByPosition() {
+		// 就绪时间相差几个ulp，完成时间舍入后常常相同，此时应选位置最靠前的虚拟机
+		for (int seed = 0; seed < 50; seed++) {
+			Random random = new Random(seed);
+			double[] types = new double[1 + random.nextInt(3)];
+			for (int t = 0; t < types.length; t++) {
+				types[t] = 1 + random.nextInt(3);
+			}
+			int vmCount = 2 + random.nextInt(60);
+			double[] mips = new double[vmCount];
+			double[] ready = new double[vmCount];
+			for (int j = 0; j < vmCount; j++) {
+				mips[j] = types[random.nextInt(types.length)];
+				ready[j] = 1e6 + random.nextInt(4) * Math.ulp(1e6);
+			}
+			long[] lengths = new long[50 + random.nextInt(300)];
+			for (int i = 0; i < lengths.length; i++) {
+				lengths[i] = random.nextBoolean() ? 1000 + random.nextInt(7) * 1000 : 1500000 + random.nextInt(1000000);
+			}
+			checkAgainstScan(seed, lengths, mips, ready);
+		}
+	}
+
+	private static void checkAgainstScan(int seed, long[] lengths, double[] mips, double[] ready) {
+		List<TaskDescriptor> tasks = new ArrayList<TaskDescriptor>();
+		for (long length : lengths) {
+			tasks.add(new TaskDescriptor(length, 0, 1e12, 1e12));
+		}
+		List<VmDescriptor> vms = new ArrayList<VmDescriptor>();
+		for (int j = 0; j < mips.length; j++) {
+			vms.add(new VmDescriptor(mips[j], 0, ready[j]));
+		}
+		Schedule schedule = new SufferagePolicy().schedule(tasks, vms);
+
+		List<int[]> expected = scheduleByScan(lengths, mips, ready.clone());
+		assertEquals("seed " + seed, expected.size(), schedule.getAssignedCount());
+		for (int k = 0; k < expected.size(); k++) {
+			int task = schedule.getAssignedTask(k);
+			assertEquals("seed " + seed + " assignment " + k, expected.get(k)[0], task);
+			assertEquals("seed " + seed + " task " + task, expected.get(k)[1], schedule.getVm(task));
+		}
+	}
+
+	/**
+	 * Sufferage by brute force, in assignment order: each waiting task in turn scans the VMs, takes its best
+	 * VM if the VM is free in the round or if its sufferage is larger than the holder's, and the holders of
+	 * the round are assigned in task order.
+	 */
+	private static List<int[]> scheduleByScan(long[] lengths, double[] mips, double[] ready) {
+		int taskCount = lengths.length;
+		int vmCount = mips.length;
+		int[] vmOf = new int[taskCount];
+		Arrays.fill(vmOf, -1);
+		double[] sufferage = new double[taskCount];
+		List<int[]> result = new ArrayList<int[]>();
+		while (result.size() < taskCount) {
+			int[] holder = new int[vmCount];
+			Arrays.fill(holder, -1);
+			for (int i = 0; i < taskCount; i++) {
+				if (vmOf[i] != -1) {
+					continue;
+				}
+				double min = Double.MAX_VALUE;
+				double second = Double.MAX_VALUE;
+				int best = -1;
+				for (int j = 0; j < vmCount; j++) {
+					double finish = ready[j] + lengths[i] / mips[j];
+					if (finish < min) {
+						second = min;
+						min = finish;
+						best = j;
+					}
+				}
+				int previous = holder[best];
+				if (previous == -1) {
+					vmOf[i] = best;
+				} else if (second - min > sufferage[previous]) {
+					vmOf[i] = best;
+					vmOf[previous] = -1;
+				} else {
+					continue;
+				}
+				holder[best] = i;
+				sufferage[i] = second - min;
+			}
+			List<Integer> winners = new ArrayList<Integer>();
+			for (int j = 0; j < vmCount; j++) {
+				if (holder[j] >= 0) {
+					winners.add(holder[j]);
+				}
+			}
+			Collections.sort(winners);
+			for (int i : winners) {
+				ready[vmOf[i]] += lengths[i] / mips[vmOf[i]];
+				result.add(new int[] { i, vmOf[i] });
+			}
+		}
+		return result;
+	}
+
+}